@@ -5,34 +5,41 @@ import com.panemu.tiwulfx.control.DetachableTabPane;
 import controller.analysisView.VisCSVController;
 import controller.analysisView.VisDownloadController;
 import controller.analysisView.VisDrSandersonController;
+import controller.analysisView.VisQueryProfileController;
 import javafx.application.Platform;
 import javafx.collections.ObservableList;
 import javafx.concurrent.Task;
+import javafx.concurrent.Worker;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.scene.control.Alert;
-import javafx.scene.control.ButtonType;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.Label;
 import javafx.scene.control.ListView;
 import javafx.scene.control.TextField;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.input.MouseDragEvent;
 import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import model.SanimalData;
 import model.analysis.DataAnalyzer;
 import model.image.ImageEntry;
 import model.query.S3Query;
+import model.query.S3QueryAggregate;
 import model.query.IQueryCondition;
+import model.query.S3QueryListener;
+import model.query.S3QueryProfile;
 import model.query.QueryEngine;
 import model.threading.ErrorTask;
 import model.util.FXMLLoaderUtils;
 import org.controlsfx.control.MaskerPane;
 
 import java.net.URL;
+import java.time.Duration;
 import java.util.List;
-import java.util.Optional;
 import java.util.ResourceBundle;
 
 /**
@@ -51,6 +58,8 @@ public class SanimalAnalysisController implements Initializable
 	public VisCSVController visCSVController;
 	@FXML
 	VisDownloadController visDownloadController;
+	@FXML
+	public VisQueryProfileController visQueryProfileController;
 
 	// The list of query conditions
 	@FXML
@@ -58,6 +67,12 @@ public class SanimalAnalysisController implements Initializable
 	// The event interval used for Dr. Sanderson's output
 	@FXML
 	public TextField txtEventInterval;
+	// If the next query should be profiled
+	@FXML
+	public CheckBox chkProfileQuery;
+	// If the next query should only count observations instead of loading images
+	@FXML
+	public CheckBox chkCountsOnly;
 
 	// The detachable tab containing the Dr. Sanderson output
 	@FXML
@@ -83,12 +98,21 @@ public class SanimalAnalysisController implements Initializable
 	@FXML
 	public MaskerPane mpnQuerying;
 
+	// The status of a running query and the label showing its progress
+	@FXML
+	public HBox hbxQueryStatus;
+	@FXML
+	public Label lblQueryStatus;
+
 	///
 	/// FXML bound fields end
 	///
 
 	private Integer eventIntervalIndex = 0;
 
+	// The query that is currently running, if any
+	private Task<?> currentQueryTask = null;
+
 	private Image standardArrow = new Image("/images/analysisWindow/arrowDivider.png");
 	private Image highlightedArrow = new Image("/images/analysisWindow/arrowDividerSelected.png");
 
@@ -136,6 +160,9 @@ public class SanimalAnalysisController implements Initializable
 		this.lvwFilters.setItems(SanimalData.getInstance().getQueryEngine().getQueryFilters());
 
 		this.mpnQuerying.setVisible(false);
+		// Only take up space with the query status when a query is running
+		this.hbxQueryStatus.managedProperty().bind(this.hbxQueryStatus.visibleProperty());
+		this.hbxQueryStatus.setVisible(false);
 	}
 
 	/**
@@ -145,6 +172,10 @@ public class SanimalAnalysisController implements Initializable
 	 */
 	public void query(ActionEvent actionEvent)
 	{
+		// A new query replaces any query that is still running
+		if (this.currentQueryTask != null)
+			this.currentQueryTask.cancel(true);
+
 		this.mpnQuerying.setVisible(true);
 
 		// Default 60s event interval
@@ -162,71 +193,151 @@ public class SanimalAnalysisController implements Initializable
 		for (IQueryCondition queryCondition : SanimalData.getInstance().getQueryEngine().getQueryConditions())
 			queryCondition.appendConditionToQuery(query);
 
-		Task<List<String>> queryTask = new ErrorTask<List<String>>()
+		// Clear out the images of any previous query, the images of this query show up as they are loaded
+		visDownloadController.clearPartialResults();
+
+		// Only pay for profiling when it was asked for
+		S3QueryProfile profile = this.chkProfileQuery.isSelected() ? new S3QueryProfile() : null;
+
+		// Counting observations is done right on the metadata, without loading any images
+		if (this.chkCountsOnly.isSelected())
+		{
+			ErrorTask<S3QueryAggregate> countsTask = new ErrorTask<S3QueryAggregate>()
+			{
+				@Override
+				protected S3QueryAggregate call() throws InterruptedException
+				{
+					this.updateMessage("Counting observations...");
+					return SanimalData.getInstance().getConnectionManager().performAggregateQuery(query, SanimalData.getInstance().getCollectionList(), this.getCancellationToken(), profile);
+				}
+			};
+			// Only the CSV tab has something to show for counts
+			countsTask.setOnSucceeded(event -> visCSVController.visualizeCounts(countsTask.getValue()));
+			this.runQueryTask(countsTask, profile);
+
+			actionEvent.consume();
+			return;
+		}
+
+		ErrorTask<List<ImageEntry>> queryTask = new ErrorTask<List<ImageEntry>>()
 		{
+			// The number of images matched and loaded so far
+			private volatile int matchCount = 0;
+			private volatile int loadedCount = 0;
+
 			@Override
-			protected List<String> call()
+			protected List<ImageEntry> call() throws InterruptedException
 			{
 				this.updateMessage("Performing query...");
-				// Grab the result of the query
-				return SanimalData.getInstance().getConnectionManager().performQuery(query, SanimalData.getInstance().getCollectionList());
+				Task<?> thisTask = this;
+				// Grab the images of the query, batch by batch
+				return SanimalData.getInstance().getConnectionManager().performStreamingQuery(query, SanimalData.getInstance().getCollectionList(), new S3QueryListener()
+				{
+					@Override
+					public void matchesFound(List<String> absoluteRemotePaths, int totalMatches)
+					{
+						matchCount = totalMatches;
+						updateMessage("Found " + matchCount + " images, loaded " + loadedCount + "...");
+					}
+
+					@Override
+					public void imagesLoaded(List<ImageEntry> images, int totalLoaded)
+					{
+						loadedCount = totalLoaded;
+						updateMessage("Found " + matchCount + " images, loaded " + loadedCount + "...");
+						// Show what we have so far as long as this is still the current query
+						Platform.runLater(() ->
+						{
+							if (currentQueryTask == thisTask)
+							{
+								mpnQuerying.setVisible(false);
+								visDownloadController.addPartialResults(images);
+							}
+						});
+					}
+				}, this.getCancellationToken(), profile);
 			}
 		};
 		Integer finalEventInterval = eventInterval;
 
-		// Once finished with the task, we test if the user wants to continue
+		// Once finished with the task, we analyze the full result
 		queryTask.setOnSucceeded(event ->
 		{
-			// Get the result of the first query
-			List<String> cloudAbsolutePaths = queryTask.getValue();
-
-			// Ask the user if they would like to continue to part 2 of the query where we retrieve metadata. This takes a while
-			Optional<ButtonType> buttonTypeOpt = SanimalData.getInstance().getErrorDisplay().showPopup(
-					Alert.AlertType.CONFIRMATION,
-					this.lvwFilters.getScene().getWindow(),
-					"Query Count",
-					null,
-					"This query will return " + cloudAbsolutePaths.size() + " results at approximately 6 results per second, continue?",
-					true);
-
-			// If they press OK, query, otherwise just jump out
-			if (buttonTypeOpt.isPresent() && buttonTypeOpt.get() == ButtonType.OK)
-			{
-				// Create a second task to perform the next query
-				Task<List<ImageEntry>> queryImageTask = new ErrorTask<List<ImageEntry>>()
-				{
-					@Override
-					protected List<ImageEntry> call()
-					{
-						this.updateMessage("Performing image query...");
-						// Grab the result of the image query
-						return SanimalData.getInstance().getConnectionManager().fetchMetadataFor(cloudAbsolutePaths, SanimalData.getInstance().getCollectionList());
-					}
-				};
+			// Analyze the result of the query
+			DataAnalyzer dataAnalyzer = new DataAnalyzer(queryTask.getValue(), finalEventInterval);
 
-				queryImageTask.setOnSucceeded(event1 ->
-				{
-					// Analyze the result of the query
-					DataAnalyzer dataAnalyzer = new DataAnalyzer(queryImageTask.getValue(), finalEventInterval);
-
-					// Hand the analysis over to the visualizations to graph
-					visDrSandersonController.visualize(dataAnalyzer);
-					visCSVController.visualize(dataAnalyzer);
-					visDownloadController.visualize(dataAnalyzer);
-					this.mpnQuerying.setVisible(false);
-				});
-
-				// Execute the second query
-				SanimalData.getInstance().getSanimalExecutor().getQueuedExecutor().addTask(queryImageTask);
+			// Hand the analysis over to the visualizations to graph
+			visDrSandersonController.visualize(dataAnalyzer);
+			visCSVController.visualize(dataAnalyzer);
+			visDownloadController.visualize(dataAnalyzer);
+		});
+		this.runQueryTask(queryTask, profile);
+
+		actionEvent.consume();
+	}
+
+	/**
+	 * Runs a query task, showing its progress while it runs and putting the view back once it's done, cancelled, or failed. The query is stopped
+	 * once it runs for longer than the query timeout setting
+	 *
+	 * @param queryTask The task performing the query
+	 * @param profile The profile the query records into, or null if it isn't profiled
+	 */
+	private void runQueryTask(ErrorTask<?> queryTask, S3QueryProfile profile)
+	{
+		this.mpnQuerying.textProperty().bind(queryTask.messageProperty());
+		this.lblQueryStatus.textProperty().bind(queryTask.messageProperty());
+		this.hbxQueryStatus.setVisible(true);
+		queryTask.runningProperty().addListener((observable, oldValue, newValue) ->
+		{
+			// The timeout counts from when the query starts running, not from when it was queued
+			Integer queryTimeout = SanimalData.getInstance().getSettings().getQueryTimeout();
+			if (newValue && queryTimeout != null && queryTimeout > 0)
+				queryTask.getCancellationToken().setTimeout(Duration.ofMinutes(queryTimeout));
+		});
+		// Put the view back once the task is done, including a task cancelled while still queued which never starts running
+		queryTask.stateProperty().addListener((observable, oldValue, newValue) ->
+		{
+			if (newValue != Worker.State.SUCCEEDED && newValue != Worker.State.CANCELLED && newValue != Worker.State.FAILED)
+				return;
+			if (queryTask.getCancellationToken().isDeadlineExceeded())
+				SanimalData.getInstance().getErrorDisplay().showPopup(
+						Alert.AlertType.WARNING,
+						null,
+						"Warning",
+						"Query timed out",
+						"The query ran for longer than the query timeout of " + SanimalData.getInstance().getSettings().getQueryTimeout() + " minute(s) and was stopped. The timeout can be changed in the settings.",
+						false);
+			if (profile != null)
+			{
+				// Show the profile whether the query finished or not, a cancelled query is often the one worth explaining
+				profile.finish();
+				this.visQueryProfileController.showProfile(profile);
 			}
-			else
+			if (this.currentQueryTask == queryTask)
 			{
+				this.currentQueryTask = null;
+				this.mpnQuerying.textProperty().unbind();
+				this.mpnQuerying.setText("Performing Query...");
 				this.mpnQuerying.setVisible(false);
+				this.lblQueryStatus.textProperty().unbind();
+				this.hbxQueryStatus.setVisible(false);
 			}
-
 		});
+
+		this.currentQueryTask = queryTask;
 		SanimalData.getInstance().getSanimalExecutor().getQueuedExecutor().addTask(queryTask);
+	}
 
+	/**
+	 * Called when the cancel query button is pressed
+	 *
+	 * @param actionEvent consumed
+	 */
+	public void cancelQuery(ActionEvent actionEvent)
+	{
+		if (this.currentQueryTask != null)
+			this.currentQueryTask.cancel(true);
 		actionEvent.consume();
 	}
 
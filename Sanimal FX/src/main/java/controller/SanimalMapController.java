@@ -17,16 +17,22 @@ import javafx.geometry.Point2D;
 import javafx.geometry.Pos;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
+import javafx.scene.effect.DropShadow;
 import javafx.scene.effect.Glow;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.GridPane;
+import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.HBox;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
 import library.AlignedMapNode;
 import model.SanimalData;
 import model.analysis.SanimalAnalysisUtils;
 import model.constant.MapProviders;
 import model.location.Location;
+import model.location.LocationBounds;
+import model.location.LocationGridIndex;
 import model.location.UTMCoord;
 import model.util.FXMLLoaderUtils;
 import model.util.RoundingUtils;
@@ -42,8 +48,10 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.Set;
 
 /**
  * Controller class for the map page
@@ -81,6 +89,10 @@ public class SanimalMapController
 	@FXML
 	public Label lblMouseLocation;
 
+	// The rectangle drawn while selecting an area of the map
+	@FXML
+	public Rectangle rctSelection;
+
 	///
 	/// FXML bound fields end
 	///
@@ -199,6 +211,11 @@ public class SanimalMapController
 		Image locationPinImage = new Image("/images/mapWindow/locationPin.png", 64, 64, false, true);
 		// The glow when hovering a location pin
 		Glow hoverGlow = new Glow();
+		// Spatial index of the pins so selecting an area only looks at the pins near it
+		LocationGridIndex<Location> locationIndex = new LocationGridIndex<>();
+		// The locations inside the selected area, and the shadow drawn around their pins
+		Set<Location> selectedLocations = new HashSet<>();
+		DropShadow selectedShadow = new DropShadow(20, Color.DODGERBLUE);
 		// When our location list changes we add a new pin
 		SanimalData.getInstance().getLocationList().addListener((ListChangeListener<Location>) c ->
 		{
@@ -236,12 +253,13 @@ public class SanimalMapController
 						// Set the pin to not glow when hovered
 						mapPin.setOnMouseExited(event ->
 						{
-							mapPin.setEffect(null);
+							mapPin.setEffect(selectedLocations.contains(location) ? selectedShadow : null);
 							event.consume();
 						});
 
 						// Store the mapping of location to pin in our hashmap
 						locationToPin.put(location, mapPin);
+						locationIndex.add(location.getLat(), location.getLng(), location);
 						// Add the pin to our map
 						this.map.addChild(mapPin, MapLayers.LOCATION_PINS);
 					}
@@ -253,11 +271,78 @@ public class SanimalMapController
 					for (Location location : c.getRemoved())
 						// This should always be true....
 						if (locationToPin.containsKey(location))
-							// Remove the pin from the map
-							this.map.removeChild(locationToPin.remove(location));
+						{
+							// Remove the pin from the map, the pin keeps the position the location was indexed at
+							MapNode mapPin = locationToPin.remove(location);
+							locationIndex.remove(mapPin.getLocation().getLatitude(), mapPin.getLocation().getLongitude(), location);
+							selectedLocations.remove(location);
+							this.map.removeChild(mapPin);
+						}
 				}
 		});
 
+		///
+		/// Setup area selection, shift + drag selects the area used by the map area query filter
+		///
+
+		// The corner the selection was started from
+		Point2D[] selectionStart = new Point2D[1];
+		this.map.addEventFilter(MouseEvent.MOUSE_PRESSED, event ->
+		{
+			if (event.isShiftDown())
+			{
+				selectionStart[0] = new Point2D(event.getX(), event.getY());
+				this.updateSelectionRectangle(selectionStart[0], selectionStart[0]);
+				this.rctSelection.setVisible(true);
+				// Don't let the map pan while we select
+				event.consume();
+			}
+		});
+		this.map.addEventFilter(MouseEvent.MOUSE_DRAGGED, event ->
+		{
+			if (selectionStart[0] != null)
+			{
+				this.updateSelectionRectangle(selectionStart[0], new Point2D(event.getX(), event.getY()));
+				event.consume();
+			}
+		});
+		this.map.addEventFilter(MouseEvent.MOUSE_RELEASED, event ->
+		{
+			if (selectionStart[0] != null)
+			{
+				Point2D selectionEnd = new Point2D(event.getX(), event.getY());
+				this.rctSelection.setVisible(false);
+
+				// Un-highlight the old selection
+				for (Location location : selectedLocations)
+					if (locationToPin.containsKey(location))
+						locationToPin.get(location).setEffect(null);
+				selectedLocations.clear();
+
+				// A click without a drag clears the selection
+				if (selectionStart[0].distance(selectionEnd) < 3)
+				{
+					SanimalData.getInstance().setMapSelection(null);
+				}
+				else
+				{
+					fxmapcontrol.Location corner1 = this.map.viewToLocation(selectionStart[0]);
+					fxmapcontrol.Location corner2 = this.map.viewToLocation(selectionEnd);
+					LocationBounds selection = new LocationBounds(corner1.getLatitude(), corner1.getLongitude(), corner2.getLatitude(), corner2.getLongitude());
+					SanimalData.getInstance().setMapSelection(selection);
+
+					// Highlight the pins inside the selection
+					selectedLocations.addAll(locationIndex.withinBox(selection.getMinLatitude(), selection.getMinLongitude(), selection.getMaxLatitude(), selection.getMaxLongitude()));
+					for (Location location : selectedLocations)
+						if (locationToPin.containsKey(location))
+							locationToPin.get(location).setEffect(selectedShadow);
+				}
+
+				selectionStart[0] = null;
+				event.consume();
+			}
+		});
+
 		// When we move the mouse update the bottom label
 		this.map.setOnMouseMoved(event ->
 		{
@@ -275,4 +360,21 @@ public class SanimalMapController
 			}
 		});
 	}
+
+	/**
+	 * Moves the selection rectangle to span two corners given in map coordinates
+	 *
+	 * @param corner1 The first corner of the selection
+	 * @param corner2 The opposite corner of the selection
+	 */
+	private void updateSelectionRectangle(Point2D corner1, Point2D corner2)
+	{
+		// The map and rectangle share a parent but may not be placed at the same spot in it
+		Point2D start = this.rctSelection.getParent().sceneToLocal(this.map.localToScene(corner1));
+		Point2D end = this.rctSelection.getParent().sceneToLocal(this.map.localToScene(corner2));
+		this.rctSelection.setX(Math.min(start.getX(), end.getX()));
+		this.rctSelection.setY(Math.min(start.getY(), end.getY()));
+		this.rctSelection.setWidth(Math.abs(end.getX() - start.getX()));
+		this.rctSelection.setHeight(Math.abs(end.getY() - start.getY()));
+	}
 }
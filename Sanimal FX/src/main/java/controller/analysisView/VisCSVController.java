@@ -15,6 +15,7 @@ import model.analysis.DataAnalyzer;
 import model.analysis.SanimalAnalysisUtils;
 import model.location.Location;
 import model.location.UTMCoord;
+import model.query.S3QueryAggregate;
 import model.util.RoundingUtils;
 import model.util.SettingsData;
 import org.apache.poi.ss.formula.functions.T;
@@ -41,6 +42,9 @@ public class VisCSVController implements VisControllerBase
 	// The text area containing species CSV with a species list
 	@FXML
 	public TextArea txtSpeciesCSV;
+	// The text area containing the counts CSV of a counts only query
+	@FXML
+	public TextArea txtCountsCSV;
 
 	// 3 buttons to control showing or hiding of lat/long fields
 	@FXML
@@ -90,6 +94,7 @@ public class VisCSVController implements VisControllerBase
 		this.txtRawCSV.setFont(Font.font(java.awt.Font.MONOSPACED, 14f));
 		this.txtLocationCSV.setFont(Font.font(java.awt.Font.MONOSPACED, 14f));
 		this.txtSpeciesCSV.setFont(Font.font(java.awt.Font.MONOSPACED, 14f));
+		this.txtCountsCSV.setFont(Font.font(java.awt.Font.MONOSPACED, 14f));
 		// When we select the round toggle button we show the rounding field
 		this.spnDecimalPlaces.disableProperty().bind(this.tbnRoundLatLon.selectedProperty().not());
 		// When we edit our toggle buttons update the CSV
@@ -119,6 +124,31 @@ public class VisCSVController implements VisControllerBase
 		this.refreshCSVs();
 	}
 
+	/**
+	 * Function called whenever a counts only query finishes, shows the counts as CSV
+	 *
+	 * @param aggregate The grouped counts to show
+	 */
+	public void visualizeCounts(S3QueryAggregate aggregate)
+	{
+		// The counts CSV contains one group per line in the form:
+		// Scientific name, Location ID, Location name, Month, Images, Observations, Individuals, First seen, Last seen
+		String countsCSV = aggregate.getGroups().stream().map(group ->
+			group.getScientificName() + "," +
+			(this.tbnShowCode.isSelected() ? group.getLocationID() : "Omitted") + "," +
+			(this.tbnShowName.isSelected() ? group.getLocationName() : "Omitted") + "," +
+			(group.getMonth() != null ? group.getMonth().toString() : "Unknown") + "," +
+			group.getImageCount() + "," +
+			group.getObservationCount() + "," +
+			group.getIndividualCount() + "," +
+			(group.getFirstTimestamp() != null ? SanimalData.getInstance().getSettings().formatDateTime(group.getFirstTimestamp(), " ") : "Unknown") + "," +
+			(group.getLastTimestamp() != null ? SanimalData.getInstance().getSettings().formatDateTime(group.getLastTimestamp(), " ") : "Unknown")
+		).collect(Collectors.joining("\n"));
+		if (countsCSV.isEmpty())
+			countsCSV = "No query results found.";
+		this.txtCountsCSV.setText(countsCSV);
+	}
+
 	/**
 	 * Refreshes all the CSV fields
 	 */
@@ -256,4 +286,17 @@ public class VisCSVController implements VisControllerBase
 		Clipboard.getSystemClipboard().setContent(content);
 		actionEvent.consume();
 	}
+
+	/**
+	 * If copy Counts CSV is pressed, we copy the content of the CSV clipboard
+	 *
+	 * @param actionEvent consumed
+	 */
+	public void copyCountsCSV(ActionEvent actionEvent)
+	{
+		ClipboardContent content = new ClipboardContent();
+		content.putString(this.txtCountsCSV.getText());
+		Clipboard.getSystemClipboard().setContent(content);
+		actionEvent.consume();
+	}
 }
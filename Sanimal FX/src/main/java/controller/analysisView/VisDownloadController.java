@@ -11,11 +11,13 @@ import javafx.scene.control.ListView;
 import javafx.stage.DirectoryChooser;
 import model.SanimalData;
 import model.analysis.DataAnalyzer;
+import model.image.ImageEntry;
 import model.threading.ErrorTask;
 
 import javax.swing.filechooser.FileSystemView;
 import java.io.File;
 import java.net.URL;
+import java.util.List;
 import java.util.ResourceBundle;
 import java.util.stream.Collectors;
 
@@ -64,6 +66,24 @@ public class VisDownloadController implements VisControllerBase
 		this.imageFilePaths.setAll(dataAnalyzer.getOriginalImageList().stream().map(imageEntry -> imageEntry.getFile().toString().replace('\\', '/')).collect(Collectors.toList()));
 	}
 
+	/**
+	 * Removes any images shown from a previous query
+	 */
+	public void clearPartialResults()
+	{
+		this.imageFilePaths.clear();
+	}
+
+	/**
+	 * Function called while a query is running to show the images loaded so far
+	 *
+	 * @param images The newly loaded images
+	 */
+	public void addPartialResults(List<ImageEntry> images)
+	{
+		this.imageFilePaths.addAll(images.stream().map(imageEntry -> imageEntry.getFile().toString().replace('\\', '/')).collect(Collectors.toList()));
+	}
+
 	/**
 	 * Called when the user presses download images to download the image files
 	 *
@@ -1,19 +1,36 @@
 package controller.analysisView;
 
+import javafx.collections.FXCollections;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
+import javafx.scene.control.ProgressIndicator;
 import javafx.scene.control.TextArea;
+import javafx.scene.control.TitledPane;
 import javafx.scene.input.Clipboard;
 import javafx.scene.input.ClipboardContent;
+import javafx.scene.layout.VBox;
 import javafx.scene.text.Font;
+import javafx.stage.FileChooser;
+import model.SanimalData;
 import model.analysis.DataAnalyzer;
 import model.analysis.SanimalTextOutputFormatter;
+import model.analysis.SanimalTextReport;
+import model.threading.ErrorTask;
+import model.util.TextFileLines;
 
+import javax.swing.filechooser.FileSystemView;
+import java.io.File;
+import java.io.Writer;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ResourceBundle;
 
 /**
- * Controller for the tab containing Dr. Sanderson's analysis
+ * Controller for the tab containing Dr. Sanderson's analysis. Each section of the report is only generated once it is expanded. All pictures
+ * grows with the number of images, so it is written to a temporary file and shown a page of lines at a time
  */
 public class VisDrSandersonController implements VisControllerBase
 {
@@ -21,22 +38,29 @@ public class VisDrSandersonController implements VisControllerBase
 	/// FXML Bound fields start
 	///
 
-	// The text area to output the "output.txt" replica to
+	// The box containing one collapsible pane for each section of the "output.txt" replica
 	@FXML
-	public TextArea txtOutput;
-	// The text area to output the "allPictures.txt" replica to
+	public VBox vbxOutputSections;
+	// The collapsible pane containing the "allPictures.txt" replica
 	@FXML
-	public TextArea txtAllPictures;
+	public TitledPane tpnAllPictures;
 
 	///
 	/// FXML Bound fields end
 	///
 
+	// The most rows a section's text area takes up before it scrolls
+	private static final int MAX_SECTION_ROWS = 30;
+
 	// Formatter used to format our data into Dr. Sanderson's format
 	private SanimalTextOutputFormatter outputFormatter = new SanimalTextOutputFormatter();
 
+	// The data set currently visualized and its report. Holding on to the report keeps its generated sections around
+	private DataAnalyzer dataAnalyzer = null;
+	private SanimalTextReport report = null;
+
 	/**
-	 * Initializes the Dr. Sanderson output controller by setting the text area fonts
+	 * Initializes the Dr. Sanderson output controller
 	 *
 	 * @param location ignored
 	 * @param resources ignored
@@ -44,9 +68,12 @@ public class VisDrSandersonController implements VisControllerBase
 	@Override
 	public void initialize(URL location, ResourceBundle resources)
 	{
-		// Use monospaced fonts
-		this.txtOutput.setFont(Font.font(java.awt.Font.MONOSPACED, 12f));
-		this.txtAllPictures.setFont(Font.font(java.awt.Font.MONOSPACED, 12f));
+		// Generate all pictures the first time it's expanded
+		this.tpnAllPictures.expandedProperty().addListener((observable, oldValue, newValue) ->
+		{
+			if (newValue && this.report != null && this.tpnAllPictures.getContent() == null)
+				this.generateAllPictures(this.report);
+		});
 	}
 
 	/**
@@ -57,34 +84,256 @@ public class VisDrSandersonController implements VisControllerBase
 	@Override
 	public void visualize(DataAnalyzer dataAnalyzer)
 	{
-		// Have our output formatter do all the hard work and just stick the result into the two text areas
-		this.txtOutput.setText(outputFormatter.format(dataAnalyzer));
-		this.txtAllPictures.setText(outputFormatter.createAllPictures(dataAnalyzer));
+		this.dataAnalyzer = dataAnalyzer;
+		this.report = outputFormatter.getReport(dataAnalyzer);
+
+		// Create a collapsed pane for each section, nothing gets generated until a pane is expanded
+		this.vbxOutputSections.getChildren().clear();
+		if (dataAnalyzer.getOriginalImageList().isEmpty())
+			this.vbxOutputSections.getChildren().add(new Label("No images found under directory"));
+		else
+			for (SanimalTextReport.Section section : this.report.getSections())
+				this.vbxOutputSections.getChildren().add(this.createSectionPane(section));
+
+		this.tpnAllPictures.setContent(null);
+		this.tpnAllPictures.setExpanded(false);
+	}
+
+	/**
+	 * Creates a collapsed pane for a section of the report that generates the section the first time it is expanded
+	 *
+	 * @param section The section to show
+	 * @return The pane
+	 */
+	private TitledPane createSectionPane(SanimalTextReport.Section section)
+	{
+		TitledPane sectionPane = new TitledPane();
+		sectionPane.setText(section.getTitle());
+		sectionPane.setExpanded(false);
+		sectionPane.setAnimated(false);
+		sectionPane.expandedProperty().addListener((observable, oldValue, newValue) ->
+		{
+			if (newValue && sectionPane.getContent() == null)
+				this.generateSection(sectionPane, section);
+		});
+		return sectionPane;
+	}
+
+	/**
+	 * Generates a section of the report off of the FX thread and puts its text into the pane once it's done
+	 *
+	 * @param sectionPane The pane to put the text into
+	 * @param section The section to generate
+	 */
+	private void generateSection(TitledPane sectionPane, SanimalTextReport.Section section)
+	{
+		// Sections already generated by an earlier expand or a copy don't need a task
+		if (section.isGenerated())
+		{
+			sectionPane.setContent(this.createSectionText(section.getText()));
+			return;
+		}
+
+		sectionPane.setContent(new ProgressIndicator());
+		ErrorTask<String> sectionTask = new ErrorTask<String>()
+		{
+			@Override
+			protected String call()
+			{
+				this.updateMessage("Generating " + section.getTitle() + "...");
+				return section.getText();
+			}
+		};
+		sectionTask.setOnSucceeded(event -> sectionPane.setContent(this.createSectionText(sectionTask.getValue())));
+		SanimalData.getInstance().getSanimalExecutor().getImmediateExecutor().addTask(sectionTask);
+	}
+
+	/**
+	 * Streams all pictures to a temporary file off of the FX thread and shows it in a list view that only loads the visible lines
+	 *
+	 * @param report The report to show all pictures of
+	 */
+	private void generateAllPictures(SanimalTextReport report)
+	{
+		this.tpnAllPictures.setContent(new ProgressIndicator());
+		ErrorTask<TextFileLines> allPicturesTask = new ErrorTask<TextFileLines>()
+		{
+			@Override
+			protected TextFileLines call() throws Exception
+			{
+				this.updateMessage("Generating AllPictures.txt...");
+				File allPicturesFile = SanimalData.getInstance().getTempDirectoryManager().createTempFile("AllPictures.txt");
+				try (Writer writer = Files.newBufferedWriter(allPicturesFile.toPath(), StandardCharsets.UTF_8))
+				{
+					report.getAllPictures().writeTo(writer);
+				}
+				return new TextFileLines(allPicturesFile);
+			}
+		};
+		allPicturesTask.setOnSucceeded(event ->
+		{
+			// Ignore the result if a new data set was visualized in the mean time
+			if (this.report == report)
+			{
+				ListView<String> lvwAllPictures = new ListView<>(FXCollections.observableList(allPicturesTask.getValue()));
+				lvwAllPictures.getStyleClass().add("reportLines");
+				this.tpnAllPictures.setContent(lvwAllPictures);
+			}
+		});
+		SanimalData.getInstance().getSanimalExecutor().getImmediateExecutor().addTask(allPicturesTask);
+	}
+
+	/**
+	 * Creates a read only text area with a monospaced font to show the text of a section
+	 *
+	 * @param text The text of the section
+	 * @return The text area
+	 */
+	private TextArea createSectionText(String text)
+	{
+		TextArea txtSection = new TextArea(text);
+		txtSection.setEditable(false);
+		txtSection.setFont(Font.font(java.awt.Font.MONOSPACED, 12f));
+		txtSection.setPrefRowCount(Math.min(text.split("\n", -1).length, MAX_SECTION_ROWS));
+		return txtSection;
 	}
 
 	/**
-	 * If copy output text CSV is pressed, we copy the content of the CSV clipboard
+	 * Generates a text off of the FX thread and copies it to the clipboard once it's done
+	 *
+	 * @param textTask The task generating the text
+	 */
+	private void copyToClipboard(ErrorTask<String> textTask)
+	{
+		textTask.setOnSucceeded(event ->
+		{
+			ClipboardContent content = new ClipboardContent();
+			content.putString(textTask.getValue());
+			Clipboard.getSystemClipboard().setContent(content);
+		});
+		SanimalData.getInstance().getSanimalExecutor().getImmediateExecutor().addTask(textTask);
+	}
+
+	/**
+	 * If copy output text CSV is pressed, we generate every section that wasn't yet and copy the whole "output.txt" to the clipboard
 	 *
 	 * @param actionEvent consumed
 	 */
 	public void copyOutputText(ActionEvent actionEvent)
 	{
-		ClipboardContent content = new ClipboardContent();
-		content.putString(this.txtOutput.getText());
-		Clipboard.getSystemClipboard().setContent(content);
+		DataAnalyzer dataAnalyzer = this.dataAnalyzer;
+		if (dataAnalyzer != null)
+		{
+			this.copyToClipboard(new ErrorTask<String>()
+			{
+				@Override
+				protected String call()
+				{
+					this.updateMessage("Generating Output.txt...");
+					return outputFormatter.format(dataAnalyzer);
+				}
+			});
+		}
 		actionEvent.consume();
 	}
 
 	/**
-	 * If copy all pictures CSV is pressed, we copy the content of the CSV clipboard
+	 * If copy all pictures CSV is pressed, we generate "allPictures.txt" and copy it to the clipboard
 	 *
 	 * @param actionEvent consumed
 	 */
 	public void copyAllPictures(ActionEvent actionEvent)
 	{
-		ClipboardContent content = new ClipboardContent();
-		content.putString(this.txtAllPictures.getText());
-		Clipboard.getSystemClipboard().setContent(content);
+		SanimalTextReport report = this.report;
+		if (report != null)
+		{
+			this.copyToClipboard(new ErrorTask<String>()
+			{
+				@Override
+				protected String call() throws Exception
+				{
+					this.updateMessage("Generating AllPictures.txt...");
+					// Don't keep all pictures in memory once it's copied
+					StringBuilder allPictures = new StringBuilder();
+					report.getAllPictures().writeTo(allPictures);
+					return allPictures.toString();
+				}
+			});
+		}
+		actionEvent.consume();
+	}
+
+	/**
+	 * Asks the user for a text file to save a report to
+	 *
+	 * @param fileName The file name to suggest
+	 * @return The file picked, or null if none was
+	 */
+	private File pickReportFile(String fileName)
+	{
+		FileChooser fileChooser = new FileChooser();
+		fileChooser.setTitle("Save " + fileName);
+		fileChooser.setInitialDirectory(FileSystemView.getFileSystemView().getDefaultDirectory());
+		fileChooser.setInitialFileName(fileName);
+		fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Text Files", "*.txt"));
+		return fileChooser.showSaveDialog(this.vbxOutputSections.getScene().getWindow());
+	}
+
+	/**
+	 * If save output text is pressed, we stream "output.txt" straight to a file without building it in memory
+	 *
+	 * @param actionEvent consumed
+	 */
+	public void saveOutputText(ActionEvent actionEvent)
+	{
+		DataAnalyzer dataAnalyzer = this.dataAnalyzer;
+		File fileToSaveTo = dataAnalyzer != null ? this.pickReportFile("Output.txt") : null;
+		if (fileToSaveTo != null)
+		{
+			ErrorTask<Void> saveTask = new ErrorTask<Void>()
+			{
+				@Override
+				protected Void call() throws Exception
+				{
+					this.updateMessage("Saving Output.txt...");
+					try (Writer writer = Files.newBufferedWriter(fileToSaveTo.toPath(), StandardCharsets.UTF_8))
+					{
+						outputFormatter.format(dataAnalyzer, writer);
+					}
+					return null;
+				}
+			};
+			SanimalData.getInstance().getSanimalExecutor().getImmediateExecutor().addTask(saveTask);
+		}
+		actionEvent.consume();
+	}
+
+	/**
+	 * If save all pictures is pressed, we stream "allPictures.txt" straight to a file without building it in memory
+	 *
+	 * @param actionEvent consumed
+	 */
+	public void saveAllPictures(ActionEvent actionEvent)
+	{
+		SanimalTextReport report = this.report;
+		File fileToSaveTo = report != null ? this.pickReportFile("AllPictures.txt") : null;
+		if (fileToSaveTo != null)
+		{
+			ErrorTask<Void> saveTask = new ErrorTask<Void>()
+			{
+				@Override
+				protected Void call() throws Exception
+				{
+					this.updateMessage("Saving AllPictures.txt...");
+					try (Writer writer = Files.newBufferedWriter(fileToSaveTo.toPath(), StandardCharsets.UTF_8))
+					{
+						report.getAllPictures().writeTo(writer);
+					}
+					return null;
+				}
+			};
+			SanimalData.getInstance().getSanimalExecutor().getImmediateExecutor().addTask(saveTask);
+		}
 		actionEvent.consume();
 	}
 }
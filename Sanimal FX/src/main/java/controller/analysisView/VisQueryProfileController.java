@@ -0,0 +1,112 @@
+package controller.analysisView;
+
+import javafx.event.ActionEvent;
+import javafx.fxml.FXML;
+import javafx.fxml.Initializable;
+import javafx.scene.control.Alert;
+import javafx.scene.control.TextArea;
+import javafx.scene.input.Clipboard;
+import javafx.scene.input.ClipboardContent;
+import javafx.scene.text.Font;
+import javafx.stage.FileChooser;
+import model.SanimalData;
+import model.query.S3QueryProfile;
+import org.apache.commons.lang.exception.ExceptionUtils;
+
+import javax.swing.filechooser.FileSystemView;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ResourceBundle;
+
+/**
+ * Controller for the tab showing the profile of the last profiled query
+ */
+public class VisQueryProfileController implements Initializable
+{
+	///
+	/// FXML Bound fields start
+	///
+
+	// The text area to show the profile report in
+	@FXML
+	public TextArea txtProfile;
+
+	///
+	/// FXML Bound fields end
+	///
+
+	/**
+	 * Initializes the query profile controller by setting the text area font
+	 *
+	 * @param location ignored
+	 * @param resources ignored
+	 */
+	@Override
+	public void initialize(URL location, ResourceBundle resources)
+	{
+		// Use a monospaced font so the report's columns line up
+		this.txtProfile.setFont(Font.font(java.awt.Font.MONOSPACED, 12f));
+	}
+
+	/**
+	 * Shows the report of a query profile
+	 *
+	 * @param profile The profile to show
+	 */
+	public void showProfile(S3QueryProfile profile)
+	{
+		this.txtProfile.setText(profile.formatReport());
+	}
+
+	/**
+	 * If copy profile is pressed, we copy the profile report to the clipboard
+	 *
+	 * @param actionEvent consumed
+	 */
+	public void copyProfile(ActionEvent actionEvent)
+	{
+		ClipboardContent content = new ClipboardContent();
+		content.putString(this.txtProfile.getText());
+		Clipboard.getSystemClipboard().setContent(content);
+		actionEvent.consume();
+	}
+
+	/**
+	 * If export profile is pressed, we save the profile report to a text file
+	 *
+	 * @param actionEvent consumed
+	 */
+	public void exportProfile(ActionEvent actionEvent)
+	{
+		// Create a file chooser to pick where to save the report
+		FileChooser fileChooser = new FileChooser();
+		fileChooser.setTitle("Export the query profile");
+		fileChooser.setInitialDirectory(FileSystemView.getFileSystemView().getDefaultDirectory());
+		fileChooser.setInitialFileName("QueryProfile.txt");
+		fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Text Files", "*.txt"));
+		File fileToSaveTo = fileChooser.showSaveDialog(this.txtProfile.getScene().getWindow());
+
+		// Make sure we got a file to save to
+		if (fileToSaveTo != null)
+		{
+			try
+			{
+				Files.write(fileToSaveTo.toPath(), this.txtProfile.getText().getBytes(StandardCharsets.UTF_8));
+			}
+			catch (IOException e)
+			{
+				SanimalData.getInstance().getErrorDisplay().showPopup(
+						Alert.AlertType.ERROR,
+						this.txtProfile.getScene().getWindow(),
+						"Error",
+						"Export error",
+						"Could not export the query profile!\n" + ExceptionUtils.getStackTrace(e),
+						false);
+			}
+		}
+		actionEvent.consume();
+	}
+}
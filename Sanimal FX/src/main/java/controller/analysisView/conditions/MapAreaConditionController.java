@@ -0,0 +1,171 @@
+package controller.analysisView.conditions;
+
+import controller.analysisView.IConditionController;
+import javafx.beans.property.DoubleProperty;
+import javafx.event.ActionEvent;
+import javafx.fxml.FXML;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.TextField;
+import javafx.scene.layout.VBox;
+import model.query.IQueryCondition;
+import model.query.conditions.MapAreaCondition;
+import org.controlsfx.validation.ValidationSupport;
+import org.controlsfx.validation.Validator;
+
+import java.net.URL;
+import java.util.ResourceBundle;
+
+/**
+ * Class used as a controller for the "Map area filter" UI component
+ */
+public class MapAreaConditionController implements IConditionController
+{
+	///
+	/// FXML Bound Fields Start
+	///
+
+	@FXML
+	public ComboBox<MapAreaCondition.AreaShape> cbxShape;
+
+	// The box fields
+	@FXML
+	public VBox vbxBox;
+	@FXML
+	public TextField txtMinLatitude;
+	@FXML
+	public TextField txtMinLongitude;
+	@FXML
+	public TextField txtMaxLatitude;
+	@FXML
+	public TextField txtMaxLongitude;
+
+	// The circle fields
+	@FXML
+	public VBox vbxRadius;
+	@FXML
+	public TextField txtCenterLatitude;
+	@FXML
+	public TextField txtCenterLongitude;
+	@FXML
+	public TextField txtRadius;
+
+	///
+	/// FXML Bound Fields End
+	///
+
+	// The data model this controller edits
+	private MapAreaCondition mapAreaCondition;
+
+	/**
+	 * Initialize sets up validators to ensure that every field is a valid number
+	 *
+	 * @param location ignored
+	 * @param resources ignored
+	 */
+	@Override
+	public void initialize(URL location, ResourceBundle resources)
+	{
+		ValidationSupport fieldValidator = new ValidationSupport();
+		for (TextField textField : new TextField[] { this.txtMinLatitude, this.txtMinLongitude, this.txtMaxLatitude, this.txtMaxLongitude, this.txtCenterLatitude, this.txtCenterLongitude })
+			fieldValidator.registerValidator(textField, true, Validator.createPredicateValidator(this::validDouble, "Coordinates must be decimal values!"));
+		fieldValidator.registerValidator(this.txtRadius, true, Validator.createPredicateValidator(this::validDouble, "Distance must be a decimal value!"));
+
+		// Only show the fields of the selected shape
+		this.vbxBox.visibleProperty().bind(this.cbxShape.getSelectionModel().selectedItemProperty().isEqualTo(MapAreaCondition.AreaShape.Box));
+		this.vbxBox.managedProperty().bind(this.vbxBox.visibleProperty());
+		this.vbxRadius.visibleProperty().bind(this.cbxShape.getSelectionModel().selectedItemProperty().isEqualTo(MapAreaCondition.AreaShape.Radius));
+		this.vbxRadius.managedProperty().bind(this.vbxRadius.visibleProperty());
+	}
+
+	/**
+	 * Initializes the controller with a data model to bind to
+	 *
+	 * @param iQueryCondition The data model which should be a map area filter condition
+	 */
+	@Override
+	public void initializeData(IQueryCondition iQueryCondition)
+	{
+		if (iQueryCondition instanceof MapAreaCondition)
+		{
+			this.mapAreaCondition = (MapAreaCondition) iQueryCondition;
+
+			// Initialize our fields
+			this.cbxShape.setItems(this.mapAreaCondition.getShapeList());
+			this.cbxShape.getSelectionModel().select(this.mapAreaCondition.shapeProperty().getValue());
+			this.refreshFields();
+
+			// Push edits back into our model. The model is updated by "Use Map Selection" too, so we can't bind it one way
+			this.mapAreaCondition.shapeProperty().bind(this.cbxShape.getSelectionModel().selectedItemProperty());
+			this.pushEdits(this.txtMinLatitude, this.mapAreaCondition.minLatitudeProperty());
+			this.pushEdits(this.txtMinLongitude, this.mapAreaCondition.minLongitudeProperty());
+			this.pushEdits(this.txtMaxLatitude, this.mapAreaCondition.maxLatitudeProperty());
+			this.pushEdits(this.txtMaxLongitude, this.mapAreaCondition.maxLongitudeProperty());
+			this.pushEdits(this.txtCenterLatitude, this.mapAreaCondition.centerLatitudeProperty());
+			this.pushEdits(this.txtCenterLongitude, this.mapAreaCondition.centerLongitudeProperty());
+			this.pushEdits(this.txtRadius, this.mapAreaCondition.radiusKmProperty());
+		}
+	}
+
+	/**
+	 * Called when use map selection is pressed, copies the area selected on the map into the fields
+	 *
+	 * @param actionEvent consumed
+	 */
+	public void useMapSelection(ActionEvent actionEvent)
+	{
+		if (this.mapAreaCondition != null)
+		{
+			this.mapAreaCondition.useMapSelection();
+			this.refreshFields();
+		}
+		actionEvent.consume();
+	}
+
+	/**
+	 * Sets every text field to the value in our model
+	 */
+	private void refreshFields()
+	{
+		this.txtMinLatitude.setText(Double.toString(this.mapAreaCondition.minLatitudeProperty().getValue()));
+		this.txtMinLongitude.setText(Double.toString(this.mapAreaCondition.minLongitudeProperty().getValue()));
+		this.txtMaxLatitude.setText(Double.toString(this.mapAreaCondition.maxLatitudeProperty().getValue()));
+		this.txtMaxLongitude.setText(Double.toString(this.mapAreaCondition.maxLongitudeProperty().getValue()));
+		this.txtCenterLatitude.setText(Double.toString(this.mapAreaCondition.centerLatitudeProperty().getValue()));
+		this.txtCenterLongitude.setText(Double.toString(this.mapAreaCondition.centerLongitudeProperty().getValue()));
+		this.txtRadius.setText(Double.toString(this.mapAreaCondition.radiusKmProperty().getValue()));
+	}
+
+	/**
+	 * Updates a model property whenever a text field is edited to a valid number
+	 *
+	 * @param textField The text field to listen to
+	 * @param property The property to update
+	 */
+	private void pushEdits(TextField textField, DoubleProperty property)
+	{
+		textField.textProperty().addListener((observable, oldValue, newValue) ->
+		{
+			if (this.validDouble(newValue))
+				property.setValue(Double.parseDouble(newValue));
+		});
+	}
+
+	/**
+	 * Tests if a string is a valid double
+	 *
+	 * @param number The number to test
+	 * @return True if the number is a valid double, false otherwise
+	 */
+	private Boolean validDouble(String number)
+	{
+		try
+		{
+			Double.parseDouble(number);
+			return true;
+		}
+		catch (NumberFormatException ignored)
+		{
+			return false;
+		}
+	}
+}
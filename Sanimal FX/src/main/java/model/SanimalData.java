@@ -3,7 +3,9 @@ package model;
 import com.google.gson.Gson;
 import javafx.beans.Observable;
 import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleBooleanProperty;
+import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
 import javafx.collections.FXCollections;
@@ -16,6 +18,7 @@ import model.image.ImageContainer;
 import model.image.ImageDirectory;
 import model.image.ImageEntry;
 import model.location.Location;
+import model.location.LocationBounds;
 import model.query.QueryEngine;
 import model.species.Species;
 import model.threading.ErrorService;
@@ -93,6 +96,9 @@ public class SanimalData
 	// Query engine used in storing the current query setup
 	private QueryEngine queryEngine = new QueryEngine();
 
+	// The area currently selected on the map, or null if nothing is selected
+	private ObjectProperty<LocationBounds> mapSelectionProperty = new SimpleObjectProperty<>(null);
+
 	/**
 	 * Private constructor since we're using the singleton design pattern
 	 */
@@ -483,4 +489,19 @@ public class SanimalData
 	}
 
 	public QueryEngine getQueryEngine() { return this.queryEngine; }
+
+	public void setMapSelection(LocationBounds mapSelection)
+	{
+		this.mapSelectionProperty.setValue(mapSelection);
+	}
+
+	public LocationBounds getMapSelection()
+	{
+		return this.mapSelectionProperty.getValue();
+	}
+
+	public ObjectProperty<LocationBounds> mapSelectionProperty()
+	{
+		return this.mapSelectionProperty;
+	}
 }
@@ -0,0 +1,346 @@
+package model.analysis;
+
+import model.image.ImageEntry;
+import model.location.Location;
+import model.species.Species;
+import model.species.SpeciesEntry;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A pre-computed summary of the images of an analysis. Every combination of year, location, month, and species (each of which may also be "any")
+ * is a cell holding the number of images, the activity, the period, the abundance, and the first and last image of the images that fall into it.
+ * The cube is built in a single pass over the images sorted by date, so a cell holds exactly what activityForImageList, periodForImageList and
+ * abundanceForImageList would return for the equivalent ImageQuery over the sorted image list.
+ *
+ * @author David Slovikosky
+ */
+public class AnalysisCube
+{
+	// The number of bits each dimension takes up in a cell key
+	private static final int SPECIES_BITS = 20;
+	private static final int LOCATION_BITS = 20;
+	private static final int MONTH_BITS = 8;
+	// Every subset of the year, location, and month dimensions, used to pick which dimensions are "any" in a cell
+	private static final int YEAR_FLAG = 1;
+	private static final int LOCATION_FLAG = 2;
+	private static final int MONTH_FLAG = 4;
+	// The returned cell when no images fall into a combination
+	private static final Cell EMPTY_CELL = new Cell();
+
+	// Codes given to each location and species, 0 is reserved for "any". Compared by reference just like ImageQuery does
+	private final Map<Location, Integer> locationCodes = new IdentityHashMap<>();
+	private final Map<Species, Integer> speciesCodes = new IdentityHashMap<>();
+	// Each non-empty cell by its key
+	private final Map<Long, Cell> cells = new HashMap<>();
+	// The event interval, in minutes
+	private final Integer eventInterval;
+
+	/**
+	 * Constructor builds the cube from a list of images
+	 *
+	 * @param imagesSortedByDate
+	 *            The images to summarize, MUST be sorted by date
+	 * @param imageTimeMillis
+	 *            The time each of the sorted images was taken in epoch millis
+	 * @param eventInterval
+	 *            The event interval given in minutes
+	 */
+	public AnalysisCube(List<ImageEntry> imagesSortedByDate, long[] imageTimeMillis, Integer eventInterval)
+	{
+		this.eventInterval = eventInterval;
+
+		List<Species> imageSpecies = new ArrayList<>();
+		for (int imageIndex = 0; imageIndex < imagesSortedByDate.size(); imageIndex++)
+		{
+			ImageEntry image = imagesSortedByDate.get(imageIndex);
+			LocalDateTime date = image.getDateTaken();
+			int year = date.getYear() + 1;
+			int month = date.getMonthValue();
+			int location = image.getLocationTaken() == null ? 0 : this.locationCodes.computeIfAbsent(image.getLocationTaken(), key -> this.locationCodes.size() + 1);
+
+			// Each species counts once per image even if it was tagged more than once
+			imageSpecies.clear();
+			for (SpeciesEntry speciesEntry : image.getSpeciesPresent())
+				if (!imageSpecies.contains(speciesEntry.getSpecies()))
+					imageSpecies.add(speciesEntry.getSpecies());
+
+			// Add the image to every cell it falls into. Images without a location only fall into cells with "any" location
+			for (int dimensions = 0; dimensions <= (YEAR_FLAG | LOCATION_FLAG | MONTH_FLAG); dimensions++)
+			{
+				if ((dimensions & LOCATION_FLAG) != 0 && location == 0)
+					continue;
+
+				int cellYear = (dimensions & YEAR_FLAG) != 0 ? year : 0;
+				int cellLocation = (dimensions & LOCATION_FLAG) != 0 ? location : 0;
+				int cellMonth = (dimensions & MONTH_FLAG) != 0 ? month : 0;
+
+				this.cellFor(key(cellYear, cellLocation, cellMonth, 0)).addImage(image, imageTimeMillis[imageIndex], null, this.eventInterval);
+				for (Species species : imageSpecies)
+				{
+					int speciesCode = this.speciesCodes.computeIfAbsent(species, key -> this.speciesCodes.size() + 1);
+					this.cellFor(key(cellYear, cellLocation, cellMonth, speciesCode)).addImage(image, imageTimeMillis[imageIndex], species, this.eventInterval);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the summary of the images that match all of the given values
+	 *
+	 * @param year
+	 *            The year the images were taken in, or null for any year
+	 * @param location
+	 *            The location the images were taken at, or null for any location
+	 * @param month
+	 *            The month the images were taken in as a value 1-12 like ImageQuery.monthOnly expects, or null for any month
+	 * @param species
+	 *            A species that must be present in the images, or null for any images. The abundance of the cell only counts this species
+	 * @return The summary of the images, never null
+	 */
+	public Cell getCell(Integer year, Location location, Integer month, Species species)
+	{
+		int yearCode = 0;
+		if (year != null)
+		{
+			yearCode = year + 1;
+			if (yearCode <= 0 || yearCode >= (1 << (64 - SPECIES_BITS - LOCATION_BITS - MONTH_BITS)))
+				return EMPTY_CELL;
+		}
+
+		int locationCode = 0;
+		if (location != null)
+		{
+			Integer code = this.locationCodes.get(location);
+			if (code == null)
+				return EMPTY_CELL;
+			locationCode = code;
+		}
+
+		int monthCode = 0;
+		if (month != null)
+		{
+			if (month < 1 || month > 12)
+				return EMPTY_CELL;
+			monthCode = month;
+		}
+
+		int speciesCode = 0;
+		if (species != null)
+		{
+			Integer code = this.speciesCodes.get(species);
+			if (code == null)
+				return EMPTY_CELL;
+			speciesCode = code;
+		}
+
+		Cell cell = this.cells.get(key(yearCode, locationCode, monthCode, speciesCode));
+		return cell == null ? EMPTY_CELL : cell;
+	}
+
+	/**
+	 * Returns the period of the images that match all of the given values. Same as calling periodForImageList on the equivalent query
+	 *
+	 * @param year
+	 *            The year, or null for any year
+	 * @param location
+	 *            The location, or null for any location
+	 * @param month
+	 *            The month value 1-12, or null for any month
+	 * @param species
+	 *            The species, or null for any images
+	 * @return The period of the images
+	 */
+	public Integer getPeriod(Integer year, Location location, Integer month, Species species)
+	{
+		return this.getCell(year, location, month, species).getPeriod();
+	}
+
+	/**
+	 * Returns the abundance of a species in the images that match all of the given values. Same as calling abundanceForImageList with the
+	 * species on the equivalent query
+	 *
+	 * @param year
+	 *            The year, or null for any year
+	 * @param location
+	 *            The location, or null for any location
+	 * @param month
+	 *            The month value 1-12, or null for any month
+	 * @param species
+	 *            The species, or null for any images and any species
+	 * @return The abundance of the images
+	 */
+	public Integer getAbundance(Integer year, Location location, Integer month, Species species)
+	{
+		return this.getCell(year, location, month, species).getAbundance();
+	}
+
+	/**
+	 * Returns the number of images that match all of the given values
+	 *
+	 * @param year
+	 *            The year, or null for any year
+	 * @param location
+	 *            The location, or null for any location
+	 * @param month
+	 *            The month value 1-12, or null for any month
+	 * @param species
+	 *            The species, or null for any images
+	 * @return The number of images
+	 */
+	public Integer getImageCount(Integer year, Location location, Integer month, Species species)
+	{
+		return this.getCell(year, location, month, species).getImageCount();
+	}
+
+	/**
+	 * Returns the cell with the given key, creating it if it does not exist yet
+	 *
+	 * @param key
+	 *            The key of the cell
+	 * @return The cell
+	 */
+	private Cell cellFor(long key)
+	{
+		Cell cell = this.cells.get(key);
+		if (cell == null)
+		{
+			cell = new Cell();
+			this.cells.put(key, cell);
+		}
+		return cell;
+	}
+
+	/**
+	 * Packs the codes of each dimension into a single key
+	 *
+	 * @return The key of the cell
+	 */
+	private static long key(int year, int location, int month, int species)
+	{
+		return ((long) year << (SPECIES_BITS + LOCATION_BITS + MONTH_BITS)) | ((long) month << (SPECIES_BITS + LOCATION_BITS)) | ((long) location << SPECIES_BITS) | species;
+	}
+
+	/**
+	 * The summary of all images that fall into one combination of year, location, month, and species
+	 */
+	public static class Cell
+	{
+		private int imageCount = 0;
+		private int activity = 0;
+		private int period = 0;
+		private int abundance = 0;
+		// The max number of animals in the event that is currently open, added to the abundance once the event closes
+		private int maxAnimalsInEvent = 0;
+		private long lastImageTimeMillis = 0;
+		// The hour, day, and year of the last image, a change in any of them starts a new activity
+		private int lastHour = -1;
+		private int lastDay = -1;
+		private int lastYear = -1;
+		private ImageEntry firstImage = null;
+		private ImageEntry lastImage = null;
+
+		/**
+		 * Adds the next image by date to this cell, mirroring activityForImageList, periodForImageList and abundanceForImageList one image at a time
+		 *
+		 * @param image
+		 *            The image to add
+		 * @param imageTimeMillis
+		 *            The time the image was taken in epoch millis
+		 * @param speciesFilter
+		 *            The species counted towards abundance, or null for any species
+		 * @param eventInterval
+		 *            The event interval given in minutes
+		 */
+		private void addImage(ImageEntry image, long imageTimeMillis, Species speciesFilter, Integer eventInterval)
+		{
+			LocalDateTime date = image.getDateTaken();
+			if (date.getHour() != this.lastHour || date.getDayOfYear() != this.lastDay || date.getYear() != this.lastYear)
+			{
+				this.activity++;
+				this.lastHour = date.getHour();
+				this.lastDay = date.getDayOfYear();
+				this.lastYear = date.getYear();
+			}
+
+			long differenceMinutes = (imageTimeMillis - this.lastImageTimeMillis) / 1000 / 60;
+			if (differenceMinutes >= eventInterval)
+			{
+				this.period++;
+				this.abundance = this.abundance + this.maxAnimalsInEvent;
+				this.maxAnimalsInEvent = 0;
+			}
+
+			for (SpeciesEntry speciesEntry : image.getSpeciesPresent())
+				if (speciesFilter == null || speciesEntry.getSpecies() == speciesFilter)
+					this.maxAnimalsInEvent = Math.max(this.maxAnimalsInEvent, speciesEntry.getAmount());
+
+			this.lastImageTimeMillis = imageTimeMillis;
+			if (this.firstImage == null)
+				this.firstImage = image;
+			this.lastImage = image;
+			this.imageCount++;
+		}
+
+		/**
+		 * @return The number of images in the cell
+		 */
+		public Integer getImageCount()
+		{
+			return this.imageCount;
+		}
+
+		/**
+		 * @return True if no images fall into the cell
+		 */
+		public boolean isEmpty()
+		{
+			return this.imageCount == 0;
+		}
+
+		/**
+		 * @return The activity of the images in the cell
+		 */
+		public Integer getActivity()
+		{
+			return this.activity;
+		}
+
+		/**
+		 * @return The period of the images in the cell
+		 */
+		public Integer getPeriod()
+		{
+			return this.period;
+		}
+
+		/**
+		 * @return The abundance of the images in the cell, including the event that was still open after the last image
+		 */
+		public Integer getAbundance()
+		{
+			return this.abundance + this.maxAnimalsInEvent;
+		}
+
+		/**
+		 * @return The first image in the cell by date, or null if the cell is empty
+		 */
+		public ImageEntry getFirstImage()
+		{
+			return this.firstImage;
+		}
+
+		/**
+		 * @return The last image in the cell by date, or null if the cell is empty
+		 */
+		public ImageEntry getLastImage()
+		{
+			return this.lastImage;
+		}
+	}
+}
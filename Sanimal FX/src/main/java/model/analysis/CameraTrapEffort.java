@@ -0,0 +1,315 @@
+package model.analysis;
+
+import model.image.ImageEntry;
+import model.location.Location;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The camera trap effort of an analysis. Each location is deployed from the first to the last image it took, overall and in each year. The
+ * deployments are found in a single pass over the images, and the trap days of every location, year, and month are totaled once from them so
+ * formatters never have to walk the images or the months of a deployment again.
+ *
+ * Trap days are counted the same way Dr. Sanderson's effort tables always counted them, with every month 31 days long. The camera trap effort
+ * tables count them once more in their own way, see Deployment.countEffortTableDays
+ *
+ * @author David Slovikosky
+ */
+public class CameraTrapEffort
+{
+	// The deployment of each location over all years. Compared by reference just like ImageQuery does
+	private final Map<Location, Deployment> locationDeployments = new IdentityHashMap<>();
+	// The deployment of each location in each year, locations kept in the order they were first found in the images
+	private final Map<Integer, Map<Location, Deployment>> yearDeployments = new HashMap<>();
+	// Trap days of each month in each year totaled over every location
+	private final Map<Integer, int[]> yearDaysByMonth = new HashMap<>();
+	// Trap days of each month totaled over every year and location
+	private final int[] daysByMonth = new int[12];
+
+	/**
+	 * Constructor finds the deployments of the images and totals their trap days
+	 *
+	 * @param images
+	 *            The images to find deployments in, in any order
+	 */
+	public CameraTrapEffort(List<ImageEntry> images)
+	{
+		for (ImageEntry image : images)
+		{
+			Location location = image.getLocationTaken();
+			// Images without a location don't belong to a deployment
+			if (location != null)
+			{
+				LocalDateTime dateTaken = image.getDateTaken();
+				this.locationDeployments.computeIfAbsent(location, ignored -> new Deployment(dateTaken)).include(dateTaken);
+				this.yearDeployments.computeIfAbsent(dateTaken.getYear(), ignored -> new LinkedHashMap<>()).computeIfAbsent(location, ignored -> new Deployment(dateTaken)).include(dateTaken);
+			}
+		}
+
+		// Deployments over all years can span more than 12 months, so only the yearly deployments count trap days
+		for (Map.Entry<Integer, Map<Location, Deployment>> yearEntry : this.yearDeployments.entrySet())
+		{
+			int[] yearDaysByMonth = new int[12];
+			for (Deployment deployment : yearEntry.getValue().values())
+			{
+				deployment.countDays();
+				for (int i = 0; i < 12; i++)
+				{
+					yearDaysByMonth[i] = yearDaysByMonth[i] + deployment.daysByMonth[i];
+					this.daysByMonth[i] = this.daysByMonth[i] + deployment.daysByMonth[i];
+				}
+			}
+			this.yearDaysByMonth.put(yearEntry.getKey(), yearDaysByMonth);
+		}
+
+		// The effort tables show every deployment, including the ones over all years
+		for (Deployment deployment : this.locationDeployments.values())
+			deployment.countEffortTableDays();
+		for (Map<Location, Deployment> deployments : this.yearDeployments.values())
+			for (Deployment deployment : deployments.values())
+				deployment.countEffortTableDays();
+	}
+
+	/**
+	 * @param location
+	 *            The location
+	 * @return The deployment of the location over all years, or null if the location took no images
+	 */
+	public Deployment getDeployment(Location location)
+	{
+		return this.locationDeployments.get(location);
+	}
+
+	/**
+	 * @param year
+	 *            The year
+	 * @param location
+	 *            The location
+	 * @return The deployment of the location during the year, or null if the location took no images that year
+	 */
+	public Deployment getDeployment(Integer year, Location location)
+	{
+		return this.yearDeployments.getOrDefault(year, new HashMap<>()).get(location);
+	}
+
+	/**
+	 * Returns the locations deployed during a year sorted by name, just like locationsForImageList would for the images of that year
+	 *
+	 * @param year
+	 *            The year
+	 * @return The locations that took images during the year
+	 */
+	public List<Location> getLocations(Integer year)
+	{
+		List<Location> locations = new ArrayList<>(this.yearDeployments.getOrDefault(year, new HashMap<>()).keySet());
+		locations.sort(Comparator.comparing(Location::getName));
+		return locations;
+	}
+
+	/**
+	 * @param year
+	 *            The year
+	 * @param location
+	 *            The location
+	 * @return The trap days of the location in each month (0 is January) of the year
+	 */
+	public int[] getDaysByMonth(Integer year, Location location)
+	{
+		Deployment deployment = this.getDeployment(year, location);
+		return deployment == null ? new int[12] : deployment.daysByMonth.clone();
+	}
+
+	/**
+	 * @param year
+	 *            The year
+	 * @return The trap days of every location in each month (0 is January) of the year
+	 */
+	public int[] getDaysByMonth(Integer year)
+	{
+		int[] yearDaysByMonth = this.yearDaysByMonth.get(year);
+		return yearDaysByMonth == null ? new int[12] : yearDaysByMonth.clone();
+	}
+
+	/**
+	 * @return The trap days of every location in each month (0 is January) totaled over every year
+	 */
+	public int[] getDaysByMonth()
+	{
+		return this.daysByMonth.clone();
+	}
+
+	/**
+	 * @param year
+	 *            The year
+	 * @param location
+	 *            The location
+	 * @return The days of the location in each column (0 is January) of the yearly camera trap effort table
+	 */
+	public int[] getEffortTableDaysByMonth(Integer year, Location location)
+	{
+		Deployment deployment = this.getDeployment(year, location);
+		return deployment == null ? new int[12] : deployment.effortTableDaysByMonth.clone();
+	}
+
+	/**
+	 * @param location
+	 *            The location
+	 * @return The days of the location in each column (0 is January) of the camera trap effort summary table
+	 */
+	public int[] getEffortTableDaysByMonth(Location location)
+	{
+		Deployment deployment = this.getDeployment(location);
+		return deployment == null ? new int[12] : deployment.effortTableDaysByMonth.clone();
+	}
+
+	/**
+	 * @param year
+	 *            The year
+	 * @param location
+	 *            The location
+	 * @return The trap days of the location during the year
+	 */
+	public Integer getDays(Integer year, Location location)
+	{
+		Deployment deployment = this.getDeployment(year, location);
+		return deployment == null ? 0 : deployment.getDays();
+	}
+
+	/**
+	 * @param location
+	 *            The location
+	 * @return The trap days of the location summed over the deployments of each year
+	 */
+	public Integer getDays(Location location)
+	{
+		Integer days = 0;
+		for (Map<Location, Deployment> deployments : this.yearDeployments.values())
+		{
+			Deployment deployment = deployments.get(location);
+			if (deployment != null)
+				days = days + deployment.getDays();
+		}
+		return days;
+	}
+
+	/**
+	 * The interval a location was taking images over
+	 */
+	public static class Deployment
+	{
+		private LocalDateTime first;
+		private LocalDateTime last;
+		// Trap days of each month (0 is January), counted once every image was included
+		private final int[] daysByMonth = new int[12];
+		// Days of each column (0 is January) of the camera trap effort tables, counted once every image was included
+		private final int[] effortTableDaysByMonth = new int[12];
+		private Integer days = 0;
+
+		/**
+		 * Constructor for a deployment of a single image
+		 *
+		 * @param dateTaken
+		 *            The date the image was taken
+		 */
+		private Deployment(LocalDateTime dateTaken)
+		{
+			this.first = dateTaken;
+			this.last = dateTaken;
+		}
+
+		/**
+		 * Widens the deployment to include an image
+		 *
+		 * @param dateTaken
+		 *            The date the image was taken
+		 */
+		private void include(LocalDateTime dateTaken)
+		{
+			if (dateTaken.isBefore(this.first))
+				this.first = dateTaken;
+			if (dateTaken.isAfter(this.last))
+				this.last = dateTaken;
+		}
+
+		/**
+		 * Counts the trap days of each month the deployment spans, which must all be in the same year
+		 */
+		private void countDays()
+		{
+			int firstDay = this.first.getDayOfMonth() - 1;
+			int lastDay = this.last.getDayOfMonth() - 1;
+			int firstMonth = this.first.getMonthValue() - 1;
+			int lastMonth = this.last.getMonthValue() - 1;
+			for (int i = 0; i < 12; i++)
+			{
+				if (firstMonth == lastMonth && i == firstMonth)
+					this.daysByMonth[i] = lastDay - firstDay + 1;
+				else if (i == firstMonth)
+					this.daysByMonth[i] = 31 - (firstDay - 1);
+				else if (i == lastMonth)
+					this.daysByMonth[i] = lastDay;
+				else if (firstMonth < i && i < lastMonth)
+					this.daysByMonth[i] = 31;
+			}
+
+			for (int i = 0; i < 12; i++)
+				this.days = this.days + this.daysByMonth[i];
+		}
+
+		/**
+		 * Counts the days of each column of the camera trap effort tables. The tables have always compared the months of the deployment
+		 * (1 is January) against the columns (0 is January), so each month's days show up one column early and December's are never shown.
+		 * The tables are kept exactly as they always printed, so this is kept apart from countDays. Unlike countDays the deployment may span
+		 * several years, only the month of its first and last image are looked at
+		 */
+		private void countEffortTableDays()
+		{
+			int firstDay = this.first.getDayOfMonth();
+			int lastDay = this.last.getDayOfMonth();
+			int firstMonth = this.first.getMonthValue();
+			int lastMonth = this.last.getMonthValue();
+			for (int i = 0; i < 12; i++)
+			{
+				if (firstMonth == lastMonth && i == firstMonth)
+					this.effortTableDaysByMonth[i] = lastDay - firstDay + 1;
+				else if (i == firstMonth)
+					this.effortTableDaysByMonth[i] = 31 - firstDay + 1;
+				else if (i == lastMonth)
+					this.effortTableDaysByMonth[i] = lastDay;
+				else if (firstMonth < i && i < lastMonth)
+					this.effortTableDaysByMonth[i] = 31;
+			}
+		}
+
+		/**
+		 * @return The date of the first image of the deployment
+		 */
+		public LocalDateTime getFirst()
+		{
+			return this.first;
+		}
+
+		/**
+		 * @return The date of the last image of the deployment
+		 */
+		public LocalDateTime getLast()
+		{
+			return this.last;
+		}
+
+		/**
+		 * @return The trap days of the deployment
+		 */
+		public Integer getDays()
+		{
+			return this.days;
+		}
+	}
+}
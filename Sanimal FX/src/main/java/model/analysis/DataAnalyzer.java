@@ -1,14 +1,15 @@
 package model.analysis;
 
-import library.MoonCalculator;
 import model.image.ImageEntry;
 import model.location.Location;
 import model.species.Species;
 import model.species.SpeciesEntry;
 
-import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
 import java.util.*;
 
 /**
@@ -26,13 +27,22 @@ public class DataAnalyzer
 	private List<Integer> allImageYears = new ArrayList<>();
 	// A list of all images but sorted by date instead of randomly
 	private List<ImageEntry> imagesSortedByDate;
+	// The time each image in the sorted list was taken in epoch millis
+	private long[] sortedImageTimeMillis;
 	// A list of all original images
 	private List<ImageEntry> originalImageList;
 	// The event interval, in minutes
 	private Integer eventInterval;
-	// A pre-calculated list of all full and new moons over the image's interval
-	private List<Date> fullMoons = new ArrayList<>();
-	private List<Date> newMoons = new ArrayList<>();
+	// All full and new moons over the image's interval. Built the first time it is needed
+	private LunarEphemeris lunarEphemeris = null;
+	// A summary of the images by year, location, month, and species. Built the first time it is needed
+	private AnalysisCube cube = null;
+	// The events of every location and species. Built the first time it is needed
+	private EventIndex eventIndex = null;
+	// Which species were seen at which locations. Built the first time it is needed
+	private PresenceMatrix presenceMatrix = null;
+	// The deployment and trap days of every location. Built the first time it is needed
+	private CameraTrapEffort cameraTrapEffort = null;
 
 	/**
 	 * Constructor for the analysis
@@ -47,74 +57,36 @@ public class DataAnalyzer
 		this.eventInterval = eventInterval;
 		this.originalImageList = images;
 
-		// Find all image locations
-		for (ImageEntry entry : images)
-			if (entry.getLocationTaken() != null)
-			{
-				if (!allImageLocations.contains(entry.getLocationTaken()))
-					allImageLocations.add(entry.getLocationTaken());
-			}
-			else
-				nullLocationsFound = true;
+		// Read each image's date and location once, the entries are property backed so this is the expensive part
+		ImageEntry[] imageArray = images.toArray(new ImageEntry[0]);
+		DatedImage[] datedImages = new DatedImage[imageArray.length];
+		Arrays.parallelSetAll(datedImages, index -> new DatedImage(imageArray[index]));
+
+		// Find all image locations, species, and years in a single parallel pass. The chunks are combined in order, so everything keeps the order it
+		// was first found in, which is what breaks ties when sorting by name
+		DistinctValues distinctValues = Arrays.stream(datedImages).parallel().collect(DistinctValues::new, DistinctValues::add, DistinctValues::addAll);
+		nullLocationsFound = distinctValues.nullLocationsFound;
 
 		// Sort the locations by name
+		allImageLocations.addAll(distinctValues.locations);
 		allImageLocations.sort(Comparator.comparing(Location::getName));
 
-		// Find all image species 
-		for (ImageEntry imageEntry : images)
-			for (SpeciesEntry speciesEntry : imageEntry.getSpeciesPresent())
-				if (!allImageSpecies.contains(speciesEntry.getSpecies()))
-					allImageSpecies.add(speciesEntry.getSpecies());
-
 		// Sort species by name
+		allImageSpecies.addAll(distinctValues.species);
 		allImageSpecies.sort(Comparator.comparing(Species::getName));
 
-		// Find all image years
-		for (ImageEntry imageEntry : images)
-		{
-			Integer year = imageEntry.getDateTaken().getYear();
-			if (!allImageYears.contains(year))
-				allImageYears.add(year);
-		}
-
 		// Sort years first to last
+		allImageYears.addAll(distinctValues.years);
 		Collections.sort(allImageYears);
 
-		// Create a copy of "images", and sort it by date
-		imagesSortedByDate = new ArrayList<>(images);
-		imagesSortedByDate.sort(Comparator.comparing(ImageEntry::getDateTaken));
+		// Create a copy of "images", and sort it by date using the dates read above
+		int[] sortedOrder = sortedOrder(datedImages);
+		imagesSortedByDate = new ArrayList<>(datedImages.length);
+		for (int index : sortedOrder)
+			imagesSortedByDate.add(datedImages[index].image);
 
-		// If we have at least one image, begin calculating lunar cycles
-		if (imagesSortedByDate.size() > 0)
-		{
-			// Full moon calculations
-			LocalDateTime first = imagesSortedByDate.get(0).getDateTaken();
-			LocalDateTime last = imagesSortedByDate.get(imagesSortedByDate.size() - 1).getDateTaken();
-			while (first.isBefore(last))
-			{
-				double julianDate = MoonCalculator.getJulian(Date.from(first.atZone(ZoneId.systemDefault()).toInstant()));
-				double[] phases = MoonCalculator.getPhase(julianDate);
-				double fullMoon = MoonCalculator.getLunation(julianDate, phases[MoonCalculator.MOONPHASE], 180);
-				long fullMillis = MoonCalculator.toMillisFromJulian(fullMoon);
-				Date nextFullMoonDate = new Date(fullMillis);
-				fullMoons.add(nextFullMoonDate);
-				first = LocalDateTime.ofInstant(Instant.ofEpochMilli(nextFullMoonDate.getTime() + 20 * 1000 * 60 * 60 * 24), ZoneId.systemDefault());
-			}
-
-			// New moon calculations
-			LocalDateTime first2 = imagesSortedByDate.get(0).getDateTaken();
-			LocalDateTime last2 = imagesSortedByDate.get(imagesSortedByDate.size() - 1).getDateTaken();
-			while (first2.isBefore(last2))
-			{
-				double julianDate = MoonCalculator.getJulian(Date.from(first2.atZone(ZoneId.systemDefault()).toInstant()));
-				double[] phases = MoonCalculator.getPhase(julianDate);
-				double newMoon = MoonCalculator.getLunation(julianDate, phases[MoonCalculator.MOONPHASE], 0);
-				long newMillis = MoonCalculator.toMillisFromJulian(newMoon);
-				Date nextNewMoonDate = new Date(newMillis);
-				newMoons.add(nextNewMoonDate);
-				first2 = LocalDateTime.ofInstant(Instant.ofEpochMilli(nextNewMoonDate.getTime() + 20 * 1000 * 60 * 60 * 24), ZoneId.systemDefault());
-			}
-		}
+		// The time each sorted image was taken in epoch millis, shared by everything that measures the time between images
+		sortedImageTimeMillis = toEpochMillis(datedImages, sortedOrder);
 	}
 
 	/**
@@ -158,13 +130,13 @@ public class DataAnalyzer
 	 */
 	public List<Location> locationsForImageList(List<ImageEntry> images)
 	{
-		List<Location> locations = new ArrayList<Location>();
-
+		// A linked set keeps the order locations were found in, which breaks ties when sorting by name
+		Set<Location> distinctLocations = new LinkedHashSet<>();
 		for (ImageEntry image : images)
 			if (image.getLocationTaken() != null)
-				if (!locations.contains(image.getLocationTaken()))
-					locations.add(image.getLocationTaken());
+				distinctLocations.add(image.getLocationTaken());
 
+		List<Location> locations = new ArrayList<Location>(distinctLocations);
 		locations.sort(Comparator.comparing(Location::getName));
 
 		return locations;
@@ -272,6 +244,75 @@ public class DataAnalyzer
 		return abundance;
 	}
 
+	/**
+	 * Returns the summary of the images by year, location, month, and species, building it the first time it is asked for. Formatters should
+	 * read their tables from this instead of re-querying the image list for every cell
+	 * 
+	 * @return The cube of the sorted image list
+	 */
+	public synchronized AnalysisCube getCube()
+	{
+		if (this.cube == null)
+			this.cube = new AnalysisCube(this.imagesSortedByDate, this.sortedImageTimeMillis, this.eventInterval);
+		return this.cube;
+	}
+
+	/**
+	 * Returns the events of every location and species split up with the event interval, building them the first time they are asked for.
+	 * Formatters should read the period and abundance of a location and species from this instead of re-querying the image list
+	 * 
+	 * @return The event index of the sorted image list
+	 */
+	public synchronized EventIndex getEventIndex()
+	{
+		if (this.eventIndex == null)
+			this.eventIndex = new EventIndex(this.imagesSortedByDate, this.sortedImageTimeMillis, this.eventInterval);
+		return this.eventIndex;
+	}
+
+	/**
+	 * Returns which species were seen at which locations overall and by year, building it the first time it is asked for. Formatters should read
+	 * occupancy from this instead of querying the image list for every species and location
+	 * 
+	 * @return The presence matrix of the images
+	 */
+	public synchronized PresenceMatrix getPresenceMatrix()
+	{
+		if (this.presenceMatrix == null)
+			this.presenceMatrix = new PresenceMatrix(this.originalImageList, this.allImageSpecies, this.allImageLocations, this.allImageYears);
+		return this.presenceMatrix;
+	}
+
+	/**
+	 * Returns the deployment and trap days of every location, building them the first time they are asked for. Formatters should read effort
+	 * from this instead of finding the first and last image of every location and counting the days between them
+	 * 
+	 * @return The camera trap effort of the images
+	 */
+	public synchronized CameraTrapEffort getCameraTrapEffort()
+	{
+		if (this.cameraTrapEffort == null)
+			this.cameraTrapEffort = new CameraTrapEffort(this.originalImageList);
+		return this.cameraTrapEffort;
+	}
+
+	/**
+	 * Returns the full and new moons over the image's interval, computing them the first time they are asked for
+	 * 
+	 * @return The lunar ephemeris of the images
+	 */
+	public synchronized LunarEphemeris getLunarEphemeris()
+	{
+		if (this.lunarEphemeris == null)
+		{
+			if (this.imagesSortedByDate.isEmpty())
+				this.lunarEphemeris = new LunarEphemeris();
+			else
+				this.lunarEphemeris = new LunarEphemeris(this.imagesSortedByDate.get(0).getDateTaken(), this.imagesSortedByDate.get(this.imagesSortedByDate.size() - 1).getDateTaken());
+		}
+		return this.lunarEphemeris;
+	}
+
 	/**
 	 * @return A list containing all image locations
 	 */
@@ -317,7 +358,7 @@ public class DataAnalyzer
 	 */
 	public List<Date> getFullMoons()
 	{
-		return fullMoons;
+		return this.getLunarEphemeris().getFullMoons();
 	}
 
 	/**
@@ -325,7 +366,7 @@ public class DataAnalyzer
 	 */
 	public List<Date> getNewMoons()
 	{
-		return newMoons;
+		return this.getLunarEphemeris().getNewMoons();
 	}
 
 	/**
@@ -343,4 +384,158 @@ public class DataAnalyzer
 	{
 		return this.originalImageList;
 	}
+
+	/**
+	 * Returns the order of the images sorted by date. Images taken at the same time keep their order, just like List.sort. Comparing dates is slow,
+	 * so when every date is a whole second the images are sorted by a single number holding the second they were taken followed by their index
+	 * 
+	 * @param datedImages
+	 *            The images to sort
+	 * @return The index of each image in sorted order
+	 */
+	private static int[] sortedOrder(DatedImage[] datedImages)
+	{
+		int imageCount = datedImages.length;
+		boolean wholeSeconds = Arrays.stream(datedImages).parallel().allMatch(datedImage -> datedImage.nano == 0);
+		long firstSecond = Arrays.stream(datedImages).parallel().mapToLong(datedImage -> datedImage.localSecond).min().orElse(0);
+		long lastSecond = Arrays.stream(datedImages).parallel().mapToLong(datedImage -> datedImage.localSecond).max().orElse(0);
+		int indexBits = 64 - Long.numberOfLeadingZeros(Math.max(imageCount - 1, 1));
+
+		int[] sortedOrder = new int[imageCount];
+		if (wholeSeconds && lastSecond - firstSecond < (1L << (63 - indexBits)))
+		{
+			long[] keys = new long[imageCount];
+			Arrays.parallelSetAll(keys, index -> ((datedImages[index].localSecond - firstSecond) << indexBits) | index);
+			Arrays.parallelSort(keys);
+			long indexMask = (1L << indexBits) - 1;
+			Arrays.parallelSetAll(sortedOrder, index -> (int) (keys[index] & indexMask));
+		}
+		else
+		{
+			// The parallel sort is stable just like List.sort
+			Integer[] boxedOrder = new Integer[imageCount];
+			Arrays.parallelSetAll(boxedOrder, index -> index);
+			Arrays.parallelSort(boxedOrder, Comparator.<Integer>comparingLong(index -> datedImages[index].localSecond).thenComparingInt(index -> datedImages[index].nano));
+			Arrays.parallelSetAll(sortedOrder, index -> boxedOrder[index]);
+		}
+		return sortedOrder;
+	}
+
+	/**
+	 * Returns the time each image was taken in epoch millis, the same as atZone(ZoneId.systemDefault()).toInstant().toEpochMilli(). Looking up the
+	 * zone offset is slow, so the offset is looked up once per hour of images and reused for every image in an hour without a zone transition
+	 * 
+	 * @param datedImages
+	 *            The images
+	 * @param sortedOrder
+	 *            The index of each image in sorted order
+	 * @return The time each image was taken in sorted order
+	 */
+	private static long[] toEpochMillis(DatedImage[] datedImages, int[] sortedOrder)
+	{
+		ZoneId zone = ZoneId.systemDefault();
+		ZoneRules rules = zone.getRules();
+
+		long[] imageTimeMillis = new long[sortedOrder.length];
+		// The hour the offset was last looked up for in local epoch seconds, and its offset or null if the hour has a transition in it
+		long hour = Long.MIN_VALUE;
+		ZoneOffset hourOffset = null;
+		for (int index = 0; index < sortedOrder.length; index++)
+		{
+			DatedImage datedImage = datedImages[sortedOrder[index]];
+			long localSecond = datedImage.localSecond;
+			long dateHour = Math.floorDiv(localSecond, 3600L) * 3600L;
+			if (dateHour != hour)
+			{
+				hour = dateHour;
+				hourOffset = null;
+				LocalDateTime hourStart = LocalDateTime.ofEpochSecond(dateHour, 0, ZoneOffset.UTC);
+				List<ZoneOffset> validOffsets = rules.getValidOffsets(hourStart);
+				if (validOffsets.size() == 1)
+				{
+					ZoneOffset offset = validOffsets.get(0);
+					ZoneOffsetTransition nextTransition = rules.nextTransition(hourStart.toInstant(offset));
+					if (nextTransition == null || nextTransition.getInstant().getEpochSecond() >= dateHour + 3600L - offset.getTotalSeconds())
+						hourOffset = offset;
+				}
+			}
+
+			if (hourOffset != null)
+				imageTimeMillis[index] = (localSecond - hourOffset.getTotalSeconds()) * 1000L + datedImage.nano / 1000000;
+			else
+				imageTimeMillis[index] = datedImage.dateTaken.atZone(zone).toInstant().toEpochMilli();
+		}
+		return imageTimeMillis;
+	}
+
+	/**
+	 * An image along with its date and location, read once so sorting and searching don't have to go through the image's properties again. The date
+	 * is also kept as primitives so sorting doesn't have to follow the date's objects
+	 */
+	private static class DatedImage
+	{
+		private final ImageEntry image;
+		private final LocalDateTime dateTaken;
+		private final Location locationTaken;
+		// The date as seconds since the epoch as if it were UTC, and the nanoseconds within the second. Ordered just like the date
+		private final long localSecond;
+		private final int nano;
+
+		/**
+		 * Constructor reads the date and location of the image
+		 * 
+		 * @param image
+		 *            The image to read
+		 */
+		private DatedImage(ImageEntry image)
+		{
+			this.image = image;
+			this.dateTaken = image.getDateTaken();
+			this.locationTaken = image.getLocationTaken();
+			this.localSecond = this.dateTaken.toEpochSecond(ZoneOffset.UTC);
+			this.nano = this.dateTaken.getNano();
+		}
+	}
+
+	/**
+	 * The distinct locations, species, and years found over part of the image list, in the order they were first found
+	 */
+	private static class DistinctValues
+	{
+		private final Set<Location> locations = new LinkedHashSet<>();
+		private final Set<Species> species = new LinkedHashSet<>();
+		private final Set<Integer> years = new HashSet<>();
+		private boolean nullLocationsFound = false;
+
+		/**
+		 * Adds the values of the next image
+		 * 
+		 * @param datedImage
+		 *            The image to add
+		 */
+		private void add(DatedImage datedImage)
+		{
+			if (datedImage.locationTaken != null)
+				this.locations.add(datedImage.locationTaken);
+			else
+				this.nullLocationsFound = true;
+			for (SpeciesEntry speciesEntry : datedImage.image.getSpeciesPresent())
+				this.species.add(speciesEntry.getSpecies());
+			this.years.add(datedImage.dateTaken.getYear());
+		}
+
+		/**
+		 * Adds the values found over the part of the image list that comes after this one
+		 * 
+		 * @param other
+		 *            The values of the next part
+		 */
+		private void addAll(DistinctValues other)
+		{
+			this.locations.addAll(other.locations);
+			this.species.addAll(other.species);
+			this.years.addAll(other.years);
+			this.nullLocationsFound = this.nullLocationsFound || other.nullLocationsFound;
+		}
+	}
 }
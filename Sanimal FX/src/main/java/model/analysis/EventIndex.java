@@ -0,0 +1,370 @@
+package model.analysis;
+
+import model.image.ImageEntry;
+import model.location.Location;
+import model.species.Species;
+import model.species.SpeciesEntry;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The independent events of every location and species, split up once for an event interval. Each (location, species) pair is a stream of the
+ * images sorted by date, held as primitive arrays along with where each event starts and how many animals it had. The period and abundance of a
+ * stream or of any date range of it are then a few prefix sum lookups instead of a pass over the images.
+ *
+ * A stream gives exactly what periodForImageList and abundanceForImageList give on the equivalent ImageQuery over the sorted image list.
+ *
+ * @author David Slovikosky
+ */
+public class EventIndex
+{
+	// The stream returned for a location and species with no images
+	private static final EventStream EMPTY_STREAM = new EventStream(new LocalDateTime[0], new long[0], new int[0], 0);
+
+	// Each stream by location then species. A null location means any location, a null species means any species, compared by reference just
+	// like ImageQuery does
+	private final Map<Location, Map<Species, EventStream>> streams = new IdentityHashMap<>();
+
+	/**
+	 * Constructor splits up the events of every location and species
+	 *
+	 * @param imagesSortedByDate
+	 *            The images to index, MUST be sorted by date
+	 * @param sortedImageTimeMillis
+	 *            The time each of the sorted images was taken in epoch millis
+	 * @param eventInterval
+	 *            The event interval given in minutes
+	 */
+	public EventIndex(List<ImageEntry> imagesSortedByDate, long[] sortedImageTimeMillis, Integer eventInterval)
+	{
+		Map<Location, Map<Species, EventStreamBuilder>> builders = new IdentityHashMap<>();
+		List<Species> imageSpecies = new ArrayList<>();
+		for (int imageIndex = 0; imageIndex < imagesSortedByDate.size(); imageIndex++)
+		{
+			ImageEntry image = imagesSortedByDate.get(imageIndex);
+			// Only images with animals take part in events
+			if (image.getSpeciesPresent().isEmpty())
+				continue;
+
+			LocalDateTime date = image.getDateTaken();
+			long imageTimeMillis = sortedImageTimeMillis[imageIndex];
+
+			// Each species counts once per image even if it was tagged more than once
+			imageSpecies.clear();
+			int maxAnimals = 0;
+			for (SpeciesEntry speciesEntry : image.getSpeciesPresent())
+			{
+				if (!imageSpecies.contains(speciesEntry.getSpecies()))
+					imageSpecies.add(speciesEntry.getSpecies());
+				maxAnimals = Math.max(maxAnimals, speciesEntry.getAmount());
+			}
+
+			// Add the image to the streams of its location and of any location
+			for (Location location : image.getLocationTaken() == null ? new Location[] { null } : new Location[] { image.getLocationTaken(), null })
+			{
+				Map<Species, EventStreamBuilder> locationBuilders = builders.computeIfAbsent(location, key -> new IdentityHashMap<>());
+				locationBuilders.computeIfAbsent(null, key -> new EventStreamBuilder()).add(date, imageTimeMillis, maxAnimals);
+				for (Species species : imageSpecies)
+				{
+					int maxSpeciesAnimals = 0;
+					for (SpeciesEntry speciesEntry : image.getSpeciesPresent())
+						if (speciesEntry.getSpecies() == species)
+							maxSpeciesAnimals = Math.max(maxSpeciesAnimals, speciesEntry.getAmount());
+					locationBuilders.computeIfAbsent(species, key -> new EventStreamBuilder()).add(date, imageTimeMillis, maxSpeciesAnimals);
+				}
+			}
+		}
+
+		builders.forEach((location, locationBuilders) ->
+		{
+			Map<Species, EventStream> locationStreams = new IdentityHashMap<>();
+			locationBuilders.forEach((species, builder) -> locationStreams.put(species, builder.build(eventInterval)));
+			this.streams.put(location, locationStreams);
+		});
+	}
+
+	/**
+	 * Returns the events of the images with a species taken at a location
+	 *
+	 * @param location
+	 *            The location the images were taken at, or null for any location
+	 * @param species
+	 *            The species in the images, or null for images with any species
+	 * @return The stream of events, never null
+	 */
+	public EventStream getStream(Location location, Species species)
+	{
+		Map<Species, EventStream> locationStreams = this.streams.get(location);
+		EventStream stream = locationStreams == null ? null : locationStreams.get(species);
+		return stream == null ? EMPTY_STREAM : stream;
+	}
+
+	/**
+	 * Returns the period of the images with a species taken at a location
+	 *
+	 * @param location
+	 *            The location, or null for any location
+	 * @param species
+	 *            The species, or null for images with any species
+	 * @return The period of the images
+	 */
+	public Integer getPeriod(Location location, Species species)
+	{
+		return this.getStream(location, species).getPeriod();
+	}
+
+	/**
+	 * Returns the abundance of a species in the images taken at a location
+	 *
+	 * @param location
+	 *            The location, or null for any location
+	 * @param species
+	 *            The species, or null for any species
+	 * @return The abundance of the images
+	 */
+	public Integer getAbundance(Location location, Species species)
+	{
+		return this.getStream(location, species).getAbundance();
+	}
+
+	/**
+	 * The images of one location and species sorted by date and split into events
+	 */
+	public static class EventStream
+	{
+		// The date and time of each image
+		private final LocalDateTime[] dates;
+		// The time of each image in epoch millis
+		private final long[] imageTimeMillis;
+		// The most animals of the species in each image
+		private final int[] animals;
+		// The number of images up to and including each one that start a new event after the image before them
+		private final int[] eventBreaks;
+		// The event each image belongs to
+		private final int[] imageEvents;
+		// The first image of each event, followed by the number of images
+		private final int[] eventStarts;
+		// The sum of the most animals in each event before each event
+		private final int[] abundanceBefore;
+		// The event interval, in minutes
+		private final int eventInterval;
+
+		/**
+		 * Constructor splits the images up into events
+		 *
+		 * @param dates
+		 *            The date and time of each image, sorted
+		 * @param imageTimeMillis
+		 *            The time of each image in epoch millis
+		 * @param animals
+		 *            The most animals of the species in each image
+		 * @param eventInterval
+		 *            The event interval given in minutes
+		 */
+		private EventStream(LocalDateTime[] dates, long[] imageTimeMillis, int[] animals, int eventInterval)
+		{
+			this.dates = dates;
+			this.imageTimeMillis = imageTimeMillis;
+			this.animals = animals;
+			this.eventInterval = eventInterval;
+
+			int imageCount = dates.length;
+			this.eventBreaks = new int[imageCount];
+			this.imageEvents = new int[imageCount];
+			int[] eventStarts = new int[imageCount + 1];
+			int eventCount = 0;
+			for (int image = 0; image < imageCount; image++)
+			{
+				// The first image always starts an event, just like an image far enough from the one before it
+				boolean newEvent = image == 0 || (imageTimeMillis[image] - imageTimeMillis[image - 1]) / 1000 / 60 >= eventInterval;
+				this.eventBreaks[image] = (image == 0 ? 0 : this.eventBreaks[image - 1]) + (newEvent && image > 0 ? 1 : 0);
+				if (newEvent)
+					eventStarts[eventCount++] = image;
+				this.imageEvents[image] = eventCount - 1;
+			}
+			eventStarts[eventCount] = imageCount;
+			this.eventStarts = Arrays.copyOf(eventStarts, eventCount + 1);
+
+			this.abundanceBefore = new int[eventCount + 1];
+			for (int event = 0; event < eventCount; event++)
+				this.abundanceBefore[event + 1] = this.abundanceBefore[event] + this.maxAnimals(this.eventStarts[event], this.eventStarts[event + 1]);
+		}
+
+		/**
+		 * @return The period of all images in the stream
+		 */
+		public Integer getPeriod()
+		{
+			return this.getPeriod(0, this.dates.length);
+		}
+
+		/**
+		 * @return The abundance of all images in the stream
+		 */
+		public Integer getAbundance()
+		{
+			return this.getAbundance(0, this.dates.length);
+		}
+
+		/**
+		 * Returns the period of the images taken in a date range, same as calling periodForImageList on just those images
+		 *
+		 * @param from
+		 *            The first date of the range, inclusive
+		 * @param to
+		 *            The last date of the range, exclusive
+		 * @return The period of the images
+		 */
+		public Integer getPeriod(LocalDateTime from, LocalDateTime to)
+		{
+			return this.getPeriod(this.indexOf(from), this.indexOf(to));
+		}
+
+		/**
+		 * Returns the abundance of the images taken in a date range, same as calling abundanceForImageList on just those images
+		 *
+		 * @param from
+		 *            The first date of the range, inclusive
+		 * @param to
+		 *            The last date of the range, exclusive
+		 * @return The abundance of the images
+		 */
+		public Integer getAbundance(LocalDateTime from, LocalDateTime to)
+		{
+			return this.getAbundance(this.indexOf(from), this.indexOf(to));
+		}
+
+		/**
+		 * Returns the period of a range of images
+		 *
+		 * @param start
+		 *            The first image, inclusive
+		 * @param end
+		 *            The last image, exclusive
+		 * @return The period of the images
+		 */
+		private int getPeriod(int start, int end)
+		{
+			if (start >= end)
+				return 0;
+
+			// The first image of a list is compared against time 0 so it starts an event, then count the events started inside the range
+			int firstEvent = this.imageTimeMillis[start] / 1000 / 60 >= this.eventInterval ? 1 : 0;
+			return firstEvent + this.eventBreaks[end - 1] - this.eventBreaks[start];
+		}
+
+		/**
+		 * Returns the abundance of a range of images. Events fully inside the range come from the prefix sums, the events cut off by either end
+		 * of the range only count the part inside it
+		 *
+		 * @param start
+		 *            The first image, inclusive
+		 * @param end
+		 *            The last image, exclusive
+		 * @return The abundance of the images
+		 */
+		private int getAbundance(int start, int end)
+		{
+			if (start >= end)
+				return 0;
+
+			int firstEvent = this.imageEvents[start];
+			int lastEvent = this.imageEvents[end - 1];
+			if (firstEvent == lastEvent)
+				return this.maxAnimals(start, end);
+
+			return this.maxAnimals(start, this.eventStarts[firstEvent + 1])
+					+ this.abundanceBefore[lastEvent] - this.abundanceBefore[firstEvent + 1]
+					+ this.maxAnimals(this.eventStarts[lastEvent], end);
+		}
+
+		/**
+		 * Returns the most animals in a range of images
+		 *
+		 * @param start
+		 *            The first image, inclusive
+		 * @param end
+		 *            The last image, exclusive
+		 * @return The most animals
+		 */
+		private int maxAnimals(int start, int end)
+		{
+			int maxAnimals = 0;
+			for (int image = start; image < end; image++)
+				maxAnimals = Math.max(maxAnimals, this.animals[image]);
+			return maxAnimals;
+		}
+
+		/**
+		 * Returns the index of the first image taken at or after a date
+		 *
+		 * @param date
+		 *            The date to search for
+		 * @return The index of the image, or the number of images if all were taken before the date
+		 */
+		private int indexOf(LocalDateTime date)
+		{
+			int low = 0;
+			int high = this.dates.length;
+			while (low < high)
+			{
+				int middle = (low + high) >>> 1;
+				if (this.dates[middle].isBefore(date))
+					low = middle + 1;
+				else
+					high = middle;
+			}
+			return low;
+		}
+	}
+
+	/**
+	 * Collects the images of a stream before it is split into events
+	 */
+	private static class EventStreamBuilder
+	{
+		private LocalDateTime[] dates = new LocalDateTime[16];
+		private long[] imageTimeMillis = new long[16];
+		private int[] animals = new int[16];
+		private int imageCount = 0;
+
+		/**
+		 * Adds the next image by date to the stream
+		 *
+		 * @param date
+		 *            The date the image was taken
+		 * @param imageTimeMillis
+		 *            The time the image was taken in epoch millis
+		 * @param animals
+		 *            The most animals of the species in the image
+		 */
+		private void add(LocalDateTime date, long imageTimeMillis, int animals)
+		{
+			if (this.imageCount == this.dates.length)
+			{
+				this.dates = Arrays.copyOf(this.dates, this.imageCount * 2);
+				this.imageTimeMillis = Arrays.copyOf(this.imageTimeMillis, this.imageCount * 2);
+				this.animals = Arrays.copyOf(this.animals, this.imageCount * 2);
+			}
+			this.dates[this.imageCount] = date;
+			this.imageTimeMillis[this.imageCount] = imageTimeMillis;
+			this.animals[this.imageCount] = animals;
+			this.imageCount++;
+		}
+
+		/**
+		 * @param eventInterval
+		 *            The event interval given in minutes
+		 * @return The stream split into events
+		 */
+		private EventStream build(int eventInterval)
+		{
+			return new EventStream(Arrays.copyOf(this.dates, this.imageCount), Arrays.copyOf(this.imageTimeMillis, this.imageCount), Arrays.copyOf(this.animals, this.imageCount), eventInterval);
+		}
+	}
+}
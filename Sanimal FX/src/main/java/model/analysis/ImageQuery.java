@@ -121,16 +121,12 @@ public class ImageQuery
 	 */
 	public ImageQuery newMoonOnly(List<Date> newMoons)
 	{
+		// Sort the moons once so each image only looks at the moons right before and after it
+		long[] moonMillis = LunarEphemeris.sortedMillis(newMoons);
 		this.predicate = this.predicate.and(entry ->
 		{
 			long currentTime = entry.getDateTaken().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
-			for (Date date : newMoons)
-			{
-				long moonDate = date.getTime();
-				if (Math.abs(moonDate - currentTime) < 5 * 1000 * 60 * 60 * 24)
-					return true;
-			}
-			return false;
+			return LunarEphemeris.isNearMoon(moonMillis, currentTime);
 		});
 		return this;
 	}
@@ -144,16 +140,12 @@ public class ImageQuery
 	 */
 	public ImageQuery fullMoonOnly(List<Date> fullMoons)
 	{
+		// Sort the moons once so each image only looks at the moons right before and after it
+		long[] moonMillis = LunarEphemeris.sortedMillis(fullMoons);
 		this.predicate = this.predicate.and(entry ->
 		{
 			long currentTime = entry.getDateTaken().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
-			for (Date date : fullMoons)
-			{
-				long moonDate = date.getTime();
-				if (Math.abs(moonDate - currentTime) < 5 * 1000 * 60 * 60 * 24)
-					return true;
-			}
-			return false;
+			return LunarEphemeris.isNearMoon(moonMillis, currentTime);
 		});
 		return this;
 	}
@@ -0,0 +1,164 @@
+package model.analysis;
+
+import library.MoonCalculator;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A table of the full and new moons over a date range, computed once so finding out whether an image was taken around a full or new moon is a
+ * binary search instead of a scan over every moon
+ *
+ * @author David Slovikosky
+ */
+public class LunarEphemeris
+{
+	// The phase of the moon at a full and new moon
+	private static final double FULL_MOON_PHASE = 180;
+	private static final double NEW_MOON_PHASE = 0;
+	// Images closer than this to a moon are taken around it
+	private static final long MOON_WINDOW_MILLIS = 5 * 1000 * 60 * 60 * 24;
+
+	// The full and new moons over the range in the order they were found
+	private final List<Date> fullMoons;
+	private final List<Date> newMoons;
+	// The same moons in epoch millis sorted first to last
+	private final long[] fullMoonMillis;
+	private final long[] newMoonMillis;
+
+	/**
+	 * Constructor computes the moons over a date range
+	 *
+	 * @param first
+	 *            The first date of the range
+	 * @param last
+	 *            The last date of the range
+	 */
+	public LunarEphemeris(LocalDateTime first, LocalDateTime last)
+	{
+		this.fullMoons = Collections.unmodifiableList(lunations(first, last, FULL_MOON_PHASE));
+		this.newMoons = Collections.unmodifiableList(lunations(first, last, NEW_MOON_PHASE));
+		this.fullMoonMillis = sortedMillis(this.fullMoons);
+		this.newMoonMillis = sortedMillis(this.newMoons);
+	}
+
+	/**
+	 * Creates an ephemeris without any moons, used when there are no images
+	 */
+	public LunarEphemeris()
+	{
+		this.fullMoons = Collections.emptyList();
+		this.newMoons = Collections.emptyList();
+		this.fullMoonMillis = new long[0];
+		this.newMoonMillis = new long[0];
+	}
+
+	/**
+	 * Returns true if a time is less than 5 days away from a full moon
+	 *
+	 * @param timeMillis
+	 *            The time in epoch millis
+	 * @return True if the time is around a full moon
+	 */
+	public boolean isNearFullMoon(long timeMillis)
+	{
+		return isNearMoon(this.fullMoonMillis, timeMillis);
+	}
+
+	/**
+	 * Returns true if a time is less than 5 days away from a new moon
+	 *
+	 * @param timeMillis
+	 *            The time in epoch millis
+	 * @return True if the time is around a new moon
+	 */
+	public boolean isNearNewMoon(long timeMillis)
+	{
+		return isNearMoon(this.newMoonMillis, timeMillis);
+	}
+
+	/**
+	 * @return The full moons over the range
+	 */
+	public List<Date> getFullMoons()
+	{
+		return this.fullMoons;
+	}
+
+	/**
+	 * @return The new moons over the range
+	 */
+	public List<Date> getNewMoons()
+	{
+		return this.newMoons;
+	}
+
+	/**
+	 * Returns true if a time is less than 5 days away from any of the moons. Only the moons right before and after the time can be close enough
+	 *
+	 * @param sortedMoonMillis
+	 *            The moons in epoch millis sorted first to last
+	 * @param timeMillis
+	 *            The time in epoch millis
+	 * @return True if the time is around one of the moons
+	 */
+	public static boolean isNearMoon(long[] sortedMoonMillis, long timeMillis)
+	{
+		int index = Arrays.binarySearch(sortedMoonMillis, timeMillis);
+		if (index >= 0)
+			return true;
+
+		int after = -index - 1;
+		return (after < sortedMoonMillis.length && Math.abs(sortedMoonMillis[after] - timeMillis) < MOON_WINDOW_MILLIS)
+				|| (after > 0 && Math.abs(sortedMoonMillis[after - 1] - timeMillis) < MOON_WINDOW_MILLIS);
+	}
+
+	/**
+	 * Returns the moons in epoch millis sorted first to last
+	 *
+	 * @param moons
+	 *            The moons
+	 * @return The sorted times
+	 */
+	public static long[] sortedMillis(List<Date> moons)
+	{
+		long[] moonMillis = new long[moons.size()];
+		for (int index = 0; index < moonMillis.length; index++)
+			moonMillis[index] = moons.get(index).getTime();
+		Arrays.sort(moonMillis);
+		return moonMillis;
+	}
+
+	/**
+	 * Walks every lunation with the given phase between two dates
+	 *
+	 * @param first
+	 *            The first date
+	 * @param last
+	 *            The last date
+	 * @param lunation
+	 *            The phase of the moon to find, 180 for full moons and 0 for new moons
+	 * @return The date of each lunation
+	 */
+	private static List<Date> lunations(LocalDateTime first, LocalDateTime last, double lunation)
+	{
+		List<Date> moons = new ArrayList<>();
+		while (first.isBefore(last))
+		{
+			double julianDate = MoonCalculator.getJulian(Date.from(first.atZone(ZoneId.systemDefault()).toInstant()));
+			double[] phases = MoonCalculator.getPhase(julianDate);
+			double moon = MoonCalculator.getLunation(julianDate, phases[MoonCalculator.MOONPHASE], lunation);
+			Date nextMoonDate = new Date(MoonCalculator.toMillisFromJulian(moon));
+			moons.add(nextMoonDate);
+			// The next lunation is at least 20 days after this one
+			first = LocalDateTime.ofInstant(Instant.ofEpochMilli(nextMoonDate.getTime() + 20 * 1000 * 60 * 60 * 24), ZoneId.systemDefault());
+		}
+		return moons;
+	}
+}
@@ -0,0 +1,217 @@
+package model.analysis;
+
+import model.image.ImageEntry;
+import model.location.Location;
+import model.species.Species;
+import model.species.SpeciesEntry;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Which species were seen at which locations, overall and by year. Each row is a bitset with one bit per location, so the number of locations a
+ * species occupies is a population count and the number of locations two species share is a population count of the rows and-ed together.
+ *
+ * @author David Slovikosky
+ */
+public class PresenceMatrix
+{
+	// The index of each species and location in the analysis' lists. Compared by reference just like ImageQuery does
+	private final Map<Species, Integer> speciesIndexes = new IdentityHashMap<>();
+	private final Map<Location, Integer> locationIndexes = new IdentityHashMap<>();
+	// The index of each year in the analysis' list
+	private final Map<Integer, Integer> yearIndexes = new HashMap<>();
+	// The number of longs each row of locations takes up
+	private final int rowWords;
+	// A row of locations for each species
+	private final long[] speciesLocations;
+	// A row of locations for each species and year, the years of a species are next to each other
+	private final long[] speciesYearLocations;
+
+	/**
+	 * Constructor builds the matrices in a single pass over the images
+	 *
+	 * @param images
+	 *            The images to find species at locations in
+	 * @param species
+	 *            Every species of the images
+	 * @param locations
+	 *            Every location of the images
+	 * @param years
+	 *            Every year of the images
+	 */
+	public PresenceMatrix(List<ImageEntry> images, List<Species> species, List<Location> locations, List<Integer> years)
+	{
+		for (int speciesIndex = 0; speciesIndex < species.size(); speciesIndex++)
+			this.speciesIndexes.put(species.get(speciesIndex), speciesIndex);
+		for (int locationIndex = 0; locationIndex < locations.size(); locationIndex++)
+			this.locationIndexes.put(locations.get(locationIndex), locationIndex);
+		for (int yearIndex = 0; yearIndex < years.size(); yearIndex++)
+			this.yearIndexes.put(years.get(yearIndex), yearIndex);
+
+		this.rowWords = (locations.size() + 63) / 64;
+		this.speciesLocations = new long[species.size() * this.rowWords];
+		this.speciesYearLocations = new long[species.size() * years.size() * this.rowWords];
+
+		for (ImageEntry image : images)
+		{
+			Integer locationIndex = this.locationIndexes.get(image.getLocationTaken());
+			// Images without a location are never in a location's images
+			if (locationIndex == null)
+				continue;
+
+			int yearIndex = this.yearIndexes.get(image.getDateTaken().getYear());
+			int word = locationIndex / 64;
+			long bit = 1L << locationIndex;
+			for (SpeciesEntry speciesEntry : image.getSpeciesPresent())
+			{
+				int speciesIndex = this.speciesIndexes.get(speciesEntry.getSpecies());
+				this.speciesLocations[speciesIndex * this.rowWords + word] |= bit;
+				this.speciesYearLocations[(speciesIndex * years.size() + yearIndex) * this.rowWords + word] |= bit;
+			}
+		}
+	}
+
+	/**
+	 * @param species
+	 *            The species
+	 * @param location
+	 *            The location
+	 * @return True if the species was seen at the location
+	 */
+	public boolean isPresent(Species species, Location location)
+	{
+		Integer speciesIndex = this.speciesIndexes.get(species);
+		Integer locationIndex = this.locationIndexes.get(location);
+		return speciesIndex != null && locationIndex != null && isSet(this.speciesLocations, speciesIndex * this.rowWords, locationIndex);
+	}
+
+	/**
+	 * @param species
+	 *            The species
+	 * @param location
+	 *            The location
+	 * @param year
+	 *            The year
+	 * @return True if the species was seen at the location during the year
+	 */
+	public boolean isPresent(Species species, Location location, Integer year)
+	{
+		Integer row = this.yearRow(species, year);
+		Integer locationIndex = this.locationIndexes.get(location);
+		return row != null && locationIndex != null && isSet(this.speciesYearLocations, row, locationIndex);
+	}
+
+	/**
+	 * @param species
+	 *            The species
+	 * @return The number of locations the species was seen at
+	 */
+	public Integer getLocationCount(Species species)
+	{
+		Integer speciesIndex = this.speciesIndexes.get(species);
+		return speciesIndex == null ? 0 : this.countAnd(this.speciesLocations, speciesIndex * this.rowWords, this.speciesLocations, speciesIndex * this.rowWords);
+	}
+
+	/**
+	 * @param species
+	 *            The species
+	 * @param year
+	 *            The year
+	 * @return The number of locations the species was seen at during the year
+	 */
+	public Integer getLocationCount(Species species, Integer year)
+	{
+		Integer row = this.yearRow(species, year);
+		return row == null ? 0 : this.countAnd(this.speciesYearLocations, row, this.speciesYearLocations, row);
+	}
+
+	/**
+	 * @param species
+	 *            The first species
+	 * @param other
+	 *            The second species
+	 * @return The number of locations both species were seen at
+	 */
+	public Integer getCoOccurrenceCount(Species species, Species other)
+	{
+		Integer speciesIndex = this.speciesIndexes.get(species);
+		Integer otherIndex = this.speciesIndexes.get(other);
+		if (speciesIndex == null || otherIndex == null)
+			return 0;
+		return this.countAnd(this.speciesLocations, speciesIndex * this.rowWords, this.speciesLocations, otherIndex * this.rowWords);
+	}
+
+	/**
+	 * @param species
+	 *            The first species
+	 * @param other
+	 *            The second species
+	 * @param year
+	 *            The year
+	 * @return The number of locations both species were seen at during the year
+	 */
+	public Integer getCoOccurrenceCount(Species species, Species other, Integer year)
+	{
+		Integer row = this.yearRow(species, year);
+		Integer otherRow = this.yearRow(other, year);
+		if (row == null || otherRow == null)
+			return 0;
+		return this.countAnd(this.speciesYearLocations, row, this.speciesYearLocations, otherRow);
+	}
+
+	/**
+	 * Returns where the row of a species and year starts
+	 *
+	 * @param species
+	 *            The species
+	 * @param year
+	 *            The year
+	 * @return The offset of the row, or null if the species or year isn't part of the analysis
+	 */
+	private Integer yearRow(Species species, Integer year)
+	{
+		Integer speciesIndex = this.speciesIndexes.get(species);
+		Integer yearIndex = this.yearIndexes.get(year);
+		if (speciesIndex == null || yearIndex == null)
+			return null;
+		return (speciesIndex * this.yearIndexes.size() + yearIndex) * this.rowWords;
+	}
+
+	/**
+	 * Counts the locations set in both of two rows
+	 *
+	 * @param rows
+	 *            The matrix holding the first row
+	 * @param row
+	 *            The offset of the first row
+	 * @param otherRows
+	 *            The matrix holding the second row
+	 * @param otherRow
+	 *            The offset of the second row
+	 * @return The number of locations in both rows
+	 */
+	private int countAnd(long[] rows, int row, long[] otherRows, int otherRow)
+	{
+		int count = 0;
+		for (int word = 0; word < this.rowWords; word++)
+			count = count + Long.bitCount(rows[row + word] & otherRows[otherRow + word]);
+		return count;
+	}
+
+	/**
+	 * @param rows
+	 *            The matrix holding the row
+	 * @param row
+	 *            The offset of the row
+	 * @param locationIndex
+	 *            The index of the location
+	 * @return True if the location is set in the row
+	 */
+	private static boolean isSet(long[] rows, int row, int locationIndex)
+	{
+		return (rows[row + locationIndex / 64] & (1L << locationIndex)) != 0;
+	}
+}
@@ -3,7 +3,16 @@ package model.analysis;
 import model.analysis.textFormatters.*;
 import model.image.ImageEntry;
 
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * The formatter that simulates the creation of Jim Sanderson's "Output.txt"
@@ -12,8 +21,35 @@ import java.util.List;
  */
 public class SanimalTextOutputFormatter
 {
+	// The pool generating the sections of a report, sized to the machine
+	private static final ForkJoinPool REPORT_POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+	// The report of each analysis. Kept for as long as the report is in use so its generated sections are shared by everyone asking for it
+	private final Map<DataAnalyzer, WeakReference<SanimalTextReport>> reports = new WeakHashMap<>();
+
+	/**
+	 * Returns the report of an analysis split into sections, each generated the first time its text is asked for. The same analysis gives the
+	 * same report as long as the report is still held on to
+	 * 
+	 * @param dataStatistics
+	 *            A set of statistics computed from the images
+	 * @return The sectioned report
+	 */
+	public synchronized SanimalTextReport getReport(DataAnalyzer dataStatistics)
+	{
+		WeakReference<SanimalTextReport> reportReference = this.reports.get(dataStatistics);
+		SanimalTextReport report = reportReference != null ? reportReference.get() : null;
+		if (report == null)
+		{
+			report = this.createReport(dataStatistics);
+			this.reports.put(dataStatistics, new WeakReference<>(report));
+		}
+		return report;
+	}
+
 	/**
-	 * Returns a massive string that is perfectly formatted to look like "Output.txt"
+	 * Returns a massive string that is perfectly formatted to look like "Output.txt". The sections only read the analysis, so they are generated
+	 * at the same time and then put together in order
 	 * 
 	 * @param dataStatistics
 	 *            A set of statistics computed from the images
@@ -21,18 +57,109 @@ public class SanimalTextOutputFormatter
 	 */
 	public String format(DataAnalyzer dataStatistics)
 	{
-		// The string to return
-		String toReturn = "";
-
-		List<ImageEntry> images = dataStatistics.getOriginalImageList();
-
 		// If there are no images, return an appropriate string
-		if (images.isEmpty())
+		if (dataStatistics.getOriginalImageList().isEmpty())
 			return "No images found under directory";
 
 		// Elapsed time in the calculation
 		long elapsedTime = System.currentTimeMillis();
 
+		SanimalTextReport report = this.getReport(dataStatistics);
+
+		// Generate every section at once, sections that were already generated are reused, then put them together in order
+		List<ForkJoinTask<String>> sectionTasks = new ArrayList<>(report.getSections().size());
+		for (SanimalTextReport.Section section : report.getSections())
+			sectionTasks.add(REPORT_POOL.submit(section::getText));
+
+		StringBuilder toReturn = new StringBuilder();
+		try
+		{
+			for (ForkJoinTask<String> sectionTask : sectionTasks)
+				toReturn.append(sectionTask.join());
+		}
+		finally
+		{
+			// Don't leave work behind if a section failed
+			for (ForkJoinTask<String> sectionTask : sectionTasks)
+				sectionTask.cancel(false);
+		}
+
+		// ELAPSED TIME
+
+		toReturn.append("ELAPSED TIME ").append(String.format("%10.3f ", ((System.currentTimeMillis() - elapsedTime) / 1000D))).append("SECONDS");
+
+		return toReturn.toString();
+	}
+
+	/**
+	 * Streams "Output.txt" to an output, for example a file. Only a few sections are generated at the same time and each is written and
+	 * dropped as soon as it is done, so memory use does not grow with the size of the report. Sections that were already generated are
+	 * written as they are, the others are not remembered
+	 * 
+	 * @param dataStatistics
+	 *            A set of statistics computed from the images
+	 * @param out
+	 *            Where to write the report to
+	 * @throws IOException
+	 *             If writing to the output fails
+	 */
+	public void format(DataAnalyzer dataStatistics, Appendable out) throws IOException
+	{
+		// If there are no images, write an appropriate string
+		if (dataStatistics.getOriginalImageList().isEmpty())
+		{
+			out.append("No images found under directory");
+			return;
+		}
+
+		// Elapsed time in the calculation
+		long elapsedTime = System.currentTimeMillis();
+
+		SanimalTextReport report = this.getReport(dataStatistics);
+
+		// Keep at most one section per thread of the pool generating ahead of the one being written
+		Deque<ForkJoinTask<String>> sectionTasks = new ArrayDeque<>();
+		int nextSection = 0;
+		try
+		{
+			while (nextSection < report.getSections().size() || !sectionTasks.isEmpty())
+			{
+				while (nextSection < report.getSections().size() && sectionTasks.size() < REPORT_POOL.getParallelism())
+				{
+					SanimalTextReport.Section section = report.getSections().get(nextSection++);
+					sectionTasks.addLast(REPORT_POOL.submit(() ->
+					{
+						StringBuilder sectionText = new StringBuilder();
+						section.writeTo(sectionText);
+						return sectionText.toString();
+					}));
+				}
+				out.append(sectionTasks.removeFirst().join());
+			}
+		}
+		finally
+		{
+			// Don't leave work behind if a section or the output failed
+			for (ForkJoinTask<String> sectionTask : sectionTasks)
+				sectionTask.cancel(false);
+		}
+
+		// ELAPSED TIME
+
+		out.append("ELAPSED TIME ").append(String.format("%10.3f ", ((System.currentTimeMillis() - elapsedTime) / 1000D))).append("SECONDS");
+	}
+
+	/**
+	 * Creates the sections of the report without generating any of them
+	 * 
+	 * @param dataStatistics
+	 *            A set of statistics computed from the images
+	 * @return The sectioned report
+	 */
+	private SanimalTextReport createReport(DataAnalyzer dataStatistics)
+	{
+		List<ImageEntry> images = dataStatistics.getOriginalImageList();
+
 		// Create all required formatters
 		HeaderFormatter headerFormatter = new HeaderFormatter(images, dataStatistics);
 		FirstLastSpeciesFormatter firstLastSpeciesFormatter = new FirstLastSpeciesFormatter(images, dataStatistics);
@@ -47,236 +174,78 @@ public class SanimalTextOutputFormatter
 		OccouranceFormatter occouranceFormatter = new OccouranceFormatter(images, dataStatistics);
 		DetectionRateFormatter detectionRateFormatter = new DetectionRateFormatter(images, dataStatistics);
 
-		// Proceed to print each header:
-
-		// LOCATIONS 
-
-		toReturn = toReturn + headerFormatter.printLocations();
-
-		// SPECIES
-
-		toReturn = toReturn + headerFormatter.printSpecies();
-
-		// FOR ALL SPECIES AT ALL LOCATIONS
-
-		toReturn = toReturn + headerFormatter.printImageAnalysisHeader();
-
-		// NUMBER OF DAYS IN CAMERA TRAP PROGRAM
-
-		toReturn = toReturn + firstLastSpeciesFormatter.printDaysInCameraTrap();
-
-		// FIRST PICTURE OF EACH SPECIES
-
-		toReturn = toReturn + firstLastSpeciesFormatter.printFirstPicOfEachSpecies();
-
-		// LAST PICTURE OF EACH SPECIES
-
-		toReturn = toReturn + firstLastSpeciesFormatter.printLastPicOfEachSpecies();
-
-		// SPECIES ACCUMULATION CURVE
-
-		toReturn = toReturn + firstLastSpeciesFormatter.printSpeciesAccumulationCurve();
-
-		// NUMBER OF PICTURES AND FILTERED PICTURES PER YEAR
-
-		toReturn = toReturn + actPerAbuLocFormatter.printNumberOfPicturesByYear();
-
-		// NUMBER OF PICTURES BY SPECIES BY YEAR
-
-		toReturn = toReturn + actPerAbuLocFormatter.printNumberOfPicturesBySpeciesByYear();
-
-		// SPECIES RANKED BY NUMBER OF INDEPENDENT PICTURES AND PERCENT OF TOTAL
-
-		toReturn = toReturn + actPerAbuLocFormatter.printNumberOfPicturesByPercentTotal();
-
-		// CAMERA TRAP DAYS
-
-		toReturn = toReturn + trapDaysAndEffortFormatter.printCameraTrapDays();
-
-		//CAMERA TRAP EFFORT
-
-		toReturn = toReturn + trapDaysAndEffortFormatter.printCameraTrapEffort();
-
-		// CAMERA TRAP EFFORT SUMMARY
-
-		toReturn = toReturn + trapDaysAndEffortFormatter.printCameraTrapEffortSummary();
-
-		// FOR EACH LOCATION TOTAL NUMBER AND PERCENT OF EACH SPECIES
-
-		toReturn = toReturn + locationStatFormatter.printPercentOfSpeciesInLoc();
-
-		// FOR EACH LOCATION AND MONTH TOTAL NUMBER EACH SPECIES
-
-		toReturn = toReturn + locationStatFormatter.printSpeciesByMonthByLocByYear();
-
-		// ALL LOCATIONS ALL SPECIES FOR EACH MONTH FOR ALL YEARS
-
-		toReturn = toReturn + locationStatFormatter.printSpeciesByMonthByLoc();
-
-		// DISTANCE (km) BETWEEN LOCATIONS
-
-		toReturn = toReturn + locationStatFormatter.printDistanceBetweenLocations();
-
-		// ACTIVITY PATTERNS
-
-		toReturn = toReturn + activityPatternFormatter.printActivityPatterns();
-
-		// SPECIES PAIRS ACTIVITY SIMILARITY (LOWER IS MORE SIMILAR)
-
-		toReturn = toReturn + activityPatternFormatter.printSpeciesPairsActivitySimilarity();
-
-		// SPECIES PAIR MOST SIMILAR IN ACTIVITY (FREQUENCY)
-
-		toReturn = toReturn + activityPatternFormatter.printSpeciePairMostSimilar();
-
-		// CHI-SQUARE ANALYSIS OF PAIRED ACTIVITY PATTERNS
-
-		toReturn = toReturn + activityPatternFormatter.printChiSquareAnalysisPairedActivity();
-
-		// LUNAR ACTIVITY PATTERN
-
-		toReturn = toReturn + lunarActivityFormatter.printLunarActivity();
-
-		//SPECIES LUNAR ACTIVITY MOST DIFFERENT: 
-
-		toReturn = toReturn + lunarActivityFormatter.printLunarActivityMostDifferent();
-
-		// ACTIVITY PATTERNS BY SEASON
-
-		toReturn = toReturn + activityPatternFormatter.printActivityPatternsSeason();
-
-		// SPECIES ABUNDANCE
-
-		toReturn = toReturn + actPerAbuLocFormatter.printSpeciesAbundance();
-
-		// LOCATIONS BY SPECIES AND LOCATION AND SPECIES RICHNESS
-
-		toReturn = toReturn + richnessFormatter.printLocationSpeciesRichness();
-
-		// LOCATION SPECIES FREQUENCY SIMILARITY (LOWER IS MORE SIMILAR)
-
-		toReturn = toReturn + locationStatFormatter.printLocSpeciesFrequencySimiliarity();
-
-		// LOCATION-SPECIES COMPOSITION SIMILARITY (Jaccard Similarity Index)
-
-		toReturn = toReturn + locationStatFormatter.printLocSpeciesCompositionSimiliarity();
-
-		// SPECIES BY LOCATION WITH UTM AND ELEVATION
-
-		toReturn = toReturn + speciesLocCoordFormatter.printSpeciesByLocWithUTM();
-
-		// SPECIES OVERLAP AT LOCATIONS
-
-		toReturn = toReturn + locationStatFormatter.printSpeciesOverlapAtLoc();
-
-		// CHI-SQUARE ANALYSIS OF PAIRED SITES SPECIES FREQUENCIES
-
-		toReturn = toReturn + occouranceFormatter.printCHISqAnalysisOfPairedSpecieFreq();
-
-		// PICTURES FOR EACH LOCATION BY MONTH AND YEAR
-
-		toReturn = toReturn + totalDayFormatter.printPicturesByMonthYearLoc();
-
-		// PICTURES FOR EACH LOCATION BY MONTH AND YEAR SUMMARY
-
-		toReturn = toReturn + totalDayFormatter.printPicturesByMonthLoc();
-
-		// SPECIES AND SPECIES RICHNESS BY YEAR AND MONTH
-
-		toReturn = toReturn + totalDayFormatter.printPicturesByMonthYearSpeciesRichness();
-
-		// SPECIES ALL YEARS BY MONTH
-
-		toReturn = toReturn + totalDayFormatter.printPicturesByMonthSpeciesRichness();
-
-		// SPECIES BY LOCATION BY YEAR BY MONTH SORTED BY ELEVATION
-
-		toReturn = toReturn + totalDayFormatter.printPicturesByMonthSpeciesLocElevation();
-
-		// SPECIES ABUNDANCE BY LOCATION BY YEAR BY MONTH SORTED BY ELEVATION
-
-		toReturn = toReturn + totalDayFormatter.printAbundanceByMonthSpeciesLocElevation();
-
-		// SPECIES BY LOCATION SORTED BY ELEVATION AND NORMALIZED BY EFFORT
-
-		toReturn = toReturn + totalDayFormatter.printSpeciesByLocElevationAndEffort();
-
-		// SPECIES BY LOCATION SORTED BY ELEVATION AND NORMALIZED BY EFFORT TABLE
-
-		toReturn = toReturn + totalDayFormatter.printSpeciesByLocElevationAndEffortTable();
-
-		// SPECIES AVERAGE ABUNDANCE BY YEAR AND SITE
-
-		toReturn = toReturn + actPerAbuLocFormatter.printSpeciesAbundanceYearSite();
-
-		// SPECIES AVERAGE ABUNDANCE BY SITE ALL YEARS
-
-		toReturn = toReturn + actPerAbuLocFormatter.printSpeciesAbundanceSite();
-
-		// SPECIES CO-OCCURRENCE MATRIX
-
-		toReturn = toReturn + occouranceFormatter.printCoOccuranceMatrix();
-
-		// ABSENCE-PRESENCE MATRIX
-
-		toReturn = toReturn + occouranceFormatter.printAbsensePresenceMatrix();
-
-		// SPECIES MIN AND MAX ELEVATION
-
-		toReturn = toReturn + occouranceFormatter.printMaxMinSpeciesElevation();
-
-		// DETECTION RATE FOR EACH SPECIES PER YEAR
-
-		toReturn = toReturn + detectionRateFormatter.printDetectionRateSpeciesYear();
-
-		// DETECTION RATE SUMMARY FOR EACH SPECIES
-
-		toReturn = toReturn + detectionRateFormatter.printDetectionRateSummary();
-
-		// DETECTION RATE FOR EACH LOCATION BY MONTH
-
-		toReturn = toReturn + detectionRateFormatter.printDetectionRateLocationMonth();
-
-		// DETECTION RATE SUMMARY FOR EACH LOCATION BY MONTH
-
-		toReturn = toReturn + detectionRateFormatter.printDetectionRateLocationMonthSummary();
-
-		// MONTHLY DETECTION RATE TREND
-
-		toReturn = toReturn + detectionRateFormatter.printDetectionRateTrend();
-
-		// NATIVE OCCUPANCY
-
-		toReturn = toReturn + occouranceFormatter.printNativeOccupancy();
-
-		// AREA COVERED BY CAMERA TRAPS
-
-		toReturn = toReturn + locationStatFormatter.printAreaCoveredByTraps();
-
-		// ELAPSED TIME
-
-		toReturn = toReturn + "ELAPSED TIME " + String.format("%10.3f ", ((System.currentTimeMillis() - elapsedTime) / 1000D)) + "SECONDS";
-
-		return toReturn;
-
+		// Each header of "Output.txt" in the order it is printed
+		List<SanimalTextReport.Section> sections = new ArrayList<>();
+		sections.add(new SanimalTextReport.Section("LOCATIONS", headerFormatter::printLocations));
+		sections.add(new SanimalTextReport.Section("SPECIES", headerFormatter::printSpecies));
+		sections.add(new SanimalTextReport.Section("FOR ALL SPECIES AT ALL LOCATIONS", headerFormatter::printImageAnalysisHeader));
+		sections.add(new SanimalTextReport.Section("NUMBER OF DAYS IN CAMERA TRAP PROGRAM", firstLastSpeciesFormatter::printDaysInCameraTrap));
+		sections.add(new SanimalTextReport.Section("FIRST PICTURE OF EACH SPECIES", firstLastSpeciesFormatter::printFirstPicOfEachSpecies));
+		sections.add(new SanimalTextReport.Section("LAST PICTURE OF EACH SPECIES", firstLastSpeciesFormatter::printLastPicOfEachSpecies));
+		sections.add(new SanimalTextReport.Section("SPECIES ACCUMULATION CURVE", firstLastSpeciesFormatter::printSpeciesAccumulationCurve));
+		sections.add(new SanimalTextReport.Section("NUMBER OF PICTURES AND FILTERED PICTURES PER YEAR", actPerAbuLocFormatter::printNumberOfPicturesByYear));
+		sections.add(new SanimalTextReport.Section("NUMBER OF PICTURES BY SPECIES BY YEAR", actPerAbuLocFormatter::printNumberOfPicturesBySpeciesByYear));
+		sections.add(new SanimalTextReport.Section("SPECIES RANKED BY NUMBER OF INDEPENDENT PICTURES AND PERCENT OF TOTAL", actPerAbuLocFormatter::printNumberOfPicturesByPercentTotal));
+		sections.add(new SanimalTextReport.Section("CAMERA TRAP DAYS", trapDaysAndEffortFormatter::printCameraTrapDays));
+		sections.add(new SanimalTextReport.Section("CAMERA TRAP EFFORT", trapDaysAndEffortFormatter::printCameraTrapEffort));
+		sections.add(new SanimalTextReport.Section("CAMERA TRAP EFFORT SUMMARY", trapDaysAndEffortFormatter::printCameraTrapEffortSummary));
+		sections.add(new SanimalTextReport.Section("FOR EACH LOCATION TOTAL NUMBER AND PERCENT OF EACH SPECIES", locationStatFormatter::printPercentOfSpeciesInLoc));
+		sections.add(new SanimalTextReport.Section("FOR EACH LOCATION AND MONTH TOTAL NUMBER EACH SPECIES", locationStatFormatter::printSpeciesByMonthByLocByYear));
+		sections.add(new SanimalTextReport.Section("ALL LOCATIONS ALL SPECIES FOR EACH MONTH FOR ALL YEARS", locationStatFormatter::printSpeciesByMonthByLoc));
+		sections.add(new SanimalTextReport.Section("DISTANCE (km) BETWEEN LOCATIONS", locationStatFormatter::printDistanceBetweenLocations));
+		sections.add(new SanimalTextReport.Section("ACTIVITY PATTERNS", activityPatternFormatter::printActivityPatterns));
+		sections.add(new SanimalTextReport.Section("SPECIES PAIRS ACTIVITY SIMILARITY (LOWER IS MORE SIMILAR)", activityPatternFormatter::printSpeciesPairsActivitySimilarity));
+		sections.add(new SanimalTextReport.Section("SPECIES PAIR MOST SIMILAR IN ACTIVITY (FREQUENCY)", activityPatternFormatter::printSpeciePairMostSimilar));
+		sections.add(new SanimalTextReport.Section("CHI-SQUARE ANALYSIS OF PAIRED ACTIVITY PATTERNS", activityPatternFormatter::printChiSquareAnalysisPairedActivity));
+		sections.add(new SanimalTextReport.Section("LUNAR ACTIVITY PATTERN", lunarActivityFormatter::printLunarActivity));
+		sections.add(new SanimalTextReport.Section("SPECIES LUNAR ACTIVITY MOST DIFFERENT", lunarActivityFormatter::printLunarActivityMostDifferent));
+		sections.add(new SanimalTextReport.Section("ACTIVITY PATTERNS BY SEASON", activityPatternFormatter::printActivityPatternsSeason));
+		sections.add(new SanimalTextReport.Section("SPECIES ABUNDANCE", actPerAbuLocFormatter::printSpeciesAbundance));
+		sections.add(new SanimalTextReport.Section("LOCATIONS BY SPECIES AND LOCATION AND SPECIES RICHNESS", richnessFormatter::printLocationSpeciesRichness));
+		sections.add(new SanimalTextReport.Section("LOCATION SPECIES FREQUENCY SIMILARITY (LOWER IS MORE SIMILAR)", locationStatFormatter::printLocSpeciesFrequencySimiliarity));
+		sections.add(new SanimalTextReport.Section("LOCATION-SPECIES COMPOSITION SIMILARITY (Jaccard Similarity Index)", locationStatFormatter::printLocSpeciesCompositionSimiliarity));
+		sections.add(new SanimalTextReport.Section("SPECIES BY LOCATION WITH UTM AND ELEVATION", speciesLocCoordFormatter::printSpeciesByLocWithUTM));
+		sections.add(new SanimalTextReport.Section("SPECIES OVERLAP AT LOCATIONS", locationStatFormatter::printSpeciesOverlapAtLoc));
+		sections.add(new SanimalTextReport.Section("CHI-SQUARE ANALYSIS OF PAIRED SITES SPECIES FREQUENCIES", occouranceFormatter::printCHISqAnalysisOfPairedSpecieFreq));
+		sections.add(new SanimalTextReport.Section("PICTURES FOR EACH LOCATION BY MONTH AND YEAR", totalDayFormatter::printPicturesByMonthYearLoc));
+		sections.add(new SanimalTextReport.Section("PICTURES FOR EACH LOCATION BY MONTH AND YEAR SUMMARY", totalDayFormatter::printPicturesByMonthLoc));
+		sections.add(new SanimalTextReport.Section("SPECIES AND SPECIES RICHNESS BY YEAR AND MONTH", totalDayFormatter::printPicturesByMonthYearSpeciesRichness));
+		sections.add(new SanimalTextReport.Section("SPECIES ALL YEARS BY MONTH", totalDayFormatter::printPicturesByMonthSpeciesRichness));
+		sections.add(new SanimalTextReport.Section("SPECIES BY LOCATION BY YEAR BY MONTH SORTED BY ELEVATION", totalDayFormatter::printPicturesByMonthSpeciesLocElevation));
+		sections.add(new SanimalTextReport.Section("SPECIES ABUNDANCE BY LOCATION BY YEAR BY MONTH SORTED BY ELEVATION", totalDayFormatter::printAbundanceByMonthSpeciesLocElevation));
+		sections.add(new SanimalTextReport.Section("SPECIES BY LOCATION SORTED BY ELEVATION AND NORMALIZED BY EFFORT", totalDayFormatter::printSpeciesByLocElevationAndEffort));
+		sections.add(new SanimalTextReport.Section("SPECIES BY LOCATION SORTED BY ELEVATION AND NORMALIZED BY EFFORT TABLE", totalDayFormatter::printSpeciesByLocElevationAndEffortTable));
+		sections.add(new SanimalTextReport.Section("SPECIES AVERAGE ABUNDANCE BY YEAR AND SITE", actPerAbuLocFormatter::printSpeciesAbundanceYearSite));
+		sections.add(new SanimalTextReport.Section("SPECIES AVERAGE ABUNDANCE BY SITE ALL YEARS", actPerAbuLocFormatter::printSpeciesAbundanceSite));
+		sections.add(new SanimalTextReport.Section("SPECIES CO-OCCURRENCE MATRIX", occouranceFormatter::printCoOccuranceMatrix));
+		sections.add(new SanimalTextReport.Section("ABSENCE-PRESENCE MATRIX", occouranceFormatter::printAbsensePresenceMatrix));
+		sections.add(new SanimalTextReport.Section("SPECIES MIN AND MAX ELEVATION", occouranceFormatter::printMaxMinSpeciesElevation));
+		sections.add(new SanimalTextReport.Section("DETECTION RATE FOR EACH SPECIES PER YEAR", detectionRateFormatter::printDetectionRateSpeciesYear));
+		sections.add(new SanimalTextReport.Section("DETECTION RATE SUMMARY FOR EACH SPECIES", detectionRateFormatter::printDetectionRateSummary));
+		sections.add(new SanimalTextReport.Section("DETECTION RATE FOR EACH LOCATION BY MONTH", detectionRateFormatter::printDetectionRateLocationMonth));
+		sections.add(new SanimalTextReport.Section("DETECTION RATE SUMMARY FOR EACH LOCATION BY MONTH", detectionRateFormatter::printDetectionRateLocationMonthSummary));
+		sections.add(new SanimalTextReport.Section("MONTHLY DETECTION RATE TREND", detectionRateFormatter::printDetectionRateTrend));
+		sections.add(new SanimalTextReport.Section("NATIVE OCCUPANCY", occouranceFormatter::printNativeOccupancy));
+		sections.add(new SanimalTextReport.Section("AREA COVERED BY CAMERA TRAPS", locationStatFormatter::printAreaCoveredByTraps));
+
+		return new SanimalTextReport(sections, new SanimalTextReport.Section("ALL PICTURES", out -> this.writeAllPictures(dataStatistics, out)));
 	}
 
 	/**
-	 * Instead of printing "output.txt" like above, this prints "Allpictures.txt"
+	 * Streams "Allpictures.txt" to an output one line at a time, for example a file
 	 * 
 	 * @param dataStatistics
 	 *            A set of statistics computed from the images
-	 * @return a formatted string
+	 * @param out
+	 *            Where to write the file to
+	 * @throws IOException
+	 *             If writing to the output fails
 	 */
-	public String createAllPictures(DataAnalyzer dataStatistics)
+	public void writeAllPictures(DataAnalyzer dataStatistics, Appendable out) throws IOException
 	{
-		String toReturn = "";
-
-		// Create an analysis object, then create the formatter, and create the text
+		// Create an analysis object, then create the formatter, and write the text
 		DataAnalyzer analysis = new DataAnalyzer(dataStatistics.getOriginalImageList(), dataStatistics.getEventInterval());
 		AllPicturesFormatter allPicturesFormatter = new AllPicturesFormatter(dataStatistics.getOriginalImageList(), analysis);
-		toReturn = toReturn + allPicturesFormatter.createAllPictures();
-
-		return toReturn;
+		allPicturesFormatter.writeAllPictures(out);
 	}
 }
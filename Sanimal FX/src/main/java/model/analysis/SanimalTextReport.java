@@ -0,0 +1,176 @@
+package model.analysis;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * A Dr. Sanderson report split into its sections. A section's text is only generated the first time it is asked for, and then remembered
+ * so viewing and exporting the report never generates a section twice. Sections can also be streamed straight to a writer, which never keeps
+ * more than the section's generator needs in memory
+ *
+ * @author David Slovikosky
+ */
+public class SanimalTextReport
+{
+	// The sections of "Output.txt" in the order they are printed
+	private final List<Section> sections;
+	// The "AllPictures.txt" file as its own section
+	private final Section allPictures;
+
+	/**
+	 * Constructor for the report
+	 *
+	 * @param sections
+	 *            The sections of "Output.txt" in order
+	 * @param allPictures
+	 *            The section generating "AllPictures.txt"
+	 */
+	public SanimalTextReport(List<Section> sections, Section allPictures)
+	{
+		this.sections = Collections.unmodifiableList(sections);
+		this.allPictures = allPictures;
+	}
+
+	/**
+	 * @return The sections of "Output.txt" in the order they are printed
+	 */
+	public List<Section> getSections()
+	{
+		return this.sections;
+	}
+
+	/**
+	 * @return The section generating "AllPictures.txt"
+	 */
+	public Section getAllPictures()
+	{
+		return this.allPictures;
+	}
+
+	/**
+	 * Generates the text of a section by writing it to an output
+	 */
+	@FunctionalInterface
+	public interface SectionWriter
+	{
+		/**
+		 * Writes the text of the section
+		 *
+		 * @param out
+		 *            Where to write the text to
+		 * @throws IOException
+		 *             If writing to the output fails
+		 */
+		void writeTo(Appendable out) throws IOException;
+	}
+
+	/**
+	 * One titled section of the report, generated on demand
+	 */
+	public static class Section
+	{
+		// The title of the section, the header printed at the top of its text
+		private final String title;
+		// Generates the text of the section, dropped once the text is generated
+		private SectionWriter writer;
+		// The text of the section, or null if it was not generated yet
+		private String text = null;
+
+		/**
+		 * Constructor for a section generated as a single string
+		 *
+		 * @param title
+		 *            The title of the section
+		 * @param generator
+		 *            The function generating the text of the section, may be called from any thread
+		 */
+		public Section(String title, Supplier<String> generator)
+		{
+			this(title, out -> out.append(generator.get()));
+		}
+
+		/**
+		 * Constructor for a section that streams its text
+		 *
+		 * @param title
+		 *            The title of the section
+		 * @param writer
+		 *            The function writing the text of the section, may be called from any thread
+		 */
+		public Section(String title, SectionWriter writer)
+		{
+			this.title = title;
+			this.writer = writer;
+		}
+
+		/**
+		 * @return The title of the section
+		 */
+		public String getTitle()
+		{
+			return this.title;
+		}
+
+		/**
+		 * Returns the text of the section, generating it if this is the first time it is asked for. Threads asking for the text while it is
+		 * being generated wait for it instead of generating it again
+		 *
+		 * @return The text of the section
+		 */
+		public synchronized String getText()
+		{
+			if (this.text == null)
+			{
+				StringBuilder text = new StringBuilder();
+				try
+				{
+					this.writer.writeTo(text);
+				}
+				catch (IOException e)
+				{
+					// A string builder never throws
+					throw new UncheckedIOException(e);
+				}
+				this.text = text.toString();
+				this.writer = null;
+			}
+			return this.text;
+		}
+
+		/**
+		 * Writes the text of the section to an output. A section that was already generated writes its text, otherwise the text is streamed
+		 * straight to the output and not remembered
+		 *
+		 * @param out
+		 *            Where to write the text to
+		 * @throws IOException
+		 *             If writing to the output fails
+		 */
+		public void writeTo(Appendable out) throws IOException
+		{
+			String text;
+			SectionWriter writer;
+			synchronized (this)
+			{
+				text = this.text;
+				writer = this.writer;
+			}
+
+			if (text != null)
+				out.append(text);
+			else
+				writer.writeTo(out);
+		}
+
+		/**
+		 * @return True if the text of the section was already generated
+		 */
+		public synchronized boolean isGenerated()
+		{
+			return this.text != null;
+		}
+	}
+}
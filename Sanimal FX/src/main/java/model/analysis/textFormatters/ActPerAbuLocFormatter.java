@@ -1,12 +1,14 @@
 package model.analysis.textFormatters;
 
+import model.analysis.AnalysisCube;
 import model.analysis.DataAnalyzer;
-import model.analysis.ImageQuery;
+import model.analysis.EventIndex;
 import model.image.ImageEntry;
 import model.location.Location;
 import model.species.Species;
 import org.apache.commons.lang3.StringUtils;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -45,6 +47,7 @@ public class ActPerAbuLocFormatter extends TextFormatter
 	public String printNumberOfPicturesByYear()
 	{
 		StringBuilder toReturn = new StringBuilder();
+		AnalysisCube cube = analysis.getCube();
 
 		toReturn.append("NUMBER OF PICTURES AND FILTERED PICTURES PER YEAR\n");
 		toReturn.append("        Year       All Activity   Period Abundance\n");
@@ -59,14 +62,13 @@ public class ActPerAbuLocFormatter extends TextFormatter
 			int yearActivityTotal = 0;
 			int yearPeriodTotal = 0;
 			int yearAbundanceTotal = 0;
-			List<ImageEntry> withYear = new ImageQuery().yearOnly(year).query(analysis.getImagesSortedByDate());
 			for (Species species : analysis.getAllImageSpecies())
 			{
-				List<ImageEntry> withYearSpecies = new ImageQuery().speciesOnly(species).query(withYear);
-				yearImageTotal = yearImageTotal + withYearSpecies.size();
-				yearActivityTotal = yearActivityTotal + analysis.activityForImageList(withYearSpecies);
-				yearPeriodTotal = yearPeriodTotal + analysis.periodForImageList(withYearSpecies);
-				yearAbundanceTotal = yearAbundanceTotal + analysis.abundanceForImageList(withYearSpecies, species);
+				AnalysisCube.Cell withYearSpecies = cube.getCell(year, null, null, species);
+				yearImageTotal = yearImageTotal + withYearSpecies.getImageCount();
+				yearActivityTotal = yearActivityTotal + withYearSpecies.getActivity();
+				yearPeriodTotal = yearPeriodTotal + withYearSpecies.getPeriod();
+				yearAbundanceTotal = yearAbundanceTotal + withYearSpecies.getAbundance();
 			}
 			imageTotal = imageTotal + yearImageTotal;
 			activityTotal = activityTotal + yearActivityTotal;
@@ -94,6 +96,7 @@ public class ActPerAbuLocFormatter extends TextFormatter
 	public String printNumberOfPicturesBySpeciesByYear()
 	{
 		StringBuilder toReturn = new StringBuilder();
+		AnalysisCube cube = analysis.getCube();
 
 		toReturn.append("NUMBER OF PICTURES BY SPECIES BY YEAR\n");
 		for (Species species : analysis.getAllImageSpecies())
@@ -105,15 +108,17 @@ public class ActPerAbuLocFormatter extends TextFormatter
 			int speciesPeriodTotal = 0;
 			int speciesAbundanceTotal = 0;
 			int speciesLocationTotal = 0;
-			List<ImageEntry> withSpecies = new ImageQuery().speciesOnly(species).query(analysis.getImagesSortedByDate());
 			for (Integer year : analysis.getAllImageYears())
 			{
-				List<ImageEntry> withSpeciesYear = new ImageQuery().yearOnly(year).query(withSpecies);
-				Integer speciesImage = withSpeciesYear.size();
-				Integer speciesActivity = analysis.activityForImageList(withSpeciesYear);
-				Integer speciesPeriod = analysis.periodForImageList(withSpeciesYear);
-				Integer speciesAbundance = analysis.abundanceForImageList(withSpeciesYear, species);
-				Integer speciesLocation = analysis.locationsForImageList(withSpeciesYear).size();
+				AnalysisCube.Cell withSpeciesYear = cube.getCell(year, null, null, species);
+				Integer speciesImage = withSpeciesYear.getImageCount();
+				Integer speciesActivity = withSpeciesYear.getActivity();
+				Integer speciesPeriod = withSpeciesYear.getPeriod();
+				Integer speciesAbundance = withSpeciesYear.getAbundance();
+				Integer speciesLocation = 0;
+				for (Location location : analysis.getAllImageLocations())
+					if (!cube.getCell(year, location, null, species).isEmpty())
+						speciesLocation++;
 				speciesImageTotal = speciesImageTotal + speciesImage;
 				speciesActivityTotal = speciesActivityTotal + speciesActivity;
 				speciesPeriodTotal = speciesPeriodTotal + speciesPeriod;
@@ -142,6 +147,7 @@ public class ActPerAbuLocFormatter extends TextFormatter
 	public String printNumberOfPicturesByPercentTotal()
 	{
 		StringBuilder toReturn = new StringBuilder();
+		AnalysisCube cube = analysis.getCube();
 
 		toReturn.append("SPECIES RANKED BY NUMBER OF INDEPENDENT PICTURES AND PERCENT OF TOTAL\n");
 
@@ -151,18 +157,16 @@ public class ActPerAbuLocFormatter extends TextFormatter
 		for (Integer year : analysis.getAllImageYears())
 		{
 			Integer yearPeriodTotal = 0;
-			List<ImageEntry> withYear = new ImageQuery().yearOnly(year).query(analysis.getImagesSortedByDate());
 			for (Species species : analysis.getAllImageSpecies())
-				yearPeriodTotal = yearPeriodTotal + analysis.periodForImageList(new ImageQuery().speciesOnly(species).query(withYear));
+				yearPeriodTotal = yearPeriodTotal + cube.getPeriod(year, null, null, species);
 			periodTotal = periodTotal + yearPeriodTotal;
 		}
 
 		for (Species species : analysis.getAllImageSpecies())
 		{
 			Integer speciesPeriodTotal = 0;
-			List<ImageEntry> withSpecies = new ImageQuery().speciesOnly(species).query(analysis.getImagesSortedByDate());
 			for (Integer year : analysis.getAllImageYears())
-				speciesPeriodTotal = speciesPeriodTotal + analysis.periodForImageList(new ImageQuery().yearOnly(year).query(withSpecies));
+				speciesPeriodTotal = speciesPeriodTotal + cube.getPeriod(year, null, null, species);
 			toReturn.append(String.format("  %-28s %5d  %7.2f\n", species.getName(), speciesPeriodTotal, (speciesPeriodTotal.doubleValue() / periodTotal) * 100.0));
 		}
 		toReturn.append(String.format("  Total pictures               %5d   100.00\n", periodTotal));
@@ -185,6 +189,7 @@ public class ActPerAbuLocFormatter extends TextFormatter
 	public String printSpeciesAbundance()
 	{
 		StringBuilder toReturn = new StringBuilder();
+		AnalysisCube cube = analysis.getCube();
 
 		toReturn.append("SPECIES ABUNDANCE\n");
 		toReturn.append("  One record of each species per location per PERIOD\n");
@@ -193,24 +198,20 @@ public class ActPerAbuLocFormatter extends TextFormatter
 		Integer numAnimalsPhotographed = 0;
 		for (Species species : analysis.getAllImageSpecies())
 		{
-			List<ImageEntry> withSpecies = new ImageQuery().speciesOnly(species).query(analysis.getImagesSortedByDate());
 			for (Integer year : analysis.getAllImageYears())
 			{
-				List<ImageEntry> withSpeciesYear = new ImageQuery().yearOnly(year).query(withSpecies);
-				periodOverAllSpecies = periodOverAllSpecies + analysis.periodForImageList(withSpeciesYear);
-				numAnimalsPhotographed = numAnimalsPhotographed + analysis.abundanceForImageList(withSpeciesYear, species);
+				periodOverAllSpecies = periodOverAllSpecies + cube.getPeriod(year, null, null, species);
+				numAnimalsPhotographed = numAnimalsPhotographed + cube.getAbundance(year, null, null, species);
 			}
 		}
 		for (Species species : analysis.getAllImageSpecies())
 		{
-			List<ImageEntry> withSpecies = new ImageQuery().speciesOnly(species).query(analysis.getImagesSortedByDate());
 			Integer abundanceTotal = 0;
 			Integer periodTotal = 0;
 			for (Integer year : analysis.getAllImageYears())
 			{
-				List<ImageEntry> withSpeciesYear = new ImageQuery().yearOnly(year).query(withSpecies);
-				abundanceTotal = abundanceTotal + analysis.abundanceForImageList(withSpeciesYear, species);
-				periodTotal = periodTotal + analysis.periodForImageList(withSpeciesYear);
+				abundanceTotal = abundanceTotal + cube.getAbundance(year, null, null, species);
+				periodTotal = periodTotal + cube.getPeriod(year, null, null, species);
 			}
 			toReturn.append(String.format("%-28s %7d               %7.2f             %7.2f             %7.2f\n", species.getName(), periodTotal, 100.0D * (double) periodTotal / periodOverAllSpecies, (double) abundanceTotal / periodTotal, (double) abundanceTotal / numAnimalsPhotographed * 100));
 		}
@@ -232,6 +233,7 @@ public class ActPerAbuLocFormatter extends TextFormatter
 	public String printSpeciesAbundanceYearSite()
 	{
 		StringBuilder toReturn = new StringBuilder();
+		EventIndex eventIndex = analysis.getEventIndex();
 
 		toReturn.append("SPECIES AVERAGE ABUNDANCE BY YEAR AND SITE\n");
 		toReturn.append("One record of each species per location per PERIOD\n");
@@ -239,7 +241,6 @@ public class ActPerAbuLocFormatter extends TextFormatter
 
 		for (Integer year : analysis.getAllImageYears())
 		{
-			List<ImageEntry> withYear = new ImageQuery().yearOnly(year).query(analysis.getImagesSortedByDate());
 			toReturn.append(year).append("\n");
 			toReturn.append("Species                     ");
 			for (Location location : analysis.getAllImageLocations())
@@ -247,13 +248,13 @@ public class ActPerAbuLocFormatter extends TextFormatter
 			toReturn.append("\n");
 			for (Species species : analysis.getAllImageSpecies())
 			{
-				List<ImageEntry> withYearSpecies = new ImageQuery().speciesOnly(species).query(withYear);
 				toReturn.append(String.format("%-28s", species.getName()));
 				for (Location location : analysis.getAllImageLocations())
 				{
-					List<ImageEntry> withYearSpeciesLoc = new ImageQuery().locationOnly(location).query(withYearSpecies);
-					Integer abundance = analysis.abundanceForImageList(withYearSpeciesLoc, species);
-					Integer period = analysis.periodForImageList(new ImageQuery().locationOnly(location).speciesOnly(species).query(images));
+					// The abundance is of the year, but the period is of every year
+					EventIndex.EventStream events = eventIndex.getStream(location, species);
+					Integer abundance = events.getAbundance(LocalDateTime.of(year, 1, 1, 0, 0), LocalDateTime.of(year + 1, 1, 1, 0, 0));
+					Integer period = events.getPeriod();
 					toReturn.append(String.format("%5.2f ", period == 0 ? 0 : (double) abundance / period));
 				}
 				toReturn.append("\n");
@@ -276,6 +277,7 @@ public class ActPerAbuLocFormatter extends TextFormatter
 	public String printSpeciesAbundanceSite()
 	{
 		StringBuilder toReturn = new StringBuilder();
+		EventIndex eventIndex = analysis.getEventIndex();
 
 		toReturn.append("SPECIES AVERAGE ABUNDANCE BY SITE ALL YEARS\n");
 
@@ -290,13 +292,11 @@ public class ActPerAbuLocFormatter extends TextFormatter
 
 		for (Species species : analysis.getAllImageSpecies())
 		{
-			List<ImageEntry> withSpecies = new ImageQuery().speciesOnly(species).query(analysis.getImagesSortedByDate());
 			toReturn.append(String.format("%-28s", species.getName()));
 			for (Location location : analysis.getAllImageLocations())
 			{
-				List<ImageEntry> withSpeciesLoc = new ImageQuery().locationOnly(location).query(withSpecies);
-				Integer abundance = analysis.abundanceForImageList(withSpeciesLoc, species);
-				Integer period = analysis.periodForImageList(new ImageQuery().locationOnly(location).speciesOnly(species).query(images));
+				Integer abundance = eventIndex.getAbundance(location, species);
+				Integer period = eventIndex.getPeriod(location, species);
 				toReturn.append(String.format("%5.2f ", period == 0 ? 0 : (double) abundance / period));
 			}
 			toReturn.append("\n");
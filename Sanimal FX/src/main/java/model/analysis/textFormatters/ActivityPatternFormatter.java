@@ -5,11 +5,16 @@ import model.analysis.ImageQuery;
 import model.image.ImageEntry;
 import model.location.Location;
 import model.species.Species;
+import model.species.SpeciesEntry;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 
 import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
 
 /**
  * The text formatter for species activity patterns
@@ -18,6 +23,11 @@ import java.util.List;
  */
 public class ActivityPatternFormatter extends TextFormatter
 {
+	// The activity of each species by month value (index 0 is never used) and hour, indexed like getAllImageSpecies
+	private int[][][] activityByMonthHour = null;
+	// The number of images with each species by hour, indexed like getAllImageSpecies
+	private int[][] imagesByHour = null;
+
 	public ActivityPatternFormatter(List<ImageEntry> images, DataAnalyzer analysis)
 	{
 		super(images, analysis);
@@ -43,11 +53,15 @@ public class ActivityPatternFormatter extends TextFormatter
 		toReturn.append("ACTIVITY PATTERNS\n");
 		toReturn.append(" Activity in one-hour segments - Species (Number of pictures in one hour segments/Total number of pics)\n");
 
-		for (Species species : analysis.getAllImageSpecies())
+		this.createActivityHistograms();
+
+		List<Species> allImageSpecies = analysis.getAllImageSpecies();
+		for (int speciesIndex = 0; speciesIndex < allImageSpecies.size(); speciesIndex++)
 		{
+			Species species = allImageSpecies.get(speciesIndex);
 			StringBuilder toAdd = new StringBuilder();
-			List<ImageEntry> imagesWithSpecies = new ImageQuery().speciesOnly(species).query(analysis.getImagesSortedByDate());
-			Integer totalImages = imagesWithSpecies.size();
+			int[][] speciesActivity = activityByMonthHour[speciesIndex];
+			Integer totalImages = IntStream.of(imagesByHour[speciesIndex]).sum();
 			// Activity / All
 			toAdd.append("                   All months         Jan              Feb              Mar              Apr              May              Jun              Jul              Aug              Sep              Oct              Nov              Dec\n");
 			toAdd.append("    Hour        Number Frequency Number Frequency Number Frequency Number Frequency Number Frequency Number Frequency Number Frequency Number Frequency Number Frequency Number Frequency Number Frequency Number Frequency Number Frequency\n");
@@ -61,16 +75,15 @@ public class ActivityPatternFormatter extends TextFormatter
 				Integer activity;
 				// -1 = all months
 				if (i == -1)
-					activity = analysis.activityForImageList(imagesWithSpecies);
+					activity = Arrays.stream(speciesActivity).flatMapToInt(IntStream::of).sum();
 				else
-					activity = analysis.activityForImageList(new ImageQuery().monthOnly(i).query(imagesWithSpecies));
+					activity = monthActivity(speciesActivity, i);
 				totalActivities[i + 1] = activity;
 			}
 
 			// 24 hrs
 			for (int i = 0; i < 24; i++)
 			{
-				List<ImageEntry> imagesWithSpeciesAtTime = new ImageQuery().timeFrame(i, i + 1).query(imagesWithSpecies);
 				toAdd.append(String.format("%02d:00-%02d:00   ", i, i + 1));
 				// 12 months
 				for (int j = -1; j < 12; j++)
@@ -78,9 +91,9 @@ public class ActivityPatternFormatter extends TextFormatter
 					Integer activity;
 					// -1 = all months
 					if (j == -1)
-						activity = analysis.activityForImageList(imagesWithSpeciesAtTime);
+						activity = hourActivity(speciesActivity, i);
 					else
-						activity = analysis.activityForImageList(new ImageQuery().monthOnly(j).query(imagesWithSpeciesAtTime));
+						activity = monthHourActivity(speciesActivity, j, i);
 
 					if (activity != 0)
 						toAdd.append(String.format("%6d %10.3f", activity, (double) activity / totalActivities[j + 1]));
@@ -134,34 +147,25 @@ public class ActivityPatternFormatter extends TextFormatter
 
 		toReturn.append("\n");
 
-		for (Species species : analysis.getAllImageSpecies())
-		{
-			toReturn.append(String.format("%-27s", species.getName()));
-			for (Species other : analysis.getAllImageSpecies())
-			{
-				List<ImageEntry> imagesWithSpecies = new ImageQuery().speciesOnly(species).query(analysis.getImagesSortedByDate());
-				List<ImageEntry> imagesWithSpeciesOther = new ImageQuery().speciesOnly(other).query(analysis.getImagesSortedByDate());
-				int totalActivity = analysis.activityForImageList(imagesWithSpecies);
-				int totalActivityOther = analysis.activityForImageList(imagesWithSpeciesOther);
-
-				double activitySimilarity = 0;
-
-				// 24 hrs
-				for (int i = 0; i < 24; i++)
-				{
-					List<ImageEntry> imagesWithSpeciesAtTime = new ImageQuery().timeFrame(i, i + 1).query(imagesWithSpecies);
-					List<ImageEntry> imagesWithSpeciesAtTimeOther = new ImageQuery().timeFrame(i, i + 1).query(imagesWithSpeciesOther);
-					double activity = analysis.activityForImageList(imagesWithSpeciesAtTime);
-					double activityOther = analysis.activityForImageList(imagesWithSpeciesAtTimeOther);
-					double frequency = activity / totalActivity;
-					double frequencyOther = activityOther / totalActivityOther;
-					double difference = frequency - frequencyOther;
-					// Frequency squared
-					activitySimilarity = activitySimilarity + difference * difference;
-				}
+		this.createActivityHistograms();
 
+		// Compare every pair of activity patterns at once, each row in parallel
+		List<Species> allImageSpecies = analysis.getAllImageSpecies();
+		double[][] activitySimilarities = new double[allImageSpecies.size()][];
+		IntStream.range(0, allImageSpecies.size()).parallel().forEach(speciesIndex ->
+		{
+			double[] speciesSimilarities = new double[allImageSpecies.size()];
+			int[] speciesActivity = hourActivity(activityByMonthHour[speciesIndex]);
+			for (int otherIndex = 0; otherIndex < allImageSpecies.size(); otherIndex++)
+				speciesSimilarities[otherIndex] = squaredFrequencyDifference(speciesActivity, hourActivity(activityByMonthHour[otherIndex]));
+			activitySimilarities[speciesIndex] = speciesSimilarities;
+		});
+
+		for (int speciesIndex = 0; speciesIndex < allImageSpecies.size(); speciesIndex++)
+		{
+			toReturn.append(String.format("%-27s", allImageSpecies.get(speciesIndex).getName()));
+			for (double activitySimilarity : activitySimilarities[speciesIndex])
 				toReturn.append(String.format("%6.3f   ", activitySimilarity));
-			}
 			toReturn.append("\n");
 		}
 
@@ -186,70 +190,49 @@ public class ActivityPatternFormatter extends TextFormatter
 		toReturn.append("SPECIES PAIR MOST SIMILAR IN ACTIVITY (FREQUENCY)\n");
 		toReturn.append("  Consider those species with 25 or more pictures\n");
 
-		Species lowest = null;
-		Species lowestOther = null;
+		this.createActivityHistograms();
+		double[][] pictureSimilarities = this.pictureSimilarities();
+
+		List<Species> allImageSpecies = analysis.getAllImageSpecies();
+		int lowest = -1;
+		int lowestOther = -1;
 		double lowestFrequency = Double.MAX_VALUE;
 
-		for (Species species : analysis.getAllImageSpecies())
+		for (int speciesIndex = 0; speciesIndex < allImageSpecies.size(); speciesIndex++)
 		{
-			for (Species other : analysis.getAllImageSpecies())
+			for (int otherIndex = 0; otherIndex < allImageSpecies.size(); otherIndex++)
 			{
-				List<ImageEntry> imagesWithSpecies = new ImageQuery().speciesOnly(species).query(images);
-				List<ImageEntry> imagesWithSpeciesOther = new ImageQuery().speciesOnly(other).query(images);
-				int totalImages = imagesWithSpecies.size();
-				int totalImagesOther = imagesWithSpeciesOther.size();
-				double activitySimilarity = 0;
+				int totalImages = IntStream.of(imagesByHour[speciesIndex]).sum();
+				int totalImagesOther = IntStream.of(imagesByHour[otherIndex]).sum();
 
-				if (totalImages >= 25 && totalImagesOther >= 25 && !species.equals(other))
+				if (totalImages >= 25 && totalImagesOther >= 25 && !allImageSpecies.get(speciesIndex).equals(allImageSpecies.get(otherIndex)))
 				{
-					// 24 hrs
-					for (int i = 0; i < 24; i++)
-					{
-						List<ImageEntry> imagesWithSpeciesAtTime = new ImageQuery().timeFrame(i, i + 1).query(imagesWithSpecies);
-						List<ImageEntry> imagesWithSpeciesAtTimeOther = new ImageQuery().timeFrame(i, i + 1).query(imagesWithSpeciesOther);
-						double numImages = imagesWithSpeciesAtTime.size();
-						double numImagesOther = imagesWithSpeciesAtTimeOther.size();
-						double frequency = numImages / totalImages;
-						double frequencyOther = numImagesOther / totalImagesOther;
-						double difference = frequency - frequencyOther;
-						// Frequency squared
-						activitySimilarity = activitySimilarity + difference * difference;
-					}
-
-					activitySimilarity = Math.sqrt(activitySimilarity);
+					double activitySimilarity = Math.sqrt(pictureSimilarities[speciesIndex][otherIndex]);
 
 					if (lowestFrequency >= activitySimilarity)
 					{
 						lowestFrequency = activitySimilarity;
-						lowest = species;
-						lowestOther = other;
+						lowest = speciesIndex;
+						lowestOther = otherIndex;
 					}
 				}
 			}
 		}
 
-		if (lowest != null)
+		if (lowest != -1)
 		{
-			toReturn.append(String.format("Hour            %-28s %-28s\n", lowest.getName(), lowestOther.getName()));
+			toReturn.append(String.format("Hour            %-28s %-28s\n", allImageSpecies.get(lowest).getName(), allImageSpecies.get(lowestOther).getName()));
 
-			List<ImageEntry> imagesWithSpecies = new ImageQuery().speciesOnly(lowest).query(images);
-			List<ImageEntry> imagesWithSpeciesOther = new ImageQuery().speciesOnly(lowestOther).query(images);
-			int totalImages = imagesWithSpecies.size();
-			int totalImagesOther = imagesWithSpeciesOther.size();
-			double activitySimilarity = 0;
+			int[] speciesImages = imagesByHour[lowest];
+			int[] speciesImagesOther = imagesByHour[lowestOther];
+			int totalImages = IntStream.of(speciesImages).sum();
+			int totalImagesOther = IntStream.of(speciesImagesOther).sum();
 
 			// 24 hrs
 			for (int i = 0; i < 24; i++)
 			{
-				List<ImageEntry> imagesWithSpeciesAtTime = new ImageQuery().timeFrame(i, i + 1).query(imagesWithSpecies);
-				List<ImageEntry> imagesWithSpeciesAtTimeOther = new ImageQuery().timeFrame(i, i + 1).query(imagesWithSpeciesOther);
-				double numImages = imagesWithSpeciesAtTime.size();
-				double numImagesOther = imagesWithSpeciesAtTimeOther.size();
-				double frequency = numImages / totalImages;
-				double frequencyOther = numImagesOther / totalImagesOther;
-				double difference = frequency - frequencyOther;
-				// Frequency squared
-				activitySimilarity = activitySimilarity + difference * difference;
+				double frequency = (double) speciesImages[i] / totalImages;
+				double frequencyOther = (double) speciesImagesOther[i] / totalImagesOther;
 
 				toReturn.append(String.format("%02d:00-%02d:00     %5.3f                        %5.3f\n", i, i + 1, frequency, frequencyOther));
 			}
@@ -289,36 +272,22 @@ public class ActivityPatternFormatter extends TextFormatter
 
 		toReturn.append("\n");
 
-		for (Species species : analysis.getAllImageSpecies())
+		this.createActivityHistograms();
+		double[][] pictureSimilarities = this.pictureSimilarities();
+
+		List<Species> allImageSpecies = analysis.getAllImageSpecies();
+		for (int speciesIndex = 0; speciesIndex < allImageSpecies.size(); speciesIndex++)
 		{
-			List<ImageEntry> imagesWithSpecies = new ImageQuery().speciesOnly(species).query(images);
-			int totalImages = imagesWithSpecies.size();
+			int totalImages = IntStream.of(imagesByHour[speciesIndex]).sum();
 			if (totalImages >= 25)
 			{
-				toReturn.append(String.format("%-28s", species.getName()));
-				for (Species other : analysis.getAllImageSpecies())
+				toReturn.append(String.format("%-28s", allImageSpecies.get(speciesIndex).getName()));
+				for (int otherIndex = 0; otherIndex < allImageSpecies.size(); otherIndex++)
 				{
-					List<ImageEntry> imagesWithSpeciesOther = new ImageQuery().speciesOnly(other).query(images);
-					int totalImagesOther = imagesWithSpeciesOther.size();
-					double activitySimilarity = 0;
+					int totalImagesOther = IntStream.of(imagesByHour[otherIndex]).sum();
+					double chiSquare = (1 - pictureSimilarities[speciesIndex][otherIndex]) / 1.0;
 
-					// 24 hrs
-					for (int i = 0; i < 24; i++)
-					{
-						List<ImageEntry> imagesWithSpeciesAtTime = new ImageQuery().timeFrame(i, i + 1).query(imagesWithSpecies);
-						List<ImageEntry> imagesWithSpeciesAtTimeOther = new ImageQuery().timeFrame(i, i + 1).query(imagesWithSpeciesOther);
-						double numImages = imagesWithSpeciesAtTime.size();
-						double numImagesOther = imagesWithSpeciesAtTimeOther.size();
-						double frequency = numImages / totalImages;
-						double frequencyOther = numImagesOther / totalImagesOther;
-						double difference = frequency - frequencyOther;
-						// Frequency squared
-						activitySimilarity = activitySimilarity + difference * difference;
-					}
-
-					double chiSquare = (1 - activitySimilarity) / 1.0;
-
-					if (chiSquare >= 0.95 && imagesWithSpeciesOther.size() >= 25)
+					if (chiSquare >= 0.95 && totalImagesOther >= 25)
 						toReturn.append("   X     ");
 					else
 						toReturn.append("         ");
@@ -398,9 +367,13 @@ public class ActivityPatternFormatter extends TextFormatter
 			for (int month : season)
 				lengthPerSeason[ArrayUtils.indexOf(seasons, season)] = lengthPerSeason[ArrayUtils.indexOf(seasons, season)] + monthlyTotals[month];
 
-		for (Species species : analysis.getAllImageSpecies())
+		this.createActivityHistograms();
+
+		List<Species> allImageSpecies = analysis.getAllImageSpecies();
+		for (int speciesIndex = 0; speciesIndex < allImageSpecies.size(); speciesIndex++)
 		{
-			List<ImageEntry> withSpecies = new ImageQuery().speciesOnly(species).query(analysis.getImagesSortedByDate());
+			Species species = allImageSpecies.get(speciesIndex);
+			int[][] speciesActivity = activityByMonthHour[speciesIndex];
 
 			toReturn.append(species.getName()).append("\n");
 			toReturn.append("                     Dec-Jan-Feb           Mar-Apr-May           Jun-Jul-Aug           Sep-Oct-Nov\n");
@@ -414,8 +387,9 @@ public class ActivityPatternFormatter extends TextFormatter
 			int[] imagesPerSeason = new int[4];
 			for (int i = 0; i < 4; i++)
 			{
-				List<ImageEntry> seasonWithSpecies = new ImageQuery().monthOnly(seasons[i]).query(withSpecies);
-				Integer activity = analysis.activityForImageList(seasonWithSpecies);
+				Integer activity = 0;
+				for (int month : seasons[i])
+					activity = activity + monthActivity(speciesActivity, month);
 				toReturn.append(String.format("%7d               ", activity));
 				imagesPerSeason[i] = activity;
 			}
@@ -453,17 +427,18 @@ public class ActivityPatternFormatter extends TextFormatter
 			// 24 hrs
 			for (int j = 0; j < 24; j++)
 			{
-				List<ImageEntry> withSpeciesAtTime = new ImageQuery().timeFrame(j, j + 1).query(withSpecies);
-
 				toAdd.append(String.format("       %02d:00-%02d:00    ", j, j + 1));
 
 				// 4 seasons
 				for (int i = 0; i < 4; i++)
 				{
-					List<ImageEntry> withSpeciesAtTimeInSeason = new ImageQuery().monthOnly(seasons[i]).query(withSpeciesAtTime);
-					List<ImageEntry> withSpeciesInSeason = new ImageQuery().monthOnly(seasons[i]).query(withSpecies);
-					Integer numPics = analysis.activityForImageList(withSpeciesAtTimeInSeason);
-					Integer totalPics = analysis.activityForImageList(withSpeciesInSeason);
+					Integer numPics = 0;
+					Integer totalPics = 0;
+					for (int month : seasons[i])
+					{
+						numPics = numPics + monthHourActivity(speciesActivity, month, j);
+						totalPics = totalPics + monthActivity(speciesActivity, month);
+					}
 					double frequency;
 					if (totalPics != 0)
 						frequency = (double) numPics / totalPics;
@@ -488,4 +463,159 @@ public class ActivityPatternFormatter extends TextFormatter
 
 		return toReturn.toString();
 	}
+
+	/**
+	 * Builds the activity histograms of every species in one pass over the images sorted by date, and counts the images of every species by hour
+	 * in one pass over the images. Every section of this formatter reads these instead of filtering the image list for each species, month, and
+	 * hour. The sections may be generated at the same time, so the histograms are only built once
+	 */
+	private synchronized void createActivityHistograms()
+	{
+		if (activityByMonthHour != null)
+			return;
+
+		List<Species> allImageSpecies = analysis.getAllImageSpecies();
+		Map<Species, Integer> speciesIndexes = new IdentityHashMap<>();
+		for (int speciesIndex = 0; speciesIndex < allImageSpecies.size(); speciesIndex++)
+			speciesIndexes.put(allImageSpecies.get(speciesIndex), speciesIndex);
+
+		// A new activity starts whenever the hour, day, or year of the species' images changes. Sorted by date, the images of an hour are next to
+		// each other, so this is also the activity of any month or hour filter of the species' images
+		int[][][] activityByMonthHour = new int[allImageSpecies.size()][13][24];
+		long[] lastHours = new long[allImageSpecies.size()];
+		Arrays.fill(lastHours, Long.MIN_VALUE);
+		for (ImageEntry image : analysis.getImagesSortedByDate())
+		{
+			LocalDateTime dateTaken = image.getDateTaken();
+			long hour = ((long) dateTaken.getYear() * 400 + dateTaken.getDayOfYear()) * 24 + dateTaken.getHour();
+			for (SpeciesEntry speciesEntry : image.getSpeciesPresent())
+			{
+				int speciesIndex = speciesIndexes.get(speciesEntry.getSpecies());
+				if (lastHours[speciesIndex] != hour)
+				{
+					lastHours[speciesIndex] = hour;
+					activityByMonthHour[speciesIndex][dateTaken.getMonthValue()][dateTaken.getHour()]++;
+				}
+			}
+		}
+
+		// Each species counts once per image even if it was tagged more than once
+		int[][] imagesByHour = new int[allImageSpecies.size()][24];
+		boolean[] speciesCounted = new boolean[allImageSpecies.size()];
+		for (ImageEntry image : images)
+		{
+			Arrays.fill(speciesCounted, false);
+			for (SpeciesEntry speciesEntry : image.getSpeciesPresent())
+			{
+				int speciesIndex = speciesIndexes.get(speciesEntry.getSpecies());
+				if (!speciesCounted[speciesIndex])
+				{
+					speciesCounted[speciesIndex] = true;
+					imagesByHour[speciesIndex][image.getDateTaken().getHour()]++;
+				}
+			}
+		}
+
+		this.imagesByHour = imagesByHour;
+		this.activityByMonthHour = activityByMonthHour;
+	}
+
+	/**
+	 * Returns the sum of the squared differences between the hourly picture frequencies of every pair of species, each row computed in parallel
+	 *
+	 * @return The differences indexed by species then other species, like getAllImageSpecies
+	 */
+	private double[][] pictureSimilarities()
+	{
+		double[][] pictureSimilarities = new double[imagesByHour.length][];
+		IntStream.range(0, imagesByHour.length).parallel().forEach(speciesIndex ->
+		{
+			double[] speciesSimilarities = new double[imagesByHour.length];
+			for (int otherIndex = 0; otherIndex < imagesByHour.length; otherIndex++)
+				speciesSimilarities[otherIndex] = squaredFrequencyDifference(imagesByHour[speciesIndex], imagesByHour[otherIndex]);
+			pictureSimilarities[speciesIndex] = speciesSimilarities;
+		});
+		return pictureSimilarities;
+	}
+
+	/**
+	 * Returns the sum of the squared differences between the frequency of each hour of two histograms
+	 *
+	 * @param hours
+	 *            The first histogram
+	 * @param hoursOther
+	 *            The second histogram
+	 * @return The sum of the squared differences
+	 */
+	private static double squaredFrequencyDifference(int[] hours, int[] hoursOther)
+	{
+		int total = IntStream.of(hours).sum();
+		int totalOther = IntStream.of(hoursOther).sum();
+		double similarity = 0;
+		// 24 hrs
+		for (int i = 0; i < 24; i++)
+		{
+			double frequency = (double) hours[i] / total;
+			double frequencyOther = (double) hoursOther[i] / totalOther;
+			double difference = frequency - frequencyOther;
+			// Frequency squared
+			similarity = similarity + difference * difference;
+		}
+		return similarity;
+	}
+
+	/**
+	 * @param activity
+	 *            The activity of a species by month value and hour
+	 * @return The activity of the species in each hour over all months
+	 */
+	private static int[] hourActivity(int[][] activity)
+	{
+		int[] hours = new int[24];
+		for (int[] monthActivity : activity)
+			for (int i = 0; i < 24; i++)
+				hours[i] = hours[i] + monthActivity[i];
+		return hours;
+	}
+
+	/**
+	 * @param activity
+	 *            The activity of a species by month value and hour
+	 * @param hour
+	 *            The hour
+	 * @return The activity of the species in the hour over all months
+	 */
+	private static int hourActivity(int[][] activity, int hour)
+	{
+		int hourActivity = 0;
+		for (int[] monthActivity : activity)
+			hourActivity = hourActivity + monthActivity[hour];
+		return hourActivity;
+	}
+
+	/**
+	 * @param activity
+	 *            The activity of a species by month value and hour
+	 * @param month
+	 *            The month value, like ImageQuery.monthOnly expects
+	 * @return The activity of the species in the month over all hours
+	 */
+	private static int monthActivity(int[][] activity, int month)
+	{
+		return month >= 1 && month <= 12 ? IntStream.of(activity[month]).sum() : 0;
+	}
+
+	/**
+	 * @param activity
+	 *            The activity of a species by month value and hour
+	 * @param month
+	 *            The month value, like ImageQuery.monthOnly expects
+	 * @param hour
+	 *            The hour
+	 * @return The activity of the species in the hour of the month
+	 */
+	private static int monthHourActivity(int[][] activity, int month, int hour)
+	{
+		return month >= 1 && month <= 12 ? activity[month][hour] : 0;
+	}
 }
@@ -7,6 +7,7 @@ import model.location.Location;
 import model.species.Species;
 import org.apache.commons.io.FilenameUtils;
 
+import java.io.IOException;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 
@@ -23,17 +24,19 @@ public class AllPicturesFormatter extends TextFormatter
 	}
 
 	/**
-	 * <p>
-	 * All pictures is a file that contains a list of each species, location, and image file photographed
+	 * All pictures is a file that contains a list of each species, location, and image file photographed. It's written one
+	 * line at a time, so nothing more than a line is ever kept in memory
 	 * 
-	 * @return Returns a string representing the data in a clean form
+	 * @param out
+	 *            Where to write the data to
+	 * @throws IOException
+	 *             If writing to the output fails
 	 */
-	public String createAllPictures()
+	public void writeAllPictures(Appendable out) throws IOException
 	{
-		StringBuilder toReturn = new StringBuilder();
-
 		DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy MM dd HH mm ss");
 
+		boolean firstLine = true;
 		for (Location location : analysis.getAllImageLocations())
 		{
 			List<ImageEntry> withLocation = new ImageQuery().locationOnly(location).query(images);
@@ -42,14 +45,13 @@ public class AllPicturesFormatter extends TextFormatter
 				List<ImageEntry> withLocationSpecies = new ImageQuery().speciesOnly(species).query(withLocation);
 				for (ImageEntry imageEntry : withLocationSpecies)
 				{
-					toReturn.append(String.format("%-28s %-28s %-28s\n", location.getName(), species.getName(), imageEntry.getDateTaken().format(formatter) + "." + FilenameUtils.getExtension(imageEntry.getFile().toString())));
+					// Lines are separated, the last one is not followed by a new line
+					if (!firstLine)
+						out.append('\n');
+					firstLine = false;
+					out.append(String.format("%-28s %-28s %-28s", location.getName(), species.getName(), imageEntry.getDateTaken().format(formatter) + "." + FilenameUtils.getExtension(imageEntry.getFile().toString())));
 				}
 			}
 		}
-
-		if (toReturn.length() > 0)
-			toReturn = new StringBuilder(toReturn.substring(0, toReturn.length() - 1));
-
-		return toReturn.toString();
 	}
 }
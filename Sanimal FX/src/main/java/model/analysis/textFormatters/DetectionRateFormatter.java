@@ -1,7 +1,8 @@
 package model.analysis.textFormatters;
 
+import model.analysis.AnalysisCube;
+import model.analysis.CameraTrapEffort;
 import model.analysis.DataAnalyzer;
-import model.analysis.ImageQuery;
 import model.image.ImageEntry;
 import model.location.Location;
 import model.species.Species;
@@ -34,6 +35,7 @@ public class DetectionRateFormatter extends TextFormatter
 	public String printDetectionRateSpeciesYear()
 	{
 		StringBuilder toReturn = new StringBuilder();
+		AnalysisCube cube = analysis.getCube();
 
 		toReturn.append("DETECTION RATE FOR EACH SPECIES PER YEAR\n");
 		toReturn.append("  One record of each species per location per PERIOD\n");
@@ -50,21 +52,19 @@ public class DetectionRateFormatter extends TextFormatter
 
 			toReturn.append("\n");
 
-			List<ImageEntry> byYear = new ImageQuery().yearOnly(year).query(analysis.getImagesSortedByDate());
-
 			Integer totalPics = 0;
 			Integer totalDays = 0;
 			double[] averageRate = new double[analysis.getAllImageSpecies().size()];
 			for (Location location : analysis.getAllImageLocations())
 			{
-				List<ImageEntry> byYearLocation = new ImageQuery().locationOnly(location).query(byYear);
+				AnalysisCube.Cell byYearLocation = cube.getCell(year, location, null, null);
 				if (!byYearLocation.isEmpty())
 				{
 					toReturn.append(String.format("%-28s", location.getName()));
 
 					Integer totalDaysForLoc = 0;
-					ImageEntry first = byYearLocation.get(0);
-					ImageEntry last = byYearLocation.get(byYearLocation.size() - 1);
+					ImageEntry first = byYearLocation.getFirstImage();
+					ImageEntry last = byYearLocation.getLastImage();
 					LocalDateTime firstCal = first.getDateTaken();
 					LocalDateTime lastCal = last.getDateTaken();
 					Integer firstDaysInMonth = 31;
@@ -94,7 +94,7 @@ public class DetectionRateFormatter extends TextFormatter
 
 					for (Species species : analysis.getAllImageSpecies())
 					{
-						periodTotal = periodTotal + analysis.periodForImageList(new ImageQuery().speciesOnly(species).query(byYearLocation));
+						periodTotal = periodTotal + cube.getPeriod(year, location, null, species);
 					}
 
 					totalPics = totalPics + periodTotal;
@@ -103,7 +103,7 @@ public class DetectionRateFormatter extends TextFormatter
 
 					for (Species species : analysis.getAllImageSpecies())
 					{
-						Integer period = analysis.periodForImageList(new ImageQuery().speciesOnly(species).query(byYearLocation));
+						Integer period = cube.getPeriod(year, location, null, species);
 						toReturn.append(String.format(" %5.2f", 100D * (double) period / totalDaysForLoc));
 						Integer index = analysis.getAllImageSpecies().indexOf(species);
 						averageRate[index] = averageRate[index] + (double) period;
@@ -139,6 +139,8 @@ public class DetectionRateFormatter extends TextFormatter
 	public String printDetectionRateSummary()
 	{
 		StringBuilder toReturn = new StringBuilder();
+		AnalysisCube cube = analysis.getCube();
+		CameraTrapEffort effort = analysis.getCameraTrapEffort();
 
 		toReturn.append("DETECTION RATE SUMMARY FOR EACH SPECIES\n");
 		toReturn.append("  One record of each species per location per PERIOD\n");
@@ -164,39 +166,8 @@ public class DetectionRateFormatter extends TextFormatter
 		for (Location location : analysis.getAllImageLocations())
 		{
 			toReturn.append(String.format("%-28s", location.getName()));
-			List<ImageEntry> byLocation = new ImageQuery().locationOnly(location).query(analysis.getImagesSortedByDate());
 
-			Integer totalDaysLoc = 0;
-			for (Integer year : analysis.getAllImageYears())
-			{
-				List<ImageEntry> yearsPics = new ImageQuery().yearOnly(year).query(byLocation);
-
-				if (!yearsPics.isEmpty())
-				{
-					ImageEntry first = yearsPics.get(0);
-					ImageEntry last = yearsPics.get(yearsPics.size() - 1);
-					LocalDateTime firstCal = first.getDateTaken();
-					LocalDateTime lastCal = last.getDateTaken();
-					Integer firstDaysInMonth = 31;
-					Integer firstDay = firstCal.getDayOfMonth();
-					Integer lastDay = lastCal.getDayOfMonth();
-					Integer firstMonth = firstCal.getMonthValue();
-					Integer lastMonth = lastCal.getMonthValue();
-					if (firstMonth == lastMonth)
-						totalDaysLoc = totalDaysLoc + (lastDay - firstDay + 1);
-					else
-					{
-						totalDaysLoc = totalDaysLoc + (firstDaysInMonth - (firstDay - 1));
-						firstMonth++;
-						while (firstMonth < lastMonth)
-						{
-							totalDaysLoc = totalDaysLoc + 31;
-							firstMonth++;
-						}
-						totalDaysLoc = totalDaysLoc + lastDay;
-					}
-				}
-			}
+			Integer totalDaysLoc = effort.getDays(location);
 
 			totalDays = totalDays + totalDaysLoc;
 
@@ -205,7 +176,7 @@ public class DetectionRateFormatter extends TextFormatter
 			for (Species species : analysis.getAllImageSpecies())
 			{
 				for (Integer year : analysis.getAllImageYears())
-					periodTotal = periodTotal + analysis.periodForImageList(new ImageQuery().speciesOnly(species).yearOnly(year).query(byLocation));
+					periodTotal = periodTotal + cube.getPeriod(year, location, null, species);
 			}
 
 			totalPics = totalPics + periodTotal;
@@ -216,7 +187,7 @@ public class DetectionRateFormatter extends TextFormatter
 			{
 				Integer period = 0;
 				for (Integer year : analysis.getAllImageYears())
-					period = period + analysis.periodForImageList(new ImageQuery().speciesOnly(species).yearOnly(year).query(byLocation));
+					period = period + cube.getPeriod(year, location, null, species);
 				toReturn.append(String.format(" %5.2f", (double) period / totalDaysLoc));
 				Integer index = analysis.getAllImageSpecies().indexOf(species);
 				averageRate[index] = averageRate[index] + (double) period;
@@ -250,6 +221,8 @@ public class DetectionRateFormatter extends TextFormatter
 	public String printDetectionRateLocationMonth()
 	{
 		StringBuilder toReturn = new StringBuilder();
+		AnalysisCube cube = analysis.getCube();
+		CameraTrapEffort effort = analysis.getCameraTrapEffort();
 
 		toReturn.append("DETECTION RATE FOR EACH LOCATION BY MONTH\n");
 		toReturn.append("  One record of each species per location per PERIOD\n");
@@ -260,42 +233,17 @@ public class DetectionRateFormatter extends TextFormatter
 			toReturn.append("                            Total   Total       Pics          Months \n");
 			toReturn.append("Location                     days    pics       /prd       Jan     Feb     Mar     Apr     May     Jun     Jul     Aug     Sep     Oct     Nov     Dec\n");
 
-			List<ImageEntry> byYear = new ImageQuery().yearOnly(year).query(analysis.getImagesSortedByDate());
-
 			Integer totalPics = 0;
 			Integer totalDays = 0;
 			double[] averageRate = new double[12];
 
 			for (Location location : analysis.getAllImageLocations())
 			{
-				List<ImageEntry> byYearLocation = new ImageQuery().locationOnly(location).query(byYear);
+				AnalysisCube.Cell byYearLocation = cube.getCell(year, location, null, null);
 				if (!byYearLocation.isEmpty())
 				{
-					Integer totalDaysForLoc = 0;
 					toReturn.append(String.format("%-28s", location.getName()));
-
-					ImageEntry first = byYearLocation.get(0);
-					ImageEntry last = byYearLocation.get(byYearLocation.size() - 1);
-					LocalDateTime firstCal = first.getDateTaken();
-					LocalDateTime lastCal = last.getDateTaken();
-					Integer firstDaysInMonth = 31;
-					Integer firstDay = firstCal.getDayOfMonth();
-					Integer lastDay = lastCal.getDayOfMonth();
-					Integer firstMonth = firstCal.getMonthValue();
-					Integer lastMonth = lastCal.getMonthValue();
-					if (firstMonth == lastMonth)
-						totalDaysForLoc = totalDaysForLoc + lastDay - firstDay + 1;
-					else
-					{
-						totalDaysForLoc = totalDaysForLoc + firstDaysInMonth - (firstDay - 1);
-						firstMonth++;
-						while (firstMonth < lastMonth)
-						{
-							totalDaysForLoc = totalDaysForLoc + 31;
-							firstMonth++;
-						}
-						totalDaysForLoc = totalDaysForLoc + lastDay;
-					}
+					Integer totalDaysForLoc = effort.getDays(year, location);
 
 					totalDays = totalDays + totalDaysForLoc;
 
@@ -303,7 +251,7 @@ public class DetectionRateFormatter extends TextFormatter
 
 					for (Species species : analysis.getAllImageSpecies())
 					{
-						periodTotal = periodTotal + analysis.periodForImageList(new ImageQuery().speciesOnly(species).query(byYearLocation));
+						periodTotal = periodTotal + cube.getPeriod(year, location, null, species);
 					}
 
 					totalPics = totalPics + periodTotal;
@@ -315,7 +263,7 @@ public class DetectionRateFormatter extends TextFormatter
 						// Go through species here?
 						Integer period = 0;
 						for (Species species : analysis.getAllImageSpecies())
-							period = period + analysis.periodForImageList(new ImageQuery().monthOnly(i).speciesOnly(species).query(byYearLocation));
+							period = period + cube.getPeriod(year, location, i, species);
 						toReturn.append(String.format(" %5.2f  ", (double) period / totalDaysForLoc));
 
 						averageRate[i] = averageRate[i] + (double) period;
@@ -351,6 +299,8 @@ public class DetectionRateFormatter extends TextFormatter
 	public String printDetectionRateLocationMonthSummary()
 	{
 		StringBuilder toReturn = new StringBuilder();
+		AnalysisCube cube = analysis.getCube();
+		CameraTrapEffort effort = analysis.getCameraTrapEffort();
 
 		toReturn.append("DETECTION RATE SUMMARY FOR EACH LOCATION BY MONTH\n");
 		toReturn.append("  One record of each species per location per PERIOD\n");
@@ -370,39 +320,8 @@ public class DetectionRateFormatter extends TextFormatter
 		{
 			toReturn.append(String.format("%-28s", location.getName()));
 
-			List<ImageEntry> byLocation = new ImageQuery().locationOnly(location).query(analysis.getImagesSortedByDate());
-
-			Integer totalDaysLoc = 0;
-			for (Integer year : analysis.getAllImageYears())
-			{
-				List<ImageEntry> yearsPics = new ImageQuery().yearOnly(year).query(byLocation);
 
-				if (!yearsPics.isEmpty())
-				{
-					ImageEntry first = yearsPics.get(0);
-					ImageEntry last = yearsPics.get(yearsPics.size() - 1);
-					LocalDateTime firstCal = first.getDateTaken();
-					LocalDateTime lastCal = last.getDateTaken();
-					Integer firstDaysInMonth = 31;
-					Integer firstDay = firstCal.getDayOfMonth();
-					Integer lastDay = lastCal.getDayOfMonth();
-					Integer firstMonth = firstCal.getMonthValue();
-					Integer lastMonth = lastCal.getMonthValue();
-					if (firstMonth == lastMonth)
-						totalDaysLoc = totalDaysLoc + (lastDay - firstDay + 1);
-					else
-					{
-						totalDaysLoc = totalDaysLoc + (firstDaysInMonth - (firstDay - 1));
-						firstMonth++;
-						while (firstMonth < lastMonth)
-						{
-							totalDaysLoc = totalDaysLoc + 31;
-							firstMonth++;
-						}
-						totalDaysLoc = totalDaysLoc + lastDay;
-					}
-				}
-			}
+			Integer totalDaysLoc = effort.getDays(location);
 
 			totalDays = totalDays + totalDaysLoc;
 
@@ -411,7 +330,7 @@ public class DetectionRateFormatter extends TextFormatter
 			for (Species species : analysis.getAllImageSpecies())
 			{
 				for (Integer year : analysis.getAllImageYears())
-					periodTotal = periodTotal + analysis.periodForImageList(new ImageQuery().speciesOnly(species).yearOnly(year).query(byLocation));
+					periodTotal = periodTotal + cube.getPeriod(year, location, null, species);
 			}
 
 			totalPics = totalPics + periodTotal;
@@ -423,7 +342,7 @@ public class DetectionRateFormatter extends TextFormatter
 				Integer period = 0;
 				for (Species species : analysis.getAllImageSpecies())
 					for (Integer year : analysis.getAllImageYears())
-						period = period + analysis.periodForImageList(new ImageQuery().monthOnly(i).speciesOnly(species).yearOnly(year).query(byLocation));
+						period = period + cube.getPeriod(year, location, i, species);
 				toReturn.append(String.format(" %5.2f  ", (double) period / totalDaysLoc));
 
 				averageRate[i] = averageRate[i] + (double) period;
@@ -1,7 +1,7 @@
 package model.analysis.textFormatters;
 
+import model.analysis.AnalysisCube;
 import model.analysis.DataAnalyzer;
-import model.analysis.ImageQuery;
 import model.image.ImageEntry;
 import model.location.Location;
 import model.species.Species;
@@ -80,29 +80,18 @@ public class HeaderFormatter extends TextFormatter
 		toReturn = toReturn + "FOR ALL SPECIES AT ALL LOCATIONS\n";
 		toReturn = toReturn + "Number of pictures processed = " + images.size() + "\n";
 
+		AnalysisCube cube = analysis.getCube();
 		Integer totalActivity = 0;
 		for (Species species : analysis.getAllImageSpecies())
-		{
-			List<ImageEntry> withSpecies = new ImageQuery().speciesOnly(species).query(analysis.getImagesSortedByDate());
 			for (Location location : analysis.getAllImageLocations())
-			{
-				List<ImageEntry> withSpeciesLoc = new ImageQuery().locationOnly(location).query(withSpecies);
-				totalActivity = totalActivity + analysis.activityForImageList(withSpeciesLoc);
-			}
-		}
+				totalActivity = totalActivity + cube.getCell(null, location, null, species).getActivity();
 
 		toReturn = toReturn + "Number of pictures used in activity calculation = " + totalActivity + "\n";
 
 		Integer totalPeriod = 0;
 		for (Species species : analysis.getAllImageSpecies())
-		{
-			List<ImageEntry> withSpecies = new ImageQuery().speciesOnly(species).query(analysis.getImagesSortedByDate());
 			for (Location location : analysis.getAllImageLocations())
-			{
-				List<ImageEntry> withSpeciesLoc = new ImageQuery().locationOnly(location).query(withSpecies);
-				totalPeriod = totalPeriod + analysis.periodForImageList(withSpeciesLoc);
-			}
-		}
+				totalPeriod = totalPeriod + cube.getPeriod(null, location, null, species);
 
 		toReturn = toReturn + "Number of independent pictures used in analysis = " + totalPeriod + "\n";
 
@@ -1,6 +1,8 @@
 package model.analysis.textFormatters;
 
+import model.analysis.AnalysisCube;
 import model.analysis.DataAnalyzer;
+import model.analysis.EventIndex;
 import model.analysis.ImageQuery;
 import model.analysis.SanimalAnalysisUtils;
 import model.image.ImageEntry;
@@ -35,6 +37,8 @@ public class LocationStatFormatter extends TextFormatter
 	public String printPercentOfSpeciesInLoc()
 	{
 		StringBuilder toReturn = new StringBuilder();
+		AnalysisCube cube = analysis.getCube();
+		EventIndex eventIndex = analysis.getEventIndex();
 
 		toReturn.append("FOR EACH LOCATION TOTAL NUMBER AND PERCENT OF EACH SPECIES\n");
 		toReturn.append("  Use independent picture\n");
@@ -52,8 +56,8 @@ public class LocationStatFormatter extends TextFormatter
 			toReturn.append(String.format("%-26s", species.getName()));
 			for (Location location : analysis.getAllImageLocations())
 			{
-				Integer totalPeriod = analysis.periodForImageList(new ImageQuery().locationOnly(location).anyValidSpecies().query(analysis.getImagesSortedByDate()));
-				Integer period = analysis.periodForImageList(new ImageQuery().locationOnly(location).speciesOnly(species).query(analysis.getImagesSortedByDate()));
+				Integer totalPeriod = eventIndex.getPeriod(location, null);
+				Integer period = cube.getPeriod(null, location, null, species);
 				toReturn.append(String.format("%5d %7.2f                   ", period, (period / (double) totalPeriod) * 100));
 			}
 			toReturn.append("\n");
@@ -62,7 +66,7 @@ public class LocationStatFormatter extends TextFormatter
 		toReturn.append("Total pictures            ");
 
 		for (Location location : analysis.getAllImageLocations())
-			toReturn.append(String.format("%5d  100.00                   ", analysis.periodForImageList(new ImageQuery().locationOnly(location).query(analysis.getImagesSortedByDate()))));
+			toReturn.append(String.format("%5d  100.00                   ", cube.getPeriod(null, location, null, null)));
 
 		toReturn.append("\n\n");
 
@@ -83,6 +87,7 @@ public class LocationStatFormatter extends TextFormatter
 	public String printSpeciesByMonthByLocByYear()
 	{
 		StringBuilder toReturn = new StringBuilder();
+		AnalysisCube cube = analysis.getCube();
 
 		toReturn.append("FOR EACH LOCATION AND MONTH TOTAL NUMBER EACH SPECIES\n");
 		toReturn.append("  Use independent picture\n");
@@ -93,7 +98,7 @@ public class LocationStatFormatter extends TextFormatter
 
 			for (Location location : analysis.getAllImageLocations())
 			{
-				List<ImageEntry> atLocation = new ImageQuery().yearOnly(year).locationOnly(location).query(analysis.getImagesSortedByDate());
+				AnalysisCube.Cell atLocation = cube.getCell(year, location, null, null);
 				if (!atLocation.isEmpty())
 				{
 					toReturn.append(String.format("%-28s  Jan    Feb    Mar    Apr    May    Jun    Jul    Aug    Sep    Oct    Nov    Dec   Total\n", location.getName()));
@@ -101,14 +106,14 @@ public class LocationStatFormatter extends TextFormatter
 					for (Species species : analysis.getAllImageSpecies())
 					{
 						int totalPics = 0;
-						List<ImageEntry> atLocationWithSpecies = new ImageQuery().speciesOnly(species).query(atLocation);
+						AnalysisCube.Cell atLocationWithSpecies = cube.getCell(year, location, null, species);
 						if (!atLocationWithSpecies.isEmpty())
 						{
 							toReturn.append(String.format("%-28s", species.getName()));
 							// Months 0-12
 							for (int i = 0; i < 12; i++)
 							{
-								Integer period = analysis.periodForImageList(new ImageQuery().monthOnly(i).query(atLocationWithSpecies));
+								Integer period = cube.getPeriod(year, location, i, species);
 								toReturn.append(String.format("%5d  ", period));
 								totalPics = totalPics + period;
 							}
@@ -120,7 +125,7 @@ public class LocationStatFormatter extends TextFormatter
 					int totalPics = 0;
 					for (int i = 0; i < 12; i++)
 					{
-						Integer period = analysis.periodForImageList(new ImageQuery().monthOnly(i).query(atLocation));
+						Integer period = cube.getPeriod(year, location, i, null);
 						toReturn.append(String.format("%5d  ", period));
 						totalPics = totalPics + period;
 					}
@@ -128,8 +133,8 @@ public class LocationStatFormatter extends TextFormatter
 					toReturn.append("\n");
 					toReturn.append("Total effort                ");
 					int totalEffort = 0;
-					LocalDateTime firstCal = analysis.getFirstImageInList(atLocation).getDateTaken();
-					LocalDateTime lastCal = analysis.getLastImageInList(atLocation).getDateTaken();
+					LocalDateTime firstCal = atLocation.getFirstImage().getDateTaken();
+					LocalDateTime lastCal = atLocation.getLastImage().getDateTaken();
 					Integer firstMonth = firstCal.getMonthValue();
 					Integer lastMonth = lastCal.getMonthValue();
 					Integer firstDay = firstCal.getDayOfMonth();
@@ -154,15 +159,15 @@ public class LocationStatFormatter extends TextFormatter
 					toReturn.append(String.format("%5d  ", totalEffort));
 					toReturn.append("\n");
 					toReturn.append("Total/Total effort          ");
-					firstCal = analysis.getFirstImageInList(atLocation).getDateTaken();
-					lastCal = analysis.getLastImageInList(atLocation).getDateTaken();
+					firstCal = atLocation.getFirstImage().getDateTaken();
+					lastCal = atLocation.getLastImage().getDateTaken();
 					firstMonth = firstCal.getMonthValue();
 					lastMonth = lastCal.getMonthValue();
 					firstDay = firstCal.getDayOfMonth();
 					lastDay = lastCal.getDayOfMonth();
 					for (int i = 0; i < 12; i++)
 					{
-						Integer period = analysis.periodForImageList(new ImageQuery().monthOnly(i).query(atLocation));
+						Integer period = cube.getPeriod(year, location, i, null);
 						int effort = 0;
 						if (firstMonth == lastMonth && firstMonth == i)
 							effort = lastDay - firstDay + 1;
@@ -202,6 +207,7 @@ public class LocationStatFormatter extends TextFormatter
 	public String printSpeciesByMonthByLoc()
 	{
 		StringBuilder toReturn = new StringBuilder();
+		AnalysisCube cube = analysis.getCube();
 
 		toReturn.append("ALL LOCATIONS ALL SPECIES FOR EACH MONTH FOR ALL YEARS\n");
 		toReturn.append("  Use independent picture\n");
@@ -212,7 +218,7 @@ public class LocationStatFormatter extends TextFormatter
 
 		for (Location location : analysis.getAllImageLocations())
 		{
-			List<ImageEntry> atLocation = new ImageQuery().locationOnly(location).query(analysis.getImagesSortedByDate());
+			AnalysisCube.Cell atLocation = cube.getCell(null, location, null, null);
 
 			if (!atLocation.isEmpty())
 			{
@@ -221,14 +227,14 @@ public class LocationStatFormatter extends TextFormatter
 				for (Species species : analysis.getAllImageSpecies())
 				{
 					int totalPics = 0;
-					List<ImageEntry> atLocationWithSpecies = new ImageQuery().speciesOnly(species).query(atLocation);
+					AnalysisCube.Cell atLocationWithSpecies = cube.getCell(null, location, null, species);
 					if (!atLocationWithSpecies.isEmpty())
 					{
 						toReturn.append(String.format("%-28s", species.getName()));
 						// Months 0-12
 						for (int i = 0; i < 12; i++)
 						{
-							Integer period = analysis.periodForImageList(new ImageQuery().monthOnly(i).query(atLocationWithSpecies));
+							Integer period = cube.getPeriod(null, location, i, species);
 							toReturn.append(String.format("%5d  ", period));
 							totalPics = totalPics + period;
 						}
@@ -240,7 +246,7 @@ public class LocationStatFormatter extends TextFormatter
 				int totalPics = 0;
 				for (int i = 0; i < 12; i++)
 				{
-					Integer period = analysis.periodForImageList(new ImageQuery().monthOnly(i).query(atLocation));
+					Integer period = cube.getPeriod(null, location, i, null);
 					toReturn.append(String.format("%5d  ", period));
 					totalPics = totalPics + period;
 				}
@@ -248,8 +254,8 @@ public class LocationStatFormatter extends TextFormatter
 				toReturn.append("\n");
 				toReturn.append("Total effort                ");
 				int totalEffort = 0;
-				LocalDateTime firstCal = analysis.getFirstImageInList(atLocation).getDateTaken();
-				LocalDateTime lastCal = analysis.getLastImageInList(atLocation).getDateTaken();
+				LocalDateTime firstCal = atLocation.getFirstImage().getDateTaken();
+				LocalDateTime lastCal = atLocation.getLastImage().getDateTaken();
 				Integer firstMonth = firstCal.getMonthValue();
 				Integer lastMonth = lastCal.getMonthValue();
 				Integer firstDay = firstCal.getDayOfMonth();
@@ -274,15 +280,15 @@ public class LocationStatFormatter extends TextFormatter
 				toReturn.append(String.format("%5d  ", totalEffort));
 				toReturn.append("\n");
 				toReturn.append("Total/Total effort          ");
-				firstCal = analysis.getFirstImageInList(atLocation).getDateTaken();
-				lastCal = analysis.getLastImageInList(atLocation).getDateTaken();
+				firstCal = atLocation.getFirstImage().getDateTaken();
+				lastCal = atLocation.getLastImage().getDateTaken();
 				firstMonth = firstCal.getMonthValue();
 				lastMonth = lastCal.getMonthValue();
 				firstDay = firstCal.getDayOfMonth();
 				lastDay = lastCal.getDayOfMonth();
 				for (int i = 0; i < 12; i++)
 				{
-					Integer period = analysis.periodForImageList(new ImageQuery().monthOnly(i).query(atLocation));
+					Integer period = cube.getPeriod(null, location, i, null);
 					int effort = 0;
 					if (firstMonth == lastMonth && firstMonth == i)
 						effort = lastDay - firstDay + 1;
@@ -1,13 +1,20 @@
 package model.analysis.textFormatters;
 
 import model.analysis.DataAnalyzer;
-import model.analysis.ImageQuery;
 import model.analysis.LunarActivityEntry;
+import model.analysis.LunarEphemeris;
 import model.image.ImageEntry;
 import model.species.Species;
+import model.species.SpeciesEntry;
 
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
 
 /**
  * The text formatter for statistics about lunar activity
@@ -17,6 +24,9 @@ import java.util.List;
 public class LunarActivityFormatter extends TextFormatter
 {
 	private List<LunarActivityEntry> lunarActivities = null;
+	// The number of images of each species taken in each hour around a full and a new moon, indexed like getAllImageSpecies
+	private int[][] fullMoonHours = null;
+	private int[][] newMoonHours = null;
 
 	public LunarActivityFormatter(List<ImageEntry> images, DataAnalyzer analysis)
 	{
@@ -43,20 +53,21 @@ public class LunarActivityFormatter extends TextFormatter
 		toReturn.append("  New and full moon +/- 5 days activity patterns\n");
 		toReturn.append("  Difference (large is greater difference)\n");
 
-		List<ImageEntry> imagesFull = new ImageQuery().fullMoonOnly(analysis.getFullMoons()).query(images);
-		List<ImageEntry> imagesNew = new ImageQuery().newMoonOnly(analysis.getNewMoons()).query(images);
+		this.createLunarHourTable();
 
-		for (Species species : analysis.getAllImageSpecies())
+		List<Species> allImageSpecies = analysis.getAllImageSpecies();
+		for (int speciesIndex = 0; speciesIndex < allImageSpecies.size(); speciesIndex++)
 		{
+			Species species = allImageSpecies.get(speciesIndex);
 			toReturn.append(species.getName()).append("\n");
 			toReturn.append("                 Full moon activity    New moon activity\n");
 			toReturn.append("    Hour        Number    Frequency   Number    Frequency\n");
 
-			List<ImageEntry> imagesWithSpeciesFull = new ImageQuery().speciesOnly(species).query(imagesFull);
-			int totalImagesFull = imagesWithSpeciesFull.size();
+			int[] speciesFullHours = fullMoonHours[speciesIndex];
+			int totalImagesFull = IntStream.of(speciesFullHours).sum();
 
-			List<ImageEntry> imagesWithSpeciesNew = new ImageQuery().speciesOnly(species).query(imagesNew);
-			int totalImagesNew = imagesWithSpeciesNew.size();
+			int[] speciesNewHours = newMoonHours[speciesIndex];
+			int totalImagesNew = IntStream.of(speciesNewHours).sum();
 
 			int numImagesTotalFull = 0;
 			int numImagesTotalNew = 0;
@@ -68,15 +79,13 @@ public class LunarActivityFormatter extends TextFormatter
 			// 24 hrs
 			for (int i = 0; i < 24; i++)
 			{
-				List<ImageEntry> imagesWithSpeciesAtTimeFull = new ImageQuery().timeFrame(i, i + 1).query(imagesWithSpeciesFull);
-				int numImagesFull = imagesWithSpeciesAtTimeFull.size();
+				int numImagesFull = speciesFullHours[i];
 				double frequencyFull = 0;
 				if (totalImagesFull != 0)
 					frequencyFull = (double) numImagesFull / totalImagesFull;
 				numImagesTotalFull = numImagesTotalFull + numImagesFull;
 
-				List<ImageEntry> imagesWithSpeciesAtTimeNew = new ImageQuery().timeFrame(i, i + 1).query(imagesWithSpeciesNew);
-				int numImagesNew = imagesWithSpeciesAtTimeNew.size();
+				int numImagesNew = speciesNewHours[i];
 				double frequencyNew = 0;
 				if (totalImagesNew != 0)
 					frequencyNew = (double) numImagesNew / totalImagesNew;
@@ -140,34 +149,33 @@ public class LunarActivityFormatter extends TextFormatter
 	{
 		lunarActivities = new ArrayList<LunarActivityEntry>();
 
-		List<ImageEntry> imagesFull = new ImageQuery().fullMoonOnly(analysis.getFullMoons()).query(images);
-		List<ImageEntry> imagesNew = new ImageQuery().newMoonOnly(analysis.getNewMoons()).query(images);
+		this.createLunarHourTable();
 
-		for (Species species : analysis.getAllImageSpecies())
+		List<Species> allImageSpecies = analysis.getAllImageSpecies();
+		for (int speciesIndex = 0; speciesIndex < allImageSpecies.size(); speciesIndex++)
 		{
+			Species species = allImageSpecies.get(speciesIndex);
 			int numImagesTotalFull = 0;
 			int numImagesTotalNew = 0;
 
 			double totalDifference = 0;
 
-			List<ImageEntry> imagesWithSpeciesFull = new ImageQuery().speciesOnly(species).query(imagesFull);
-			int totalImagesFull = imagesWithSpeciesFull.size();
+			int[] speciesFullHours = fullMoonHours[speciesIndex];
+			int totalImagesFull = IntStream.of(speciesFullHours).sum();
 
-			List<ImageEntry> imagesWithSpeciesNew = new ImageQuery().speciesOnly(species).query(imagesNew);
-			int totalImagesNew = imagesWithSpeciesNew.size();
+			int[] speciesNewHours = newMoonHours[speciesIndex];
+			int totalImagesNew = IntStream.of(speciesNewHours).sum();
 
 			// 24 hrs
 			for (int i = 0; i < 24; i++)
 			{
-				List<ImageEntry> imagesWithSpeciesAtTimeFull = new ImageQuery().timeFrame(i, i + 1).query(imagesWithSpeciesFull);
-				int numImagesFull = imagesWithSpeciesAtTimeFull.size();
+				int numImagesFull = speciesFullHours[i];
 				double frequencyFull = 0;
 				if (totalImagesFull != 0)
 					frequencyFull = (double) numImagesFull / totalImagesFull;
 				numImagesTotalFull = numImagesTotalFull + numImagesFull;
 
-				List<ImageEntry> imagesWithSpeciesAtTimeNew = new ImageQuery().timeFrame(i, i + 1).query(imagesWithSpeciesNew);
-				int numImagesNew = imagesWithSpeciesAtTimeNew.size();
+				int numImagesNew = speciesNewHours[i];
 				double frequencyNew = 0;
 				if (totalImagesNew != 0)
 					frequencyNew = (double) numImagesNew / totalImagesNew;
@@ -183,4 +191,52 @@ public class LunarActivityFormatter extends TextFormatter
 			lunarActivities.add(new LunarActivityEntry(species, totalDifference, numImagesTotalFull + numImagesTotalNew));
 		}
 	}
+
+	/**
+	 * Counts the images of each species taken in each hour around a full and a new moon in a single pass over the images, instead of filtering the
+	 * image list once per species and hour. Both sections of this formatter may be generated at the same time, so the table is only built once
+	 */
+	private synchronized void createLunarHourTable()
+	{
+		if (fullMoonHours != null)
+			return;
+
+		List<Species> allImageSpecies = analysis.getAllImageSpecies();
+		Map<Species, Integer> speciesIndexes = new IdentityHashMap<>();
+		for (int speciesIndex = 0; speciesIndex < allImageSpecies.size(); speciesIndex++)
+			speciesIndexes.put(allImageSpecies.get(speciesIndex), speciesIndex);
+
+		int[][] fullMoonHours = new int[allImageSpecies.size()][24];
+		int[][] newMoonHours = new int[allImageSpecies.size()][24];
+
+		LunarEphemeris lunarEphemeris = analysis.getLunarEphemeris();
+		boolean[] speciesCounted = new boolean[allImageSpecies.size()];
+		for (ImageEntry image : images)
+		{
+			LocalDateTime dateTaken = image.getDateTaken();
+			long imageTimeMillis = dateTaken.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+			boolean nearFullMoon = lunarEphemeris.isNearFullMoon(imageTimeMillis);
+			boolean nearNewMoon = lunarEphemeris.isNearNewMoon(imageTimeMillis);
+			if (!nearFullMoon && !nearNewMoon)
+				continue;
+
+			// Each species counts once per image even if it was tagged more than once
+			Arrays.fill(speciesCounted, false);
+			for (SpeciesEntry speciesEntry : image.getSpeciesPresent())
+			{
+				int speciesIndex = speciesIndexes.get(speciesEntry.getSpecies());
+				if (!speciesCounted[speciesIndex])
+				{
+					speciesCounted[speciesIndex] = true;
+					if (nearFullMoon)
+						fullMoonHours[speciesIndex][dateTaken.getHour()]++;
+					if (nearNewMoon)
+						newMoonHours[speciesIndex][dateTaken.getHour()]++;
+				}
+			}
+		}
+
+		this.newMoonHours = newMoonHours;
+		this.fullMoonHours = fullMoonHours;
+	}
 }
@@ -1,7 +1,7 @@
 package model.analysis.textFormatters;
 
 import model.analysis.DataAnalyzer;
-import model.analysis.ImageQuery;
+import model.analysis.PresenceMatrix;
 import model.image.ImageEntry;
 import model.location.Location;
 import model.species.Species;
@@ -47,24 +47,14 @@ public class OccouranceFormatter extends TextFormatter
 
 		toReturn.append("\n");
 
+		PresenceMatrix presenceMatrix = analysis.getPresenceMatrix();
 		for (Species species : analysis.getAllImageSpecies())
 		{
 			toReturn.append(String.format("%-28s", species.getName()));
-			List<ImageEntry> withSpecies = new ImageQuery().speciesOnly(species).query(images);
 
 			for (Species other : analysis.getAllImageSpecies())
 			{
-				List<ImageEntry> withOtherSpecies = new ImageQuery().speciesOnly(other).query(images);
-
-				Integer numLocations = 0;
-
-				for (Location location : analysis.getAllImageLocations())
-				{
-					List<ImageEntry> withSpeciesLoc = new ImageQuery().locationOnly(location).query(withSpecies);
-					List<ImageEntry> withOtherSpeciesLoc = new ImageQuery().locationOnly(location).query(withOtherSpecies);
-					if (!withSpeciesLoc.isEmpty() && !withOtherSpeciesLoc.isEmpty())
-						numLocations = numLocations + 1;
-				}
+				Integer numLocations = presenceMatrix.getCoOccurrenceCount(species, other);
 
 				toReturn.append(String.format("%3d ", numLocations));
 			}
@@ -107,17 +97,13 @@ public class OccouranceFormatter extends TextFormatter
 
 		toReturn.append("\n");
 
+		PresenceMatrix presenceMatrix = analysis.getPresenceMatrix();
 		for (Species species : analysis.getAllImageSpecies())
 		{
 			toReturn.append(String.format("%-28s", species.getName()));
 
-			List<ImageEntry> withSpecies = new ImageQuery().speciesOnly(species).query(images);
-
 			for (Location location : alphabetical)
-			{
-				List<ImageEntry> withSpeciesAtLoc = new ImageQuery().locationOnly(location).query(withSpecies);
-				toReturn.append(String.format("%2d ", (withSpeciesAtLoc.size() == 0 ? 0 : 1)));
-			}
+				toReturn.append(String.format("%2d ", (presenceMatrix.isPresent(species, location) ? 1 : 0)));
 
 			toReturn.append("\n");
 		}
@@ -157,17 +143,13 @@ public class OccouranceFormatter extends TextFormatter
 
 		toReturn.append("\n");
 
+		PresenceMatrix presenceMatrix = analysis.getPresenceMatrix();
 		for (Species species : analysis.getAllImageSpecies())
 		{
 			toReturn.append(String.format("%-28s", species.getName()));
 
-			List<ImageEntry> withSpecies = new ImageQuery().speciesOnly(species).query(images);
-
 			for (Location location : elevationLocs)
-			{
-				List<ImageEntry> withSpeciesAtLoc = new ImageQuery().locationOnly(location).query(withSpecies);
-				toReturn.append(String.format("%2d ", (withSpeciesAtLoc.size() == 0 ? 0 : 1)));
-			}
+				toReturn.append(String.format("%2d ", (presenceMatrix.isPresent(species, location) ? 1 : 0)));
 
 			toReturn.append("\n");
 		}
@@ -192,12 +174,9 @@ public class OccouranceFormatter extends TextFormatter
 			Double minElevation = Double.MAX_VALUE;
 			Double maxElevation = 0D;
 
-			List<ImageEntry> bySpecies = new ImageQuery().speciesOnly(species).query(images);
-
 			for (Location location : analysis.getAllImageLocations())
 			{
-				List<ImageEntry> bySpeciesLocation = new ImageQuery().locationOnly(location).query(bySpecies);
-				if (!bySpeciesLocation.isEmpty())
+				if (presenceMatrix.isPresent(species, location))
 				{
 					Double elevation = location.getElevation();
 					if (elevation > maxElevation)
@@ -238,19 +217,12 @@ public class OccouranceFormatter extends TextFormatter
 
 		Integer totalLocations = analysis.getAllImageLocations().size();
 
+		PresenceMatrix presenceMatrix = analysis.getPresenceMatrix();
 		List<Pair<Double, String>> pairsToPrint = new ArrayList<Pair<Double, String>>(analysis.getAllImageSpecies().size());
 
 		for (Species species : analysis.getAllImageSpecies())
 		{
-			List<ImageEntry> withSpecies = new ImageQuery().speciesOnly(species).query(images);
-			Integer locationsWithSpecies = 0;
-
-			for (Location location : analysis.getAllImageLocations())
-			{
-				List<ImageEntry> withSpeciesLoc = new ImageQuery().locationOnly(location).query(withSpecies);
-				if (!withSpeciesLoc.isEmpty())
-					locationsWithSpecies = locationsWithSpecies + 1;
-			}
+			Integer locationsWithSpecies = presenceMatrix.getLocationCount(species);
 
 			pairsToPrint.add(Pair.of((double) locationsWithSpecies / totalLocations, String.format("%-28s           %5.3f                  %3d\n", species.getName(), (double) locationsWithSpecies / totalLocations, locationsWithSpecies)));
 		}
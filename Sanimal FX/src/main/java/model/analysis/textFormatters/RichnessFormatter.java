@@ -1,7 +1,8 @@
 package model.analysis.textFormatters;
 
+import model.analysis.AnalysisCube;
 import model.analysis.DataAnalyzer;
-import model.analysis.ImageQuery;
+import model.analysis.PresenceMatrix;
 import model.image.ImageEntry;
 import model.location.Location;
 import model.species.Species;
@@ -33,6 +34,7 @@ public class RichnessFormatter extends TextFormatter
 	public String printLocationSpeciesRichness()
 	{
 		StringBuilder toReturn = new StringBuilder();
+		AnalysisCube cube = analysis.getCube();
 
 		toReturn.append("LOCATIONS BY SPECIES AND LOCATION AND SPECIES RICHNESS\n");
 		toReturn.append("  One record of each species per location per PERIOD\n");
@@ -44,13 +46,11 @@ public class RichnessFormatter extends TextFormatter
 		for (Location location : analysis.getAllImageLocations())
 		{
 			toReturn.append(String.format("%-28s       ", location.getName()));
-			List<ImageEntry> imagesAtLoc = new ImageQuery().locationOnly(location).query(analysis.getImagesSortedByDate());
 
 			Integer horizontalRichness = 0;
 			for (Species species : analysis.getAllImageSpecies())
 			{
-				List<ImageEntry> imagesAtLocWithSpecies = new ImageQuery().speciesOnly(species).query(imagesAtLoc);
-				Integer period = analysis.periodForImageList(imagesAtLocWithSpecies);
+				Integer period = cube.getPeriod(null, location, null, species);
 				horizontalRichness = horizontalRichness + (period == 0 ? 0 : 1);
 				toReturn.append(String.format("%5d  ", period));
 			}
@@ -60,17 +60,9 @@ public class RichnessFormatter extends TextFormatter
 		}
 		toReturn.append("Richness                           ");
 
+		PresenceMatrix presenceMatrix = analysis.getPresenceMatrix();
 		for (Species species : analysis.getAllImageSpecies())
-		{
-			Integer richness = 0;
-			List<ImageEntry> imagesWithSpecies = new ImageQuery().speciesOnly(species).query(images);
-			for (Location location : analysis.getAllImageLocations())
-			{
-				List<ImageEntry> imagesWithSpeciesAtLoc = new ImageQuery().locationOnly(location).query(imagesWithSpecies);
-				richness = richness + (imagesWithSpeciesAtLoc.size() == 0 ? 0 : 1);
-			}
-			toReturn.append(String.format("%5d  ", richness));
-		}
+			toReturn.append(String.format("%5d  ", presenceMatrix.getLocationCount(species)));
 		toReturn.append("\n");
 
 		toReturn.append("\n");
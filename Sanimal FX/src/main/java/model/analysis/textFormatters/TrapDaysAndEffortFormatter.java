@@ -1,5 +1,6 @@
 package model.analysis.textFormatters;
 
+import model.analysis.CameraTrapEffort;
 import model.analysis.DataAnalyzer;
 import model.analysis.ImageQuery;
 import model.analysis.SanimalAnalysisUtils;
@@ -80,10 +81,10 @@ public class TrapDaysAndEffortFormatter extends TextFormatter
 
 		toReturn.append("CAMERA TRAP EFFORT\n");
 
+		CameraTrapEffort effort = analysis.getCameraTrapEffort();
 		for (Integer year : analysis.getAllImageYears())
 		{
-			List<ImageEntry> withYear = new ImageQuery().yearOnly(year).query(images);
-			List<Location> locations = analysis.locationsForImageList(withYear);
+			List<Location> locations = effort.getLocations(year);
 			if (!locations.isEmpty())
 			{
 				toReturn.append("Year ").append(year).append("\n");
@@ -94,29 +95,12 @@ public class TrapDaysAndEffortFormatter extends TextFormatter
 
 				for (Location location : locations)
 				{
-					List<ImageEntry> withYearLocation = new ImageQuery().locationOnly(location).query(withYear);
-					LocalDateTime firstCal = analysis.getFirstImageInList(withYearLocation).getDateTaken();
-					LocalDateTime lastCal = analysis.getLastImageInList(withYearLocation).getDateTaken();
-					Integer firstMonth = firstCal.getMonthValue();
-					Integer lastMonth = lastCal.getMonthValue();
-					Integer firstDay = firstCal.getDayOfMonth();
-					Integer lastDay = lastCal.getDayOfMonth();
+					int[] monthValues = effort.getEffortTableDaysByMonth(year, location);
 					toReturn.append(String.format("%-28s", location.getName()));
 					int monthTotal = 0;
 					for (int i = 0; i < 12; i++)
 					{
-						int monthValue = 0;
-						if (firstMonth == lastMonth && firstMonth == i)
-							monthValue = lastDay - firstDay + 1;
-						else if (firstMonth == i)
-							monthValue = 31 - firstDay + 1;
-						else if (lastMonth == i)
-							monthValue = lastDay;
-						else if (firstMonth < i && lastMonth > i)
-						{
-							monthValue = 31;
-						}
-
+						int monthValue = monthValues[i];
 						toReturn.append(String.format(" %2d    ", monthValue));
 						monthTotal = monthTotal + monthValue;
 						monthlyTotals[i] = monthlyTotals[i] + monthValue;
@@ -166,31 +150,15 @@ public class TrapDaysAndEffortFormatter extends TextFormatter
 
 		int[] monthlyTotals = new int[12];
 
+		CameraTrapEffort effort = analysis.getCameraTrapEffort();
 		for (Location location : analysis.getAllImageLocations())
 		{
-			List<ImageEntry> withLocation = new ImageQuery().locationOnly(location).query(images);
-			LocalDateTime firstCal = analysis.getFirstImageInList(withLocation).getDateTaken();
-			LocalDateTime lastCal = analysis.getLastImageInList(withLocation).getDateTaken();
-			Integer firstMonth = firstCal.getMonthValue();
-			Integer lastMonth = lastCal.getMonthValue();
-			Integer firstDay = firstCal.getDayOfMonth();
-			Integer lastDay = lastCal.getDayOfMonth();
+			int[] monthValues = effort.getEffortTableDaysByMonth(location);
 			toReturn.append(String.format("%-28s", location.getName()));
 			int monthTotal = 0;
 			for (int i = 0; i < 12; i++)
 			{
-				int monthValue = 0;
-				if (firstMonth == lastMonth && firstMonth == i)
-					monthValue = lastDay - firstDay + 1;
-				else if (firstMonth == i)
-					monthValue = 31 - firstDay + 1;
-				else if (lastMonth == i)
-					monthValue = lastDay;
-				else if (firstMonth < i && lastMonth > i)
-				{
-					monthValue = 31;
-				}
-
+				int monthValue = monthValues[i];
 				toReturn.append(String.format(" %2d    ", monthValue));
 				monthTotal = monthTotal + monthValue;
 				monthlyTotals[i] = monthlyTotals[i] + monthValue;
@@ -39,6 +39,12 @@ public class SanimalMetadataFields
 	public static final String A_LOCATION_LONGITUDE = "locationLongitude";
 	// The meta key for location elevation
 	public static final String A_LOCATION_ELEVATION = "locationElevation";
+	// The query key for locations inside a (minLat,minLng,maxLat,maxLng) box
+	public static final String A_LOCATION_WITHIN_BOX = "locationWithinBox";
+	// The query key for locations within a (lat,lng,radiusKm) circle
+	public static final String A_LOCATION_WITHIN_RADIUS = "locationWithinRadius";
+	// The meta key for the deployment of an image
+	public static final String A_DEPLOYMENT_ID = "deploymentID";
 
 	// The meta key for species scientific name
 	public static final String A_SPECIES_SCIENTIFIC_NAME = "speciesScientificName";
@@ -1,18 +1,27 @@
 package model.image;
 
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.security.InvalidParameterException;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import com.opencsv.CSVReader;
 import com.opencsv.CSVWriter;
 import com.opencsv.exceptions.CsvValidationException;
 
+import model.SanimalData;
+
 /**
  * Representation of Camtrap DP format. See https://tdwg.github.io/camtrap-dp/
  * 
@@ -30,6 +39,16 @@ public final class Camtrap
     // The name of the observations file
     public final static String CAMTRAP_OBSERVATIONS_FILE = "observations.csv";
 
+    // The suffix added to the name of a gzip compressed file
+    public final static String COMPRESSED_FILE_SUFFIX = ".gz";
+
+    // The name of the binary columnar copy of the CSV files
+    public final static String CAMTRAP_COLUMNAR_FILE = "camtrap.columns";
+
+    // The start and end of the names of edit logs, the middle is the UTC time the log was written
+    public final static String CAMTRAP_EDIT_LOG_PREFIX = "camtrap-edits-";
+    public final static String CAMTRAP_EDIT_LOG_SUFFIX = ".csv";
+
     // The collection this data belongs to
     private String collectionID;
 
@@ -59,19 +78,32 @@ public final class Camtrap
         List<Media> media = null;
         List<Observations> observations = null;
 
-        // Check for files existing
+        // Load the columnar copy if it's at least as new as the CSV files, it's much faster to read
+        File columnarFile = new File(folderPath, CAMTRAP_COLUMNAR_FILE);
+        if (columnarFile.exists() && !columnarFile.isDirectory() && Camtrap.isColumnarCurrent(columnarFile, folderPath))
+        {
+            try (InputStream inStream = new FileInputStream(columnarFile))
+            {
+                returnValue = new Camtrap();
+                returnValue.setColumnar(inStream);
+                return returnValue;
+            }
+            catch (IOException e)
+            {
+                // Fall back to the CSV files
+                SanimalData.getInstance().getErrorDisplay().printError("Unable to read Camtrap columnar file '" + columnarFile.getAbsolutePath() + "', reading CSV files instead: " + e.getMessage());
+            }
+        }
+
+        // Check for files existing, compressed or not
         String depPath = String.join("/", folderPath, CAMTRAP_DEPLOYMENTS_FILE);
-        File inFile = new File(depPath);
+        File inFile = Camtrap.findFile(depPath);
         if (inFile.exists() && !inFile.isDirectory())
         {
             // Read in the deployments file
-            CSVReader reader = new CSVReader(new FileReader(inFile));
-            String[] nextLine;
-
-            deployments = new ArrayList<Deployments>(Math.toIntExact(reader.getLinesRead()));
-            while ((nextLine = reader.readNext()) != null)
+            try (InputStream inStream = Camtrap.openStream(inFile.getName(), new FileInputStream(inFile)))
             {
-                deployments.add(Deployments.instance(nextLine));
+                deployments = CamtrapCsvReader.readDeployments(inStream);
             }
         }
         else 
@@ -80,17 +112,13 @@ public final class Camtrap
         }
 
         String mediaPath = String.join("/", folderPath, CAMTRAP_MEDIA_FILE);
-        inFile = new File(mediaPath);
+        inFile = Camtrap.findFile(mediaPath);
         if (inFile.exists() && !inFile.isDirectory())
         {
             // Read in the media file
-            CSVReader reader = new CSVReader(new FileReader(inFile));
-            String[] nextLine;
-
-            media = new ArrayList<Media>(Math.toIntExact(reader.getLinesRead()));
-            while ((nextLine = reader.readNext()) != null)
+            try (InputStream inStream = Camtrap.openStream(inFile.getName(), new FileInputStream(inFile)))
             {
-                media.add(Media.instance(nextLine));
+                media = CamtrapCsvReader.readMedia(inStream);
             }
         }
         else 
@@ -99,17 +127,13 @@ public final class Camtrap
         }
 
         String obsPath = String.join("/", folderPath, CAMTRAP_OBSERVATIONS_FILE);
-        inFile = new File(obsPath);
+        inFile = Camtrap.findFile(obsPath);
         if (inFile.exists() && !inFile.isDirectory())
         {
             // Read in the observations file
-            CSVReader reader = new CSVReader(new FileReader(inFile));
-            String[] nextLine;
-
-            observations = new ArrayList<Observations>(Math.toIntExact(reader.getLinesRead()));
-            while ((nextLine = reader.readNext()) != null)
+            try (InputStream inStream = Camtrap.openStream(inFile.getName(), new FileInputStream(inFile)))
             {
-                observations.add(Observations.instance(nextLine));
+                observations = CamtrapCsvReader.readObservations(inStream);
             }
         }
         else 
@@ -146,16 +170,19 @@ public final class Camtrap
      */
     public final void setDeployments(String csvData) throws IOException, CsvValidationException
     {
-        CSVReader reader = new CSVReader(new StringReader(csvData));
-        String[] nextLine;
-
-        List<Deployments> deployments = new ArrayList<Deployments>(Math.toIntExact(reader.getLinesRead()));
-        while ((nextLine = reader.readNext()) != null)
-        {
-            deployments.add(Deployments.instance(nextLine));
-        }
+        this.deployments = CamtrapCsvReader.readDeployments(new CamtrapCsvReader(new StringReader(csvData)));
+    }
 
-        this.deployments = deployments;
+    /**
+     * Populates the Deployments from the CSV data in the stream. The stream is read to its end but not closed
+     * 
+     * @param csvStream the stream of CSV data to load
+     * @throws IOException if a problem occurs while reading the stream
+     * @throws CsvValidationException if there's a problem with the CSV data
+     */
+    public final void setDeployments(InputStream csvStream) throws IOException, CsvValidationException
+    {
+        this.deployments = CamtrapCsvReader.readDeployments(csvStream);
     }
 
     /**
@@ -167,16 +194,19 @@ public final class Camtrap
      */
     public final void setMedia(String csvData) throws IOException, CsvValidationException
     {
-        CSVReader reader = new CSVReader(new StringReader(csvData));
-        String[] nextLine;
-
-        List<Media> media = new ArrayList<Media>(Math.toIntExact(reader.getLinesRead()));
-        while ((nextLine = reader.readNext()) != null)
-        {
-            media.add(Media.instance(nextLine));
-        }
+        this.media = CamtrapCsvReader.readMedia(new CamtrapCsvReader(new StringReader(csvData)));
+    }
 
-        this.media = media;
+    /**
+     * Populates the Media from the CSV data in the stream. The stream is read to its end but not closed
+     * 
+     * @param csvStream the stream of CSV data to load
+     * @throws IOException if a problem occurs while reading the stream
+     * @throws CsvValidationException if there's a problem with the CSV data
+     */
+    public final void setMedia(InputStream csvStream) throws IOException, CsvValidationException
+    {
+        this.media = CamtrapCsvReader.readMedia(csvStream);
     }
 
     /**
@@ -188,55 +218,106 @@ public final class Camtrap
      */
     public final void setObservations(String csvData) throws IOException, CsvValidationException
     {
-        CSVReader reader = new CSVReader(new StringReader(csvData));
-        String[] nextLine;
+        this.observations = CamtrapCsvReader.readObservations(new CamtrapCsvReader(new StringReader(csvData)));
+    }
+
+    /**
+     * Populates the Observations from the CSV data in the stream. The stream is read to its end but not closed
+     * 
+     * @param csvStream the stream of CSV data to load
+     * @throws IOException if a problem occurs while reading the stream
+     * @throws CsvValidationException if there's a problem with the CSV data
+     */
+    public final void setObservations(InputStream csvStream) throws IOException, CsvValidationException
+    {
+        this.observations = CamtrapCsvReader.readObservations(csvStream);
+    }
 
-        List<Observations> observations = new ArrayList<Observations>(Math.toIntExact(reader.getLinesRead()));
-        while ((nextLine = reader.readNext()) != null)
+    /**
+     * Populates the Deployments, Media, and Observations from the columnar data in the stream. The stream is read to its end but not closed
+     * 
+     * @param columnarStream the stream of columnar data to load
+     * @throws IOException if a problem occurs while reading the stream, or the data isn't in a known columnar format
+     */
+    public final void setColumnar(InputStream columnarStream) throws IOException
+    {
+        CamtrapColumnarFile.read(this, columnarStream);
+    }
+
+    /**
+     * Writes the columnar copy of the Camtrap data to the specified folder, overwriting any existing copy. It should be
+     * written after the CSV files since readers only use it if it's at least as new as they are
+     * 
+     * @param savePath path to the folder to save data to
+     * @return the path of the file written
+     * @throws IOException if a problem occurs while accessing the file
+     */
+    public final String saveColumnarTo(String savePath) throws IOException
+    {
+        String filePath = String.join("/", savePath, CAMTRAP_COLUMNAR_FILE);
+        try (OutputStream outStream = new FileOutputStream(filePath))
         {
-            observations.add(Observations.instance(nextLine));
+            CamtrapColumnarFile.write(this, outStream);
         }
-
-        this.observations = observations;
+        return filePath;
     }
 
     /**
      * Writes Camtrap data to the specified folder, overwriting any existing Camtrap files
      * 
-     * @param saveFolder path to the folder to save data to
+     * @param savePath path to the folder to save data to
      * @throws IOException if a problem occurs while accessing a file
      */
     public final void saveTo(String savePath) throws IOException
     {
-        // Save deployment data
-        String outFile = String.join("/", savePath, CAMTRAP_DEPLOYMENTS_FILE);
-        CSVWriter outCsv = new CSVWriter(new FileWriter(outFile));
+        this.saveTo(savePath, false);
+    }
 
-        for (Deployments oneDep: deployments)
+    /**
+     * Writes Camtrap data to the specified folder, overwriting any existing Camtrap files. Compressed files are
+     * gzipped as they're written and have the compressed file suffix added to their names. Files of the other
+     * kind left in the folder are removed, so the folder never holds a stale copy next to the new one
+     * 
+     * @param savePath path to the folder to save data to
+     * @param compressed true to write gzip compressed files, false to write plain CSV files
+     * @throws IOException if a problem occurs while accessing a file
+     */
+    public final void saveTo(String savePath, boolean compressed) throws IOException
+    {
+        String[] filePaths = this.getFilePaths(savePath, compressed);
+
+        // Save deployment data
+        try (CSVWriter outCsv = new CSVWriter(Camtrap.openWriter(filePaths[0], compressed)))
         {
-            outCsv.writeNext(oneDep.toArray());
+            for (Deployments oneDep: deployments)
+            {
+                outCsv.writeNext(oneDep.toArray());
+            }
         }
-        outCsv.close();
 
         // Save media data
-        outFile = String.join("/", savePath, CAMTRAP_MEDIA_FILE);
-        outCsv = new CSVWriter(new FileWriter(outFile));
-
-        for (Media oneMed: media)
+        try (CSVWriter outCsv = new CSVWriter(Camtrap.openWriter(filePaths[1], compressed)))
         {
-            outCsv.writeNext(oneMed.toArray());
+            for (Media oneMed: media)
+            {
+                outCsv.writeNext(oneMed.toArray());
+            }
         }
-        outCsv.close();
 
         // Save observation data
-        outFile = String.join("/", savePath, CAMTRAP_OBSERVATIONS_FILE);
-        outCsv = new CSVWriter(new FileWriter(outFile));
+        try (CSVWriter outCsv = new CSVWriter(Camtrap.openWriter(filePaths[2], compressed)))
+        {
+            for (Observations oneObs: observations)
+            {
+                outCsv.writeNext(oneObs.toArray());
+            }
+        }
 
-        for (Observations oneObs: observations)
+        // Readers pick the compressed files over the plain ones, so whichever kind wasn't written is out of date
+        for (String stalePath: this.getFilePaths(savePath, !compressed))
         {
-            outCsv.writeNext(oneObs.toArray());
+            new File(stalePath).delete();
         }
-        outCsv.close();
     }
 
     /**
@@ -246,16 +327,103 @@ public final class Camtrap
      * @return an array of the files that would be generated. No check is made if the file paths returned actually exist
      */
     public String[] getFilePaths(String savePath)
+    {
+        return this.getFilePaths(savePath, false);
+    }
+
+    /**
+     * Returns the paths to the Camtrap files using the given starting path
+     * 
+     * @param savePath path to the folder to use as the base for the file names
+     * @param compressed true for the names of compressed files, false for plain CSV files
+     * @return an array of the files that would be generated. No check is made if the file paths returned actually exist
+     */
+    public String[] getFilePaths(String savePath, boolean compressed)
     {
         String[] filePaths = new String[3];
+        String suffix = compressed ? COMPRESSED_FILE_SUFFIX : "";
 
-        filePaths[0] = String.join("/", savePath, CAMTRAP_DEPLOYMENTS_FILE);
-        filePaths[1] = String.join("/", savePath, CAMTRAP_MEDIA_FILE);
-        filePaths[2] = String.join("/", savePath, CAMTRAP_OBSERVATIONS_FILE);
+        filePaths[0] = String.join("/", savePath, CAMTRAP_DEPLOYMENTS_FILE) + suffix;
+        filePaths[1] = String.join("/", savePath, CAMTRAP_MEDIA_FILE) + suffix;
+        filePaths[2] = String.join("/", savePath, CAMTRAP_OBSERVATIONS_FILE) + suffix;
 
         return filePaths;
     }
 
+    /**
+     * Wraps a stream of a Camtrap file so that it's decompressed as it's read if the file name has the compressed file suffix
+     * 
+     * @param fileName the name of the file being read
+     * @param inStream the stream of the file's contents
+     * @return the stream of the file's CSV data
+     * @throws IOException if the compressed data can't be read
+     */
+    public static InputStream openStream(String fileName, InputStream inStream) throws IOException
+    {
+        if (fileName.endsWith(COMPRESSED_FILE_SUFFIX))
+        {
+            return new GZIPInputStream(inStream, 64 * 1024);
+        }
+        return inStream;
+    }
+
+    /**
+     * Returns the compressed variant of a Camtrap file if it exists, otherwise the plain CSV file
+     * 
+     * @param filePath the path of the plain CSV file
+     * @return the file to read
+     */
+    private static File findFile(String filePath)
+    {
+        File compressedFile = new File(filePath + COMPRESSED_FILE_SUFFIX);
+        if (compressedFile.exists() && !compressedFile.isDirectory())
+        {
+            return compressedFile;
+        }
+        return new File(filePath);
+    }
+
+    /**
+     * Returns true if the columnar file is at least as new as all the CSV files in its folder
+     * 
+     * @param columnarFile the columnar file
+     * @param folderPath the path of the folder with the CSV files
+     * @return true if the columnar file can be read instead of the CSV files
+     */
+    private static boolean isColumnarCurrent(File columnarFile, String folderPath)
+    {
+        long columnarModified = columnarFile.lastModified();
+        for (String fileName: new String[] { CAMTRAP_DEPLOYMENTS_FILE, CAMTRAP_MEDIA_FILE, CAMTRAP_OBSERVATIONS_FILE })
+        {
+            for (File csvFile: new File[] { new File(folderPath, fileName), new File(folderPath, fileName + COMPRESSED_FILE_SUFFIX) })
+            {
+                if (csvFile.exists() && (csvFile.lastModified() > columnarModified))
+                {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Opens a UTF-8 writer of a Camtrap file
+     * 
+     * @param filePath the path of the file to write
+     * @param compressed true to gzip the data as it's written
+     * @return the writer of the file
+     * @throws IOException if the file can't be opened
+     */
+    private static Writer openWriter(String filePath, boolean compressed) throws IOException
+    {
+        OutputStream outStream = new FileOutputStream(filePath);
+        if (compressed)
+        {
+            outStream = new GZIPOutputStream(outStream, 64 * 1024);
+        }
+        return new BufferedWriter(new OutputStreamWriter(outStream, StandardCharsets.UTF_8));
+    }
+
     /**
      * Returns whether or not this instance has been populated
      * 
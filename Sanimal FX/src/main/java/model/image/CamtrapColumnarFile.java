@@ -0,0 +1,723 @@
+package model.image;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Binary columnar form of Camtrap data, stored next to the CSV files of an upload as a faster loading copy.
+ * Each table is written column by column: strings with few distinct values as a dictionary followed by codes,
+ * other strings as length prefixed UTF-8, timestamps as deltas, and integers as variable length numbers, and the
+ * columns are gzipped. The values read back are the same as reading the CSV files written from the same data, so
+ * IDs and EXIF data that are empty come back as null and booleans keep their values
+ *
+ * @author Chris Schnaufer
+ */
+public final class CamtrapColumnarFile
+{
+    // The first bytes of the file, "SCTC"
+    private static final int MAGIC = 0x53435443;
+
+    // The version of the layout, bumped whenever the columns change. Version 1 files kept empty IDs as empty strings
+    private static final int VERSION = 2;
+
+    // The column types, written before each column as a check
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_TIMESTAMP = 2;
+    private static final byte TYPE_INT = 3;
+    private static final byte TYPE_DOUBLE = 4;
+    private static final byte TYPE_BOOLEAN = 5;
+
+    // The string encodings
+    private static final byte ENCODING_PLAIN = 0;
+    private static final byte ENCODING_DICTIONARY = 1;
+
+    // The columns of deployments, in the same order as the CSV file
+    private static final List<Column<Deployments>> DEPLOYMENT_COLUMNS = Arrays.asList(
+        new StringColumn<Deployments>(dep -> dep.deploymentID, (dep, value) -> dep.deploymentID = value, true),
+        new StringColumn<Deployments>(dep -> dep.locationID, (dep, value) -> dep.locationID = value, true),
+        new StringColumn<Deployments>(dep -> dep.locationName, (dep, value) -> dep.locationName = value, true),
+        new DoubleColumn<Deployments>(dep -> dep.longitude, (dep, value) -> dep.longitude = value),
+        new DoubleColumn<Deployments>(dep -> dep.latitude, (dep, value) -> dep.latitude = value),
+        new IntColumn<Deployments>(dep -> dep.coordinateUncertainty, (dep, value) -> dep.coordinateUncertainty = value),
+        new TimestampColumn<Deployments>(dep -> dep.start, (dep, value) -> dep.start = value),
+        new TimestampColumn<Deployments>(dep -> dep.end, (dep, value) -> dep.end = value),
+        new StringColumn<Deployments>(dep -> dep.setupBy, (dep, value) -> dep.setupBy = value, false),
+        new StringColumn<Deployments>(dep -> dep.cameraID, (dep, value) -> dep.cameraID = value, false),
+        new StringColumn<Deployments>(dep -> dep.cameraModel, (dep, value) -> dep.cameraModel = value, false),
+        new IntColumn<Deployments>(dep -> dep.cameraInterval, (dep, value) -> dep.cameraInterval = value),
+        new DoubleColumn<Deployments>(dep -> dep.cameraHeight, (dep, value) -> dep.cameraHeight = value),
+        new DoubleColumn<Deployments>(dep -> dep.cameraTilt, (dep, value) -> dep.cameraTilt = value),
+        new IntColumn<Deployments>(dep -> dep.cameraHeading, (dep, value) -> dep.cameraHeading = value),
+        new BooleanColumn<Deployments>(dep -> dep.timestampIssues, (dep, value) -> dep.timestampIssues = value),
+        new StringColumn<Deployments>(dep -> dep.baitUse, (dep, value) -> dep.baitUse = value, false),
+        new StringColumn<Deployments>(dep -> dep.session, (dep, value) -> dep.session = value, false),
+        new StringColumn<Deployments>(dep -> dep.array, (dep, value) -> dep.array = value, false),
+        new StringColumn<Deployments>(dep -> dep.featureType, (dep, value) -> dep.featureType = value, false),
+        new StringColumn<Deployments>(dep -> dep.habitat, (dep, value) -> dep.habitat = value, false),
+        new StringColumn<Deployments>(dep -> dep.tags, (dep, value) -> dep.tags = value, false),
+        new StringColumn<Deployments>(dep -> dep.notes, (dep, value) -> dep.notes = value, false)
+    );
+
+    // The columns of media, in the same order as the CSV file. Empty IDs and EXIF data are read from CSV files as null
+    private static final List<Column<Media>> MEDIA_COLUMNS = Arrays.asList(
+        new StringColumn<Media>(med -> CamtrapColumnarFile.nullIfEmpty(med.mediaID), (med, value) -> med.mediaID = value, false),
+        new StringColumn<Media>(med -> CamtrapColumnarFile.nullIfEmpty(med.deploymentID), (med, value) -> med.deploymentID = value, true),
+        new StringColumn<Media>(med -> med.sequenceID, (med, value) -> med.sequenceID = value, false),
+        new StringColumn<Media>(med -> med.captureMethod, (med, value) -> med.captureMethod = value, true),
+        new TimestampColumn<Media>(med -> med.timestamp, (med, value) -> med.timestamp = value),
+        new StringColumn<Media>(med -> med.filePath, (med, value) -> med.filePath = value, false),
+        new StringColumn<Media>(med -> med.fileName, (med, value) -> med.fileName = value, false),
+        new StringColumn<Media>(med -> med.fileMediaType, (med, value) -> med.fileMediaType = value, true),
+        new StringColumn<Media>(med -> med.exifData != null ? CamtrapColumnarFile.nullIfEmpty(med.exifData.toString()) : null, (med, value) -> med.exifData = value, false),
+        new BooleanColumn<Media>(med -> med.favorite, (med, value) -> med.favorite = value),
+        new StringColumn<Media>(med -> med.comments, (med, value) -> med.comments = value, false)
+    );
+
+    // The columns of observations, in the same order as the CSV file. Empty IDs are read from CSV files as null
+    private static final List<Column<Observations>> OBSERVATION_COLUMNS = Arrays.asList(
+        new StringColumn<Observations>(obs -> CamtrapColumnarFile.nullIfEmpty(obs.observationID), (obs, value) -> obs.observationID = value, false),
+        new StringColumn<Observations>(obs -> obs.deploymentID, (obs, value) -> obs.deploymentID = value, true),
+        new StringColumn<Observations>(obs -> obs.sequenceID, (obs, value) -> obs.sequenceID = value, false),
+        new StringColumn<Observations>(obs -> obs.mediaID, (obs, value) -> obs.mediaID = value, false),
+        new TimestampColumn<Observations>(obs -> obs.timestamp, (obs, value) -> obs.timestamp = value),
+        new StringColumn<Observations>(obs -> obs.observationType, (obs, value) -> obs.observationType = value, true),
+        new BooleanColumn<Observations>(obs -> obs.cameraSetup, (obs, value) -> obs.cameraSetup = value),
+        new StringColumn<Observations>(obs -> obs.taxonID, (obs, value) -> obs.taxonID = value, false),
+        new StringColumn<Observations>(obs -> obs.scientificName, (obs, value) -> obs.scientificName = value, true),
+        new IntColumn<Observations>(obs -> obs.count, (obs, value) -> obs.count = value),
+        new IntColumn<Observations>(obs -> obs.countNew, (obs, value) -> obs.countNew = value),
+        new StringColumn<Observations>(obs -> obs.lifeStage, (obs, value) -> obs.lifeStage = value, false),
+        new StringColumn<Observations>(obs -> obs.sex, (obs, value) -> obs.sex = value, false),
+        new StringColumn<Observations>(obs -> obs.behaviour, (obs, value) -> obs.behaviour = value, false),
+        new StringColumn<Observations>(obs -> obs.individualID, (obs, value) -> obs.individualID = value, false),
+        new StringColumn<Observations>(obs -> obs.classificationMethod, (obs, value) -> obs.classificationMethod = value, false),
+        new StringColumn<Observations>(obs -> obs.classifiedBy, (obs, value) -> obs.classifiedBy = value, false),
+        new TimestampColumn<Observations>(obs -> obs.classificationTimestamp, (obs, value) -> obs.classificationTimestamp = value),
+        new DoubleColumn<Observations>(obs -> obs.classificationConfidence, (obs, value) -> obs.classificationConfidence = value),
+        new StringColumn<Observations>(obs -> obs.comments, (obs, value) -> obs.comments = value, false)
+    );
+
+    /**
+     * Private constructor, only static methods are used
+     */
+    private CamtrapColumnarFile()
+    {
+    }
+
+    /**
+     * Writes Camtrap data to a stream
+     *
+     * @param metadata the data to write
+     * @param outStream the stream to write to, not closed
+     * @throws IOException if a problem occurs while writing the stream
+     */
+    public static void write(Camtrap metadata, OutputStream outStream) throws IOException
+    {
+        // The columns are gzipped after the header, long paths and IDs compress well
+        DataOutputStream header = new DataOutputStream(outStream);
+        header.writeInt(MAGIC);
+        header.writeInt(VERSION);
+        header.flush();
+
+        GZIPOutputStream compressedStream = new GZIPOutputStream(outStream, 64 * 1024);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(compressedStream, 64 * 1024));
+        CamtrapColumnarFile.writeTable(out, metadata.deployments, DEPLOYMENT_COLUMNS);
+        CamtrapColumnarFile.writeTable(out, metadata.media, MEDIA_COLUMNS);
+        CamtrapColumnarFile.writeTable(out, metadata.observations, OBSERVATION_COLUMNS);
+        out.flush();
+        compressedStream.finish();
+    }
+
+    /**
+     * Reads Camtrap data from a stream into an instance, replacing its deployments, media, and observations
+     *
+     * @param metadata the instance to read into
+     * @param inStream the stream to read, not closed
+     * @throws IOException if the stream can't be read or isn't a columnar file this version understands
+     */
+    public static void read(Camtrap metadata, InputStream inStream) throws IOException
+    {
+        DataInputStream header = new DataInputStream(inStream);
+        if (header.readInt() != MAGIC)
+        {
+            throw new IOException("Not a Camtrap columnar file");
+        }
+        int version = header.readInt();
+        if (version != VERSION)
+        {
+            throw new IOException("Unsupported Camtrap columnar file version " + version);
+        }
+
+        // The columns are decompressed as they're read, so the whole file is never held in memory at once
+        ColumnReader in = new ColumnReader(new GZIPInputStream(inStream, 64 * 1024));
+
+        List<Deployments> deployments = CamtrapColumnarFile.readTable(in, Deployments::new, DEPLOYMENT_COLUMNS);
+        List<Media> media = CamtrapColumnarFile.readTable(in, Media::new, MEDIA_COLUMNS);
+        List<Observations> observations = CamtrapColumnarFile.readTable(in, Observations::new, OBSERVATION_COLUMNS);
+
+        metadata.deployments = deployments;
+        metadata.media = media;
+        metadata.observations = observations;
+    }
+
+    /**
+     * Returns null for an empty string, the CSV files read empty IDs back as null
+     *
+     * @param value the value to check
+     * @return the value, or null if it's empty
+     */
+    private static String nullIfEmpty(String value)
+    {
+        return ((value == null) || value.isEmpty()) ? null : value;
+    }
+
+    /**
+     * Writes the rows of a table one column after the other
+     *
+     * @param out the stream to write to
+     * @param rows the rows of the table
+     * @param columns the columns of the table
+     * @throws IOException if a problem occurs while writing the stream
+     */
+    private static <T> void writeTable(DataOutputStream out, List<T> rows, List<Column<T>> columns) throws IOException
+    {
+        CamtrapColumnarFile.writeVarInt(out, rows.size());
+        CamtrapColumnarFile.writeVarInt(out, columns.size());
+        for (Column<T> column: columns)
+        {
+            out.writeByte(column.type());
+            column.write(out, rows);
+        }
+    }
+
+    /**
+     * Reads the rows of a table written by writeTable
+     *
+     * @param in the data to read
+     * @param factory creates an empty row
+     * @param columns the columns of the table
+     * @return the rows of the table
+     * @throws IOException if the data doesn't match the columns
+     */
+    private static <T> List<T> readTable(ColumnReader in, Supplier<T> factory, List<Column<T>> columns) throws IOException
+    {
+        int rowCount = in.readVarInt();
+        if (in.readVarInt() != columns.size())
+        {
+            throw new IOException("Unexpected number of columns in Camtrap columnar file");
+        }
+
+        List<T> rows = new ArrayList<T>(rowCount);
+        for (int index = 0; index < rowCount; index++)
+        {
+            rows.add(factory.get());
+        }
+
+        for (Column<T> column: columns)
+        {
+            if (in.readByte() != column.type())
+            {
+                throw new IOException("Unexpected column type in Camtrap columnar file");
+            }
+            column.read(in, rows);
+        }
+        return rows;
+    }
+
+    /**
+     * Writes an unsigned variable length integer, 7 bits per byte
+     */
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException
+    {
+        while ((value & ~0x7F) != 0)
+        {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Writes an unsigned variable length long, 7 bits per byte
+     */
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException
+    {
+        while ((value & ~0x7FL) != 0)
+        {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    /**
+     * Writes a string that may be null as its length plus one followed by its UTF-8 bytes, or a zero length for null
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException
+    {
+        if (value == null)
+        {
+            CamtrapColumnarFile.writeVarInt(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        CamtrapColumnarFile.writeVarInt(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    /**
+     * One column of a table
+     *
+     * @param <T> the type of the table's rows
+     */
+    private interface Column<T>
+    {
+        byte type();
+
+        void write(DataOutputStream out, List<T> rows) throws IOException;
+
+        void read(ColumnReader in, List<T> rows) throws IOException;
+    }
+
+    /**
+     * A string column. Columns with few distinct values are written as a dictionary and a code per row
+     */
+    private static final class StringColumn<T> implements Column<T>
+    {
+        private final Function<T, String> getter;
+        private final BiConsumer<T, String> setter;
+        // If the values are shared with other uploads through the string pool
+        private final boolean pooled;
+
+        StringColumn(Function<T, String> getter, BiConsumer<T, String> setter, boolean pooled)
+        {
+            this.getter = getter;
+            this.setter = setter;
+            this.pooled = pooled;
+        }
+
+        @Override
+        public byte type()
+        {
+            return TYPE_STRING;
+        }
+
+        @Override
+        public void write(DataOutputStream out, List<T> rows) throws IOException
+        {
+            // Code each distinct value, null values get no code
+            Map<String, Integer> codes = new HashMap<String, Integer>();
+            List<String> dictionary = new ArrayList<String>();
+            int[] rowCodes = new int[rows.size()];
+            for (int index = 0; index < rows.size(); index++)
+            {
+                String value = this.getter.apply(rows.get(index));
+                if (value == null)
+                {
+                    rowCodes[index] = 0;
+                    continue;
+                }
+                Integer code = codes.get(value);
+                if (code == null)
+                {
+                    dictionary.add(value);
+                    code = dictionary.size();
+                    codes.put(value, code);
+                }
+                rowCodes[index] = code;
+            }
+
+            // Only use the dictionary if values repeat enough to make it smaller
+            if (dictionary.size() * 2 <= rows.size())
+            {
+                out.writeByte(ENCODING_DICTIONARY);
+                CamtrapColumnarFile.writeVarInt(out, dictionary.size());
+                for (String value: dictionary)
+                {
+                    CamtrapColumnarFile.writeString(out, value);
+                }
+                for (int code: rowCodes)
+                {
+                    CamtrapColumnarFile.writeVarInt(out, code);
+                }
+            }
+            else
+            {
+                out.writeByte(ENCODING_PLAIN);
+                for (T row: rows)
+                {
+                    CamtrapColumnarFile.writeString(out, this.getter.apply(row));
+                }
+            }
+        }
+
+        @Override
+        public void read(ColumnReader in, List<T> rows) throws IOException
+        {
+            byte encoding = in.readByte();
+            if (encoding == ENCODING_DICTIONARY)
+            {
+                // Code 0 is null, the dictionary starts at 1
+                String[] dictionary = new String[in.readVarInt() + 1];
+                for (int code = 1; code < dictionary.length; code++)
+                {
+                    String value = in.readString();
+                    dictionary[code] = this.pooled ? CamtrapStringPool.intern(value) : value;
+                }
+                for (T row: rows)
+                {
+                    int code = in.readVarInt();
+                    if (code >= dictionary.length)
+                    {
+                        throw new IOException("Invalid dictionary code in Camtrap columnar file");
+                    }
+                    this.setter.accept(row, dictionary[code]);
+                }
+            }
+            else if (encoding == ENCODING_PLAIN)
+            {
+                for (T row: rows)
+                {
+                    String value = in.readString();
+                    this.setter.accept(row, this.pooled ? CamtrapStringPool.intern(value) : value);
+                }
+            }
+            else
+            {
+                throw new IOException("Unknown string encoding in Camtrap columnar file");
+            }
+        }
+    }
+
+    /**
+     * A timestamp column, written as the change in seconds from the previous timestamp and the nanoseconds
+     */
+    private static final class TimestampColumn<T> implements Column<T>
+    {
+        private final Function<T, LocalDateTime> getter;
+        private final BiConsumer<T, LocalDateTime> setter;
+
+        TimestampColumn(Function<T, LocalDateTime> getter, BiConsumer<T, LocalDateTime> setter)
+        {
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        @Override
+        public byte type()
+        {
+            return TYPE_TIMESTAMP;
+        }
+
+        @Override
+        public void write(DataOutputStream out, List<T> rows) throws IOException
+        {
+            long previousSeconds = 0;
+            for (T row: rows)
+            {
+                // Nanoseconds plus one, zero for null
+                LocalDateTime value = this.getter.apply(row);
+                if (value == null)
+                {
+                    CamtrapColumnarFile.writeVarInt(out, 0);
+                    continue;
+                }
+                CamtrapColumnarFile.writeVarInt(out, value.getNano() + 1);
+                long seconds = value.toEpochSecond(ZoneOffset.UTC);
+                long delta = seconds - previousSeconds;
+                CamtrapColumnarFile.writeVarLong(out, (delta << 1) ^ (delta >> 63));
+                previousSeconds = seconds;
+            }
+        }
+
+        @Override
+        public void read(ColumnReader in, List<T> rows) throws IOException
+        {
+            long previousSeconds = 0;
+            for (T row: rows)
+            {
+                int nanos = in.readVarInt();
+                if (nanos == 0)
+                {
+                    this.setter.accept(row, null);
+                    continue;
+                }
+                long zigZag = in.readVarLong();
+                long seconds = previousSeconds + ((zigZag >>> 1) ^ -(zigZag & 1));
+                this.setter.accept(row, LocalDateTime.ofEpochSecond(seconds, nanos - 1, ZoneOffset.UTC));
+                previousSeconds = seconds;
+            }
+        }
+    }
+
+    /**
+     * An integer column, written as zig-zag variable length numbers
+     */
+    private static final class IntColumn<T> implements Column<T>
+    {
+        private final ToIntFunction<T> getter;
+        private final ObjIntConsumer<T> setter;
+
+        IntColumn(ToIntFunction<T> getter, ObjIntConsumer<T> setter)
+        {
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        @Override
+        public byte type()
+        {
+            return TYPE_INT;
+        }
+
+        @Override
+        public void write(DataOutputStream out, List<T> rows) throws IOException
+        {
+            for (T row: rows)
+            {
+                int value = this.getter.applyAsInt(row);
+                CamtrapColumnarFile.writeVarInt(out, (value << 1) ^ (value >> 31));
+            }
+        }
+
+        @Override
+        public void read(ColumnReader in, List<T> rows) throws IOException
+        {
+            for (T row: rows)
+            {
+                int zigZag = in.readVarInt();
+                this.setter.accept(row, (zigZag >>> 1) ^ -(zigZag & 1));
+            }
+        }
+    }
+
+    /**
+     * A double column, written as the raw bits of each value
+     */
+    private static final class DoubleColumn<T> implements Column<T>
+    {
+        private final ToDoubleFunction<T> getter;
+        private final ObjDoubleConsumer<T> setter;
+
+        DoubleColumn(ToDoubleFunction<T> getter, ObjDoubleConsumer<T> setter)
+        {
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        @Override
+        public byte type()
+        {
+            return TYPE_DOUBLE;
+        }
+
+        @Override
+        public void write(DataOutputStream out, List<T> rows) throws IOException
+        {
+            for (T row: rows)
+            {
+                out.writeDouble(this.getter.applyAsDouble(row));
+            }
+        }
+
+        @Override
+        public void read(ColumnReader in, List<T> rows) throws IOException
+        {
+            for (T row: rows)
+            {
+                this.setter.accept(row, in.readDouble());
+            }
+        }
+    }
+
+    /**
+     * A boolean column, written as one bit per row
+     */
+    private static final class BooleanColumn<T> implements Column<T>
+    {
+        private final Predicate<T> getter;
+        private final BiConsumer<T, Boolean> setter;
+
+        BooleanColumn(Predicate<T> getter, BiConsumer<T, Boolean> setter)
+        {
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        @Override
+        public byte type()
+        {
+            return TYPE_BOOLEAN;
+        }
+
+        @Override
+        public void write(DataOutputStream out, List<T> rows) throws IOException
+        {
+            int bits = 0;
+            for (int index = 0; index < rows.size(); index++)
+            {
+                if (this.getter.test(rows.get(index)))
+                {
+                    bits |= 1 << (index % 8);
+                }
+                if ((index % 8 == 7) || (index == rows.size() - 1))
+                {
+                    out.writeByte(bits);
+                    bits = 0;
+                }
+            }
+        }
+
+        @Override
+        public void read(ColumnReader in, List<T> rows) throws IOException
+        {
+            int bits = 0;
+            for (int index = 0; index < rows.size(); index++)
+            {
+                if (index % 8 == 0)
+                {
+                    bits = in.readByte();
+                }
+                this.setter.accept(rows.get(index), (bits & (1 << (index % 8))) != 0);
+            }
+        }
+    }
+
+    /**
+     * Reads values out of a stream, a buffer at a time
+     */
+    private static final class ColumnReader
+    {
+        private final InputStream inStream;
+        private final byte[] buffer = new byte[64 * 1024];
+        private int position = 0;
+        private int limit = 0;
+
+        ColumnReader(InputStream inStream)
+        {
+            this.inStream = inStream;
+        }
+
+        byte readByte() throws IOException
+        {
+            if (this.position >= this.limit)
+            {
+                this.fill();
+            }
+            return this.buffer[this.position++];
+        }
+
+        /**
+         * Replaces the buffer with the next bytes of the stream
+         *
+         * @throws IOException if the stream ended or can't be read
+         */
+        private void fill() throws IOException
+        {
+            int count = this.inStream.read(this.buffer, 0, this.buffer.length);
+            if (count <= 0)
+            {
+                throw new IOException("Camtrap columnar file is truncated");
+            }
+            this.position = 0;
+            this.limit = count;
+        }
+
+        int readInt() throws IOException
+        {
+            return ((this.readByte() & 0xFF) << 24) | ((this.readByte() & 0xFF) << 16) | ((this.readByte() & 0xFF) << 8) | (this.readByte() & 0xFF);
+        }
+
+        double readDouble() throws IOException
+        {
+            long high = this.readInt() & 0xFFFFFFFFL;
+            long low = this.readInt() & 0xFFFFFFFFL;
+            return Double.longBitsToDouble((high << 32) | low);
+        }
+
+        int readVarInt() throws IOException
+        {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7)
+            {
+                byte oneByte = this.readByte();
+                value |= (oneByte & 0x7F) << shift;
+                if ((oneByte & 0x80) == 0)
+                {
+                    return value;
+                }
+            }
+            throw new IOException("Invalid number in Camtrap columnar file");
+        }
+
+        long readVarLong() throws IOException
+        {
+            long value = 0;
+            for (int shift = 0; shift < 70; shift += 7)
+            {
+                byte oneByte = this.readByte();
+                value |= (long) (oneByte & 0x7F) << shift;
+                if ((oneByte & 0x80) == 0)
+                {
+                    return value;
+                }
+            }
+            throw new IOException("Invalid number in Camtrap columnar file");
+        }
+
+        String readString() throws IOException
+        {
+            int length = this.readVarInt();
+            if (length == 0)
+            {
+                return null;
+            }
+            length--;
+            if (length < 0)
+            {
+                throw new IOException("Invalid string length in Camtrap columnar file");
+            }
+            if (length <= this.limit - this.position)
+            {
+                String value = new String(this.buffer, this.position, length, StandardCharsets.UTF_8);
+                this.position += length;
+                return value;
+            }
+
+            // The string runs past the buffer, take what's buffered and read the rest straight from the stream
+            int buffered = this.limit - this.position;
+            byte[] rest = this.inStream.readNBytes(length - buffered);
+            if (rest.length != length - buffered)
+            {
+                throw new IOException("Camtrap columnar file is truncated");
+            }
+            byte[] bytes = new byte[length];
+            System.arraycopy(this.buffer, this.position, bytes, 0, buffered);
+            System.arraycopy(rest, 0, bytes, buffered, rest.length);
+            this.position = this.limit;
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,459 @@
+package model.image;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import com.opencsv.exceptions.CsvValidationException;
+
+/**
+ * Streaming reader of Camtrap CSV files. Rows are parsed straight out of a character buffer filled from the
+ * stream, each field becoming a string copied from the buffer once, so a whole file never has to be held in
+ * memory as text. Fields follow the quoting written by CSVWriter: quoted fields may contain separators and
+ * line breaks, and doubled quotes stand for a quote
+ *
+ * @author Chris Schnaufer
+ */
+public final class CamtrapCsvReader implements Closeable
+{
+    // The size of the character buffer, grown if a single row doesn't fit
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // The field separator
+    private static final char SEPARATOR = ',';
+
+    // The quote character
+    private static final char QUOTE = '"';
+
+    // The source of the characters
+    private final Reader source;
+
+    // The buffered characters, the unread ones are from position to limit
+    private char[] buffer = new char[BUFFER_SIZE];
+    private int position = 0;
+    private int limit = 0;
+
+    // Set once the source has no more characters
+    private boolean endOfStream = false;
+
+    // The fields of the row being parsed, reused between rows
+    private final List<String> fields = new ArrayList<String>();
+
+    /**
+     * Constructor for reading UTF-8 text from a stream
+     *
+     * @param stream the stream to read
+     */
+    public CamtrapCsvReader(InputStream stream)
+    {
+        this(new InputStreamReader(stream, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Constructor for reading characters
+     *
+     * @param source the characters to read
+     */
+    public CamtrapCsvReader(Reader source)
+    {
+        this.source = source;
+    }
+
+    /**
+     * Reads all Deployments from a stream
+     *
+     * @param stream the stream of CSV data, not closed
+     * @return the list of deployments
+     * @throws IOException if a problem occurs while reading the stream
+     * @throws CsvValidationException if the CSV data is malformed
+     */
+    public static List<Deployments> readDeployments(InputStream stream) throws IOException, CsvValidationException
+    {
+        return CamtrapCsvReader.readDeployments(new CamtrapCsvReader(stream));
+    }
+
+    /**
+     * Reads all Deployments from a reader
+     *
+     * @param reader the reader of CSV data, not closed
+     * @return the list of deployments
+     * @throws IOException if a problem occurs while reading the data
+     * @throws CsvValidationException if the CSV data is malformed
+     */
+    static List<Deployments> readDeployments(CamtrapCsvReader reader) throws IOException, CsvValidationException
+    {
+        List<Deployments> deployments = new ArrayList<Deployments>();
+        String[] nextLine;
+        while ((nextLine = reader.readNext()) != null)
+        {
+            deployments.add(Deployments.instance(nextLine));
+        }
+        return deployments;
+    }
+
+    /**
+     * Reads all Media from a stream
+     *
+     * @param stream the stream of CSV data, not closed
+     * @return the list of media
+     * @throws IOException if a problem occurs while reading the stream
+     * @throws CsvValidationException if the CSV data is malformed
+     */
+    public static List<Media> readMedia(InputStream stream) throws IOException, CsvValidationException
+    {
+        return CamtrapCsvReader.readMedia(new CamtrapCsvReader(stream));
+    }
+
+    /**
+     * Reads all Media from a reader
+     *
+     * @param reader the reader of CSV data, not closed
+     * @return the list of media
+     * @throws IOException if a problem occurs while reading the data
+     * @throws CsvValidationException if the CSV data is malformed
+     */
+    static List<Media> readMedia(CamtrapCsvReader reader) throws IOException, CsvValidationException
+    {
+        List<Media> media = new ArrayList<Media>();
+        String[] nextLine;
+        while ((nextLine = reader.readNext()) != null)
+        {
+            media.add(Media.instance(nextLine));
+        }
+        return media;
+    }
+
+    /**
+     * Reads all Observations from a stream
+     *
+     * @param stream the stream of CSV data, not closed
+     * @return the list of observations
+     * @throws IOException if a problem occurs while reading the stream
+     * @throws CsvValidationException if the CSV data is malformed
+     */
+    public static List<Observations> readObservations(InputStream stream) throws IOException, CsvValidationException
+    {
+        return CamtrapCsvReader.readObservations(new CamtrapCsvReader(stream));
+    }
+
+    /**
+     * Reads all Observations from a reader
+     *
+     * @param reader the reader of CSV data, not closed
+     * @return the list of observations
+     * @throws IOException if a problem occurs while reading the data
+     * @throws CsvValidationException if the CSV data is malformed
+     */
+    static List<Observations> readObservations(CamtrapCsvReader reader) throws IOException, CsvValidationException
+    {
+        List<Observations> observations = new ArrayList<Observations>();
+        String[] nextLine;
+        while ((nextLine = reader.readNext()) != null)
+        {
+            observations.add(Observations.instance(nextLine));
+        }
+        return observations;
+    }
+
+    /**
+     * Parses an ISO timestamp. Timestamps in the "yyyy-MM-ddTHH:mm:ss[.fraction]" form written by the Camtrap classes
+     * are parsed by hand, anything else falls back to the ISO date time formatter. Like the formatter, any offset or
+     * zone is ignored
+     *
+     * @param value the timestamp to parse
+     * @return the parsed timestamp
+     * @throws java.time.DateTimeException if the timestamp is invalid
+     */
+    public static LocalDateTime parseTimestamp(String value)
+    {
+        int length = value.length();
+        if ((length >= 19) && (value.charAt(4) == '-') && (value.charAt(7) == '-') && (value.charAt(10) == 'T') &&
+            (value.charAt(13) == ':') && (value.charAt(16) == ':'))
+        {
+            int year = CamtrapCsvReader.parseDigits(value, 0, 4);
+            int month = CamtrapCsvReader.parseDigits(value, 5, 7);
+            int day = CamtrapCsvReader.parseDigits(value, 8, 10);
+            int hour = CamtrapCsvReader.parseDigits(value, 11, 13);
+            int minute = CamtrapCsvReader.parseDigits(value, 14, 16);
+            int second = CamtrapCsvReader.parseDigits(value, 17, 19);
+
+            // Up to 9 digits of fraction
+            int nanos = 0;
+            int end = 19;
+            if ((end < length) && (value.charAt(end) == '.'))
+            {
+                int fractionStart = ++end;
+                while ((end < length) && (end - fractionStart < 9) && Character.isDigit(value.charAt(end)))
+                {
+                    nanos = nanos * 10 + (value.charAt(end) - '0');
+                    end++;
+                }
+                if (end == fractionStart)
+                {
+                    year = -1;
+                }
+                for (int digits = end - fractionStart; digits < 9; digits++)
+                {
+                    nanos *= 10;
+                }
+            }
+
+            if ((year >= 0) && (month >= 0) && (day >= 0) && (hour >= 0) && (minute >= 0) && (second >= 0) && (end == length))
+            {
+                return LocalDateTime.of(year, month, day, hour, minute, second, nanos);
+            }
+        }
+
+        return LocalDateTime.parse(value, DateTimeFormatter.ISO_DATE_TIME);
+    }
+
+    /**
+     * Parses a run of ASCII digits
+     *
+     * @param value the string containing the digits
+     * @param start the index of the first digit
+     * @param end the index after the last digit
+     * @return the number, or -1 if a character isn't a digit
+     */
+    private static int parseDigits(String value, int start, int end)
+    {
+        int number = 0;
+        for (int index = start; index < end; index++)
+        {
+            char oneChar = value.charAt(index);
+            if ((oneChar < '0') || (oneChar > '9'))
+            {
+                return -1;
+            }
+            number = number * 10 + (oneChar - '0');
+        }
+        return number;
+    }
+
+    /**
+     * Reads the next row. Blank lines are skipped
+     *
+     * @return the fields of the row, or null at the end of the data
+     * @throws IOException if a problem occurs while reading the source
+     * @throws CsvValidationException if a quoted field isn't closed
+     */
+    public String[] readNext() throws IOException, CsvValidationException
+    {
+        while (true)
+        {
+            // Skip blank lines
+            while ((this.position < this.limit) && ((this.buffer[this.position] == '\n') || (this.buffer[this.position] == '\r')))
+            {
+                this.position++;
+            }
+
+            if (this.position >= this.limit)
+            {
+                if (this.endOfStream || !this.fill())
+                {
+                    return null;
+                }
+                continue;
+            }
+
+            // Parse the row, if it runs past the buffered characters read more and start the row over
+            if (this.parseRow())
+            {
+                return this.fields.toArray(new String[this.fields.size()]);
+            }
+            this.fill();
+        }
+    }
+
+    /**
+     * Parses the row starting at the current position
+     *
+     * @return true if the row was parsed, false if more characters are needed first
+     * @throws CsvValidationException if a quoted field isn't closed
+     */
+    private boolean parseRow() throws CsvValidationException
+    {
+        this.fields.clear();
+        int index = this.position;
+
+        while (true)
+        {
+            int fieldEnd;
+            if ((index < this.limit) && (this.buffer[index] == QUOTE))
+            {
+                // Find the closing quote, noting if there are any doubled quotes to collapse
+                boolean hasDoubledQuotes = false;
+                fieldEnd = index + 1;
+                while (true)
+                {
+                    if (fieldEnd >= this.limit)
+                    {
+                        if (this.endOfStream)
+                        {
+                            throw new CsvValidationException("Unterminated quoted field in Camtrap CSV data");
+                        }
+                        return false;
+                    }
+                    if (this.buffer[fieldEnd] == QUOTE)
+                    {
+                        if ((fieldEnd + 1 >= this.limit) && !this.endOfStream)
+                        {
+                            return false;
+                        }
+                        if ((fieldEnd + 1 < this.limit) && (this.buffer[fieldEnd + 1] == QUOTE))
+                        {
+                            hasDoubledQuotes = true;
+                            fieldEnd += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    fieldEnd++;
+                }
+
+                String value = hasDoubledQuotes ? this.collapseQuotes(index + 1, fieldEnd) : new String(this.buffer, index + 1, fieldEnd - index - 1);
+
+                // Anything between the closing quote and the separator is kept, as CSVReader does
+                int trailingStart = fieldEnd + 1;
+                fieldEnd = this.findFieldEnd(trailingStart);
+                if (fieldEnd < 0)
+                {
+                    return false;
+                }
+                if (fieldEnd > trailingStart)
+                {
+                    value = value + new String(this.buffer, trailingStart, fieldEnd - trailingStart);
+                }
+                this.fields.add(value);
+            }
+            else
+            {
+                fieldEnd = this.findFieldEnd(index);
+                if (fieldEnd < 0)
+                {
+                    return false;
+                }
+                this.fields.add(new String(this.buffer, index, fieldEnd - index));
+            }
+
+            // Move on to the next field, or finish the row
+            if ((fieldEnd < this.limit) && (this.buffer[fieldEnd] == SEPARATOR))
+            {
+                index = fieldEnd + 1;
+                continue;
+            }
+
+            if ((fieldEnd < this.limit) && (this.buffer[fieldEnd] == '\r'))
+            {
+                // Wait to see if the carriage return is followed by a line feed
+                if ((fieldEnd + 1 >= this.limit) && !this.endOfStream)
+                {
+                    return false;
+                }
+                if ((fieldEnd + 1 < this.limit) && (this.buffer[fieldEnd + 1] == '\n'))
+                {
+                    fieldEnd++;
+                }
+            }
+            this.position = Math.min(fieldEnd + 1, this.limit);
+            return true;
+        }
+    }
+
+    /**
+     * Finds the end of an unquoted field
+     *
+     * @param start the index of the first character of the field
+     * @return the index of the separator or line break ending the field, the limit if the data ended, or -1 if
+     *         more characters are needed
+     */
+    private int findFieldEnd(int start)
+    {
+        int index = start;
+        while (index < this.limit)
+        {
+            char oneChar = this.buffer[index];
+            if ((oneChar == SEPARATOR) || (oneChar == '\n') || (oneChar == '\r'))
+            {
+                return index;
+            }
+            index++;
+        }
+        return this.endOfStream ? this.limit : -1;
+    }
+
+    /**
+     * Creates the value of a quoted field that contains doubled quotes
+     *
+     * @param start the index after the opening quote
+     * @param end the index of the closing quote
+     * @return the value with each doubled quote collapsed to one
+     */
+    private String collapseQuotes(int start, int end)
+    {
+        StringBuilder value = new StringBuilder(end - start);
+        for (int index = start; index < end; index++)
+        {
+            value.append(this.buffer[index]);
+            if (this.buffer[index] == QUOTE)
+            {
+                index++;
+            }
+        }
+        return value.toString();
+    }
+
+    /**
+     * Reads more characters into the buffer, keeping the unread ones. The buffer is grown if it's full of unread characters
+     *
+     * @return true if more characters were read, false at the end of the source
+     * @throws IOException if a problem occurs while reading the source
+     */
+    private boolean fill() throws IOException
+    {
+        if (this.endOfStream)
+        {
+            return false;
+        }
+
+        int unread = this.limit - this.position;
+        if (unread == this.buffer.length)
+        {
+            char[] grown = new char[this.buffer.length * 2];
+            System.arraycopy(this.buffer, this.position, grown, 0, unread);
+            this.buffer = grown;
+        }
+        else if (this.position > 0)
+        {
+            System.arraycopy(this.buffer, this.position, this.buffer, 0, unread);
+        }
+        this.position = 0;
+        this.limit = unread;
+
+        int read = this.source.read(this.buffer, this.limit, this.buffer.length - this.limit);
+        if (read < 0)
+        {
+            this.endOfStream = true;
+            return false;
+        }
+        this.limit += read;
+        return true;
+    }
+
+    /**
+     * Closes the source
+     *
+     * @throws IOException if a problem occurs while closing the source
+     */
+    @Override
+    public void close() throws IOException
+    {
+        this.source.close();
+    }
+}
@@ -0,0 +1,292 @@
+package model.image;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.security.InvalidParameterException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import com.opencsv.CSVWriter;
+import com.opencsv.exceptions.CsvValidationException;
+
+/**
+ * A list of edits to the Camtrap data of an upload. Saving an edit writes a small log next to the upload's Camtrap
+ * files instead of rewriting them, and readers apply the logs on top of the files in the order they were written.
+ * Each edit replaces a row as a whole, so applying a log twice gives the same result as applying it once
+ *
+ * A log is a CSV file where the first column is the kind of row:
+ *   "deployment" followed by the deployment's values adds or replaces the deployment with the same ID
+ *   "media" followed by the media's values adds or replaces the media with the same ID and drops its observations
+ *   "observation" followed by the observation's values adds an observation to the media row above it
+ *   "delete-media" followed by a media ID removes the media and its observations
+ *
+ * @author Chris Schnaufer
+ */
+public final class CamtrapEditLog
+{
+    // The kinds of rows
+    private static final String DEPLOYMENT_ROW = "deployment";
+    private static final String MEDIA_ROW = "media";
+    private static final String OBSERVATION_ROW = "observation";
+    private static final String DELETE_MEDIA_ROW = "delete-media";
+
+    // The edits in the order they were made
+    private final List<Edit> edits = new ArrayList<Edit>();
+
+    /**
+     * Records a deployment being added or changed
+     *
+     * @param dep the new deployment
+     */
+    public void upsertDeployment(Deployments dep)
+    {
+        Edit edit = new Edit();
+        edit.deployment = dep;
+        this.edits.add(edit);
+    }
+
+    /**
+     * Records a media being added or changed along with all of its observations
+     *
+     * @param med the new media
+     * @param observations all the observations of the media, replacing any it had before
+     */
+    public void upsertMedia(Media med, List<Observations> observations)
+    {
+        Edit edit = new Edit();
+        edit.mediaID = med.mediaID;
+        edit.media = med;
+        edit.observations = new ArrayList<Observations>(observations);
+        this.edits.add(edit);
+    }
+
+    /**
+     * Records a media and its observations being removed
+     *
+     * @param mediaID the ID of the media to remove
+     */
+    public void deleteMedia(String mediaID)
+    {
+        Edit edit = new Edit();
+        edit.mediaID = mediaID;
+        this.edits.add(edit);
+    }
+
+    /**
+     * Returns whether there are any edits in the log
+     *
+     * @return true if no edits were recorded
+     */
+    public boolean isEmpty()
+    {
+        return this.edits.isEmpty();
+    }
+
+    /**
+     * Appends the edits of a log read from a stream to this log
+     *
+     * @param inStream the stream of a log written by writeTo, not closed
+     * @throws IOException if a problem occurs while reading the stream
+     * @throws CsvValidationException if the CSV data is malformed
+     * @throws InvalidParameterException if a row isn't a known kind of edit
+     */
+    public void read(InputStream inStream) throws IOException, CsvValidationException
+    {
+        CamtrapCsvReader reader = new CamtrapCsvReader(inStream);
+        Edit mediaEdit = null;
+        String[] nextLine;
+        while ((nextLine = reader.readNext()) != null)
+        {
+            String[] values = Arrays.copyOfRange(nextLine, 1, nextLine.length);
+            switch (nextLine[0])
+            {
+                case DEPLOYMENT_ROW:
+                    this.upsertDeployment(Deployments.instance(values));
+                    mediaEdit = null;
+                    break;
+                case MEDIA_ROW:
+                    this.upsertMedia(Media.instance(values), new ArrayList<Observations>());
+                    mediaEdit = this.edits.get(this.edits.size() - 1);
+                    break;
+                case OBSERVATION_ROW:
+                    if (mediaEdit == null)
+                    {
+                        throw new InvalidParameterException("Camtrap edit log has an observation without a media");
+                    }
+                    mediaEdit.observations.add(Observations.instance(values));
+                    break;
+                case DELETE_MEDIA_ROW:
+                    if (values.length < 1)
+                    {
+                        throw new InvalidParameterException("Camtrap edit log has a deletion without a media ID");
+                    }
+                    this.deleteMedia(values[0]);
+                    mediaEdit = null;
+                    break;
+                default:
+                    throw new InvalidParameterException("Unknown Camtrap edit log row '" + nextLine[0] + "'");
+            }
+        }
+    }
+
+    /**
+     * Writes the log to a stream
+     *
+     * @param outStream the stream to write to, not closed
+     * @throws IOException if a problem occurs while writing the stream
+     */
+    public void writeTo(OutputStream outStream) throws IOException
+    {
+        CSVWriter outCsv = new CSVWriter(new BufferedWriter(new OutputStreamWriter(outStream, StandardCharsets.UTF_8)));
+        for (Edit edit: this.edits)
+        {
+            if (edit.deployment != null)
+            {
+                outCsv.writeNext(CamtrapEditLog.prepend(DEPLOYMENT_ROW, edit.deployment.toArray()));
+            }
+            else if (edit.media != null)
+            {
+                outCsv.writeNext(CamtrapEditLog.prepend(MEDIA_ROW, edit.media.toArray()));
+                for (Observations obs: edit.observations)
+                {
+                    outCsv.writeNext(CamtrapEditLog.prepend(OBSERVATION_ROW, obs.toArray()));
+                }
+            }
+            else
+            {
+                outCsv.writeNext(new String[] { DELETE_MEDIA_ROW, edit.mediaID });
+            }
+        }
+        outCsv.flush();
+    }
+
+    /**
+     * Applies the edits to Camtrap data, in the order they were made
+     *
+     * @param metadata the data to edit
+     */
+    public void applyTo(Camtrap metadata)
+    {
+        if (this.edits.isEmpty())
+        {
+            return;
+        }
+
+        // Index the rows by ID once so each edit is a lookup
+        List<Deployments> deployments = new ArrayList<Deployments>(metadata.deployments);
+        Map<String, Integer> deploymentIndexes = new HashMap<String, Integer>();
+        for (int index = 0; index < deployments.size(); index++)
+        {
+            deploymentIndexes.putIfAbsent(deployments.get(index).deploymentID, index);
+        }
+        List<Media> media = new ArrayList<Media>(metadata.media);
+        Map<String, Integer> mediaIndexes = new HashMap<String, Integer>();
+        for (int index = 0; index < media.size(); index++)
+        {
+            mediaIndexes.putIfAbsent(media.get(index).mediaID, index);
+        }
+
+        // The media whose original observations are dropped, and the observations each edited media ends up with
+        Set<String> replacedObservations = new HashSet<String>();
+        Map<String, List<Observations>> newObservations = new HashMap<String, List<Observations>>();
+        List<String> newObservationOrder = new ArrayList<String>();
+
+        for (Edit edit: this.edits)
+        {
+            if (edit.deployment != null)
+            {
+                Integer index = deploymentIndexes.get(edit.deployment.deploymentID);
+                if (index != null)
+                {
+                    deployments.set(index, edit.deployment);
+                }
+                else
+                {
+                    deploymentIndexes.put(edit.deployment.deploymentID, deployments.size());
+                    deployments.add(edit.deployment);
+                }
+                continue;
+            }
+
+            // Removed media are left as nulls until the end so the indexes stay valid
+            Integer index = mediaIndexes.get(edit.mediaID);
+            if (edit.media != null)
+            {
+                if (index != null)
+                {
+                    media.set(index, edit.media);
+                }
+                else
+                {
+                    mediaIndexes.put(edit.mediaID, media.size());
+                    media.add(edit.media);
+                }
+            }
+            else if (index != null)
+            {
+                media.set(index, null);
+                mediaIndexes.remove(edit.mediaID);
+            }
+
+            replacedObservations.add(edit.mediaID);
+            if (!newObservations.containsKey(edit.mediaID))
+            {
+                newObservationOrder.add(edit.mediaID);
+            }
+            newObservations.put(edit.mediaID, edit.observations != null ? edit.observations : new ArrayList<Observations>());
+        }
+
+        media.removeIf(med -> med == null);
+
+        List<Observations> observations = new ArrayList<Observations>(metadata.observations.size());
+        for (Observations obs: metadata.observations)
+        {
+            if (!replacedObservations.contains(obs.mediaID))
+            {
+                observations.add(obs);
+            }
+        }
+        for (String mediaID: newObservationOrder)
+        {
+            observations.addAll(newObservations.get(mediaID));
+        }
+
+        metadata.deployments = deployments;
+        metadata.media = media;
+        metadata.observations = observations;
+    }
+
+    /**
+     * Returns the values with the kind of row in front of them
+     *
+     * @param kind the kind of row
+     * @param values the values of the row
+     * @return the row to write
+     */
+    private static String[] prepend(String kind, String[] values)
+    {
+        String[] row = new String[values.length + 1];
+        row[0] = kind;
+        System.arraycopy(values, 0, row, 1, values.length);
+        return row;
+    }
+
+    /**
+     * One edit, either a deployment upsert, a media upsert with its observations, or a media deletion
+     */
+    private static final class Edit
+    {
+        private Deployments deployment = null;
+        private String mediaID = null;
+        private Media media = null;
+        private List<Observations> observations = null;
+    }
+}
@@ -0,0 +1,78 @@
+package model.image;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Shared pool of the low cardinality strings found in Camtrap data, such as deployment IDs, location names, and
+ * species. Parsed rows share one instance of each distinct value instead of each holding its own copy. The pool only
+ * holds its strings weakly, so values no longer used by any loaded collection are dropped.
+ *
+ * Uploads are parsed in parallel, so the pool is split into stripes by hash code, each with its own lock. Two threads
+ * only wait on each other when they intern strings that fall into the same stripe
+ *
+ * @author Chris Schnaufer
+ */
+public final class CamtrapStringPool
+{
+    // The number of stripes, a power of two so a hash code picks its stripe with a mask
+    private static final int STRIPE_COUNT = 64;
+
+    // The pooled strings split into stripes, each string mapped to a weak reference of itself so the value doesn't
+    // keep its key alive
+    private static final Map<String, WeakReference<String>>[] stripes = createStripes();
+
+    /**
+     * Private constructor, only static methods are used
+     */
+    private CamtrapStringPool()
+    {
+    }
+
+    /**
+     * Creates the empty stripes of the pool
+     *
+     * @return one weak map per stripe
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, WeakReference<String>>[] createStripes()
+    {
+        Map<String, WeakReference<String>>[] toReturn = new Map[STRIPE_COUNT];
+        for (int i = 0; i < STRIPE_COUNT; i++)
+        {
+            toReturn[i] = new WeakHashMap<String, WeakReference<String>>();
+        }
+        return toReturn;
+    }
+
+    /**
+     * Returns the pooled instance of a string, adding the string to the pool if it's not there already
+     *
+     * @param value the string to look up
+     * @return the pooled instance equal to the value, or the value itself if it's null or empty
+     */
+    public static String intern(String value)
+    {
+        // Empty strings are left alone, they aren't worth pooling
+        if ((value == null) || value.isEmpty())
+        {
+            return value;
+        }
+
+        // Spread the high bits down so strings differing only there don't all land in one stripe
+        int hash = value.hashCode();
+        Map<String, WeakReference<String>> stripe = stripes[(hash ^ (hash >>> 16)) & (STRIPE_COUNT - 1)];
+        synchronized (stripe)
+        {
+            WeakReference<String> pooledRef = stripe.get(value);
+            String pooled = pooledRef != null ? pooledRef.get() : null;
+            if (pooled == null)
+            {
+                stripe.put(value, new WeakReference<String>(value));
+                pooled = value;
+            }
+            return pooled;
+        }
+    }
+}
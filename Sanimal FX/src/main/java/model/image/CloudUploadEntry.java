@@ -8,6 +8,7 @@ import javafx.beans.property.SimpleObjectProperty;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The cloud upload entry that represents some upload at some point in time
@@ -20,6 +21,8 @@ public class CloudUploadEntry
 	private transient ObjectProperty<CloudImageDirectory> cloudImageDirectoryProperty = new SimpleObjectProperty<>();
 	// A reference to the associated cloud metadata
 	private transient ObjectProperty<Camtrap> camtrapProperty = new SimpleObjectProperty<>();
+	// Incremented every time the metadata changes, used to tell if cached query results are stale
+	private transient AtomicLong version = new AtomicLong(0);
 
 	// The username of the person that uploaded images
 	private String uploadUser;
@@ -68,6 +71,15 @@ public class CloudUploadEntry
 		this.downloadedProperty = new SimpleBooleanProperty(false);
 		this.cloudImageDirectoryProperty = new SimpleObjectProperty<>();
 		this.camtrapProperty = new SimpleObjectProperty<>();
+		this.version = new AtomicLong(0);
+	}
+
+	/**
+	 * Marks the metadata of the upload as changed, this should be called whenever the metadata is edited in place
+	 */
+	public void markChanged()
+	{
+		this.version.incrementAndGet();
 	}
 
 	/**
@@ -161,10 +173,16 @@ public class CloudUploadEntry
 	public void setMetadata(Camtrap metadata)
 	{
 		this.camtrapProperty.setValue(metadata);
+		this.markChanged();
 	}
 
 	public ObjectProperty<Camtrap> getMetadata()
 	{
 		return this.camtrapProperty;
 	}
+
+	public long getVersion()
+	{
+		return this.version.get();
+	}
 }
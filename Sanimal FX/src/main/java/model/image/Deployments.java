@@ -142,21 +142,21 @@ public final class Deployments
         if (values[0].length() == 0)
             dep.deploymentID = null;
         else
-            dep.deploymentID = values[0];
+            dep.deploymentID = CamtrapStringPool.intern(values[0]);
 
-        dep.locationID = values[1];
-        dep.locationName = values[2];
+        dep.locationID = CamtrapStringPool.intern(values[1]);
+        dep.locationName = CamtrapStringPool.intern(values[2]);
         dep.longitude = Double.parseDouble(values[3]);
         dep.latitude = Double.parseDouble(values[4]);
         dep.coordinateUncertainty = Integer.parseInt(values[5]);
 
         if ((values[6] != null) && (values[6].length() > 0))
-            dep.start = LocalDateTime.parse(values[6], DateTimeFormatter.ISO_DATE_TIME);
+            dep.start = CamtrapCsvReader.parseTimestamp(values[6]);
         else
             dep.start = null;
 
         if ((values[7] != null) && (values[7].length() > 0))
-            dep.end = LocalDateTime.parse(values[7], DateTimeFormatter.ISO_DATE_TIME);
+            dep.end = CamtrapCsvReader.parseTimestamp(values[7]);
         else
             dep.end = null;
 
@@ -168,7 +168,7 @@ public final class Deployments
         dep.cameraTilt = Double.parseDouble(values[13]);
         dep.cameraHeading = Integer.parseInt(values[14]);
 
-        if ((values[15] == "true") || (values[15] == "1"))
+        if ("true".equals(values[15]) || "1".equals(values[15]))
             dep.timestampIssues = true;
         else
             dep.timestampIssues = false;
@@ -91,34 +91,34 @@ public final class Media
         Media med = new Media();
 
         // Assign the values
-        if (values[0] == "")
+        if ("".equals(values[0]))
             med.mediaID = null;
         else
             med.mediaID = values[0];
 
-        if (values[1] == "")
+        if ("".equals(values[1]))
             med.deploymentID = null;
         else
-            med.deploymentID = values[1];
+            med.deploymentID = CamtrapStringPool.intern(values[1]);
 
         med.sequenceID = values[2];
-        med.captureMethod = values[3];
+        med.captureMethod = CamtrapStringPool.intern(values[3]);
 
         if ((values[4] != null) && (values[4].length() > 0))
-            med.timestamp = LocalDateTime.parse(values[4], DateTimeFormatter.ISO_DATE_TIME);
+            med.timestamp = CamtrapCsvReader.parseTimestamp(values[4]);
         else
             med.timestamp = null;
 
         med.filePath = values[5];
         med.fileName = values[6];
-        med.fileMediaType = values[7];
+        med.fileMediaType = CamtrapStringPool.intern(values[7]);
 
-        if (values[8] == "")
+        if ("".equals(values[8]))
             med.exifData = null;
         else
             med.exifData = values[8];
 
-        if ((values[9] == "true") || (values[9] == "1"))
+        if ("true".equals(values[9]) || "1".equals(values[9]))
             med.favorite = true;
         else
             med.favorite = false;
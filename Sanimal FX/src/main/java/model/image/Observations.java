@@ -129,31 +129,31 @@ public final class Observations
         Observations obs = new Observations();
 
         // Populate the data
-        if ((values[0] == null) || (values[0] == ""))
+        if ((values[0] == null) || "".equals(values[0]))
             obs.observationID  = null;
         else
             obs.observationID = values[0];
 
-        obs.deploymentID = values[1];
+        obs.deploymentID = CamtrapStringPool.intern(values[1]);
         obs.sequenceID = values[2];
         obs.mediaID = values[3];
 
         if ((values[4] != null) && (values[4].length() > 0))
         {
-            obs.timestamp = LocalDateTime.parse(values[4], DateTimeFormatter.ISO_DATE_TIME);
+            obs.timestamp = CamtrapCsvReader.parseTimestamp(values[4]);
         }
         else
             obs.timestamp = null;
 
-        obs.observationType = values[5];
+        obs.observationType = CamtrapStringPool.intern(values[5]);
 
-        if ((values[6] == "true") || (values[6] == "1"))
+        if ("true".equals(values[6]) || "1".equals(values[6]))
             obs.cameraSetup = true;
         else
             obs.cameraSetup = false;
 
         obs.taxonID = values[7];
-        obs.scientificName = values[8];
+        obs.scientificName = CamtrapStringPool.intern(values[8]);
         obs.count = Integer.parseInt(values[9]);
         obs.countNew = Integer.parseInt(values[10]);
         obs.lifeStage = values[11];
@@ -164,7 +164,7 @@ public final class Observations
         obs.classifiedBy = values[16];
 
         if ((values[17] != null) && (values[17].length() > 0))
-            obs.classificationTimestamp = LocalDateTime.parse(values[17], DateTimeFormatter.ISO_DATE_TIME);
+            obs.classificationTimestamp = CamtrapCsvReader.parseTimestamp(values[17]);
         else
             obs.classificationTimestamp = null;
 
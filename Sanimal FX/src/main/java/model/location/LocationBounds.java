@@ -0,0 +1,69 @@
+package model.location;
+
+/**
+ * A class representing a latitude/longitude box, such as an area selected on the map
+ */
+public class LocationBounds
+{
+	// The edges of the box
+	private final double minLatitude;
+	private final double minLongitude;
+	private final double maxLatitude;
+	private final double maxLongitude;
+
+	/**
+	 * Constructor takes two opposite corners of the box in any order
+	 *
+	 * @param latitude1 The latitude of the first corner
+	 * @param longitude1 The longitude of the first corner
+	 * @param latitude2 The latitude of the second corner
+	 * @param longitude2 The longitude of the second corner
+	 */
+	public LocationBounds(double latitude1, double longitude1, double latitude2, double longitude2)
+	{
+		this.minLatitude = Math.min(latitude1, latitude2);
+		this.minLongitude = Math.min(longitude1, longitude2);
+		this.maxLatitude = Math.max(latitude1, latitude2);
+		this.maxLongitude = Math.max(longitude1, longitude2);
+	}
+
+	public double getMinLatitude()
+	{
+		return this.minLatitude;
+	}
+
+	public double getMinLongitude()
+	{
+		return this.minLongitude;
+	}
+
+	public double getMaxLatitude()
+	{
+		return this.maxLatitude;
+	}
+
+	public double getMaxLongitude()
+	{
+		return this.maxLongitude;
+	}
+
+	/**
+	 * Returns the latitude of the center of the box
+	 *
+	 * @return The center latitude
+	 */
+	public double getCenterLatitude()
+	{
+		return (this.minLatitude + this.maxLatitude) / 2;
+	}
+
+	/**
+	 * Returns the longitude of the center of the box
+	 *
+	 * @return The center longitude
+	 */
+	public double getCenterLongitude()
+	{
+		return (this.minLongitude + this.maxLongitude) / 2;
+	}
+}
@@ -0,0 +1,203 @@
+package model.location;
+
+import model.analysis.SanimalAnalysisUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Spatial index over latitude/longitude points. Points are bucketed into a uniform grid of cells so box and radius
+ * searches only look at the cells overlapping the search area instead of every point
+ *
+ * @param <T> The type of item stored at each point
+ */
+public class LocationGridIndex<T>
+{
+	// The default size of a grid cell in degrees, about 11km at the equator
+	private static final double DEFAULT_CELL_SIZE = 0.1;
+	// The kilometers in one degree of latitude
+	private static final double KM_PER_DEGREE = 111.32;
+
+	// The size of each cell in degrees
+	private final double cellSize;
+	// The points in each cell, keyed by the packed row and column of the cell
+	private final Map<Long, List<Entry<T>>> cells = new HashMap<>();
+	// The number of points in the index
+	private int size = 0;
+
+	/**
+	 * Constructor for an index with the default cell size
+	 */
+	public LocationGridIndex()
+	{
+		this(DEFAULT_CELL_SIZE);
+	}
+
+	/**
+	 * Constructor for an index with a given cell size
+	 *
+	 * @param cellSize The size of each grid cell in degrees
+	 */
+	public LocationGridIndex(double cellSize)
+	{
+		this.cellSize = cellSize;
+	}
+
+	/**
+	 * Adds an item at a point to the index
+	 *
+	 * @param latitude The latitude of the item
+	 * @param longitude The longitude of the item
+	 * @param item The item to add
+	 */
+	public void add(double latitude, double longitude, T item)
+	{
+		this.cells.computeIfAbsent(this.cellKey(this.row(latitude), this.column(longitude)), key -> new ArrayList<>()).add(new Entry<>(latitude, longitude, item));
+		this.size++;
+	}
+
+	/**
+	 * Removes an item at a point from the index
+	 *
+	 * @param latitude The latitude the item was added at
+	 * @param longitude The longitude the item was added at
+	 * @param item The item to remove
+	 * @return True if the item was found and removed
+	 */
+	public boolean remove(double latitude, double longitude, T item)
+	{
+		long key = this.cellKey(this.row(latitude), this.column(longitude));
+		List<Entry<T>> cell = this.cells.get(key);
+		if (cell != null && cell.removeIf(entry -> entry.item == item))
+		{
+			if (cell.isEmpty())
+				this.cells.remove(key);
+			this.size--;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns every item inside a box, edges included
+	 *
+	 * @param minLatitude The southern edge of the box
+	 * @param minLongitude The western edge of the box
+	 * @param maxLatitude The northern edge of the box
+	 * @param maxLongitude The eastern edge of the box
+	 * @return The items inside the box
+	 */
+	public List<T> withinBox(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude)
+	{
+		List<T> matches = new ArrayList<>();
+		this.forEachCandidate(minLatitude, minLongitude, maxLatitude, maxLongitude, entry ->
+		{
+			if (entry.latitude >= minLatitude && entry.latitude <= maxLatitude && entry.longitude >= minLongitude && entry.longitude <= maxLongitude)
+				matches.add(entry.item);
+		});
+		return matches;
+	}
+
+	/**
+	 * Returns every item within a distance of a point
+	 *
+	 * @param latitude The latitude of the center
+	 * @param longitude The longitude of the center
+	 * @param radiusKm The distance from the center in kilometers
+	 * @return The items within the distance
+	 */
+	public List<T> withinRadius(double latitude, double longitude, double radiusKm)
+	{
+		// Only look at the cells of the box around the circle, then check the real distance
+		double latitudeDelta = radiusKm / KM_PER_DEGREE;
+		double cosLatitude = Math.cos(Math.toRadians(Math.min(89.9, Math.abs(latitude) + latitudeDelta)));
+		double longitudeDelta = Math.min(180, radiusKm / (KM_PER_DEGREE * cosLatitude));
+
+		List<T> matches = new ArrayList<>();
+		this.forEachCandidate(latitude - latitudeDelta, longitude - longitudeDelta, latitude + latitudeDelta, longitude + longitudeDelta, entry ->
+		{
+			// Identical points make acos round past 1, so check them first
+			if ((entry.latitude == latitude && entry.longitude == longitude) || SanimalAnalysisUtils.distanceBetween(latitude, longitude, entry.latitude, entry.longitude) <= radiusKm)
+				matches.add(entry.item);
+		});
+		return matches;
+	}
+
+	/**
+	 * Returns the number of items in the index
+	 *
+	 * @return The number of items
+	 */
+	public int size()
+	{
+		return this.size;
+	}
+
+	/**
+	 * Calls an action on every entry in the cells overlapping a box
+	 *
+	 * @param minLatitude The southern edge of the box
+	 * @param minLongitude The western edge of the box
+	 * @param maxLatitude The northern edge of the box
+	 * @param maxLongitude The eastern edge of the box
+	 * @param action The action to call on each entry
+	 */
+	private void forEachCandidate(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude, Consumer<Entry<T>> action)
+	{
+		int minRow = this.row(minLatitude);
+		int maxRow = this.row(maxLatitude);
+		int minColumn = this.column(minLongitude);
+		int maxColumn = this.column(maxLongitude);
+
+		// A huge box covers more cells than there are filled ones, so just check the filled cells
+		if ((long) (maxRow - minRow + 1) * (maxColumn - minColumn + 1) > this.cells.size())
+		{
+			for (List<Entry<T>> cell : this.cells.values())
+				cell.forEach(action);
+			return;
+		}
+
+		for (int row = minRow; row <= maxRow; row++)
+			for (int column = minColumn; column <= maxColumn; column++)
+			{
+				List<Entry<T>> cell = this.cells.get(this.cellKey(row, column));
+				if (cell != null)
+					cell.forEach(action);
+			}
+	}
+
+	private int row(double latitude)
+	{
+		return (int) Math.floor(latitude / this.cellSize);
+	}
+
+	private int column(double longitude)
+	{
+		return (int) Math.floor(longitude / this.cellSize);
+	}
+
+	private long cellKey(int row, int column)
+	{
+		return ((long) row << 32) | (column & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * An item and the point it was added at
+	 */
+	private static class Entry<T>
+	{
+		private final double latitude;
+		private final double longitude;
+		private final T item;
+
+		Entry(double latitude, double longitude, T item)
+		{
+			this.latitude = latitude;
+			this.longitude = longitude;
+			this.item = item;
+		}
+	}
+}
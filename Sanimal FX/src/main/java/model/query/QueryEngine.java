@@ -33,6 +33,7 @@ public class QueryEngine
 		SPECIES_FILTER("Species Filter", SpeciesFilterCondition::new),
 		LOCATION_FILTER("Location Filter", LocationFilterCondition::new),
 		ELEVATION_FILTER("Elevation filter", ElevationCondition::new),
+		MAP_AREA_FILTER("Map Area Filter", MapAreaCondition::new),
 		YEAR_FILTER("Year Filter", YearCondition::new),
 		MONTH_FILTER("Month Filter", MonthCondition::new),
 		HOUR_FILTER("Hour Filter", HourCondition::new),
@@ -163,6 +163,33 @@ public class S3Query
 		appendQueryElement(S3QueryPart.VALUE, operator, elevation.toString());
 	}
 
+	/**
+	 * Adds a condition that all images must be taken at a location inside the box
+	 *
+	 * @param minLatitude The southern edge of the box
+	 * @param minLongitude The western edge of the box
+	 * @param maxLatitude The northern edge of the box
+	 * @param maxLongitude The eastern edge of the box
+	 */
+	public void addBoundingBoxCondition(Double minLatitude, Double minLongitude, Double maxLatitude, Double maxLongitude)
+	{
+		appendQueryElement(S3QueryPart.ATTRIBUTE, S3QueryConditionOperators.EQUAL, SanimalMetadataFields.A_LOCATION_WITHIN_BOX);
+		appendQueryElement(S3QueryPart.VALUE, S3QueryConditionOperators.EQUAL, "(" + minLatitude + "," + minLongitude + "," + maxLatitude + "," + maxLongitude + ")");
+	}
+
+	/**
+	 * Adds a condition that all images must be taken at a location within a distance of a point
+	 *
+	 * @param latitude The latitude of the point
+	 * @param longitude The longitude of the point
+	 * @param radiusKm The distance from the point in kilometers
+	 */
+	public void addRadiusCondition(Double latitude, Double longitude, Double radiusKm)
+	{
+		appendQueryElement(S3QueryPart.ATTRIBUTE, S3QueryConditionOperators.EQUAL, SanimalMetadataFields.A_LOCATION_WITHIN_RADIUS);
+		appendQueryElement(S3QueryPart.VALUE, S3QueryConditionOperators.EQUAL, "(" + latitude + "," + longitude + "," + radiusKm + ")");
+	}
+
 	/**
 	 * Finalizes the query and returns it as an S3 query builder objects
 	 *
@@ -0,0 +1,225 @@
+package model.query;
+
+import model.image.Deployments;
+import model.image.Media;
+import model.image.Observations;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Class holding the grouped counts of an aggregate query
+ *
+ * Observations are grouped by species, location and month. Each group counts the images and observations in it,
+ * sums the number of individuals observed, and keeps the first and last timestamps. Aggregates aren't thread safe,
+ * parallel producers should each fill their own instance and combine them with {@link #merge(S3QueryAggregate)}
+ */
+public class S3QueryAggregate
+{
+    // The groups by their species, location, and month
+    private final Map<GroupKey, Group> groups = new HashMap<GroupKey, Group>();
+
+    /**
+     * Adds an observation of a media to its group
+     *
+     * @param med the media the observation belongs to
+     * @param obs the observation to add
+     * @param dep the deployment of the observation, may be null
+     */
+    public void addObservation(final Media med, final Observations obs, final Deployments dep)
+    {
+        LocalDateTime timestamp = obs.timestamp != null ? obs.timestamp : med.timestamp;
+        String locationID = dep != null ? dep.locationID : "";
+        String locationName = dep != null ? dep.locationName : "";
+        GroupKey key = new GroupKey(obs.scientificName != null ? obs.scientificName : "", locationID != null ? locationID : "",
+                                    timestamp != null ? YearMonth.from(timestamp) : null);
+
+        Group group = this.groups.get(key);
+        if (group == null)
+        {
+            group = new Group(key, locationName);
+            this.groups.put(key, group);
+        }
+
+        // Observations of one media are added one after the other, so only count the image the first time
+        if (group.lastMedia != med)
+        {
+            group.imageCount++;
+            group.lastMedia = med;
+        }
+        group.observationCount++;
+        group.individualCount += obs.count;
+        if (timestamp != null)
+        {
+            if ((group.firstTimestamp == null) || timestamp.isBefore(group.firstTimestamp))
+                group.firstTimestamp = timestamp;
+            if ((group.lastTimestamp == null) || timestamp.isAfter(group.lastTimestamp))
+                group.lastTimestamp = timestamp;
+        }
+    }
+
+    /**
+     * Adds the groups of another aggregate into this one
+     *
+     * @param other the aggregate to merge into this one
+     * @return {@link S3QueryAggregate} this instance
+     */
+    public S3QueryAggregate merge(final S3QueryAggregate other)
+    {
+        if (other == null)
+        {
+            return this;
+        }
+
+        for (Group otherGroup: other.groups.values())
+        {
+            Group group = this.groups.get(otherGroup.key);
+            if (group == null)
+            {
+                group = new Group(otherGroup.key, otherGroup.locationName);
+                this.groups.put(otherGroup.key, group);
+            }
+
+            group.imageCount += otherGroup.imageCount;
+            group.observationCount += otherGroup.observationCount;
+            group.individualCount += otherGroup.individualCount;
+            if ((otherGroup.firstTimestamp != null) && ((group.firstTimestamp == null) || otherGroup.firstTimestamp.isBefore(group.firstTimestamp)))
+                group.firstTimestamp = otherGroup.firstTimestamp;
+            if ((otherGroup.lastTimestamp != null) && ((group.lastTimestamp == null) || otherGroup.lastTimestamp.isAfter(group.lastTimestamp)))
+                group.lastTimestamp = otherGroup.lastTimestamp;
+        }
+
+        return this;
+    }
+
+    /**
+     * Returns the groups sorted by species, then location, then month
+     *
+     * @return the list of groups
+     */
+    public List<Group> getGroups()
+    {
+        List<Group> sortedGroups = new ArrayList<Group>(this.groups.values());
+        sortedGroups.sort(Comparator.comparing(Group::getScientificName)
+                                    .thenComparing(Group::getLocationID)
+                                    .thenComparing(Group::getMonth, Comparator.nullsLast(Comparator.naturalOrder())));
+        return sortedGroups;
+    }
+
+    /**
+     * Returns the number of groups
+     *
+     * @return the number of groups
+     */
+    public int size()
+    {
+        return this.groups.size();
+    }
+
+    /**
+     * The species, location, and month a group is made up of
+     */
+    private static class GroupKey
+    {
+        private final String scientificName;
+        private final String locationID;
+        private final YearMonth month;
+
+        GroupKey(final String scientificName, final String locationID, final YearMonth month)
+        {
+            this.scientificName = scientificName;
+            this.locationID = locationID;
+            this.month = month;
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            if (this == other)
+                return true;
+            if (!(other instanceof GroupKey))
+                return false;
+            GroupKey otherKey = (GroupKey) other;
+            return this.scientificName.equals(otherKey.scientificName) && this.locationID.equals(otherKey.locationID) && Objects.equals(this.month, otherKey.month);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(this.scientificName, this.locationID, this.month);
+        }
+    }
+
+    /**
+     * The counts of one species at one location in one month
+     */
+    public static class Group
+    {
+        private final GroupKey key;
+        private final String locationName;
+        private long imageCount = 0;
+        private long observationCount = 0;
+        private long individualCount = 0;
+        private LocalDateTime firstTimestamp = null;
+        private LocalDateTime lastTimestamp = null;
+        // The last media counted as an image of this group
+        private Media lastMedia = null;
+
+        Group(final GroupKey key, final String locationName)
+        {
+            this.key = key;
+            this.locationName = locationName != null ? locationName : "";
+        }
+
+        public String getScientificName()
+        {
+            return this.key.scientificName;
+        }
+
+        public String getLocationID()
+        {
+            return this.key.locationID;
+        }
+
+        public String getLocationName()
+        {
+            return this.locationName;
+        }
+
+        public YearMonth getMonth()
+        {
+            return this.key.month;
+        }
+
+        public long getImageCount()
+        {
+            return this.imageCount;
+        }
+
+        public long getObservationCount()
+        {
+            return this.observationCount;
+        }
+
+        public long getIndividualCount()
+        {
+            return this.individualCount;
+        }
+
+        public LocalDateTime getFirstTimestamp()
+        {
+            return this.firstTimestamp;
+        }
+
+        public LocalDateTime getLastTimestamp()
+        {
+            return this.lastTimestamp;
+        }
+    }
+}
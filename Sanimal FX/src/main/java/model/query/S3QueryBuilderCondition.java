@@ -1,5 +1,8 @@
 package model.query;
 
+import java.util.Collections;
+import java.util.Set;
+
 /**
  * Class representing a query condition
  */
@@ -8,6 +11,7 @@ public class S3QueryBuilderCondition
     private final S3QueryPart part;
     private final S3QueryConditionOperators operator;
     private final String value;
+    private final Set<String> valueSet;
 
     /**
      * Returns an initialized instance of this class
@@ -22,6 +26,20 @@ public class S3QueryBuilderCondition
         return new S3QueryBuilderCondition(part, operator, value);
     }
 
+    /**
+     * Returns an initialized instance of this class that holds a set of values instead of a value string. Used for
+     * conditions built while running a query, so the values never have to be written out and parsed back
+     * 
+     * @param part identifier of query field
+     * @param operator operator to apply
+     * @param valueSet values to query on
+     * @return {@link S3QueryBuilderCondition} the populated instance
+     */
+    public static S3QueryBuilderCondition instance(final S3QueryPart part, final S3QueryConditionOperators operator, final Set<String> valueSet)
+    {
+        return new S3QueryBuilderCondition(part, operator, null, Collections.unmodifiableSet(valueSet));
+    }
+
     /**
      * Default constructor
      */
@@ -30,6 +48,7 @@ public class S3QueryBuilderCondition
         this.part = null;
         this.operator = null;
         this.value = null;
+        this.valueSet = null;
     }
 
     /**
@@ -40,10 +59,24 @@ public class S3QueryBuilderCondition
      * @param value value to query on
      */
     public S3QueryBuilderCondition(final S3QueryPart part, final S3QueryConditionOperators operator, final String value)
+    {
+        this(part, operator, value, null);
+    }
+
+    /**
+     * Populated constructor
+     * 
+     * @param part identifier of query field
+     * @param operator operator to apply
+     * @param value value to query on, null if the condition holds a set of values
+     * @param valueSet values to query on, null if the condition holds a value string
+     */
+    private S3QueryBuilderCondition(final S3QueryPart part, final S3QueryConditionOperators operator, final String value, final Set<String> valueSet)
     {
         this.part = part;
         this.operator = operator;
         this.value = value;
+        this.valueSet = valueSet;
     }
 
     /**
@@ -75,4 +108,14 @@ public class S3QueryBuilderCondition
     {
         return this.value;
     }
+
+    /**
+     * Returns the set of values of the query
+     * 
+     * @return {@code Set<String>} the values, or null if the condition holds a value string
+     */
+    final public Set<String> getValueSet()
+    {
+        return this.valueSet;
+    }
 }
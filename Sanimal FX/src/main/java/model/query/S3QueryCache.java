@@ -0,0 +1,269 @@
+package model.query;
+
+import model.image.CloudUploadEntry;
+import model.image.ImageEntry;
+import model.s3.ImageCollection;
+import model.species.SpeciesEntry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Bounded cache of query results. Results are keyed by a canonical form of the query's conditions plus the version
+ * of every collection and upload the query searched, so a result is never returned once any of those change. The
+ * least recently used results are dropped once the cache holds too many queries or too many images.
+ *
+ * Images are copied going into and coming out of the cache, so every query result gets its own image entries.
+ * Editing the images of one result, or of an analysis built from it, never changes the cached images or any
+ * other result
+ */
+public class S3QueryCache
+{
+	// The most queries to keep results for
+	private static final int MAX_ENTRIES = 8;
+	// The most image paths to keep across all cached queries
+	private static final int MAX_CACHED_IMAGES = 500000;
+
+	// The cached results, in least recently used order
+	private final LinkedHashMap<String, CachedResult> entries = new LinkedHashMap<>(16, 0.75f, true);
+	// The number of image paths currently cached
+	private int cachedImages = 0;
+
+	/**
+	 * Creates the cache key of a query
+	 *
+	 * @param queryBuilder The built query
+	 * @param collections The collections the query searches
+	 * @return The key identifying the query and the state of the collections it searches
+	 */
+	public static String createKey(S3QueryBuilder queryBuilder, List<ImageCollection> collections)
+	{
+		// Conditions come in attribute-value pairs which each filter the media in order, so the order of the pairs doesn't change the result
+		List<String> conditionPairs = new ArrayList<>();
+		String lastAttribute = null;
+		for (S3QueryBuilderCondition condition : queryBuilder.getConditions())
+		{
+			String conditionText = condition.getPart() + ":" + condition.getOperator() + ":" + condition.getValue();
+			if (condition.getPart() == S3QueryPart.ATTRIBUTE)
+			{
+				lastAttribute = conditionText;
+			}
+			else if (lastAttribute != null)
+			{
+				conditionPairs.add(lastAttribute + "\u0000" + conditionText);
+				lastAttribute = null;
+			}
+			else
+			{
+				conditionPairs.add(conditionText);
+			}
+		}
+		Collections.sort(conditionPairs);
+
+		StringBuilder key = new StringBuilder();
+		key.append(queryBuilder.isDistinct()).append('|').append(queryBuilder.isCaseInsensitive());
+		for (String conditionPair : conditionPairs)
+			key.append('|').append(conditionPair);
+
+		// Stamp the key with the version of everything the query looks at
+		for (ImageCollection collection : collections)
+		{
+			key.append("|#").append(collection.getID()).append('@').append(collection.getUploadsVersion());
+			for (CloudUploadEntry upload : new ArrayList<>(collection.getUploads()))
+				key.append(',').append(upload.getUploadPath()).append('@').append(upload.getVersion());
+		}
+
+		return key.toString();
+	}
+
+	/**
+	 * Returns the cached image paths of a query
+	 *
+	 * @param key The key of the query
+	 * @return The cached image paths, or null if the query isn't cached
+	 */
+	public synchronized List<String> getPaths(String key)
+	{
+		CachedResult result = this.entries.get(key);
+		return result != null ? result.paths : null;
+	}
+
+	/**
+	 * Returns the cached image paths of a query along with copies of its cached images, both read from the same
+	 * cached result
+	 *
+	 * @param key The key of the query
+	 * @return The cached paths and copies of the cached images, or null if the query isn't cached or was cached
+	 * without its images
+	 */
+	public Result getResult(String key)
+	{
+		CachedResult result;
+		synchronized (this)
+		{
+			result = this.entries.get(key);
+		}
+		if (result == null || result.images == null)
+			return null;
+		// Copy outside of the lock, the cached images are never changed
+		return new Result(result.paths, copyImages(result.images));
+	}
+
+	/**
+	 * Caches the result of a query, replacing any result with the same key
+	 *
+	 * @param key The key of the query
+	 * @param collections The collections the query searched
+	 * @param paths The image paths the query returned
+	 * @param images The images the query returned, may be null if the query only returned paths
+	 */
+	public void put(String key, List<ImageCollection> collections, List<String> paths, List<ImageEntry> images)
+	{
+		// Don't let a single huge result push out everything else
+		if (paths.size() > MAX_CACHED_IMAGES)
+			return;
+
+		// The caller keeps the images it passed in, so cache copies of them
+		this.putCopies(key, collections, paths, images != null ? copyImages(images) : null);
+	}
+
+	/**
+	 * Caches the result of a query whose images were already copied
+	 *
+	 * @param key The key of the query
+	 * @param collections The collections the query searched
+	 * @param paths The image paths the query returned
+	 * @param images Copies of the images the query returned, may be null if the query only returned paths
+	 */
+	private synchronized void putCopies(String key, List<ImageCollection> collections, List<String> paths, List<ImageEntry> images)
+	{
+		// Don't replace a result that has its images with one that doesn't
+		if (images == null && this.entries.containsKey(key))
+			return;
+
+		Set<UUID> collectionIDs = new HashSet<>();
+		for (ImageCollection collection : collections)
+			collectionIDs.add(collection.getID());
+
+		CachedResult previous = this.entries.put(key, new CachedResult(collectionIDs,
+				Collections.unmodifiableList(new ArrayList<>(paths)),
+				images != null ? Collections.unmodifiableList(images) : null));
+		if (previous != null)
+			this.cachedImages -= previous.paths.size();
+		this.cachedImages += paths.size();
+
+		// Drop the least recently used results until we're back under the limits
+		Iterator<CachedResult> oldest = this.entries.values().iterator();
+		while (oldest.hasNext() && (this.entries.size() > MAX_ENTRIES || this.cachedImages > MAX_CACHED_IMAGES))
+		{
+			this.cachedImages -= oldest.next().paths.size();
+			oldest.remove();
+		}
+	}
+
+	/**
+	 * Drops every cached result that searched a collection. Stale results are never returned anyway since their key
+	 * no longer matches, this just frees them early
+	 *
+	 * @param collection The collection that changed
+	 */
+	public synchronized void invalidate(ImageCollection collection)
+	{
+		Iterator<CachedResult> results = this.entries.values().iterator();
+		while (results.hasNext())
+		{
+			CachedResult result = results.next();
+			if (result.collectionIDs.contains(collection.getID()))
+			{
+				this.cachedImages -= result.paths.size();
+				results.remove();
+			}
+		}
+	}
+
+	/**
+	 * Copies image entries so the copies can be changed without changing the originals. Locations and species
+	 * are shared, the species entries holding their amounts are not
+	 *
+	 * @param images The images to copy
+	 * @return The copies in the same order
+	 */
+	private static List<ImageEntry> copyImages(List<ImageEntry> images)
+	{
+		List<ImageEntry> copies = new ArrayList<>(images.size());
+		for (ImageEntry image : images)
+		{
+			ImageEntry copy = new ImageEntry(image.getFile());
+			copy.setLocationTaken(image.getLocationTaken());
+			copy.setDateTaken(image.getDateTaken());
+			for (SpeciesEntry speciesEntry : image.getSpeciesPresent())
+				copy.getSpeciesPresent().add(new SpeciesEntry(speciesEntry.getSpecies(), speciesEntry.getAmount()));
+			copy.markDiskDirty(image.isDiskDirty());
+			copies.add(copy);
+		}
+		return copies;
+	}
+
+	/**
+	 * Drops every cached result
+	 */
+	public synchronized void clear()
+	{
+		this.entries.clear();
+		this.cachedImages = 0;
+	}
+
+	/**
+	 * The paths and images of a cached query, as handed out by the cache
+	 */
+	public static class Result
+	{
+		private final List<String> paths;
+		private final List<ImageEntry> images;
+
+		private Result(List<String> paths, List<ImageEntry> images)
+		{
+			this.paths = paths;
+			this.images = images;
+		}
+
+		/**
+		 * @return The cached image paths, this list can't be changed
+		 */
+		public List<String> getPaths()
+		{
+			return this.paths;
+		}
+
+		/**
+		 * @return Copies of the cached images
+		 */
+		public List<ImageEntry> getImages()
+		{
+			return this.images;
+		}
+	}
+
+	/**
+	 * The cached result of one query
+	 */
+	private static class CachedResult
+	{
+		private final Set<UUID> collectionIDs;
+		private final List<String> paths;
+		private final List<ImageEntry> images;
+
+		CachedResult(Set<UUID> collectionIDs, List<String> paths, List<ImageEntry> images)
+		{
+			this.collectionIDs = collectionIDs;
+			this.paths = paths;
+			this.images = images;
+		}
+	}
+}
@@ -6,14 +6,26 @@ import model.image.CloudUploadEntry;
 import model.image.Deployments;
 import model.image.Observations;
 import model.image.Media;
+import model.location.LocationGridIndex;
 import model.s3.ImageCollection;
 import model.SanimalData;
+import model.threading.CancellationToken;
 
 import org.apache.commons.io.FilenameUtils;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.ArrayList;
-import java.util.concurrent.CompletableFuture;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 import java.util.List;
 import java.time.Instant;
 import java.time.LocalDateTime;
@@ -26,6 +38,10 @@ public class S3QueryExecute
 {
     // The number of significant digits to use when comparing locations
     private static Double LOCATION_DECIMAL_MAX_DIFFERENCE = 0.00001;
+    // The number of media an upload query task filters before splitting the work
+    private static final int QUERY_CHUNK_SIZE = 2000;
+    // The pool running the query tasks, sized to the machine
+    private static final ForkJoinPool QUERY_POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
 
     /**
      * Performs the query to filter collections and images
@@ -36,8 +52,25 @@ public class S3QueryExecute
      */
     public static S3QueryResultSet executeQuery(S3QueryBuilder queryBuilder, final List<ImageCollection> collections) throws  InterruptedException, ExecutionException
     {
-        S3QueryResultSet resultSet = new S3QueryResultSet();
-        List<S3QueryBuilderCondition> conditions = queryBuilder.getConditions();
+        return S3QueryExecute.executeQuery(queryBuilder, collections, null, new CancellationToken(), null);
+    }
+
+    /**
+     * Performs the query to filter collections and images, publishing the matches of each upload as soon as they're found
+     * 
+     * @param queryBuilder the query to run
+     * @param collections the list of collections to check
+     * @param batchConsumer optional consumer receiving the new rows found in each upload, in upload order
+     * @param cancelToken the token used to stop the query, checked between conditions and chunks of media
+     * @param profile optional profile to record the time and row counts of each condition and upload into
+     * @return the result set of found images
+     * @throws InterruptedException if the calling thread is interrupted, any queued work is cancelled
+     * @throws CancellationException if the token is cancelled or its deadline passes, any queued work is cancelled
+     */
+    public static S3QueryResultSet executeQuery(S3QueryBuilder queryBuilder, final List<ImageCollection> collections,
+                                                final Consumer<S3QueryResultSet> batchConsumer, final CancellationToken cancelToken,
+                                                final S3QueryProfile profile) throws  InterruptedException, ExecutionException
+    {
         boolean isDistinct = queryBuilder.isDistinct();
         boolean isCaseInsensitive = queryBuilder.isCaseInsensitive();
 
@@ -47,58 +80,660 @@ public class S3QueryExecute
             return null;
         }
 
-        // Define class to hold search results
-        class InternalResults
+        long startNanos = System.nanoTime();
+        if (profile != null)
         {
-            public String bucket;
-            public List<String> matches;
+            profile.setConditions(queryBuilder.getConditions());
         }
+        List<S3QueryBuilderCondition> conditions = S3QueryExecute.resolveSpatialConditions(queryBuilder.getConditions(), collections);
 
-        // Iterate through the collections and look at the metadata
-        List<CompletableFuture<List<InternalResults>>> allFutures = new ArrayList<CompletableFuture<List<InternalResults>>>();
+        // Create one task for each upload, large uploads are split further by the task itself. Uploads that can't match
+        // are skipped by their task before any media are filtered
+        List<ForkJoinTask<S3QueryResultSet>> allTasks = new ArrayList<ForkJoinTask<S3QueryResultSet>>();
         for (ImageCollection oneCollection: collections)
         {
-            CompletableFuture<List<InternalResults>> queryFuture = CompletableFuture.supplyAsync(() -> {
-                List<InternalResults> allMatches = new ArrayList<InternalResults>();
-                List<CloudUploadEntry> uploads = oneCollection.getUploads();
-                for (CloudUploadEntry oneEntry: uploads)
+            List<CloudUploadEntry> uploads = new ArrayList<CloudUploadEntry>(oneCollection.getUploads());
+            for (CloudUploadEntry oneEntry: uploads)
+            {
+                Camtrap metaData = oneEntry.getMetadata().getValue();
+                S3StringDictionary dictionary = oneCollection.getStringDictionary();
+                long uploadVersion = oneEntry.getVersion();
+                allTasks.add(QUERY_POOL.submit(() ->
                 {
-                    Camtrap metaData = oneEntry.getMetadata().getValue();
-                    List<String> matches = S3QueryExecute.queryMatches(conditions, metaData, isCaseInsensitive);
-                    if ((matches != null) && (matches.size() > 0))
+                    // Resolve the species and location conditions once for the whole upload, before its media are split up
+                    DictionaryMatches dictionaryMatches = DictionaryMatches.resolve(conditions, metaData, dictionary, uploadVersion, isCaseInsensitive);
+                    S3QueryProfile.PruneReason pruneReason = S3QueryExecute.findPruneReason(conditions, metaData, dictionaryMatches);
+                    if (pruneReason != null)
                     {
-                        InternalResults res = new InternalResults();
-                        res.bucket = oneEntry.getBucket();
-                        res.matches = matches;
-                        allMatches.add(res);
+                        if (profile != null)
+                        {
+                            profile.recordUploadPruned(pruneReason);
+                        }
+                        return new S3QueryResultSet(isDistinct);
                     }
+
+                    S3QueryProfile.UploadProfile uploadProfile = profile != null ? profile.recordUploadScanned(oneEntry.getUploadPath(), metaData.media.size()) : null;
+                    return new QueryMatchesTask(conditions, oneEntry.getBucket(), metaData, dictionaryMatches,
+                                                metaData.media, isCaseInsensitive, isDistinct, cancelToken, profile, uploadProfile).invoke();
+                }));
+            }
+        }
+
+        // Merge the results in upload order so the result set is stable between runs
+        S3QueryResultSet resultSet = new S3QueryResultSet(isDistinct);
+        try
+        {
+            for (ForkJoinTask<S3QueryResultSet> oneTask: allTasks)
+            {
+                int firstNewRow = resultSet.size();
+                resultSet.merge(cancelToken.await(oneTask));
+
+                // Publish only the rows that made it into the result set
+                if ((batchConsumer != null) && (resultSet.size() > firstNewRow))
+                {
+                    batchConsumer.accept(resultSet.slice(firstNewRow, resultSet.size()));
                 }
+            }
+        }
+        finally
+        {
+            // Don't leave work behind if we stopped early
+            for (ForkJoinTask<S3QueryResultSet> oneTask: allTasks)
+            {
+                oneTask.cancel(false);
+            }
+
+            if (profile != null)
+            {
+                profile.setExecutionTime(System.nanoTime() - startNanos);
+            }
+        }
+
+        return resultSet;
+    }
+
+    /**
+     * Performs the query in aggregate mode. Instead of returning the matching images, the observations of the matching
+     * media are grouped by species, location and month and counted directly over the Camtrap rows
+     * 
+     * @param queryBuilder the query to run
+     * @param collections the list of collections to check
+     * @param cancelToken the token used to stop the query, checked between conditions and chunks of media
+     * @param profile optional profile to record the time and row counts of each condition and upload into
+     * @return the grouped counts of the matching observations
+     * @throws InterruptedException if the calling thread is interrupted, any queued work is cancelled
+     * @throws CancellationException if the token is cancelled or its deadline passes, any queued work is cancelled
+     */
+    public static S3QueryAggregate executeAggregateQuery(S3QueryBuilder queryBuilder, final List<ImageCollection> collections,
+                                                         final CancellationToken cancelToken, final S3QueryProfile profile)
+                                                         throws  InterruptedException, ExecutionException
+    {
+        boolean isCaseInsensitive = queryBuilder.isCaseInsensitive();
+
+        long startNanos = System.nanoTime();
+        if (profile != null)
+        {
+            profile.setConditions(queryBuilder.getConditions());
+        }
+        List<S3QueryBuilderCondition> conditions = S3QueryExecute.resolveSpatialConditions(queryBuilder.getConditions(), collections);
+
+        // Create one task for each upload, large uploads are split further by the task itself. Uploads that can't match
+        // are skipped by their task before any media are filtered
+        List<ForkJoinTask<S3QueryAggregate>> allTasks = new ArrayList<ForkJoinTask<S3QueryAggregate>>();
+        for (ImageCollection oneCollection: collections)
+        {
+            List<CloudUploadEntry> uploads = new ArrayList<CloudUploadEntry>(oneCollection.getUploads());
+            for (CloudUploadEntry oneEntry: uploads)
+            {
+                Camtrap metaData = oneEntry.getMetadata().getValue();
+                S3StringDictionary dictionary = oneCollection.getStringDictionary();
+                long uploadVersion = oneEntry.getVersion();
+                allTasks.add(QUERY_POOL.submit(() ->
+                {
+                    // Resolve the species and location conditions once for the whole upload, before its media are split up
+                    DictionaryMatches dictionaryMatches = DictionaryMatches.resolve(conditions, metaData, dictionary, uploadVersion, isCaseInsensitive);
+                    S3QueryProfile.PruneReason pruneReason = S3QueryExecute.findPruneReason(conditions, metaData, dictionaryMatches);
+                    if (pruneReason != null)
+                    {
+                        if (profile != null)
+                        {
+                            profile.recordUploadPruned(pruneReason);
+                        }
+                        return new S3QueryAggregate();
+                    }
 
-                return allMatches;
+                    S3QueryProfile.UploadProfile uploadProfile = profile != null ? profile.recordUploadScanned(oneEntry.getUploadPath(), metaData.media.size()) : null;
+                    return new AggregateTask(conditions, metaData, dictionaryMatches, null, metaData.media,
+                                             isCaseInsensitive, cancelToken, profile, uploadProfile).invoke();
+                }));
             }
-            );
+        }
 
-            allFutures.add(queryFuture);
+        S3QueryAggregate aggregate = new S3QueryAggregate();
+        try
+        {
+            for (ForkJoinTask<S3QueryAggregate> oneTask: allTasks)
+            {
+                aggregate.merge(cancelToken.await(oneTask));
+            }
         }
+        finally
+        {
+            // Don't leave work behind if we stopped early
+            for (ForkJoinTask<S3QueryAggregate> oneTask: allTasks)
+            {
+                oneTask.cancel(false);
+            }
 
-        if (allFutures.size() > 0)
+            if (profile != null)
+            {
+                profile.setExecutionTime(System.nanoTime() - startNanos);
+            }
+        }
+
+        return aggregate;
+    }
+
+    /**
+     * Replaces the box and radius conditions of a query with conditions on the deployments they contain. The deployments
+     * of all uploads are put into a grid index once, so each spatial condition is answered by looking at the nearby cells
+     * instead of computing the distance of every media
+     * 
+     * @param conditions the query filtering conditions
+     * @param collections the list of collections the query checks
+     * @return the conditions with any spatial conditions resolved, or the original conditions if there are none
+     */
+    private static List<S3QueryBuilderCondition> resolveSpatialConditions(final List<S3QueryBuilderCondition> conditions,
+                                                                          final List<ImageCollection> collections)
+    {
+        boolean hasSpatial = conditions.stream().anyMatch(condition -> (condition.getPart() == S3QueryPart.ATTRIBUTE) &&
+                                                                          S3QueryExecute.isSpatialAttribute(condition.getValue()));
+        if (!hasSpatial)
         {
-            CompletableFuture<Void> combinedFuture = CompletableFuture.allOf(allFutures.toArray(new CompletableFuture[allFutures.size()]));
-            combinedFuture.get();
+            return conditions;
+        }
 
-            for (CompletableFuture<List<InternalResults>> oneFuture: allFutures)
+        // Index every deployment once
+        LocationGridIndex<String> deploymentIndex = new LocationGridIndex<String>();
+        Set<String> indexedDeployments = new HashSet<String>();
+        for (ImageCollection oneCollection: collections)
+        {
+            for (CloudUploadEntry oneEntry: new ArrayList<CloudUploadEntry>(oneCollection.getUploads()))
             {
-                for (InternalResults allMatches: oneFuture.get())
+                Camtrap metaData = oneEntry.getMetadata().getValue();
+                if (metaData == null)
                 {
-                    if ((allMatches.matches != null) && (allMatches.matches.size() > 0))
+                    continue;
+                }
+
+                for (Deployments dep: metaData.deployments)
+                {
+                    if ((dep.deploymentID != null) && indexedDeployments.add(dep.deploymentID))
                     {
-                        S3QueryExecute.addMatchesToResults(resultSet, allMatches.bucket, allMatches.matches, isDistinct);
+                        deploymentIndex.add(dep.latitude, dep.longitude, dep.deploymentID);
                     }
                 }
             }
         }
 
-        return resultSet;
+        List<S3QueryBuilderCondition> resolved = new ArrayList<S3QueryBuilderCondition>(conditions.size());
+        S3QueryBuilderCondition spatialAttribute = null;
+        for (S3QueryBuilderCondition oneCondition: conditions)
+        {
+            if ((oneCondition.getPart() == S3QueryPart.ATTRIBUTE) && S3QueryExecute.isSpatialAttribute(oneCondition.getValue()))
+            {
+                spatialAttribute = oneCondition;
+            }
+            else if ((spatialAttribute != null) && (oneCondition.getPart() == S3QueryPart.VALUE))
+            {
+                List<Double> bounds = S3QueryExecute.getDoubleValuesArray(oneCondition.getValue());
+                List<String> deploymentIDs = spatialAttribute.getValue().equals(SanimalMetadataFields.A_LOCATION_WITHIN_BOX) ?
+                                                deploymentIndex.withinBox(bounds.get(0), bounds.get(1), bounds.get(2), bounds.get(3)) :
+                                                deploymentIndex.withinRadius(bounds.get(0), bounds.get(1), bounds.get(2));
+
+                resolved.add(S3QueryBuilderCondition.instance(S3QueryPart.ATTRIBUTE, S3QueryConditionOperators.EQUAL, SanimalMetadataFields.A_DEPLOYMENT_ID));
+                // Deployment IDs hold the user's location IDs, so carry them as a set instead of writing them into a value string
+                resolved.add(S3QueryBuilderCondition.instance(S3QueryPart.VALUE, S3QueryConditionOperators.IN, new HashSet<String>(deploymentIDs)));
+                spatialAttribute = null;
+            }
+            else
+            {
+                resolved.add(oneCondition);
+            }
+        }
+
+        return resolved;
+    }
+
+    /**
+     * Finds out if an upload can't have any matches without filtering its media. An upload is skipped if it has no
+     * media, if a species or location condition matches none of the dictionary strings its media use, or if a
+     * deployment condition matches none of its deployments
+     * 
+     * @param conditions the query filtering conditions, with any spatial conditions resolved
+     * @param metadata the metadata of the upload, may be null
+     * @param dictionaryMatches the species and location conditions resolved against the upload
+     * @return the reason the upload can be skipped, or null if its media have to be filtered
+     */
+    private static S3QueryProfile.PruneReason findPruneReason(final List<S3QueryBuilderCondition> conditions, final Camtrap metadata,
+                                                              final DictionaryMatches dictionaryMatches)
+    {
+        if ((metadata == null) || (metadata.media.size() <= 0))
+        {
+            return S3QueryProfile.PruneReason.NO_MEDIA;
+        }
+
+        // Every condition has to pass, so one condition nothing in the upload passes is enough to skip it
+        S3QueryBuilderCondition lastAttribute = null;
+        for (S3QueryBuilderCondition oneCondition: conditions)
+        {
+            if (oneCondition.getPart() == S3QueryPart.ATTRIBUTE)
+            {
+                lastAttribute = oneCondition;
+                continue;
+            }
+            if ((oneCondition.getPart() != S3QueryPart.VALUE) || (lastAttribute == null))
+            {
+                continue;
+            }
+
+            String attribute = lastAttribute.getValue();
+            lastAttribute = null;
+
+            if (dictionaryMatches.isResolved(oneCondition))
+            {
+                if (!dictionaryMatches.hasAnyMatch(oneCondition, S3QueryExecute.getDictionaryField(attribute)))
+                {
+                    return S3QueryProfile.PruneReason.DICTIONARY;
+                }
+            }
+            else if (SanimalMetadataFields.A_DEPLOYMENT_ID.equals(attribute) && (oneCondition.getOperator() == S3QueryConditionOperators.IN))
+            {
+                // The deployment lists of spatial conditions come from the uploads' deployments, so checking those is enough
+                Set<String> deploymentIDs = oneCondition.getValueSet();
+                if (metadata.deployments.stream().noneMatch(dep -> deploymentIDs.contains(dep.deploymentID)))
+                {
+                    return S3QueryProfile.PruneReason.DEPLOYMENT;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the dictionary field a species or location attribute is encoded into
+     * 
+     * @param attribute the attribute of the condition
+     * @return the field of the dictionary, or -1 if the attribute isn't dictionary encoded
+     */
+    private static int getDictionaryField(final String attribute)
+    {
+        switch (attribute)
+        {
+            case SanimalMetadataFields.A_SPECIES_SCIENTIFIC_NAME:
+                return S3StringDictionary.SCIENTIFIC_NAME;
+            case SanimalMetadataFields.A_SPECIES_COMMON_NAME:
+                return S3StringDictionary.COMMON_NAME;
+            case SanimalMetadataFields.A_LOCATION_NAME:
+                return S3StringDictionary.LOCATION_NAME;
+            case SanimalMetadataFields.A_LOCATION_ID:
+                return S3StringDictionary.LOCATION_ID;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Returns whether an attribute is a box or radius condition
+     * 
+     * @param attribute the attribute to check
+     * @return true if the attribute is resolved against the deployment index
+     */
+    private static boolean isSpatialAttribute(final String attribute)
+    {
+        return SanimalMetadataFields.A_LOCATION_WITHIN_BOX.equals(attribute) || SanimalMetadataFields.A_LOCATION_WITHIN_RADIUS.equals(attribute);
+    }
+
+    /**
+     * The species and location conditions of a query resolved against the string dictionary for one upload. The upload
+     * is encoded first so the dictionary holds every string its media use, then each condition is resolved once into
+     * the codes that pass it. Read only once built, so every task filtering the upload's media shares it without locking
+     */
+    private static class DictionaryMatches
+    {
+        // Used when the upload has no media or no dictionary, no condition is resolved
+        private static final DictionaryMatches NONE = new DictionaryMatches(null);
+
+        private final S3StringDictionary.EncodedUpload encodedUpload;
+        // The codes that pass each resolved value condition
+        private final Map<S3QueryBuilderCondition, BitSet> matchingCodes = new IdentityHashMap<S3QueryBuilderCondition, BitSet>();
+
+        /**
+         * Constructor
+         * 
+         * @param encodedUpload the encoded media of the upload
+         */
+        private DictionaryMatches(final S3StringDictionary.EncodedUpload encodedUpload)
+        {
+            this.encodedUpload = encodedUpload;
+        }
+
+        /**
+         * Resolves the dictionary encoded conditions of a query for an upload. The upload is only encoded if the
+         * query has such a condition
+         * 
+         * @param conditions the query filtering conditions
+         * @param metadata the metadata of the upload, may be null
+         * @param dictionary the string dictionary of the collection the upload belongs to, may be null
+         * @param uploadVersion the version of the upload the metadata was read at
+         * @param caseInsensitive whether to search strings in a case insensitive manner
+         * @return the resolved conditions
+         */
+        static DictionaryMatches resolve(final List<S3QueryBuilderCondition> conditions, final Camtrap metadata, final S3StringDictionary dictionary,
+                                         final long uploadVersion, final boolean caseInsensitive)
+        {
+            if ((metadata == null) || (metadata.media.size() <= 0) || (dictionary == null))
+            {
+                return NONE;
+            }
+
+            DictionaryMatches resolved = null;
+            S3QueryBuilderCondition lastAttribute = null;
+            for (S3QueryBuilderCondition oneCondition: conditions)
+            {
+                if (oneCondition.getPart() == S3QueryPart.ATTRIBUTE)
+                {
+                    lastAttribute = oneCondition;
+                    continue;
+                }
+                if ((oneCondition.getPart() != S3QueryPart.VALUE) || (lastAttribute == null))
+                {
+                    continue;
+                }
+
+                String attribute = lastAttribute.getValue();
+                lastAttribute = null;
+                if ((S3QueryExecute.getDictionaryField(attribute) >= 0) && S3StringDictionary.supportsOperator(oneCondition.getOperator()))
+                {
+                    // Encode the upload first, resolving only finds codes the dictionary already holds
+                    if (resolved == null)
+                    {
+                        resolved = new DictionaryMatches(dictionary.getEncodedUpload(metadata, uploadVersion));
+                    }
+                    resolved.matchingCodes.put(oneCondition, dictionary.resolve(oneCondition.getOperator(),
+                                                                                S3QueryExecute.getStringValuesArray(oneCondition.getValue()), caseInsensitive));
+                }
+            }
+
+            return resolved != null ? resolved : NONE;
+        }
+
+        /**
+         * Returns true if a value condition was resolved to codes, otherwise it's compared as a string
+         * 
+         * @param condition the value condition
+         * @return true if the condition can be matched through the dictionary
+         */
+        boolean isResolved(final S3QueryBuilderCondition condition)
+        {
+            return this.matchingCodes.containsKey(condition);
+        }
+
+        /**
+         * Returns true if any media of the upload could pass a resolved condition
+         * 
+         * @param condition the resolved value condition
+         * @param field the dictionary field the condition compares
+         * @return false if no media of the upload can pass the condition
+         */
+        boolean hasAnyMatch(final S3QueryBuilderCondition condition, final int field)
+        {
+            return this.encodedUpload.hasAnyCode(field, this.matchingCodes.get(condition));
+        }
+
+        /**
+         * Returns true if a media passes a resolved condition, missing values never pass
+         * 
+         * @param condition the resolved value condition
+         * @param med the media to check
+         * @param field the dictionary field the condition compares
+         * @return true if the media passes the condition
+         */
+        boolean matches(final S3QueryBuilderCondition condition, final Media med, final int field)
+        {
+            int code = this.encodedUpload.getCode(med, field);
+            return (code != S3StringDictionary.MISSING) && this.matchingCodes.get(condition).get(code);
+        }
+    }
+
+    /**
+     * Fork-join task that finds the matching media of an upload. Media lists larger than the chunk size
+     * are split in half until each piece can be filtered on its own. Each task fills its own result set
+     * which is merged into its parent's when joined, so no locking is needed
+     */
+    private static class QueryMatchesTask extends RecursiveTask<S3QueryResultSet>
+    {
+        private final List<S3QueryBuilderCondition> conditions;
+        private final String bucket;
+        private final Camtrap metadata;
+        private final DictionaryMatches dictionaryMatches;
+        private final List<Media> mediaList;
+        private final boolean caseInsensitive;
+        private final boolean distinct;
+        private final CancellationToken cancelToken;
+        private final S3QueryProfile profile;
+        private final S3QueryProfile.UploadProfile uploadProfile;
+
+        /**
+         * Constructor
+         * 
+         * @param conditions the query filtering conditions
+         * @param bucket the bucket the upload belongs to
+         * @param metadata the metadata the media belongs to
+         * @param dictionaryMatches the species and location conditions resolved against the upload
+         * @param mediaList the media to filter
+         * @param caseInsensitive whether to search strings in a case insensitive manner
+         * @param distinct whether the results are to be distinct (no duplicates)
+         * @param cancelToken the token used to stop filtering
+         * @param profile optional profile to record condition counts into
+         * @param uploadProfile optional profile of the upload to record time spent into
+         */
+        QueryMatchesTask(final List<S3QueryBuilderCondition> conditions, final String bucket, final Camtrap metadata,
+                         final DictionaryMatches dictionaryMatches, final List<Media> mediaList, final boolean caseInsensitive,
+                         final boolean distinct, final CancellationToken cancelToken,
+                         final S3QueryProfile profile, final S3QueryProfile.UploadProfile uploadProfile)
+        {
+            this.conditions = conditions;
+            this.bucket = bucket;
+            this.metadata = metadata;
+            this.dictionaryMatches = dictionaryMatches;
+            this.mediaList = mediaList;
+            this.caseInsensitive = caseInsensitive;
+            this.distinct = distinct;
+            this.cancelToken = cancelToken;
+            this.profile = profile;
+            this.uploadProfile = uploadProfile;
+        }
+
+        /**
+         * Filters the media, splitting the work when there's too much of it
+         * 
+         * @return the result set of matching images in media order
+         */
+        @Override
+        protected S3QueryResultSet compute()
+        {
+            // Don't start on work nobody is waiting for
+            this.cancelToken.throwIfCancelled();
+
+            int numMedia = this.mediaList.size();
+            if (numMedia <= QUERY_CHUNK_SIZE)
+            {
+                long chunkStartNanos = System.nanoTime();
+                S3QueryResultSet results = new S3QueryResultSet(this.distinct);
+                List<String> matches = S3QueryExecute.queryMatches(this.conditions, this.metadata, this.dictionaryMatches, this.mediaList,
+                                                                   this.caseInsensitive, this.cancelToken, this.profile);
+                S3QueryExecute.addMatchesToResults(results, this.bucket, matches);
+                if (this.uploadProfile != null)
+                {
+                    this.uploadProfile.recordChunk(matches.size(), System.nanoTime() - chunkStartNanos);
+                }
+                return results;
+            }
+
+            int middle = numMedia / 2;
+            QueryMatchesTask firstHalf = new QueryMatchesTask(this.conditions, this.bucket, this.metadata, this.dictionaryMatches,
+                                                              this.mediaList.subList(0, middle), this.caseInsensitive, this.distinct, this.cancelToken,
+                                                              this.profile, this.uploadProfile);
+            QueryMatchesTask secondHalf = new QueryMatchesTask(this.conditions, this.bucket, this.metadata, this.dictionaryMatches,
+                                                               this.mediaList.subList(middle, numMedia), this.caseInsensitive, this.distinct, this.cancelToken,
+                                                               this.profile, this.uploadProfile);
+            firstHalf.fork();
+
+            S3QueryResultSet secondResults = secondHalf.compute();
+            return firstHalf.join().merge(secondResults);
+        }
+    }
+
+    /**
+     * Fork-join task that aggregates the observations of the matching media of an upload. Work is split the same way
+     * as {@link QueryMatchesTask}, the first task of an upload indexes its observations and deployments for the others
+     */
+    private static class AggregateTask extends RecursiveTask<S3QueryAggregate>
+    {
+        private final List<S3QueryBuilderCondition> conditions;
+        private final Camtrap metadata;
+        private final DictionaryMatches dictionaryMatches;
+        private final CamtrapIndex index;
+        private final List<Media> mediaList;
+        private final boolean caseInsensitive;
+        private final CancellationToken cancelToken;
+        private final S3QueryProfile profile;
+        private final S3QueryProfile.UploadProfile uploadProfile;
+
+        /**
+         * Constructor
+         * 
+         * @param conditions the query filtering conditions
+         * @param metadata the metadata the media belongs to
+         * @param dictionaryMatches the species and location conditions resolved against the upload
+         * @param index the index of the metadata, or null to have this task build it
+         * @param mediaList the media to filter
+         * @param caseInsensitive whether to search strings in a case insensitive manner
+         * @param cancelToken the token used to stop filtering
+         * @param profile optional profile to record condition counts into
+         * @param uploadProfile optional profile of the upload to record time spent into
+         */
+        AggregateTask(final List<S3QueryBuilderCondition> conditions, final Camtrap metadata, final DictionaryMatches dictionaryMatches,
+                      final CamtrapIndex index, final List<Media> mediaList,
+                      final boolean caseInsensitive, final CancellationToken cancelToken, final S3QueryProfile profile,
+                      final S3QueryProfile.UploadProfile uploadProfile)
+        {
+            this.conditions = conditions;
+            this.metadata = metadata;
+            this.dictionaryMatches = dictionaryMatches;
+            this.index = index;
+            this.mediaList = mediaList;
+            this.caseInsensitive = caseInsensitive;
+            this.cancelToken = cancelToken;
+            this.profile = profile;
+            this.uploadProfile = uploadProfile;
+        }
+
+        /**
+         * Filters and aggregates the media, splitting the work when there's too much of it
+         * 
+         * @return the grouped counts of the matching media
+         */
+        @Override
+        protected S3QueryAggregate compute()
+        {
+            // Don't start on work nobody is waiting for
+            this.cancelToken.throwIfCancelled();
+
+            CamtrapIndex curIndex = this.index != null ? this.index : new CamtrapIndex(this.metadata);
+
+            int numMedia = this.mediaList.size();
+            if (numMedia <= QUERY_CHUNK_SIZE)
+            {
+                long chunkStartNanos = System.nanoTime();
+                S3QueryAggregate aggregate = new S3QueryAggregate();
+                List<Media> matches = S3QueryExecute.filterMedia(this.conditions, this.metadata, this.dictionaryMatches, this.mediaList,
+                                                                 this.caseInsensitive, this.cancelToken, this.profile);
+                for (Media med: matches)
+                {
+                    for (Observations obs: curIndex.getObservations(med))
+                    {
+                        aggregate.addObservation(med, obs, curIndex.getDeployment(obs));
+                    }
+                }
+                if (this.uploadProfile != null)
+                {
+                    this.uploadProfile.recordChunk(matches.size(), System.nanoTime() - chunkStartNanos);
+                }
+                return aggregate;
+            }
+
+            int middle = numMedia / 2;
+            AggregateTask firstHalf = new AggregateTask(this.conditions, this.metadata, this.dictionaryMatches, curIndex, this.mediaList.subList(0, middle),
+                                                        this.caseInsensitive, this.cancelToken, this.profile, this.uploadProfile);
+            AggregateTask secondHalf = new AggregateTask(this.conditions, this.metadata, this.dictionaryMatches, curIndex, this.mediaList.subList(middle, numMedia),
+                                                         this.caseInsensitive, this.cancelToken, this.profile, this.uploadProfile);
+            firstHalf.fork();
+
+            S3QueryAggregate secondAggregate = secondHalf.compute();
+            return firstHalf.join().merge(secondAggregate);
+        }
+    }
+
+    /**
+     * Index of an upload's Camtrap rows, used to find the observations of a media and the deployment of an
+     * observation without scanning. Read only once built, so it can be shared between tasks
+     */
+    private static class CamtrapIndex
+    {
+        private final Map<String, List<Observations>> observationsByMedia = new HashMap<String, List<Observations>>();
+        private final Map<String, Deployments> deploymentsByID = new HashMap<String, Deployments>();
+
+        /**
+         * Constructor
+         * 
+         * @param metadata the metadata to index
+         */
+        CamtrapIndex(final Camtrap metadata)
+        {
+            for (Observations obs: metadata.observations)
+            {
+                this.observationsByMedia.computeIfAbsent(obs.mediaID, mediaID -> new ArrayList<Observations>(1)).add(obs);
+            }
+            for (Deployments dep: metadata.deployments)
+            {
+                this.deploymentsByID.putIfAbsent(dep.deploymentID, dep);
+            }
+        }
+
+        /**
+         * Returns the observations of a media
+         * 
+         * @param med the media
+         * @return the list of observations, empty if there are none
+         */
+        List<Observations> getObservations(final Media med)
+        {
+            return this.observationsByMedia.getOrDefault(med.mediaID, new ArrayList<Observations>(0));
+        }
+
+        /**
+         * Returns the deployment of an observation
+         * 
+         * @param obs the observation
+         * @return the deployment, or null if it wasn't found
+         */
+        Deployments getDeployment(final Observations obs)
+        {
+            return this.deploymentsByID.get(obs.deploymentID);
+        }
     }
 
     /**
@@ -106,15 +741,46 @@ public class S3QueryExecute
      * 
      * @param conditions the query filtering conditions
      * @param metadata the metadata to query
+     * @param dictionaryMatches the species and location conditions resolved against the upload
+     * @param startMedia the media of the metadata to filter
      * @param caseInsensitive whether to search strings in a case insensitive manner
+     * @param cancelToken the token checked before each condition is applied
+     * @param profile optional profile to record the rows in and out and time of each condition into
      * @return a list of matching image paths
      */
-    private static List<String> queryMatches(List<S3QueryBuilderCondition> conditions, Camtrap metadata, boolean caseInsensitive)
+    private static List<String> queryMatches(List<S3QueryBuilderCondition> conditions, Camtrap metadata, DictionaryMatches dictionaryMatches,
+                                             List<Media> startMedia, boolean caseInsensitive, CancellationToken cancelToken, S3QueryProfile profile)
+    {
+        List<String> results = new ArrayList<String>();
+
+        // Return the results
+        for (Media med: S3QueryExecute.filterMedia(conditions, metadata, dictionaryMatches, startMedia, caseInsensitive, cancelToken, profile))
+        {
+            results.add(med.filePath);
+        }
+
+        return results;
+    }
+
+    /**
+     * Find the media matching the query
+     * 
+     * @param conditions the query filtering conditions
+     * @param metadata the metadata to query
+     * @param dictionaryMatches the species and location conditions resolved against the upload
+     * @param startMedia the media of the metadata to filter
+     * @param caseInsensitive whether to search strings in a case insensitive manner
+     * @param cancelToken the token checked before each condition is applied
+     * @param profile optional profile to record the rows in and out and time of each condition into
+     * @return the list of matching media, in the order of the start media
+     */
+    private static List<Media> filterMedia(List<S3QueryBuilderCondition> conditions, Camtrap metadata, DictionaryMatches dictionaryMatches,
+                                           List<Media> startMedia, boolean caseInsensitive, CancellationToken cancelToken, S3QueryProfile profile)
     {
-        List<Media> mediaList = metadata.media;
+        List<Media> mediaList = startMedia;
         S3QueryBuilderCondition lastAttribute = null;
         S3QueryBuilderCondition lastValue = null;
-        List<String> results = new ArrayList<String>();
+        int conditionIndex = 0;
 
         // Perform the query
         if (conditions.size() > 0)
@@ -128,6 +794,8 @@ public class S3QueryExecute
 
                 if ((lastAttribute != null) && (lastValue != null))
                 {
+                    cancelToken.throwIfCancelled();
+                    long conditionStartNanos = System.nanoTime();
                     List<Media> newMedia = null;
 
                     // Store local values and reset the attribute-value pair
@@ -253,6 +921,11 @@ public class S3QueryExecute
                             break;
 
                         case SanimalMetadataFields.A_LOCATION_NAME:
+                            if (dictionaryMatches.isResolved(curValue))
+                            {
+                                newMedia = S3QueryExecute.filterEncoded(curValue, mediaList, dictionaryMatches, S3StringDictionary.LOCATION_NAME);
+                                break;
+                            }
                             newMedia = S3QueryExecute.filterString(curValue.getOperator(),
                                 S3QueryExecute.getStringValuesArray(curValue.getValue()),
                                 caseInsensitive, mediaList, metadata,
@@ -278,6 +951,11 @@ public class S3QueryExecute
                             break;
 
                         case SanimalMetadataFields.A_LOCATION_ID:
+                            if (dictionaryMatches.isResolved(curValue))
+                            {
+                                newMedia = S3QueryExecute.filterEncoded(curValue, mediaList, dictionaryMatches, S3StringDictionary.LOCATION_ID);
+                                break;
+                            }
                             newMedia = S3QueryExecute.filterString(curValue.getOperator(),
                                 S3QueryExecute.getStringValuesArray(curValue.getValue()),
                                 caseInsensitive, mediaList, metadata,
@@ -378,6 +1056,11 @@ public class S3QueryExecute
                             break;
 
                         case SanimalMetadataFields.A_SPECIES_SCIENTIFIC_NAME:
+                            if (dictionaryMatches.isResolved(curValue))
+                            {
+                                newMedia = S3QueryExecute.filterEncoded(curValue, mediaList, dictionaryMatches, S3StringDictionary.SCIENTIFIC_NAME);
+                                break;
+                            }
                             newMedia = S3QueryExecute.filterString(curValue.getOperator(),
                                 S3QueryExecute.getStringValuesArray(curValue.getValue()),
                                 caseInsensitive, mediaList, metadata,
@@ -397,6 +1080,11 @@ public class S3QueryExecute
                             break;
 
                         case SanimalMetadataFields.A_SPECIES_COMMON_NAME:
+                            if (dictionaryMatches.isResolved(curValue))
+                            {
+                                newMedia = S3QueryExecute.filterEncoded(curValue, mediaList, dictionaryMatches, S3StringDictionary.COMMON_NAME);
+                                break;
+                            }
                             newMedia = S3QueryExecute.filterString(curValue.getOperator(),
                                 S3QueryExecute.getStringValuesArray(curValue.getValue()),
                                 caseInsensitive, mediaList, metadata,
@@ -445,6 +1133,20 @@ public class S3QueryExecute
                                 );
                             break;
 
+                        case SanimalMetadataFields.A_DEPLOYMENT_ID:
+                            // Spatial conditions resolve to long deployment lists, so look them up in a set
+                            Set<String> deploymentIDs = curValue.getValueSet();
+                            boolean inDeployments = curValue.getOperator() != S3QueryConditionOperators.NOT_IN;
+                            newMedia = new ArrayList<Media>();
+                            for (Media med: mediaList)
+                            {
+                                if ((med.deploymentID != null) && (deploymentIDs.contains(med.deploymentID) == inDeployments))
+                                {
+                                    newMedia.add(med);
+                                }
+                            }
+                            break;
+
                         case SanimalMetadataFields.A_COLLECTION_ID:
                             newMedia = S3QueryExecute.filterString(curValue.getOperator(),
                                 S3QueryExecute.getStringValuesArray(curValue.getValue()),
@@ -473,6 +1175,13 @@ public class S3QueryExecute
                             break;
                     }
 
+                    if (profile != null)
+                    {
+                        profile.recordCondition(conditionIndex, mediaList.size(), newMedia != null ? newMedia.size() : 0,
+                                                System.nanoTime() - conditionStartNanos);
+                    }
+                    conditionIndex++;
+
                     mediaList = newMedia;
                     if (mediaList.size() <= 0)
                     {
@@ -482,13 +1191,7 @@ public class S3QueryExecute
             }
         }
 
-        // Return the results
-        for (Media med: mediaList)
-        {
-            results.add(med.filePath);
-        }
-
-        return results;
+        return mediaList;
     }
 
     /**
@@ -622,6 +1325,33 @@ public class S3QueryExecute
         return matches;
     }
 
+    /**
+     * Filters the media list on a dictionary encoded string value. The condition was resolved to the set of codes
+     * that pass it once for the upload, so each media is matched by looking up its code
+     * 
+     * @param condition the value condition, resolved in the dictionary matches
+     * @param curMedia the list of media to search
+     * @param dictionaryMatches the species and location conditions resolved against the upload
+     * @param field the dictionary field to compare
+     * @return a list of matching Media
+     */
+    private static List<Media> filterEncoded(final S3QueryBuilderCondition condition, final List<Media> curMedia,
+                                             final DictionaryMatches dictionaryMatches, final int field)
+    {
+        List<Media> matches = new ArrayList<Media>();
+
+        // Find all matching media, missing values never match
+        for (Media med: curMedia)
+        {
+            if (dictionaryMatches.matches(condition, med, field))
+            {
+                matches.add(med);
+            }
+        }
+
+        return matches;
+    }
+
     /**
      * Filters the media list on a string value
      * 
@@ -1167,14 +1897,13 @@ public class S3QueryExecute
     }
 
     /**
-     * Adds found matches to the result set
+     * Adds found matches to the result set. Duplicates are dropped by the result set when it's distinct
      * 
      * @param curResults the current result set
      * @param bucket the bucket the results belong to
      * @param matches the potential matches to add
-     * @param isDistinct whether to ensure the reset set is distinct (no duplicates)
      */
-    private static void addMatchesToResults(S3QueryResultSet curResults, final String bucket, final List<String> matches, boolean isDistinct)
+    private static void addMatchesToResults(S3QueryResultSet curResults, final String bucket, final List<String> matches)
     {
         // Iterate through the matches
         for (String oneMatch: matches)
@@ -1182,10 +1911,7 @@ public class S3QueryExecute
             String path = bucket + "::" +FilenameUtils.getPath(oneMatch);
             String name = FilenameUtils.getName(oneMatch);
 
-            if (!isDistinct || !curResults.findRow(path, name))
-            {
-                curResults.addRow(path, name);
-            }
+            curResults.addRow(path, name);
         }
     }
 
@@ -0,0 +1,28 @@
+package model.query;
+
+import model.image.ImageEntry;
+
+import java.util.List;
+
+/**
+ * Interface used to receive the results of a streaming query as they become available.
+ * Methods may be called from background threads
+ */
+public interface S3QueryListener
+{
+	/**
+	 * Called when the query finds a new batch of matching images
+	 *
+	 * @param absoluteRemotePaths The cloud paths of the newly matched images
+	 * @param totalMatches The number of images matched so far
+	 */
+	void matchesFound(List<String> absoluteRemotePaths, int totalMatches);
+
+	/**
+	 * Called when the metadata for a batch of matched images has been loaded
+	 *
+	 * @param images The newly loaded images
+	 * @param totalLoaded The number of images loaded so far
+	 */
+	void imagesLoaded(List<ImageEntry> images, int totalLoaded);
+}
@@ -0,0 +1,314 @@
+package model.query;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects timings and row counts while a query runs so slow queries can be explained. Every part of the query
+ * records into the same profile, possibly from many threads at once, and the result is formatted as a text report
+ */
+public class S3QueryProfile
+{
+	// The most uploads listed in the report, slowest first
+	private static final int MAX_REPORTED_UPLOADS = 25;
+
+	// When the query started and how long it took overall
+	private final long startNanos = System.nanoTime();
+	private final AtomicLong totalNanos = new AtomicLong(0);
+	// If the result came out of the query cache
+	private volatile boolean cacheHit = false;
+
+	// Time spent retrieving the uploads of each collection
+	private final ConcurrentLinkedQueue<SyncProfile> syncs = new ConcurrentLinkedQueue<>();
+	private final AtomicLong syncNanos = new AtomicLong(0);
+
+	// Time spent filtering uploads, along with how many uploads were looked at or skipped
+	private final AtomicLong executionNanos = new AtomicLong(0);
+	private final AtomicInteger uploadsScanned = new AtomicInteger(0);
+	private final AtomicIntegerArray uploadsPruned = new AtomicIntegerArray(PruneReason.values().length);
+	private final ConcurrentLinkedQueue<UploadProfile> uploads = new ConcurrentLinkedQueue<>();
+	private volatile List<ConditionProfile> conditions = new ArrayList<>();
+
+	// Time spent loading the metadata of the matches
+	private final LongAdder hydrationNanos = new LongAdder();
+	private final LongAdder hydrationBatches = new LongAdder();
+	private final LongAdder imagesHydrated = new LongAdder();
+
+	/**
+	 * Sets up the per condition counters for the conditions of a query. Conditions are counted as attribute-value pairs
+	 * in the order the query applies them
+	 *
+	 * @param queryConditions The conditions of the built query
+	 */
+	public void setConditions(List<S3QueryBuilderCondition> queryConditions)
+	{
+		List<ConditionProfile> newConditions = new ArrayList<>();
+		S3QueryBuilderCondition lastAttribute = null;
+		for (S3QueryBuilderCondition condition : queryConditions)
+		{
+			if (condition.getPart() == S3QueryPart.ATTRIBUTE)
+				lastAttribute = condition;
+			else if (condition.getPart() == S3QueryPart.VALUE && lastAttribute != null)
+			{
+				newConditions.add(new ConditionProfile(lastAttribute.getValue() + " " + condition.getOperator() + " " + condition.getValue()));
+				lastAttribute = null;
+			}
+		}
+		this.conditions = newConditions;
+	}
+
+	/**
+	 * Records one pass of a condition over a chunk of media
+	 *
+	 * @param conditionIndex The index of the attribute-value pair in the query
+	 * @param rowsIn The number of media the condition was given
+	 * @param rowsOut The number of media that passed the condition
+	 * @param nanos The time the condition took
+	 */
+	public void recordCondition(int conditionIndex, long rowsIn, long rowsOut, long nanos)
+	{
+		List<ConditionProfile> currentConditions = this.conditions;
+		if (conditionIndex < currentConditions.size())
+		{
+			ConditionProfile conditionProfile = currentConditions.get(conditionIndex);
+			conditionProfile.rowsIn.add(rowsIn);
+			conditionProfile.rowsOut.add(rowsOut);
+			conditionProfile.nanos.add(nanos);
+		}
+	}
+
+	/**
+	 * Records an upload the query skipped without filtering
+	 *
+	 * @param reason Why the upload was skipped
+	 */
+	public void recordUploadPruned(PruneReason reason)
+	{
+		this.uploadsPruned.incrementAndGet(reason.ordinal());
+	}
+
+	/**
+	 * Records an upload the query filters
+	 *
+	 * @param uploadPath The path of the upload
+	 * @param mediaCount The number of media in the upload
+	 * @return The profile of the upload, filled in as the upload is filtered
+	 */
+	public UploadProfile recordUploadScanned(String uploadPath, int mediaCount)
+	{
+		this.uploadsScanned.incrementAndGet();
+		UploadProfile uploadProfile = new UploadProfile(uploadPath, mediaCount);
+		this.uploads.add(uploadProfile);
+		return uploadProfile;
+	}
+
+	/**
+	 * Records the time spent retrieving the uploads of a collection
+	 *
+	 * @param collectionName The name of the collection
+	 * @param uploadCount The number of uploads retrieved
+	 * @param nanos The time the retrieval took
+	 */
+	public void recordSync(String collectionName, int uploadCount, long nanos)
+	{
+		this.syncs.add(new SyncProfile(collectionName, uploadCount, nanos));
+	}
+
+	/**
+	 * Records the wall clock time spent syncing all collections
+	 *
+	 * @param nanos The time syncing took
+	 */
+	public void setSyncTime(long nanos)
+	{
+		this.syncNanos.set(nanos);
+	}
+
+	/**
+	 * Records the wall clock time spent filtering all uploads
+	 *
+	 * @param nanos The time filtering took
+	 */
+	public void setExecutionTime(long nanos)
+	{
+		this.executionNanos.set(nanos);
+	}
+
+	/**
+	 * Records the metadata of a batch of matches being loaded
+	 *
+	 * @param imageCount The number of images loaded
+	 * @param nanos The time loading took
+	 */
+	public void recordHydration(int imageCount, long nanos)
+	{
+		this.hydrationBatches.increment();
+		this.imagesHydrated.add(imageCount);
+		this.hydrationNanos.add(nanos);
+	}
+
+	/**
+	 * Marks the query as answered from the query cache
+	 */
+	public void setCacheHit()
+	{
+		this.cacheHit = true;
+	}
+
+	/**
+	 * Marks the query as finished, fixing the total time
+	 */
+	public void finish()
+	{
+		this.totalNanos.compareAndSet(0, System.nanoTime() - this.startNanos);
+	}
+
+	/**
+	 * Formats the profile into a text report
+	 *
+	 * @return The report
+	 */
+	public String formatReport()
+	{
+		long total = this.totalNanos.get() != 0 ? this.totalNanos.get() : System.nanoTime() - this.startNanos;
+
+		StringBuilder report = new StringBuilder();
+		report.append("QUERY PROFILE\n");
+		report.append("Total time: ").append(toMillis(total)).append(" ms").append(this.cacheHit ? " (answered from the query cache)" : "").append("\n\n");
+
+		report.append("SYNC (retrieving uploads): ").append(toMillis(this.syncNanos.get())).append(" ms\n");
+		for (SyncProfile sync : this.syncs)
+			report.append(String.format("  %-40s %8d uploads %10d ms\n", sync.collectionName, sync.uploadCount, toMillis(sync.nanos)));
+		report.append("\n");
+
+		report.append("EXECUTION (filtering uploads): ").append(toMillis(this.executionNanos.get())).append(" ms\n");
+		int totalPruned = 0;
+		StringBuilder prunedReasons = new StringBuilder();
+		for (PruneReason reason : PruneReason.values())
+		{
+			int pruned = this.uploadsPruned.get(reason.ordinal());
+			totalPruned = totalPruned + pruned;
+			prunedReasons.append(prunedReasons.length() == 0 ? "" : ", ").append(reason.description).append(": ").append(pruned);
+		}
+		report.append("  Uploads scanned: ").append(this.uploadsScanned.get()).append(", pruned: ").append(totalPruned).append(" (").append(prunedReasons).append(")\n");
+		report.append(String.format("  %-3s %-50s %12s %12s %12s\n", "#", "Condition", "Rows in", "Rows out", "Time (ms)"));
+		List<ConditionProfile> currentConditions = this.conditions;
+		for (int index = 0; index < currentConditions.size(); index++)
+		{
+			ConditionProfile conditionProfile = currentConditions.get(index);
+			report.append(String.format("  %-3d %-50s %12d %12d %12d\n", index + 1, conditionProfile.description,
+					conditionProfile.rowsIn.sum(), conditionProfile.rowsOut.sum(), toMillis(conditionProfile.nanos.sum())));
+		}
+		report.append("\n");
+
+		List<UploadProfile> slowestUploads = new ArrayList<>(this.uploads);
+		slowestUploads.sort(Comparator.comparingLong((UploadProfile upload) -> upload.nanos.sum()).reversed());
+		report.append("SLOWEST UPLOADS\n");
+		report.append(String.format("  %-70s %10s %10s %12s\n", "Upload", "Media", "Matches", "Time (ms)"));
+		for (UploadProfile upload : slowestUploads.subList(0, Math.min(MAX_REPORTED_UPLOADS, slowestUploads.size())))
+			report.append(String.format("  %-70s %10d %10d %12d\n", upload.uploadPath, upload.mediaCount, upload.matches.get(), toMillis(upload.nanos.sum())));
+		report.append("\n");
+
+		report.append("HYDRATION (loading metadata): ").append(toMillis(this.hydrationNanos.sum())).append(" ms over ")
+				.append(this.hydrationBatches.sum()).append(" batches, ").append(this.imagesHydrated.sum()).append(" images\n");
+
+		return report.toString();
+	}
+
+	/**
+	 * Converts nanoseconds to milliseconds
+	 *
+	 * @param nanos The nanoseconds
+	 * @return The milliseconds
+	 */
+	private static long toMillis(long nanos)
+	{
+		return TimeUnit.NANOSECONDS.toMillis(nanos);
+	}
+
+	/**
+	 * The reasons an upload can be skipped without filtering its media
+	 */
+	public enum PruneReason
+	{
+		NO_MEDIA("no media"),
+		DICTIONARY("no species or location match"),
+		DEPLOYMENT("no deployment match");
+
+		private final String description;
+
+		PruneReason(String description)
+		{
+			this.description = description;
+		}
+	}
+
+	/**
+	 * The counters of one attribute-value condition
+	 */
+	private static class ConditionProfile
+	{
+		private final String description;
+		private final LongAdder rowsIn = new LongAdder();
+		private final LongAdder rowsOut = new LongAdder();
+		private final LongAdder nanos = new LongAdder();
+
+		ConditionProfile(String description)
+		{
+			this.description = description;
+		}
+	}
+
+	/**
+	 * The time spent retrieving the uploads of one collection
+	 */
+	private static class SyncProfile
+	{
+		private final String collectionName;
+		private final int uploadCount;
+		private final long nanos;
+
+		SyncProfile(String collectionName, int uploadCount, long nanos)
+		{
+			this.collectionName = collectionName;
+			this.uploadCount = uploadCount;
+			this.nanos = nanos;
+		}
+	}
+
+	/**
+	 * The counters of one upload the query filtered
+	 */
+	public static class UploadProfile
+	{
+		private final String uploadPath;
+		private final int mediaCount;
+		private final AtomicInteger matches = new AtomicInteger(0);
+		private final LongAdder nanos = new LongAdder();
+
+		UploadProfile(String uploadPath, int mediaCount)
+		{
+			this.uploadPath = uploadPath;
+			this.mediaCount = mediaCount;
+		}
+
+		/**
+		 * Records a chunk of the upload being filtered
+		 *
+		 * @param matchCount The number of matches found in the chunk
+		 * @param chunkNanos The time filtering the chunk took
+		 */
+		public void recordChunk(int matchCount, long chunkNanos)
+		{
+			this.matches.addAndGet(matchCount);
+			this.nanos.add(chunkNanos);
+		}
+	}
+}
@@ -2,15 +2,61 @@ package model.query;
 
 import java.lang.StringBuilder;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Class representing a result set from a query
+ *
+ * Rows are stored compactly: each distinct path is kept once in a dictionary and rows only hold the path's
+ * code and the name. When the result set is distinct, an open addressed index over (path, name) is used to
+ * find duplicates. Result sets aren't thread safe, parallel producers should each fill their own instance
+ * and combine them with {@link #merge(S3QueryResultSet)}
  */
 public class S3QueryResultSet
 {
-    // The list of rows
-    List<S3QueryResultRow> rows = new ArrayList<S3QueryResultRow>();
+    // The initial number of rows we have room for
+    private static final int INITIAL_CAPACITY = 16;
+    // Marker for an empty slot in the distinct index
+    private static final int EMPTY_SLOT = -1;
+
+    // Whether duplicate rows are dropped
+    private final boolean distinct;
+
+    // The dictionary of distinct paths and their codes
+    private final List<String> pathDictionary = new ArrayList<String>();
+    private final Map<String, Integer> pathCodes = new HashMap<String, Integer>();
+
+    // The rows as a path code and a name
+    private int[] rowPaths = new int[INITIAL_CAPACITY];
+    private String[] rowNames = new String[INITIAL_CAPACITY];
+    private int numRows = 0;
+
+    // Open addressed table of row indexes, used to find rows by (path, name)
+    private int[] rowIndex = S3QueryResultSet.newIndexTable(INITIAL_CAPACITY * 2);
+
+    // The rows as returned by getResults(), built on demand
+    private List<S3QueryResultRow> rows = null;
+
+    /**
+     * Default constructor for a result set that allows duplicates
+     */
+    public S3QueryResultSet()
+    {
+        this(false);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param distinct {@code boolean} indicates if duplicate rows are dropped, or not
+     */
+    public S3QueryResultSet(final boolean distinct)
+    {
+        this.distinct = distinct;
+    }
 
     /**
      * Formats the instance to string
@@ -18,12 +64,12 @@ public class S3QueryResultSet
     @Override
     public String toString()
     {
-        int numRows = this.rows.size();
+        int numRows = this.numRows;
 
         StringBuilder sb = new StringBuilder();
         sb.append("S3QueryResultSet");
         sb.append("\n\t number of rows:");
-        sb.append(this.rows.size());
+        sb.append(numRows);
         if (numRows <= 0)
             sb.append("\n\t no data");
         else
@@ -31,13 +77,12 @@ public class S3QueryResultSet
             int idx = 0;
             while (idx < numRows && idx < 5)
             {
-                S3QueryResultRow curRow = rows.get(idx);
                 sb.append("\n\t Row: ");
                 sb.append(idx + 1);
                 sb.append("\n\t\t 0: '");
-                sb.append(curRow.get(0));
+                sb.append(this.getPath(idx));
                 sb.append("'\t 1: '");
-                sb.append(curRow.get(1));
+                sb.append(this.getName(idx));
                 sb.append("'");
 
                 idx++;
@@ -54,47 +99,276 @@ public class S3QueryResultSet
     }
 
     /**
-     * Adds a new row to the result set
-     * 
+     * Adds a new row to the result set. If the result set is distinct and the row is already present, nothing is added
+     *
      * @param path the first column value
      * @param name the second column value
+     * @return {@code boolean} whether the row was added
      */
-    public void addRow(final String path, final String name)
+    public boolean addRow(final String path, final String name)
     {
-        S3QueryResultRow newRow = S3QueryResultRow.instance(path, name);
-        this.rows.add(newRow);
+        Integer pathCode = this.pathCodes.get(path);
+        if (pathCode == null)
+        {
+            pathCode = this.pathDictionary.size();
+            this.pathDictionary.add(path);
+            this.pathCodes.put(path, pathCode);
+        }
+
+        return this.addCodedRow(pathCode, name);
     }
 
     /**
      * Searches for a matching row
-     * 
+     *
      * @param path the first column value
      * @param name the second column value
      * @return {@code boolean} whether a matching row was found
      */
     public boolean findRow(final String path, final String name)
     {
-        for (S3QueryResultRow oneRow: this.rows)
+        Integer pathCode = this.pathCodes.get(path);
+        if (pathCode == null)
         {
-            if (oneRow.size() >= 2)
+            return false;
+        }
+
+        return this.rowIndex[this.findSlot(pathCode, name)] != EMPTY_SLOT;
+    }
+
+    /**
+     * Adds the rows of another result set to the end of this one. Duplicates are dropped if this result set is distinct
+     *
+     * @param other the result set to merge into this one
+     * @return {@link S3QueryResultSet} this instance
+     */
+    public S3QueryResultSet merge(final S3QueryResultSet other)
+    {
+        if ((other == null) || (other.numRows <= 0))
+        {
+            return this;
+        }
+
+        // Map the other dictionary onto ours once, instead of looking up each row's path
+        int[] codeMap = new int[other.pathDictionary.size()];
+        for (int idx = 0; idx < codeMap.length; idx++)
+        {
+            String path = other.pathDictionary.get(idx);
+            Integer pathCode = this.pathCodes.get(path);
+            if (pathCode == null)
             {
-                if (oneRow.get(0).equals(path) && oneRow.get(1).equals(name))
-                {
-                    return true;
-                }
+                pathCode = this.pathDictionary.size();
+                this.pathDictionary.add(path);
+                this.pathCodes.put(path, pathCode);
             }
+            codeMap[idx] = pathCode;
+        }
+
+        this.ensureCapacity(this.numRows + other.numRows);
+        for (int idx = 0; idx < other.numRows; idx++)
+        {
+            this.addCodedRow(codeMap[other.rowPaths[idx]], other.rowNames[idx]);
         }
 
-        return false;
+        return this;
+    }
+
+    /**
+     * Returns a new result set holding a range of this result set's rows
+     *
+     * @param fromRow the index of the first row, inclusive
+     * @param toRow the index of the last row, exclusive
+     * @return {@link S3QueryResultSet} the result set with the rows
+     */
+    public S3QueryResultSet slice(final int fromRow, final int toRow)
+    {
+        S3QueryResultSet sliced = new S3QueryResultSet(this.distinct);
+        sliced.ensureCapacity(toRow - fromRow);
+        for (int idx = fromRow; idx < toRow; idx++)
+        {
+            sliced.addRow(this.getPath(idx), this.getName(idx));
+        }
+
+        return sliced;
+    }
+
+    /**
+     * Returns the number of rows
+     *
+     * @return the number of rows
+     */
+    public int size()
+    {
+        return this.numRows;
+    }
+
+    /**
+     * Returns the first column value of a row
+     *
+     * @param row the index of the row
+     * @return the path of the row
+     */
+    public String getPath(final int row)
+    {
+        return this.pathDictionary.get(this.rowPaths[row]);
+    }
+
+    /**
+     * Returns the second column value of a row
+     *
+     * @param row the index of the row
+     * @return the name of the row
+     */
+    public String getName(final int row)
+    {
+        return this.rowNames[row];
     }
 
     /**
      * Returns the list of results
-     * 
+     *
      * @return the list of results
      */
     public List<S3QueryResultRow> getResults()
     {
+        if ((this.rows == null) || (this.rows.size() != this.numRows))
+        {
+            List<S3QueryResultRow> newRows = new ArrayList<S3QueryResultRow>(this.numRows);
+            for (int idx = 0; idx < this.numRows; idx++)
+            {
+                newRows.add(S3QueryResultRow.instance(this.getPath(idx), this.getName(idx)));
+            }
+            this.rows = newRows;
+        }
+
         return this.rows;
     }
+
+    /**
+     * Adds a row using the code of its path
+     *
+     * @param pathCode the code of the first column value
+     * @param name the second column value
+     * @return {@code boolean} whether the row was added
+     */
+    private boolean addCodedRow(final int pathCode, final String name)
+    {
+        // Make room first since growing rebuilds the row index
+        this.ensureCapacity(this.numRows + 1);
+
+        int slot = this.findSlot(pathCode, name);
+        if (this.distinct && (this.rowIndex[slot] != EMPTY_SLOT))
+        {
+            return false;
+        }
+
+        this.rowPaths[this.numRows] = pathCode;
+        this.rowNames[this.numRows] = name;
+
+        // Only the first of any duplicate rows is indexed, which is all findRow needs
+        if (this.rowIndex[slot] == EMPTY_SLOT)
+        {
+            this.rowIndex[slot] = this.numRows;
+        }
+        this.numRows++;
+
+        return true;
+    }
+
+    /**
+     * Returns the slot in the row index holding the (path, name) row, or the empty slot where it would go
+     *
+     * @param pathCode the code of the first column value
+     * @param name the second column value
+     * @return the index of the slot
+     */
+    private int findSlot(final int pathCode, final String name)
+    {
+        int mask = this.rowIndex.length - 1;
+        int slot = S3QueryResultSet.hashRow(pathCode, name) & mask;
+        while (this.rowIndex[slot] != EMPTY_SLOT)
+        {
+            int row = this.rowIndex[slot];
+            if ((this.rowPaths[row] == pathCode) && this.rowNames[row].equals(name))
+            {
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    /**
+     * Makes sure there's room for the number of rows, growing the storage and row index as needed
+     *
+     * @param capacity the number of rows needed
+     */
+    private void ensureCapacity(final int capacity)
+    {
+        if (capacity > this.rowPaths.length)
+        {
+            int newCapacity = Math.max(capacity, this.rowPaths.length * 2);
+            this.rowPaths = Arrays.copyOf(this.rowPaths, newCapacity);
+            this.rowNames = Arrays.copyOf(this.rowNames, newCapacity);
+        }
+
+        // Keep the row index at most half full so probe sequences stay short
+        if (capacity * 2 > this.rowIndex.length)
+        {
+            int newLength = this.rowIndex.length;
+            while (capacity * 2 > newLength)
+            {
+                newLength *= 2;
+            }
+
+            this.rowIndex = S3QueryResultSet.newIndexTable(newLength);
+            int mask = newLength - 1;
+            for (int row = 0; row < this.numRows; row++)
+            {
+                int slot = S3QueryResultSet.hashRow(this.rowPaths[row], this.rowNames[row]) & mask;
+                boolean duplicate = false;
+                while (this.rowIndex[slot] != EMPTY_SLOT)
+                {
+                    int other = this.rowIndex[slot];
+                    if ((this.rowPaths[other] == this.rowPaths[row]) && this.rowNames[other].equals(this.rowNames[row]))
+                    {
+                        duplicate = true;
+                        break;
+                    }
+                    slot = (slot + 1) & mask;
+                }
+                if (!duplicate)
+                {
+                    this.rowIndex[slot] = row;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the hash of a row
+     *
+     * @param pathCode the code of the first column value
+     * @param name the second column value
+     * @return the hash value
+     */
+    private static int hashRow(final int pathCode, final String name)
+    {
+        int hash = pathCode * 31 + name.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Returns a new empty row index
+     *
+     * @param length the number of slots, a power of two
+     * @return the row index
+     */
+    private static int[] newIndexTable(final int length)
+    {
+        int[] table = new int[length];
+        Arrays.fill(table, EMPTY_SLOT);
+        return table;
+    }
 }
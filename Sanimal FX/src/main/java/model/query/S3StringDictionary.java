@@ -0,0 +1,286 @@
+package model.query;
+
+import model.image.Camtrap;
+import model.image.Deployments;
+import model.image.Media;
+import model.image.Observations;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Dictionary of the distinct species and location strings of a collection. Each distinct string gets an integer code
+ * and a pre-normalized form, and each upload's media are encoded into codes once. A string condition is then resolved
+ * against the dictionary's few distinct strings into a set of codes, and matching a media is a bitset lookup
+ */
+public class S3StringDictionary
+{
+	// The fields that are dictionary encoded
+	public static final int SCIENTIFIC_NAME = 0;
+	public static final int COMMON_NAME = 1;
+	public static final int LOCATION_NAME = 2;
+	public static final int LOCATION_ID = 3;
+	private static final int FIELD_COUNT = 4;
+	// The code of a missing value, never matches any condition
+	public static final int MISSING = -1;
+
+	// The code of each distinct string
+	private final Map<String, Integer> codes = new HashMap<>();
+	// The number of distinct strings, the next code to hand out
+	private int codeCount = 0;
+	// The codes of every string with the same normalized form
+	private final Map<String, BitSet> codesByNormalizedValue = new HashMap<>();
+	// The encoded media of each upload's metadata, dropped once the metadata is replaced and re-encoded once the upload's version changes
+	private final Map<Camtrap, EncodedUpload> encodedUploads = new WeakHashMap<>();
+
+	/**
+	 * Returns true if a condition with the operator can be resolved to a set of codes. Ordering operators still
+	 * compare the strings
+	 *
+	 * @param operator The condition operator
+	 * @return True if the operator is an equality or membership test
+	 */
+	public static boolean supportsOperator(S3QueryConditionOperators operator)
+	{
+		return operator == S3QueryConditionOperators.EQUAL || operator == S3QueryConditionOperators.NUMERIC_EQUAL ||
+				operator == S3QueryConditionOperators.NOT_EQUAL || operator == S3QueryConditionOperators.IN ||
+				operator == S3QueryConditionOperators.NOT_IN;
+	}
+
+	/**
+	 * Returns the normalized form of a string used for case insensitive matching
+	 *
+	 * @param value The string to normalize
+	 * @return The normalized string
+	 */
+	public static String normalize(String value)
+	{
+		return value.toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Returns the encoded media of an upload, encoding them the first time the upload is asked for at a version.
+	 * Edits replace the media and observations of the metadata in place and then mark the upload changed, so an
+	 * encoding is only re-used while the upload's version and media list are the ones it was encoded from
+	 *
+	 * @param metadata The metadata of the upload
+	 * @param uploadVersion The version of the upload the metadata was read at, see CloudUploadEntry.getVersion()
+	 * @return The encoded media
+	 */
+	public EncodedUpload getEncodedUpload(Camtrap metadata, long uploadVersion)
+	{
+		synchronized (this)
+		{
+			EncodedUpload encodedUpload = this.encodedUploads.get(metadata);
+			if (encodedUpload != null && encodedUpload.isCurrent(metadata, uploadVersion))
+				return encodedUpload;
+		}
+
+		// Gather the strings of each media outside of the lock, this is the slow part. The common name comes from the first
+		// observation of the media that has one, not just the first observation
+		Map<String, Observations> firstObservations = new HashMap<>();
+		Map<String, String> commonNames = new HashMap<>();
+		for (Observations obs : metadata.observations)
+		{
+			firstObservations.putIfAbsent(obs.mediaID, obs);
+			String commonName = S3StringDictionary.parseCommonName(obs.comments);
+			if (commonName != null)
+				commonNames.putIfAbsent(obs.mediaID, commonName);
+		}
+		Map<String, Deployments> deployments = new HashMap<>();
+		for (Deployments dep : metadata.deployments)
+			deployments.putIfAbsent(dep.deploymentID, dep);
+
+		List<Media> sourceMedia = metadata.media;
+		List<Media> media = new ArrayList<>(sourceMedia);
+		String[][] mediaStrings = new String[media.size()][];
+		for (int index = 0; index < media.size(); index++)
+		{
+			String[] strings = new String[FIELD_COUNT];
+			strings[COMMON_NAME] = commonNames.get(media.get(index).mediaID);
+			Observations obs = firstObservations.get(media.get(index).mediaID);
+			if (obs != null)
+			{
+				strings[SCIENTIFIC_NAME] = obs.scientificName;
+				Deployments dep = deployments.get(obs.deploymentID);
+				if (dep != null)
+				{
+					strings[LOCATION_NAME] = dep.locationName;
+					strings[LOCATION_ID] = dep.locationID;
+				}
+			}
+			mediaStrings[index] = strings;
+		}
+
+		synchronized (this)
+		{
+			// Another task may have encoded the upload at this version while we were gathering
+			EncodedUpload encodedUpload = this.encodedUploads.get(metadata);
+			if (encodedUpload != null && encodedUpload.isCurrent(metadata, uploadVersion))
+				return encodedUpload;
+
+			encodedUpload = new EncodedUpload(media.size(), sourceMedia, uploadVersion);
+			for (int index = 0; index < media.size(); index++)
+			{
+				int[] mediaCodes = new int[FIELD_COUNT];
+				for (int field = 0; field < FIELD_COUNT; field++)
+				{
+					mediaCodes[field] = this.encode(mediaStrings[index][field]);
+					if (mediaCodes[field] != MISSING)
+						encodedUpload.presentCodes[field].set(mediaCodes[field]);
+				}
+				encodedUpload.codesByMedia.put(media.get(index), mediaCodes);
+			}
+			this.encodedUploads.put(metadata, encodedUpload);
+			return encodedUpload;
+		}
+	}
+
+	/**
+	 * Resolves a condition into the set of codes whose string passes it. Each value is a single map lookup, queries
+	 * resolve each condition once per upload. Case sensitive = and &lt;&gt; conditions never match anything, the same
+	 * as the string comparisons they replace
+	 *
+	 * @param operator The condition operator, must be supported by supportsOperator
+	 * @param values The value(s) of the condition
+	 * @param caseInsensitive If strings should be compared by their normalized form
+	 * @return The codes that pass the condition
+	 */
+	public synchronized BitSet resolve(S3QueryConditionOperators operator, List<String> values, boolean caseInsensitive)
+	{
+		// Equality only looks at the first value, membership at all of them
+		boolean firstValueOnly = operator == S3QueryConditionOperators.EQUAL || operator == S3QueryConditionOperators.NUMERIC_EQUAL ||
+				operator == S3QueryConditionOperators.NOT_EQUAL;
+		boolean negate = operator == S3QueryConditionOperators.NOT_EQUAL || operator == S3QueryConditionOperators.NOT_IN;
+
+		BitSet matching = new BitSet(this.codeCount);
+		if (firstValueOnly && !caseInsensitive)
+			return matching;
+		for (int valueIndex = 0; valueIndex < values.size() && !(firstValueOnly && valueIndex > 0); valueIndex++)
+		{
+			String value = values.get(valueIndex);
+			if (caseInsensitive)
+			{
+				BitSet normalizedCodes = this.codesByNormalizedValue.get(S3StringDictionary.normalize(value));
+				if (normalizedCodes != null)
+					matching.or(normalizedCodes);
+			}
+			else
+			{
+				Integer code = this.codes.get(value);
+				if (code != null)
+					matching.set(code);
+			}
+		}
+
+		if (negate)
+			matching.flip(0, this.codeCount);
+		return matching;
+	}
+
+	/**
+	 * Returns the code of a string, adding it to the dictionary if it's new
+	 *
+	 * @param value The string to encode
+	 * @return The code of the string, or MISSING if it's null
+	 */
+	private int encode(String value)
+	{
+		if (value == null)
+			return MISSING;
+
+		Integer code = this.codes.get(value);
+		if (code == null)
+		{
+			code = this.codeCount++;
+			this.codes.put(value, code);
+			this.codesByNormalizedValue.computeIfAbsent(S3StringDictionary.normalize(value), key -> new BitSet()).set(code);
+		}
+		return code;
+	}
+
+	/**
+	 * Pulls the common name out of an observation's comments
+	 *
+	 * @param comments The comments of the observation
+	 * @return The common name, or null if the comments don't have one
+	 */
+	private static String parseCommonName(String comments)
+	{
+		final String commonNameTag = "[COMMONNAME:";
+		final String commonNameEndTag = "]";
+
+		if (comments != null && comments.startsWith(commonNameTag))
+		{
+			int endIndex = comments.indexOf(commonNameEndTag);
+			if (endIndex > -1)
+				return comments.substring(commonNameTag.length(), endIndex);
+		}
+		return null;
+	}
+
+	/**
+	 * The codes of every media of one upload. Read only once built, so it can be shared between tasks
+	 */
+	public static class EncodedUpload
+	{
+		private final Map<Media, int[]> codesByMedia;
+		// The codes used by any media of the upload for each field
+		private final BitSet[] presentCodes = new BitSet[FIELD_COUNT];
+		// The media list and version of the upload the media were encoded from
+		private final List<Media> sourceMedia;
+		private final long uploadVersion;
+
+		EncodedUpload(int mediaCount, List<Media> sourceMedia, long uploadVersion)
+		{
+			this.codesByMedia = new IdentityHashMap<>(mediaCount);
+			this.sourceMedia = sourceMedia;
+			this.uploadVersion = uploadVersion;
+			for (int field = 0; field < FIELD_COUNT; field++)
+				this.presentCodes[field] = new BitSet();
+		}
+
+		/**
+		 * Returns true if the encoding still describes the metadata, an edit replaces the media list or changes the version
+		 *
+		 * @param metadata The metadata of the upload
+		 * @param uploadVersion The version of the upload the metadata was read at
+		 * @return True if the encoding can be re-used
+		 */
+		private boolean isCurrent(Camtrap metadata, long uploadVersion)
+		{
+			return this.sourceMedia == metadata.media && this.uploadVersion == uploadVersion;
+		}
+
+		/**
+		 * Returns true if any media of the upload has one of the codes for a field
+		 *
+		 * @param field The field to check
+		 * @param codes The codes to look for
+		 * @return True if at least one media could pass a condition resolved to the codes
+		 */
+		public boolean hasAnyCode(int field, BitSet codes)
+		{
+			return this.presentCodes[field].intersects(codes);
+		}
+
+		/**
+		 * Returns the code of a field of a media
+		 *
+		 * @param med The media
+		 * @param field The field to get the code of
+		 * @return The code, or MISSING if the media has no value for the field
+		 */
+		public int getCode(Media med, int field)
+		{
+			int[] mediaCodes = this.codesByMedia.get(med);
+			return mediaCodes != null ? mediaCodes[field] : MISSING;
+		}
+	}
+}
@@ -0,0 +1,167 @@
+package model.query.conditions;
+
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import model.SanimalData;
+import model.location.LocationBounds;
+import model.query.IQueryCondition;
+import model.query.S3Query;
+
+/**
+ * Data model used by the "Map area filter" query condition
+ */
+public class MapAreaCondition implements IQueryCondition
+{
+	// If we're filtering on a box or on a distance from a point
+	private ObjectProperty<AreaShape> shape = new SimpleObjectProperty<>(AreaShape.Box);
+
+	// The edges of the box
+	private DoubleProperty minLatitude = new SimpleDoubleProperty(0);
+	private DoubleProperty minLongitude = new SimpleDoubleProperty(0);
+	private DoubleProperty maxLatitude = new SimpleDoubleProperty(0);
+	private DoubleProperty maxLongitude = new SimpleDoubleProperty(0);
+
+	// The center of the circle and its radius in kilometers
+	private DoubleProperty centerLatitude = new SimpleDoubleProperty(0);
+	private DoubleProperty centerLongitude = new SimpleDoubleProperty(0);
+	private DoubleProperty radiusKm = new SimpleDoubleProperty(5);
+
+	// A list of possible shapes to filter
+	private ObservableList<AreaShape> shapeList = FXCollections.observableArrayList(AreaShape.values());
+
+	/**
+	 * Constructor starts the area off as the current map selection if there is one
+	 */
+	public MapAreaCondition()
+	{
+		this.useMapSelection();
+	}
+
+	/**
+	 * This query condition ensures only images inside the area are queried for
+	 *
+	 * @param query The current state of the query before the appending
+	 */
+	@Override
+	public void appendConditionToQuery(S3Query query)
+	{
+		if (this.shape.getValue() == AreaShape.Box)
+			query.addBoundingBoxCondition(this.minLatitude.getValue(), this.minLongitude.getValue(), this.maxLatitude.getValue(), this.maxLongitude.getValue());
+		else if (this.shape.getValue() == AreaShape.Radius)
+			query.addRadiusCondition(this.centerLatitude.getValue(), this.centerLongitude.getValue(), this.radiusKm.getValue());
+	}
+
+	/**
+	 * Returns the FXML document that can edit this data model
+	 *
+	 * @return An FXML UI document to edit this data model
+	 */
+	@Override
+	public String getFXMLConditionEditor()
+	{
+		return "MapAreaCondition.fxml";
+	}
+
+	/**
+	 * Copies the area selected on the map into the box, and its center into the circle. Does nothing if nothing is selected
+	 */
+	public void useMapSelection()
+	{
+		LocationBounds mapSelection = SanimalData.getInstance().getMapSelection();
+		if (mapSelection != null)
+		{
+			this.minLatitude.setValue(mapSelection.getMinLatitude());
+			this.minLongitude.setValue(mapSelection.getMinLongitude());
+			this.maxLatitude.setValue(mapSelection.getMaxLatitude());
+			this.maxLongitude.setValue(mapSelection.getMaxLongitude());
+			this.centerLatitude.setValue(mapSelection.getCenterLatitude());
+			this.centerLongitude.setValue(mapSelection.getCenterLongitude());
+		}
+	}
+
+	public ObjectProperty<AreaShape> shapeProperty()
+	{
+		return this.shape;
+	}
+
+	public DoubleProperty minLatitudeProperty()
+	{
+		return this.minLatitude;
+	}
+
+	public DoubleProperty minLongitudeProperty()
+	{
+		return this.minLongitude;
+	}
+
+	public DoubleProperty maxLatitudeProperty()
+	{
+		return this.maxLatitude;
+	}
+
+	public DoubleProperty maxLongitudeProperty()
+	{
+		return this.maxLongitude;
+	}
+
+	public DoubleProperty centerLatitudeProperty()
+	{
+		return this.centerLatitude;
+	}
+
+	public DoubleProperty centerLongitudeProperty()
+	{
+		return this.centerLongitude;
+	}
+
+	public DoubleProperty radiusKmProperty()
+	{
+		return this.radiusKm;
+	}
+
+	/**
+	 * Getter for all possible area shapes
+	 *
+	 * @return A list of possible shapes
+	 */
+	public ObservableList<AreaShape> getShapeList()
+	{
+		return this.shapeList;
+	}
+
+	/**
+	 * Enum of the shapes an area can be
+	 */
+	public enum AreaShape
+	{
+		Box("Inside a box"),
+		Radius("Within a distance of a point");
+
+		private String displayName;
+
+		/**
+		 * Constructor takes the name to display
+		 *
+		 * @param displayName The name to visually display
+		 */
+		AreaShape(String displayName)
+		{
+			this.displayName = displayName;
+		}
+
+		/**
+		 * Returns the display name as the area shape toString
+		 *
+		 * @return The display name
+		 */
+		@Override
+		public String toString()
+		{
+			return this.displayName;
+		}
+	}
+}
@@ -3,10 +3,13 @@ package model.s3;
 import javafx.beans.Observable;
 import javafx.beans.property.*;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import model.image.CloudUploadEntry;
+import model.query.S3StringDictionary;
 
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The image collection class represents a collection of photos on S3
@@ -31,6 +34,10 @@ public class ImageCollection
 	// Keep a list of uploads that is also transient so it will not be serialized. We serialize this differently because uploads should not be public
 	private transient ObservableList<CloudUploadEntry> uploads = FXCollections.observableArrayList(upload -> new Observable[] {});
 	private transient Boolean uploadsWereSynced = false;
+	// Incremented every time the uploads or their metadata change, used to tell if cached query results are stale
+	private transient AtomicLong uploadsVersion = new AtomicLong(0);
+	// Dictionary of the species and location strings of the uploads, filled in by queries as they run
+	private transient S3StringDictionary stringDictionary = null;
 
 	/**
 	 * Constructs a new image collection with a default name
@@ -39,6 +46,16 @@ public class ImageCollection
 	{
 		this.setName("Untitled");
 		this.setOrganization("None");
+		// Any change to the list of uploads is a new version of the collection
+		this.uploads.addListener((ListChangeListener<CloudUploadEntry>) change -> this.markUploadsChanged());
+	}
+
+	/**
+	 * Marks the uploads of the collection as changed, this should be called whenever an upload's metadata is edited
+	 */
+	public void markUploadsChanged()
+	{
+		this.uploadsVersion.incrementAndGet();
 	}
 
 	/**
@@ -167,4 +184,16 @@ public class ImageCollection
 	{
 		return uploadsWereSynced;
 	}
+
+	public long getUploadsVersion()
+	{
+		return this.uploadsVersion.get();
+	}
+
+	public synchronized S3StringDictionary getStringDictionary()
+	{
+		if (this.stringDictionary == null)
+			this.stringDictionary = new S3StringDictionary();
+		return this.stringDictionary;
+	}
 }
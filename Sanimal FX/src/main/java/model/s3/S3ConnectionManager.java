@@ -14,14 +14,21 @@ import model.image.*;
 import model.location.Location;
 import model.query.S3MetaDataAndDomainData;
 import model.query.S3Query;
+import model.query.S3QueryAggregate;
+import model.query.S3QueryBuilder;
+import model.query.S3QueryCache;
+import model.query.S3QueryListener;
+import model.query.S3QueryProfile;
 import model.query.S3QueryExecute;
-import model.query.S3QueryResultRow;
 import model.query.S3QueryResultSet;
 import model.species.Species;
+import model.threading.CancellationToken;
+import model.threading.ErrorTask;
 import model.util.RoundingUtils;
 import model.util.SettingsData;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.RandomStringUtils;
 import org.apache.commons.lang.StringEscapeUtils;
 import org.apache.commons.lang.StringUtils;
@@ -68,13 +75,19 @@ import java.time.format.DateTimeFormatter;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.util.*;
 import java.util.function.BiConsumer;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.locks.*;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.security.InvalidParameterException;
 import java.security.NoSuchAlgorithmException;
 
@@ -128,13 +141,45 @@ public class S3ConnectionManager
 	// Folder name formatting string
 	private static final String FOLDER_TIMESTAMP_FORMAT = "uuuu.MM.dd.HH.mm.ss";
 
+	// The format of the UTC time in edit log names, sorts in time order
+	private static final String EDIT_LOG_TIMESTAMP_FORMAT = "uuuuMMdd'T'HHmmssSSS";
+
+	// The number of edit logs an upload can have before they're folded into its Camtrap files
+	private static final int EDIT_LOG_COMPACTION_THRESHOLD = 8;
+	// How long folded edit logs are kept after the Camtrap files they were folded into are written. A compaction gives up if
+	// it would write its files more than half of this after it started reading, so it can never replace newer files with
+	// files missing a log that was deleted
+	private static final long EDIT_LOG_GRACE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+	// The number of times the Camtrap files of an upload are listed and read before giving up on files vanishing mid-read
+	private static final int REMOTE_CAMTRAP_READ_ATTEMPTS = 3;
+
+	// Runs the collection syncs and per batch metadata loads of streaming queries. Those block waiting on the metadata fetches they start on the
+	// common fork-join pool, so they get their own bounded pool instead of starving the common one
+	private static final ExecutorService QUERY_FETCH_POOL = Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors()), runnable ->
+	{
+		Thread thread = new Thread(runnable, "Query Fetch");
+		thread.setDaemon(true);
+		return thread;
+	});
+	// Runs edit log compactions one at a time, away from the queue the user's own tasks such as queries wait in
+	private static final ExecutorService EDIT_LOG_COMPACTION_POOL = Executors.newSingleThreadExecutor(runnable ->
+	{
+		Thread thread = new Thread(runnable, "Edit Log Compaction");
+		thread.setDaemon(true);
+		return thread;
+	});
+
 	private AmazonS3 s3Client; //authenticatedAccount;
 
 	// Retry waiting variables
 	private int retryWaitIndex = 0;
 	private int[] retryWaitSeconds = {5, 30, 70, 180, 300};
 	private int maxFutureMetaFetch = 500;
-	private int maxMetaSemaphores = 10;
+	// Results of recent queries, stamped with the version of the collections they searched
+	private final S3QueryCache queryCache = new S3QueryCache();
+	// The number of edit logs saved since the Camtrap files of each upload were last written, by bucket and upload path.
+	// Updated whenever an upload is read and on each save, so saves only queue a compaction once there are enough
+	private final Map<String, Integer> pendingEditLogCounts = new ConcurrentHashMap<>();
 
 	/**
 	 * Given a URL, username and password, this method logs a S3 user in
@@ -177,6 +222,8 @@ public class S3ConnectionManager
                 .withClientConfiguration(clientConfiguration)
                 .withCredentials(new AWSStaticCredentialsProvider(credentials))
                 .build();
+			// Results from another account's session shouldn't be re-used
+			this.queryCache.clear();
 
             // Do something to ensure we can connect
 			if (this.bucketExists(ROOT_BUCKET) == false)
@@ -951,11 +998,11 @@ public class S3ConnectionManager
 					}
 				});
 
-				// Save the meta data to the correct folder
-				metaCSV.saveTo(metaFolder.getAbsolutePath());
+				// Save the meta data to the correct folder, compressed to save bandwidth and storage
+				metaCSV.saveTo(metaFolder.getAbsolutePath(), true);
 
-				// Get initial list of files to upload
-				String[] metaFiles = metaCSV.getFilePaths(metaFolder.getAbsolutePath());
+				// Get initial list of files to upload, the columnar copy of the metadata goes last so it's the newest file
+				String[] metaFiles = (String[]) ArrayUtils.add(metaCSV.getFilePaths(metaFolder.getAbsolutePath(), true), metaCSV.saveColumnarTo(metaFolder.getAbsolutePath()));
 				File[] transferFiles = new File[imageEntries.size() + 1 + metaFiles.length];
 				Integer fileIndex = 0;
 				for (; fileIndex < imageEntries.size(); fileIndex++)
@@ -1063,7 +1110,7 @@ public class S3ConnectionManager
 
 				// Remove local files
 				directoryMetaJSON.delete();
-				for (String oneFile: metaCSV.getFilePaths(metaFolder.getAbsolutePath()))
+				for (String oneFile: metaFiles)
 				{
 					File delFile = new File(oneFile);
 					delFile.delete();
@@ -1081,6 +1128,12 @@ public class S3ConnectionManager
 					"Could not upload the images to S3!\n" + ExceptionUtils.getStackTrace(e),
 					false);
 		}
+		finally
+		{
+			// Queries of this collection need to see the new upload
+			collection.markUploadsChanged();
+			this.queryCache.invalidate(collection);
+		}
 	}
 
 	/**
@@ -1107,8 +1160,10 @@ public class S3ConnectionManager
 				// Make sure we have the metadata associated with this collection
 				if (uploadEntryToSave.getMetadata().getValue() == null)
 				{
-					uploadEntryToSave.setMetadata(this.readRemoteCamtrap(collectionBucket, collectionSaveDirStr));
+					uploadEntryToSave.setMetadata(this.readRemoteCamtrap(collectionBucket, uploadEntryToSave.getUploadPath()));
 				}
+				// The edits are saved as a log instead of rewriting the upload's Camtrap files
+				CamtrapEditLog edits = new CamtrapEditLog();
 				// Grab the list of images to upload
 				List<CloudImageEntry> toUpload = imageDirectory.flattened().filter(imageContainer -> imageContainer instanceof CloudImageEntry).map(imageContainer -> (CloudImageEntry) imageContainer).collect(Collectors.toList());
 				Platform.runLater(() -> imageDirectory.setUploadProgress(0.0));
@@ -1141,7 +1196,7 @@ public class S3ConnectionManager
 						// Write image metadata to the file
 						List<MetaData> imageMetadata = cloudImageEntry.convertToMetadata();
 						imageMetadata.add(collectionIDTag);
-						this.addUpdateMetadataCamtrap(imageMetadata, fileAbsoluteCloudPath, uploadEntryToSave.getMetadata().getValue());
+						this.addUpdateMetadataCamtrap(imageMetadata, fileAbsoluteCloudPath, uploadEntryToSave.getMetadata().getValue(), edits);
 
 						// Update the progress every 20 uploads
 						if (i % 20 == 0)
@@ -1161,14 +1216,13 @@ public class S3ConnectionManager
 				// Write the UploadMeta json file to the server
 				String uploadPath = uploadEntryToSave.getUploadPath();
 				this.writeRemoteFile(collectionBucket, String.join("/", uploadPath, UPLOAD_JSON_FILE), json);
-				// Write the metadata file(s)
-				File metaFolder = SanimalData.getInstance().getTempDirectoryManager().createTempFolder("meta");
-				(uploadEntryToSave.getMetadata().getValue()).saveTo(metaFolder.getAbsolutePath());
-				String[] paths = (uploadEntryToSave.getMetadata().getValue()).getFilePaths(metaFolder.getAbsolutePath());
-				for (String oneFile: paths)
+				// Write the edit log, then fold the logs into the Camtrap files in the background once enough pile up
+				if (!edits.isEmpty())
 				{
-					String remoteFilePath = String.join("/", uploadPath, FilenameUtils.getName(oneFile));
-					this.uploadFile(collectionBucket, remoteFilePath, oneFile);
+					this.writeRemoteEditLog(collectionBucket, uploadPath, edits);
+					edits.applyTo(uploadEntryToSave.getMetadata().getValue());
+					if (this.pendingEditLogCounts.merge(String.join("/", collectionBucket, uploadPath), 1, Integer::sum) >= EDIT_LOG_COMPACTION_THRESHOLD)
+						this.scheduleEditLogCompaction(collectionBucket, uploadPath);
 				}
 			}
 		}
@@ -1182,6 +1236,13 @@ public class S3ConnectionManager
 					"Could not save the image list to the collection on S3!\n" + ExceptionUtils.getStackTrace(e),
 					false);
 		}
+		finally
+		{
+			// The metadata may have been edited even if saving failed part way, so queries can't re-use old results
+			uploadEntryToSave.markChanged();
+			collection.markUploadsChanged();
+			this.queryCache.invalidate(collection);
+		}
 	}
 
 	/**
@@ -1191,10 +1252,26 @@ public class S3ConnectionManager
 	 * @param progressProperty How far we are
 	 */
 	public void retrieveAndInsertUploadList(ImageCollection collection, DoubleProperty progressProperty)
+	{
+		this.retrieveAndInsertUploadList(collection, progressProperty, new CancellationToken());
+	}
+
+	/**
+	 * Used to retrieve a list of uploads to a collection and any uploads are automatically inserted into the collection.
+	 * Stops between uploads, or in the middle of a download, once the token is cancelled
+	 *
+	 * @param collection The image collection to retrieve uploads from
+	 * @param progressProperty How far we are
+	 * @param cancelToken The token used to stop retrieving uploads
+	 * @return The number of uploads retrieved, they may not have been inserted into the collection yet since that happens on the FX thread
+	 * @throws CancellationException If the token was cancelled before all uploads were retrieved
+	 */
+	public int retrieveAndInsertUploadList(ImageCollection collection, DoubleProperty progressProperty, CancellationToken cancelToken)
 	{
         // Grab the uploads folder for a given collection
         String collectionBucket = collection.getBucket();
         String collectionUploadDirStr = String.join("/", COLLECTIONS_FOLDER_NAME, collection.getID().toString(), UPLOADS_FOLDER_NAME);
+		int numRetrieved = 0;
 		try
 		{
 			// Clear the current collection uploads
@@ -1207,9 +1284,10 @@ public class S3ConnectionManager
 				int numDone = 0;
 				for (String folder : folders)
 				{
+					cancelToken.throwIfCancelled();
 					progressProperty.setValue(++numDone / totalFolders);
 					// We recognize uploads by their UploadMeta json file
-					String contents = this.readRemoteFile(collectionBucket, String.join("/", folder, UPLOAD_JSON_FILE));
+					String contents = this.readRemoteFile(collectionBucket, String.join("/", folder, UPLOAD_JSON_FILE), true, cancelToken);
 					if (contents != null)
 					{
 						try
@@ -1221,9 +1299,10 @@ public class S3ConnectionManager
 								uploadEntry.initFromJSON();
 
 								// Get the Camtrap data
-								uploadEntry.setMetadata(this.readRemoteCamtrap(collectionBucket, folder));
+								uploadEntry.setMetadata(this.readRemoteCamtrap(collectionBucket, folder, cancelToken));
 
 								Platform.runLater(() -> collection.getUploads().add(uploadEntry));
+								numRetrieved++;
 							}
 						}
 						catch (JsonSyntaxException e)
@@ -1241,6 +1320,11 @@ public class S3ConnectionManager
 				}
 			}
 		}
+		catch (CancellationException e)
+		{
+			// Stopping early isn't an error, let the caller know
+			throw e;
+		}
 		catch (Exception e)
 		{
 			SanimalData.getInstance().getErrorDisplay().showPopup(
@@ -1251,6 +1335,8 @@ public class S3ConnectionManager
 					"Could not download the list of uploads to the collection from S3 " + collectionUploadDirStr + "\n" + ExceptionUtils.getStackTrace(e),
 					false);
 		}
+
+		return numRetrieved;
 	}
 
 	/**
@@ -1329,56 +1415,211 @@ public class S3ConnectionManager
 	 * @return A list of image CyVerse paths instead of local paths
 	 */
 	public List<String> performQuery(S3Query queryBuilder, final List<ImageCollection> collections)
+	{
+		return this.performQuery(queryBuilder, collections, new CancellationToken());
+	}
+
+	/**
+	 * Performs a query given an S3Query object and returns a list of image paths that correspond with the query.
+	 * The query stops early if the token is cancelled or its deadline passes
+	 *
+	 * @param queryBuilder query builder with all specified options
+	 * @param collections list of collections to query
+	 * @param cancelToken The token used to stop the query
+	 * @return A list of image CyVerse paths instead of local paths
+	 * @throws CancellationException If the token was cancelled before the query completed
+	 */
+	public List<String> performQuery(S3Query queryBuilder, final List<ImageCollection> collections, CancellationToken cancelToken)
 	{
 		try
 		{
-    		List<String> collFilterIDs = queryBuilder.getCollectionIDs();
-    		List<CompletableFuture<Void>> allFutures = new ArrayList<CompletableFuture<Void>>();
-    		long collFilterIDLen = collFilterIDs.size();
-			for (ImageCollection oneCollection: collections)
-			{
-	            if (!oneCollection.uploadsWereSynced())
-	            {
-                    boolean loadColl = (collFilterIDLen == 0) || collFilterIDs.contains(oneCollection.getName());
-                    if (loadColl)
-                    {
-                        CompletableFuture<Void> getFuture = CompletableFuture.supplyAsync(() -> {
-                            DoubleProperty progress = new SimpleDoubleProperty(0.0);
-                            this.retrieveAndInsertUploadList(oneCollection, progress);
-                            oneCollection.setUploadsWereSynced(true);
-                            return null;
-                        }
-                        );
-                        allFutures.add(getFuture);
-                    }
-	            }
-			}
+			this.syncQueryCollections(queryBuilder, collections, cancelToken, null);
+
+			// Re-use the result of an identical query if nothing it searched has changed since
+			S3QueryBuilder builtQuery = queryBuilder.build();
+			List<ImageCollection> searchedCollections = this.queryCollections(queryBuilder, collections);
+			String cacheKey = S3QueryCache.createKey(builtQuery, searchedCollections);
+			List<String> cachedPaths = this.queryCache.getPaths(cacheKey);
+			if (cachedPaths != null)
+				return new ArrayList<>(cachedPaths);
+
+			S3QueryResultSet resultSet = S3QueryExecute.executeQuery(builtQuery, collections, null, cancelToken, null);
+
+			List<String> matchingFilePaths = this.resultSetToPaths(resultSet);
+			this.queryCache.put(cacheKey, searchedCollections, matchingFilePaths, null);
+			return matchingFilePaths;
+		}
+		catch (CancellationException e)
+		{
+			throw e;
+		}
+		catch (InterruptedException e)
+		{
+			// Stop any work still going on in the background
+			cancelToken.cancel();
+			Thread.currentThread().interrupt();
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			SanimalData.getInstance().getErrorDisplay().showPopup(
+					Alert.AlertType.ERROR,
+					null,
+					"Error",
+					"Query failed",
+					"Query caused an exception!",
+					false);
+		}
+
+		return Collections.emptyList();
+	}
+
+	/**
+	 * Performs a query given an S3Query object in aggregate mode, returning counts grouped by species, location, and month
+	 * instead of images. No image metadata is loaded
+	 *
+	 * @param queryBuilder query builder with all specified options
+	 * @param collections list of collections to query
+	 * @param cancelToken the token used to stop the query
+	 * @param profile optional profile to record the time spent syncing and filtering into
+	 * @return The grouped counts of the matching observations, empty if the query failed
+	 * @throws InterruptedException if the calling thread was interrupted to cancel the query
+	 * @throws CancellationException if the token was cancelled or its deadline passed before the query completed
+	 */
+	public S3QueryAggregate performAggregateQuery(S3Query queryBuilder, final List<ImageCollection> collections, CancellationToken cancelToken,
+												  S3QueryProfile profile) throws InterruptedException
+	{
+		try
+		{
+			long syncStartNanos = System.nanoTime();
+			this.syncQueryCollections(queryBuilder, collections, cancelToken, profile);
+			if (profile != null)
+				profile.setSyncTime(System.nanoTime() - syncStartNanos);
+
+			return S3QueryExecute.executeAggregateQuery(queryBuilder.build(), collections, cancelToken, profile);
+		}
+		catch (CancellationException e)
+		{
+			throw e;
+		}
+		catch (InterruptedException e)
+		{
+			// Stop any work still going on in the background and let the caller know
+			cancelToken.cancel();
+			throw e;
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			SanimalData.getInstance().getErrorDisplay().showPopup(
+					Alert.AlertType.ERROR,
+					null,
+					"Error",
+					"Query failed",
+					"Query caused an exception!",
+					false);
+		}
+
+		return new S3QueryAggregate();
+	}
 
-			if (allFutures.size() > 0)
+	/**
+	 * Performs a query given an S3Query object and returns the images that correspond with the query. Matches are published
+	 * upload by upload as the query finds them, and the metadata of each batch starts loading as soon as the batch is found
+	 *
+	 * @param queryBuilder query builder with all specified options
+	 * @param collections list of collections to query
+	 * @param listener the listener receiving the matches and loaded images as they become available
+	 * @param cancelToken the token used to stop the query, along with any downloads and metadata loading it started
+	 * @param profile optional profile to record the time spent syncing, filtering, and loading metadata into
+	 * @return A list of images with metadata on the cloud, in query order
+	 * @throws InterruptedException if the calling thread was interrupted to cancel the query
+	 * @throws CancellationException if the token was cancelled or its deadline passed before the query completed
+	 */
+	public List<ImageEntry> performStreamingQuery(S3Query queryBuilder, final List<ImageCollection> collections, S3QueryListener listener,
+												  CancellationToken cancelToken, S3QueryProfile profile) throws InterruptedException
+	{
+		List<CompletableFuture<List<ImageEntry>>> allFetches = new ArrayList<CompletableFuture<List<ImageEntry>>>();
+		AtomicInteger totalMatches = new AtomicInteger(0);
+		AtomicInteger totalLoaded = new AtomicInteger(0);
+		// Batches share locations and species so images at the same location end up with the same location
+		ConcurrentHashMap<String, Location> uniqueLocations = new ConcurrentHashMap<>();
+		ConcurrentHashMap<String, Species> uniqueSpecies = new ConcurrentHashMap<>();
+
+		try
+		{
+			long syncStartNanos = System.nanoTime();
+			this.syncQueryCollections(queryBuilder, collections, cancelToken, profile);
+			if (profile != null)
+				profile.setSyncTime(System.nanoTime() - syncStartNanos);
+
+			// Re-use the images of an identical query if nothing it searched has changed since
+			S3QueryBuilder builtQuery = queryBuilder.build();
+			List<ImageCollection> searchedCollections = this.queryCollections(queryBuilder, collections);
+			String cacheKey = S3QueryCache.createKey(builtQuery, searchedCollections);
+			S3QueryCache.Result cachedResult = this.queryCache.getResult(cacheKey);
+			if (cachedResult != null)
 			{
-			    CompletableFuture<Void> combinedFuture = CompletableFuture.allOf(allFutures.toArray(new CompletableFuture[allFutures.size()]));
-			    combinedFuture.get();
+				List<ImageEntry> cachedImages = cachedResult.getImages();
+				if (profile != null)
+					profile.setCacheHit();
+				listener.matchesFound(cachedResult.getPaths(), cachedImages.size());
+				listener.imagesLoaded(cachedImages, cachedImages.size());
+				return cachedImages;
 			}
 
-			S3QueryResultSet resultSet = S3QueryExecute.executeQuery(queryBuilder.build(), collections);
+			List<String> allPaths = new ArrayList<>();
+			S3QueryExecute.executeQuery(builtQuery, collections, batch ->
+			{
+				List<String> batchPaths = this.resultSetToPaths(batch);
+				allPaths.addAll(batchPaths);
+				listener.matchesFound(batchPaths, totalMatches.addAndGet(batchPaths.size()));
 
-			List<String> matchingFilePaths = new ArrayList<>();
-			
-			// Don't bother looping unless we have something
-			if (resultSet != null)
-			{					
-				// Grab each row
-				for (S3QueryResultRow resultRow : resultSet.getResults())
+				// Start fetching the metadata of this batch while the query carries on
+				allFetches.add(CompletableFuture.supplyAsync(() ->
 				{
-					// Get the path to the image and the image name, create an absolute path with the info
-					String pathToImage = resultRow.get(0);
-					String imageName = resultRow.get(1);
-
-					String fullPath = (pathToImage + "/" + imageName).replace("//", "/");
-					matchingFilePaths.add(fullPath);
-				}
+					long fetchStartNanos = System.nanoTime();
+					List<ImageEntry> images = this.fetchMetadataFor(batchPaths, collections, cancelToken, uniqueLocations, uniqueSpecies);
+					if (profile != null)
+						profile.recordHydration(images.size(), System.nanoTime() - fetchStartNanos);
+					listener.imagesLoaded(images, totalLoaded.addAndGet(images.size()));
+					return images;
+				}, QUERY_FETCH_POOL));
+			}, cancelToken, profile);
+
+			// Gather the images in the order they were found
+			List<ImageEntry> toReturn = new ArrayList<>();
+			for (CompletableFuture<List<ImageEntry>> oneFetch: allFetches)
+			{
+				toReturn.addAll(cancelToken.await(oneFetch));
 			}
-			return matchingFilePaths;
+			this.queryCache.put(cacheKey, searchedCollections, allPaths, toReturn);
+			return toReturn;
+		}
+		catch (CancellationException e)
+		{
+			// The query was cancelled, let the caller know
+			throw e;
+		}
+		catch (InterruptedException e)
+		{
+			// The query was cancelled, stop any work still going on in the background and let the caller know
+			cancelToken.cancel();
+			throw e;
+		}
+		catch (ExecutionException e)
+		{
+			// A cancelled metadata fetch shows up wrapped
+			if (e.getCause() instanceof CancellationException)
+				throw (CancellationException) e.getCause();
+			e.printStackTrace();
+			SanimalData.getInstance().getErrorDisplay().showPopup(
+					Alert.AlertType.ERROR,
+					null,
+					"Error",
+					"Query failed",
+					"Query caused an exception!",
+					false);
 		}
 		catch (Exception e)
 		{
@@ -1391,10 +1632,111 @@ public class S3ConnectionManager
 					"Query caused an exception!",
 					false);
 		}
+		finally
+		{
+			// Batches that haven't started yet aren't needed anymore
+			for (CompletableFuture<List<ImageEntry>> oneFetch: allFetches)
+			{
+				oneFetch.cancel(false);
+			}
+		}
 
 		return Collections.emptyList();
 	}
 
+	/**
+	 * Makes sure the uploads of the collections a query searches have been retrieved
+	 *
+	 * @param queryBuilder query builder with all specified options
+	 * @param collections list of collections to query
+	 * @param cancelToken the token used to stop retrieving uploads
+	 * @param profile optional profile to record the time spent retrieving each collection into
+	 * @throws InterruptedException if the calling thread is interrupted while waiting
+	 * @throws ExecutionException if retrieving the uploads failed
+	 * @throws CancellationException if the token was cancelled before all uploads were retrieved
+	 */
+	private void syncQueryCollections(S3Query queryBuilder, final List<ImageCollection> collections, CancellationToken cancelToken,
+									  S3QueryProfile profile) throws InterruptedException, ExecutionException
+	{
+		List<CompletableFuture<Void>> allFutures = new ArrayList<CompletableFuture<Void>>();
+		for (ImageCollection oneCollection: this.queryCollections(queryBuilder, collections))
+		{
+			if (!oneCollection.uploadsWereSynced())
+			{
+				CompletableFuture<Void> getFuture = CompletableFuture.supplyAsync(() -> {
+					long startNanos = System.nanoTime();
+					DoubleProperty progress = new SimpleDoubleProperty(0.0);
+					int numUploads = this.retrieveAndInsertUploadList(oneCollection, progress, cancelToken);
+					// A cancelled retrieval throws before getting here, so the collection gets retrieved again next time
+					oneCollection.setUploadsWereSynced(true);
+					if (profile != null)
+						profile.recordSync(oneCollection.getName(), numUploads, System.nanoTime() - startNanos);
+					return null;
+				}, QUERY_FETCH_POOL);
+				allFutures.add(getFuture);
+			}
+		}
+
+		if (allFutures.size() > 0)
+		{
+			CompletableFuture<Void> combinedFuture = CompletableFuture.allOf(allFutures.toArray(new CompletableFuture[allFutures.size()]));
+			try
+			{
+				cancelToken.await(combinedFuture);
+			}
+			catch (ExecutionException e)
+			{
+				if (e.getCause() instanceof CancellationException)
+					throw (CancellationException) e.getCause();
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Returns the collections a query searches
+	 *
+	 * @param queryBuilder query builder with all specified options
+	 * @param collections list of collections to query
+	 * @return The collections picked by the query's collection filter, or all of them if the query doesn't filter collections
+	 */
+	private List<ImageCollection> queryCollections(S3Query queryBuilder, final List<ImageCollection> collections)
+	{
+		List<String> collFilterIDs = queryBuilder.getCollectionIDs();
+		if (collFilterIDs.isEmpty())
+			return collections;
+
+		return collections.stream().filter(oneCollection -> collFilterIDs.contains(oneCollection.getName())).collect(Collectors.toList());
+	}
+
+	/**
+	 * Converts query results into a list of absolute cloud paths
+	 *
+	 * @param resultSet the query results, may be null
+	 * @return A list of image paths
+	 */
+	private List<String> resultSetToPaths(S3QueryResultSet resultSet)
+	{
+		List<String> matchingFilePaths = new ArrayList<>();
+
+		// Don't bother looping unless we have something
+		if (resultSet != null)
+		{
+			// Grab each row
+			for (int rowIdx = 0; rowIdx < resultSet.size(); rowIdx++)
+			{
+				// Get the path to the image and the image name, create an absolute path with the info
+				String pathToImage = resultSet.getPath(rowIdx);
+				String imageName = resultSet.getName(rowIdx);
+
+				String fullPath = (pathToImage + "/" + imageName).replace("//", "/");
+				matchingFilePaths.add(fullPath);
+			}
+		}
+
+		return matchingFilePaths;
+	}
+
 	/**
 	 * Given a list of cloud absolute paths, this fetches the metadata for each image and returns it as an image entry
 	 *
@@ -1404,17 +1746,41 @@ public class S3ConnectionManager
 	 */
 	public List<ImageEntry> fetchMetadataFor(List<String> absoluteRemotePaths, final List<ImageCollection> collections)
 	{
-		List<ImageEntry> toReturn = new ArrayList<>();
+		return this.fetchMetadataFor(absoluteRemotePaths, collections, new CancellationToken());
+	}
 
-		// A unique list of species and locations is used to ensure images with identical locations don't create two locations
-		List<Location> uniqueLocations = new LinkedList<>();
-		List<Species> uniqueSpecies = new LinkedList<>();
+	/**
+	 * Given a list of cloud absolute paths, this fetches the metadata for each image and returns it as an image entry.
+	 * Stops fetching once the token is cancelled
+	 *
+	 * @param absoluteRemotePaths The list of absolute paths on the cloud
+	 * @param collections list of collections to query
+	 * @param cancelToken The token used to stop fetching metadata
+	 * @return A list of images with metadata on the cloud
+	 * @throws CancellationException If the token was cancelled before all the metadata was fetched
+	 */
+	public List<ImageEntry> fetchMetadataFor(List<String> absoluteRemotePaths, final List<ImageCollection> collections, CancellationToken cancelToken)
+	{
+		return this.fetchMetadataFor(absoluteRemotePaths, collections, cancelToken, new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+	}
 
-        // Coordination mechanism for changeable variables
-        Semaphore semLocations = new Semaphore(maxMetaSemaphores, true);
-        Semaphore semSpecies = new Semaphore(maxMetaSemaphores, true);
-        Lock lockLocations = new ReentrantLock();
-        Lock lockSpecies = new ReentrantLock();
+	/**
+	 * Given a list of cloud absolute paths, this fetches the metadata for each image and returns it as an image entry.
+	 * Locations and species are interned in the given maps so every image at a location shares the same location
+	 * instance, even across calls that share the maps
+	 *
+	 * @param absoluteRemotePaths The list of absolute paths on the cloud
+	 * @param collections list of collections to query
+	 * @param cancelToken The token used to stop fetching metadata
+	 * @param uniqueLocations The interned locations by location ID
+	 * @param uniqueSpecies The interned species by lower case scientific name
+	 * @return A list of images with metadata on the cloud
+	 * @throws CancellationException If the token was cancelled before all the metadata was fetched
+	 */
+	private List<ImageEntry> fetchMetadataFor(List<String> absoluteRemotePaths, final List<ImageCollection> collections, CancellationToken cancelToken,
+											  final ConcurrentHashMap<String, Location> uniqueLocations, final ConcurrentHashMap<String, Species> uniqueSpecies)
+	{
+		List<ImageEntry> toReturn = new ArrayList<>();
 
         List<CompletableFuture<List<ImageEntry>>> allFutures = new ArrayList<CompletableFuture<List<ImageEntry>>>();
 
@@ -1446,6 +1812,7 @@ public class S3ConnectionManager
 
                         for (int curIdx = myStartIdx; curIdx < endPathIdx; curIdx++)
                         {
+                            cancelToken.throwIfCancelled();
                             String remoteAbsolutePath = absoluteRemotePaths.get(curIdx);
                             localDateTime = LocalDateTime.now();
                             locationName = "";
@@ -1469,8 +1836,8 @@ public class S3ConnectionManager
                             }
 
                             // Perform a second query that returns ALL metadata from a given image
-                            ImageCollection collection = this.findCollectionByPath(bucket, remotePath, collections);
-                            for (S3MetaDataAndDomainData fileDataField : this.getMetadataValuesForDataObject(bucket, remotePath, collection))
+                            ImageCollection collection = this.findCollectionByPath(bucket, remotePath, collections, cancelToken);
+                            for (S3MetaDataAndDomainData fileDataField : this.getMetadataValuesForDataObject(bucket, remotePath, collection, cancelToken))
                             {
                                 // Test what type of attribute we got, if it's important store the result for later
                                 switch (fileDataField.getAttribute())
@@ -1514,57 +1881,14 @@ public class S3ConnectionManager
                                 }
                             }
 
-                            // Compute a new location if we need to
+                            // Grab the location for the image, the first image at a location creates it
+                            String finalLocationName = locationName;
                             String finalLocationID = locationID;
-                            semLocations.acquire();
-                            Boolean locationForImagePresent = uniqueLocations.stream().anyMatch(location -> location.getId().equals(finalLocationID));
-                            semLocations.release();
-                            // Do we have the location?
-                            if (!locationForImagePresent)
-                            {
-                                try
-                                {
-                                    lockLocations.lock();
-                                    semLocations.acquireUninterruptibly(maxMetaSemaphores);
-                                    uniqueLocations.add(new Location(locationName, locationID, locationLatitude, locationLongitude, locationElevation));
-                                    semLocations.release(maxMetaSemaphores);
-                                }
-                                finally
-                                {
-                                    lockLocations.unlock();
-                                }
-                            }
-                            // Compute a new species (s) if we need to
-                            for (Long key : speciesIDToScientificName.keySet())
-                            {
-                                // Grab the scientific name of the species
-                                String speciesScientificName = speciesIDToScientificName.get(key);
-                                // Test if the species is present, if not add it
-                                semSpecies.acquire();
-                                Boolean speciesForImagePresent = uniqueSpecies.stream().anyMatch(species -> species.getScientificName().equalsIgnoreCase(speciesScientificName));
-                                semSpecies.release();
-                                if (!speciesForImagePresent)
-                                {
-                                    try
-                                    {
-                                        // Save the common name of the species
-                                        lockSpecies.lock();
-                                        semSpecies.acquireUninterruptibly(maxMetaSemaphores);
-                                        uniqueSpecies.add(new Species(speciesIDToCommonName.get(key),
-                                                            speciesScientificName,Species.DEFAULT_ICON));
-                                        semSpecies.release(maxMetaSemaphores);
-                                    }
-                                    finally
-                                    {
-                                        lockSpecies.unlock();
-                                    }
-                                }
-                            }
-
-                            // Grab the correct location for the image entry
-                            semLocations.acquire();
-                            Location correctLocation = uniqueLocations.stream().filter(location -> location.getId().equals(finalLocationID)).findFirst().get();
-                            semLocations.release();
+                            Double finalLocationLatitude = locationLatitude;
+                            Double finalLocationLongitude = locationLongitude;
+                            Double finalLocationElevation = locationElevation;
+                            Location correctLocation = uniqueLocations.computeIfAbsent(finalLocationID, id ->
+                                new Location(finalLocationName, finalLocationID, finalLocationLatitude, finalLocationLongitude, finalLocationElevation));
                             // Create the image entry
                             ImageEntry entry = new ImageEntry(new File(bucket + bucketSeparator + remotePath));
                             // Set the location and date taken
@@ -1579,15 +1903,19 @@ public class S3ConnectionManager
                                   continue;
                                 }
 
-                                // Grab the species based on ID
-                                semSpecies.acquire();
-                                Species correctSpecies = uniqueSpecies.stream().filter(species -> species.getScientificName().equals(speciesScientificName)).findFirst().get();
-                                semSpecies.release();
+                                // Grab the species by name, the first image with a species creates it
+                                String speciesCommonName = speciesIDToCommonName.get(key);
+                                Species correctSpecies = uniqueSpecies.computeIfAbsent(speciesScientificName.toLowerCase(), name ->
+                                    new Species(speciesCommonName, speciesScientificName, Species.DEFAULT_ICON));
                                 entry.addSpecies(correctSpecies, speciesCount);
                             }
                             curReturns.add(entry);
                         }
                     }
+                    catch (CancellationException e)
+                    {
+                        throw e;
+                    }
                     catch (Exception e)
                     {
                         System.out.println("EXCEPtION:");
@@ -1602,7 +1930,7 @@ public class S3ConnectionManager
             if (allFutures.size() > 0)
             {
                 CompletableFuture<Void> combinedFuture = CompletableFuture.allOf(allFutures.toArray(new CompletableFuture[allFutures.size()]));
-                combinedFuture.get();
+                cancelToken.await(combinedFuture);
 
                 // Merge all the returns
                 for (CompletableFuture<List<ImageEntry>> oneFuture: allFutures)
@@ -1611,6 +1939,29 @@ public class S3ConnectionManager
                 }
             }
 		}
+		catch (CancellationException e)
+		{
+			throw e;
+		}
+		catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof CancellationException)
+				throw (CancellationException) e.getCause();
+			e.printStackTrace();
+			SanimalData.getInstance().getErrorDisplay().showPopup(
+					Alert.AlertType.ERROR,
+					null,
+					"Error",
+					"Query failed",
+					"Query caused an exception!",
+					false);
+		}
+		catch (InterruptedException e)
+		{
+			// Stop the fetches still running and keep the interrupt for the caller
+			cancelToken.cancel();
+			Thread.currentThread().interrupt();
+		}
 		catch (Exception e)
 		{
 			e.printStackTrace();
@@ -1888,34 +2239,309 @@ public class S3ConnectionManager
 		return null;
 	}
 
+	/**
+	 * Reads a file from S3 assuming a user is already logged in. The download is aborted if the token gets cancelled
+	 *
+	 * @param bucket The bucket to load the object from
+	 * @param objectName The name of the Object to read
+	 * @param checkExists Flag for performing an existence check before getting th object
+	 * @param cancelToken The token used to abort the download
+	 * @return The contents of the file on S3's system as a string
+	 * @throws CancellationException If the token was cancelled before the file was read
+	 */
+	private String readRemoteFile(String bucket, String objectName, boolean checkExists, CancellationToken cancelToken)
+	{
+		try
+		{
+			cancelToken.throwIfCancelled();
+			// Ensure it exists
+			if (!checkExists || (checkExists && this.objectExists(bucket, objectName)))
+			{
+				try (S3Object remoteObject = s3Client.getObject(bucket, objectName))
+				{
+					// Abort the download instead of reading the rest of the file if we're cancelled
+					S3ObjectInputStream s3is = remoteObject.getObjectContent();
+					Runnable abortDownload = s3is::abort;
+					cancelToken.addCancelAction(abortDownload);
+					try
+					{
+						return new String(s3is.readAllBytes(), StandardCharsets.UTF_8);
+					}
+					finally
+					{
+						cancelToken.removeCancelAction(abortDownload);
+					}
+				}
+			}
+		}
+		catch (IOException e)
+		{
+			// An aborted download shows up as a read failure
+			cancelToken.throwIfCancelled();
+			SanimalData.getInstance().getErrorDisplay().showPopup(
+					Alert.AlertType.ERROR,
+					null,
+					"Error",
+					"S3 error",
+					"Could not pull the remote file!\n" + ExceptionUtils.getStackTrace(e),
+					false);
+		}
+		catch (AmazonServiceException e)
+		{
+			SanimalData.getInstance().getErrorDisplay().showPopup(
+					Alert.AlertType.ERROR,
+					null,
+					"Error",
+					"Permission error",
+					"Could not read the remote file!\n" + ExceptionUtils.getStackTrace(e),
+					false);
+		}
+		catch (AmazonClientException e)
+		{
+			cancelToken.throwIfCancelled();
+			SanimalData.getInstance().getErrorDisplay().showPopup(
+					Alert.AlertType.ERROR,
+					null,
+					"Error",
+					"S3 error",
+					"Could not pull the remote file!\n" + ExceptionUtils.getStackTrace(e),
+					false);
+		}
+
+		// If anything fails return null
+		return null;
+	}
+
 	/**
 	 * Creates a Camtrap instance initialized from the remote location
 	 * 
 	 * @param bucket the bucket to load the data from
 	 * @param prefix the path prefix for the data location
 	 * @return the initialized instance of the Camtrap data
-	 * @throws IOExeption if a problem ocurrs reading Camtrap files
+	 * @throws IOException if a problem occurs reading Camtrap files
 	 * @throws CsvValidationException if there's a problem with a CSV file
 	 */
 	private Camtrap readRemoteCamtrap(String bucket, String prefix) throws IOException, CsvValidationException
+	{
+		return this.readRemoteCamtrap(bucket, prefix, new CancellationToken());
+	}
+
+	/**
+	 * Creates a Camtrap instance initialized from the remote location, stopping if the token is cancelled
+	 * 
+	 * @param bucket the bucket to load the data from
+	 * @param prefix the path prefix for the data location
+	 * @param cancelToken the token used to abort the downloads
+	 * @return the initialized instance of the Camtrap data
+	 * @throws IOException if a problem occurs reading Camtrap files
+	 * @throws CsvValidationException if there's a problem with a CSV file
+	 * @throws CancellationException if the token was cancelled before all the files were read
+	 */
+	private Camtrap readRemoteCamtrap(String bucket, String prefix, CancellationToken cancelToken) throws IOException, CsvValidationException
+	{
+		return this.readRemoteCamtrap(bucket, prefix, cancelToken, new ArrayList<String>());
+	}
+
+	/**
+	 * Creates a Camtrap instance initialized from the remote location, stopping if the token is cancelled. Any edit logs
+	 * still next to the Camtrap files are applied on top of them in the order findRemoteEditLogs returns them.
+	 * 
+	 * A compaction can delete folded edit logs or plain CSV files after they were listed. Their edits are in the
+	 * Camtrap files by then, so a file that vanishes mid-read makes the whole upload get listed and read again
+	 * 
+	 * @param bucket the bucket to load the data from
+	 * @param prefix the path prefix for the data location
+	 * @param cancelToken the token used to abort the downloads
+	 * @param appliedEditLogs the list the paths of the applied edit logs are added to
+	 * @return the initialized instance of the Camtrap data
+	 * @throws IOException if a problem occurs reading Camtrap files
+	 * @throws CsvValidationException if there's a problem with a CSV file
+	 * @throws CancellationException if the token was cancelled before all the files were read
+	 * @throws AmazonS3Exception if files kept vanishing on every attempt, or S3 failed for any other reason
+	 */
+	private Camtrap readRemoteCamtrap(String bucket, String prefix, CancellationToken cancelToken, List<String> appliedEditLogs) throws IOException, CsvValidationException
+	{
+		for (int attempt = 1; ; attempt++)
+		{
+			// Find out which files are compressed, older uploads only have the plain CSV files
+			cancelToken.throwIfCancelled();
+			Map<String, Date> remoteFiles = this.listObjectTimes(bucket, prefix);
+			try
+			{
+				Camtrap metadata = this.readRemoteCamtrapFiles(bucket, prefix, remoteFiles, cancelToken);
+
+				// Apply the edits saved since, in log order
+				List<String> editLogs = this.findRemoteEditLogs(remoteFiles.keySet(), prefix);
+				this.pendingEditLogCounts.put(String.join("/", bucket, prefix), this.findPendingEditLogs(remoteFiles, prefix).size());
+				if (!editLogs.isEmpty())
+				{
+					CamtrapEditLog edits = new CamtrapEditLog();
+					for (String editLogPath: editLogs)
+					{
+						this.streamRemoteCamtrapFile(bucket, editLogPath, cancelToken, edits::read);
+					}
+					edits.applyTo(metadata);
+					appliedEditLogs.addAll(editLogs);
+				}
+
+				return metadata;
+			}
+			catch (AmazonS3Exception e)
+			{
+				// Anything but a file compacted away after it was listed is a real failure
+				if ((e.getStatusCode() != 404) || (attempt >= REMOTE_CAMTRAP_READ_ATTEMPTS))
+					throw e;
+			}
+		}
+	}
+
+	/**
+	 * Reads the Camtrap files of the remote location, using the columnar copy if it's current
+	 * 
+	 * @param bucket the bucket to load the data from
+	 * @param prefix the path prefix for the data location
+	 * @param remoteFiles the last modified time of each file in the prefix by its path
+	 * @param cancelToken the token used to abort the downloads
+	 * @return the initialized instance of the Camtrap data
+	 * @throws IOException if a problem occurs reading Camtrap files
+	 * @throws CsvValidationException if there's a problem with a CSV file
+	 * @throws CancellationException if the token was cancelled before all the files were read
+	 */
+	private Camtrap readRemoteCamtrapFiles(String bucket, String prefix, Map<String, Date> remoteFiles, CancellationToken cancelToken) throws IOException, CsvValidationException
 	{
 		Camtrap metadata = new Camtrap();
 
-		String remotePath = String.join("/", prefix, Camtrap.CAMTRAP_DEPLOYMENTS_FILE);
-		String csvData = this.readRemoteFile(bucket, remotePath, false);
-		metadata.setDeployments(csvData);
+		String deploymentsPath = this.chooseRemoteCamtrapFile(remoteFiles.keySet(), prefix, Camtrap.CAMTRAP_DEPLOYMENTS_FILE);
+		String mediaPath = this.chooseRemoteCamtrapFile(remoteFiles.keySet(), prefix, Camtrap.CAMTRAP_MEDIA_FILE);
+		String observationsPath = this.chooseRemoteCamtrapFile(remoteFiles.keySet(), prefix, Camtrap.CAMTRAP_OBSERVATIONS_FILE);
 
-		remotePath = String.join("/", prefix, Camtrap.CAMTRAP_MEDIA_FILE);
-		csvData = this.readRemoteFile(bucket, remotePath, false);
-		metadata.setMedia(csvData);
+		// Use the columnar copy instead if nothing has changed the CSV files since it was written
+		String columnarPath = String.join("/", prefix, Camtrap.CAMTRAP_COLUMNAR_FILE);
+		Date columnarTime = remoteFiles.get(columnarPath);
+		if (columnarTime != null &&
+			Stream.of(deploymentsPath, mediaPath, observationsPath).map(remoteFiles::get).allMatch(csvTime -> csvTime == null || !csvTime.after(columnarTime)))
+		{
+			try
+			{
+				this.streamRemoteCamtrapFile(bucket, columnarPath, cancelToken, metadata::setColumnar);
+				return metadata;
+			}
+			catch (IOException | AmazonClientException e)
+			{
+				// Fall back to the CSV files
+				SanimalData.getInstance().getErrorDisplay().printError("Could not read the columnar metadata " + columnarPath + ", reading the CSV files instead: " + e.getMessage());
+			}
+		}
 
-		remotePath = String.join("/", prefix, Camtrap.CAMTRAP_OBSERVATIONS_FILE);
-		csvData = this.readRemoteFile(bucket, remotePath, false);
-		metadata.setObservations(csvData);
+		// Each file is parsed as it downloads instead of being read into a string first
+		this.streamRemoteCamtrapFile(bucket, deploymentsPath, cancelToken, metadata::setDeployments);
+		this.streamRemoteCamtrapFile(bucket, mediaPath, cancelToken, metadata::setMedia);
+		this.streamRemoteCamtrapFile(bucket, observationsPath, cancelToken, metadata::setObservations);
 
 		return metadata;
 	}
 
+	/**
+	 * Returns the paths of the edit logs among the remote files in the order they are applied. Logs are named by the UTC
+	 * time of the saving client's clock followed by a random suffix, and are applied in name order: by that time, and for
+	 * logs written in the same millisecond by the suffix. Client clocks can disagree, so two saves made close together by
+	 * different clients may be applied in the opposite order they were made in, but every reader applies them in the same
+	 * order and so sees the same data
+	 *
+	 * @param remoteFiles the paths of the files in the prefix
+	 * @param prefix the path prefix for the data location
+	 * @return the paths of the edit logs in the order they are applied
+	 */
+	private List<String> findRemoteEditLogs(Set<String> remoteFiles, String prefix)
+	{
+		// Log names start with their UTC time and end with a random suffix, so sorting the names gives the log order
+		String editLogStart = String.join("/", prefix, Camtrap.CAMTRAP_EDIT_LOG_PREFIX);
+		return remoteFiles.stream()
+				.filter(remotePath -> remotePath.startsWith(editLogStart) && remotePath.endsWith(Camtrap.CAMTRAP_EDIT_LOG_SUFFIX))
+				.sorted()
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Returns the paths of the edit logs uploaded after the columnar file was last written. Folded logs stay next to the
+	 * files they were folded into for a grace period, so only these newer logs count towards the next compaction. A log
+	 * saved while a compaction was running is left out too, it's still applied by every reader and gets folded by a later
+	 * compaction
+	 *
+	 * @param remoteFiles the last modified time of each file in the prefix by its path
+	 * @param prefix the path prefix for the data location
+	 * @return the paths of the edit logs not yet folded into the Camtrap files
+	 */
+	private List<String> findPendingEditLogs(Map<String, Date> remoteFiles, String prefix)
+	{
+		Date columnarTime = remoteFiles.get(String.join("/", prefix, Camtrap.CAMTRAP_COLUMNAR_FILE));
+		return this.findRemoteEditLogs(remoteFiles.keySet(), prefix).stream()
+				.filter(editLogPath -> columnarTime == null || remoteFiles.get(editLogPath).after(columnarTime))
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Returns the path of the compressed variant of a Camtrap file if it's one of the remote files, otherwise the path of the plain CSV file
+	 *
+	 * @param remoteFiles the paths of the files in the prefix
+	 * @param prefix the path prefix for the data location
+	 * @param fileName the name of the plain CSV file
+	 * @return the path of the file to read
+	 */
+	private String chooseRemoteCamtrapFile(Set<String> remoteFiles, String prefix, String fileName)
+	{
+		String remotePath = String.join("/", prefix, fileName);
+		if (remoteFiles.contains(remotePath + Camtrap.COMPRESSED_FILE_SUFFIX))
+			return remotePath + Camtrap.COMPRESSED_FILE_SUFFIX;
+		return remotePath;
+	}
+
+	/**
+	 * Streams a Camtrap file from S3 into a loader, aborting the download if the token gets cancelled
+	 *
+	 * @param bucket the bucket to load the file from
+	 * @param objectName the name of the file to load
+	 * @param cancelToken the token used to abort the download
+	 * @param loader the loader that parses the file's contents
+	 * @throws IOException if a problem ocurrs reading the file
+	 * @throws CsvValidationException if there's a problem with the CSV data
+	 * @throws CancellationException if the token was cancelled before the file was read
+	 */
+	private void streamRemoteCamtrapFile(String bucket, String objectName, CancellationToken cancelToken, CamtrapStreamLoader loader) throws IOException, CsvValidationException
+	{
+		cancelToken.throwIfCancelled();
+		try (S3Object remoteObject = s3Client.getObject(bucket, objectName))
+		{
+			S3ObjectInputStream s3is = remoteObject.getObjectContent();
+			Runnable abortDownload = s3is::abort;
+			cancelToken.addCancelAction(abortDownload);
+			try
+			{
+				// Compressed files are decompressed as they download
+				loader.load(Camtrap.openStream(objectName, s3is));
+			}
+			finally
+			{
+				cancelToken.removeCancelAction(abortDownload);
+			}
+		}
+		catch (IOException e)
+		{
+			// An aborted download shows up as a read failure
+			cancelToken.throwIfCancelled();
+			throw e;
+		}
+	}
+
+	/**
+	 * Loads the contents of a Camtrap file from a stream
+	 */
+	@FunctionalInterface
+	private interface CamtrapStreamLoader
+	{
+		void load(InputStream csvStream) throws IOException, CsvValidationException;
+	}
+
 	/**
 	 * Reads a file from S3 assuming a user is already logged in
 	 *
@@ -2066,6 +2692,40 @@ public class S3ConnectionManager
 	    return results;
 	}
 
+	/**
+	 * Returns the last modified times of the objects directly in the prefix path of the bucket
+	 *
+	 * @param bucket The path to the bucket to search
+	 * @param prefix Additional path information for the search
+	 * @return returns the last modified time of each object by its path
+	 */
+	private Map<String, Date> listObjectTimes(String bucket, String prefix)
+	{
+		String delimiter = "/";
+		if (!prefix.endsWith(delimiter)) {
+			prefix += delimiter;
+		}
+
+		ListObjectsRequest listObjectsRequest = new ListObjectsRequest()
+												.withBucketName(bucket)
+												.withPrefix(prefix)
+												.withDelimiter(delimiter);
+		Map<String, Date> results = new HashMap<String, Date>();
+		ObjectListing objects = this.s3Client.listObjects(listObjectsRequest);
+		while (true)
+		{
+			for (S3ObjectSummary oneSummary: objects.getObjectSummaries())
+			{
+				results.put(oneSummary.getKey(), oneSummary.getLastModified());
+			}
+			if (!objects.isTruncated())
+				break;
+			objects = this.s3Client.listNextBatchOfObjects(objects);
+		}
+
+		return results;
+	}
+
 	/**
 	 * Returns a list of the objects in the prefix path of the bucket
 	 * 
@@ -2378,38 +3038,140 @@ public class S3ConnectionManager
 	}
 
 	/**
-	 * Looks for an entry and updates the metadata if found, otherwise creates a new entry
+	 * Records the edit of an entry, which replaces the entry's media and observations if found, otherwise adds a new entry.
+	 * The edits are applied to the metadata once they're all recorded
 	 * 
 	 * @param imageMetadata the metadata fields, values, and units
 	 * @param fileRelativePath the relative to the media
 	 * @param metaCamtrap the Camtrap metadata entries
+	 * @param edits the log to record the edit in
 	 * @throws InvalidParameterException if critical information is missing
 	 */
-	private void addUpdateMetadataCamtrap(List<MetaData> imageMetadata, String fileRelativePath, Camtrap metaCamtrap)
+	private void addUpdateMetadataCamtrap(List<MetaData> imageMetadata, String fileRelativePath, Camtrap metaCamtrap, CamtrapEditLog edits)
 	{
-		// Create a Camtrap instance to hold the generated data
+		// Create a Camtrap instance to hold the generated data, starting with the existing deployments so their locations are reused
 		Camtrap newMeta =  new Camtrap();
+		newMeta.deployments.addAll(metaCamtrap.deployments);
 		this.mapMetadataToCamtrap(imageMetadata, fileRelativePath, newMeta);
 
-		// Either replace or add the data
-		Media oldMedia = null;
-		int index = 0;
-		while (index < metaCamtrap.media.size())
+		// A new location gets a new deployment
+		if (newMeta.deployments.size() > metaCamtrap.deployments.size())
+		{
+			Deployments newDep = newMeta.deployments.get(newMeta.deployments.size() - 1);
+			metaCamtrap.deployments.add(newDep);
+			edits.upsertDeployment(newDep);
+		}
+
+		edits.upsertMedia(newMeta.media.get(0), newMeta.observations);
+	}
+
+	/**
+	 * Writes an edit log to the upload folder. Logs are named by the current UTC time and a random suffix, see findRemoteEditLogs
+	 * for the order readers apply them in
+	 * 
+	 * @param bucket the bucket of the upload
+	 * @param uploadPath the path of the upload folder
+	 * @param edits the edits to write
+	 * @throws IOException if a problem occurs while writing the log
+	 */
+	private void writeRemoteEditLog(String bucket, String uploadPath, CamtrapEditLog edits) throws IOException
+	{
+		String logName = Camtrap.CAMTRAP_EDIT_LOG_PREFIX +
+						 LocalDateTime.now(ZoneOffset.UTC).format(DateTimeFormatter.ofPattern(EDIT_LOG_TIMESTAMP_FORMAT)) + "-" +
+						 RandomStringUtils.randomAlphanumeric(8) + Camtrap.CAMTRAP_EDIT_LOG_SUFFIX;
+		File localFile = SanimalData.getInstance().getTempDirectoryManager().createTempFile(logName);
+		try (OutputStream outStream = new FileOutputStream(localFile))
 		{
-			// Check for a media match
-			Media curMedia = metaCamtrap.media.get(index);
-			if (Objects.equals(curMedia.filePath, fileRelativePath))
+			edits.writeTo(outStream);
+		}
+		this.uploadFile(bucket, String.join("/", uploadPath, logName), localFile);
+		localFile.delete();
+	}
+
+	/**
+	 * Starts a background task that folds an upload's edit logs into its Camtrap files. Compactions run on their own
+	 * thread so they never hold up the user's queued tasks
+	 * 
+	 * @param bucket the bucket of the upload
+	 * @param uploadPath the path of the upload folder
+	 */
+	private void scheduleEditLogCompaction(String bucket, String uploadPath)
+	{
+		ErrorTask<Void> compactTask = new ErrorTask<Void>()
+		{
+			@Override
+			protected Void call() throws Exception
 			{
-				oldMedia = curMedia;
-				curMedia = newMeta.media.get(0);
-				break;
+				this.updateMessage("Compacting the edits of " + uploadPath);
+				S3ConnectionManager.this.compactEditLogs(bucket, uploadPath, this.getCancellationToken());
+				return null;
 			}
-			index++;
+		};
+		this.pendingEditLogCounts.remove(String.join("/", bucket, uploadPath));
+		EDIT_LOG_COMPACTION_POOL.execute(compactTask);
+	}
+
+	/**
+	 * Folds the edit logs of an upload into its Camtrap files once there are enough of them saved since the files were
+	 * last written. Applying a log again gives the same result, so readers that see both the new files and a folded log
+	 * still get the right data.
+	 * 
+	 * Folded logs are only deleted once they were uploaded more than the grace period before the new files, as measured by
+	 * S3's own clock, and logs saved meanwhile are never deleted. Readers and other compactions still reading a deleted log
+	 * list and read the upload again. Since a compaction that took too long gives up before writing, files written by a
+	 * slow compaction never replace newer files whose logs are already gone
+	 * 
+	 * @param bucket the bucket of the upload
+	 * @param uploadPath the path of the upload folder
+	 * @param cancelToken the token used to stop the compaction
+	 * @throws IOException if a problem occurs while reading or writing the Camtrap files
+	 * @throws CsvValidationException if there's a problem with a CSV file
+	 */
+	private void compactEditLogs(String bucket, String uploadPath, CancellationToken cancelToken) throws IOException, CsvValidationException
+	{
+		long startNanos = System.nanoTime();
+		Map<String, Date> objectTimes = this.listObjectTimes(bucket, uploadPath);
+		if (this.findPendingEditLogs(objectTimes, uploadPath).size() < EDIT_LOG_COMPACTION_THRESHOLD)
+			return;
+
+		List<String> foldedEditLogs = new ArrayList<String>();
+		Camtrap metadata = this.readRemoteCamtrap(bucket, uploadPath, cancelToken, foldedEditLogs);
+		cancelToken.throwIfCancelled();
+
+		// Write the files, with the columnar copy last so it's the newest file
+		File metaFolder = SanimalData.getInstance().getTempDirectoryManager().createTempFolder("meta");
+		metadata.saveTo(metaFolder.getAbsolutePath(), true);
+		String[] paths = (String[]) ArrayUtils.add(metadata.getFilePaths(metaFolder.getAbsolutePath(), true), metadata.saveColumnarTo(metaFolder.getAbsolutePath()));
+
+		// Leave the logs to the next compaction rather than risk replacing newer files with what we read too long ago
+		boolean tooSlow = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) > EDIT_LOG_GRACE_MILLIS / 2;
+		for (String oneFile: paths)
+		{
+			if (!tooSlow)
+				this.uploadFile(bucket, String.join("/", uploadPath, FilenameUtils.getName(oneFile)), oneFile);
+			new File(oneFile).delete();
 		}
-		if (index >= metaCamtrap.media.size())
+		if (tooSlow)
+			return;
+		// The logs read are in the files now, only logs saved since count towards the next compaction
+		this.pendingEditLogCounts.remove(String.join("/", bucket, uploadPath));
+
+		// Only delete logs uploaded well before the new files, by S3's clock, so readers that listed them recently can finish.
+		// Plain CSV files from before uploads were compressed would no longer match the compressed files, so remove them too.
+		// Older versions that only read the plain files then fail instead of reading old data
+		Date writtenTime = this.s3Client.getObjectMetadata(bucket, String.join("/", uploadPath, Camtrap.CAMTRAP_COLUMNAR_FILE)).getLastModified();
+		List<String> staleKeys = new ArrayList<String>();
+		for (String editLogPath: foldedEditLogs)
 		{
-			metaCamtrap.media.add(newMeta.media.get(0));
+			Date logTime = objectTimes.get(editLogPath);
+			if ((logTime != null) && (writtenTime.getTime() - logTime.getTime() > EDIT_LOG_GRACE_MILLIS))
+				staleKeys.add(editLogPath);
 		}
+		for (String plainPath: metadata.getFilePaths(uploadPath, false))
+			if (objectTimes.containsKey(plainPath))
+				staleKeys.add(plainPath);
+		if (!staleKeys.isEmpty())
+			this.s3Client.deleteObjects(new DeleteObjectsRequest(bucket).withKeys(staleKeys.toArray(new String[0])));
 	}
 
 	/**
@@ -2418,9 +3180,11 @@ public class S3ConnectionManager
 	 * @param bucket the bucket of the path
 	 * @param remotePath the path to return the metadata for
 	 * @param collections the list of collections to search
+	 * @param cancelToken the token used to stop retrieving uploads
 	 * @return the found collection
 	 */
-	private ImageCollection findCollectionByPath(final String bucket, final String remotePath, final List<ImageCollection> collections)
+	private ImageCollection findCollectionByPath(final String bucket, final String remotePath, final List<ImageCollection> collections,
+												 final CancellationToken cancelToken)
 	{
 		ImageCollection returnCollection = null;
 
@@ -2437,7 +3201,7 @@ public class S3ConnectionManager
             if (!oneCollection.uploadsWereSynced())
             {
                 DoubleProperty progress = new SimpleDoubleProperty(0.0);
-                this.retrieveAndInsertUploadList(oneCollection, progress);
+                this.retrieveAndInsertUploadList(oneCollection, progress, cancelToken);
 				oneCollection.setUploadsWereSynced(true);
             }
 
@@ -2472,11 +3236,13 @@ public class S3ConnectionManager
 	 * @param bucket the bucket of the path
 	 * @param remotePath the path to return the metadata for
 	 * @param collection the collection
+	 * @param cancelToken the token used to stop retrieving uploads
 	 * @return list of metadata associated with the path
 	 * @throws NoSuchAlgorithmException when raised
 	 * @throws UnsupportedEncodingException when raised
 	 */
-	private List<S3MetaDataAndDomainData> getMetadataValuesForDataObject(final String bucket, final String remotePath, final ImageCollection collection)
+	private List<S3MetaDataAndDomainData> getMetadataValuesForDataObject(final String bucket, final String remotePath, final ImageCollection collection,
+																		 final CancellationToken cancelToken)
 		throws NoSuchAlgorithmException, UnsupportedEncodingException
 	{
 		List<S3MetaDataAndDomainData> imageMetaData = new ArrayList<S3MetaDataAndDomainData>();
@@ -2485,7 +3251,7 @@ public class S3ConnectionManager
         if (!collection.uploadsWereSynced())
         {
             DoubleProperty progress = new SimpleDoubleProperty(0.0);
-            this.retrieveAndInsertUploadList(collection, progress);
+            this.retrieveAndInsertUploadList(collection, progress, cancelToken);
 			collection.setUploadsWereSynced(true);
         }
 
@@ -46,6 +46,7 @@ public abstract class BaseSanimalExecutor
 			if (onSucceeded != null)
 				onSucceeded.handle(taskEvent);
 			onSucceeded(service);
+			onFinished(service);
 		});
 		// When the service begins running, bind the message/progress and task running properties
 		EventHandler<WorkerStateEvent> onRunning = service.getOnRunning();
@@ -72,25 +73,46 @@ public abstract class BaseSanimalExecutor
 			if (onSucceeded != null)
 				onSucceeded.handle(taskEvent);
 			onSucceeded(task);
+			onFinished(task);
 		});
 		// When the service begins running, bind the message/progress and task running properties
+		boolean[] taskStarted = { false };
 		EventHandler<WorkerStateEvent> onRunning = task.getOnRunning();
 		task.setOnRunning(taskEvent->
 		{
+			taskStarted[0] = true;
 			if (onRunning != null)
 				onRunning.handle(taskEvent);
 			onRunning(task);
 		});
+		// When a running task is cancelled it's finished without succeeding, so it doesn't appear to run forever
+		EventHandler<WorkerStateEvent> onCancelled = task.getOnCancelled();
+		task.setOnCancelled(taskEvent ->
+		{
+			if (onCancelled != null)
+				onCancelled.handle(taskEvent);
+			if (taskStarted[0])
+				onFinished(task);
+		});
 		// Add the task to be performed
 		return this.taskPerformer.submit(task);
 	}
 
 	/**
-	 * Called when a task finishes
+	 * Called when a task succeeds, before it is reported as finished. Does nothing unless overridden
+	 *
+	 * @param worker The worker that succeeded
+	 */
+	protected void onSucceeded(Worker<?> worker)
+	{
+	}
+
+	/**
+	 * Called when a task that began stops running, either because it succeeded or because it was cancelled
 	 *
 	 * @param worker The worker that finished
 	 */
-	protected abstract void onSucceeded(Worker<?> worker);
+	protected abstract void onFinished(Worker<?> worker);
 
 	/**
 	 * Called when a task begins
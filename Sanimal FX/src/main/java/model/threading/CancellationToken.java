@@ -0,0 +1,162 @@
+package model.threading;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Token used to stop long running work such as a query from another thread. Work checks the token between steps
+ * and gives up once it's cancelled. A token may also have a deadline, once it passes the token counts as cancelled
+ */
+public class CancellationToken
+{
+	// How often a thread waiting on a future checks if it should give up
+	private static final long POLL_INTERVAL_MILLIS = 50;
+
+	// If the token was cancelled
+	private final AtomicBoolean cancelled = new AtomicBoolean(false);
+	// When the deadline passes as a System.nanoTime() value, only used if hasDeadline is true
+	private volatile long deadlineNanos = 0;
+	private volatile boolean hasDeadline = false;
+	// Actions to run when the token is cancelled, such as aborting a download
+	private final List<Runnable> cancelActions = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Constructor for a token without a deadline
+	 */
+	public CancellationToken()
+	{
+	}
+
+	/**
+	 * Constructor for a token that gets cancelled after the timeout
+	 *
+	 * @param timeout How long the work may run for
+	 */
+	public CancellationToken(Duration timeout)
+	{
+		this.setTimeout(timeout);
+	}
+
+	/**
+	 * Sets the deadline of the token to be the timeout from now
+	 *
+	 * @param timeout How long the work may run for, null for no deadline
+	 */
+	public void setTimeout(Duration timeout)
+	{
+		if (timeout == null)
+		{
+			this.hasDeadline = false;
+		}
+		else
+		{
+			this.deadlineNanos = System.nanoTime() + timeout.toNanos();
+			this.hasDeadline = true;
+		}
+	}
+
+	/**
+	 * Cancels the token and runs any cancel actions. Cancelling more than once does nothing
+	 */
+	public void cancel()
+	{
+		if (this.cancelled.compareAndSet(false, true))
+		{
+			for (Runnable cancelAction : this.cancelActions)
+				cancelAction.run();
+		}
+	}
+
+	/**
+	 * Returns true if the token was cancelled or its deadline has passed
+	 *
+	 * @return True if the work should stop
+	 */
+	public boolean isCancelled()
+	{
+		if (!this.cancelled.get() && this.isDeadlineExceeded())
+			this.cancel();
+		return this.cancelled.get();
+	}
+
+	/**
+	 * Returns true if the token has a deadline and it has passed
+	 *
+	 * @return True if the deadline has passed
+	 */
+	public boolean isDeadlineExceeded()
+	{
+		return this.hasDeadline && System.nanoTime() - this.deadlineNanos >= 0;
+	}
+
+	/**
+	 * Throws if the token was cancelled or its deadline has passed, otherwise does nothing
+	 *
+	 * @throws CancellationException If the work should stop
+	 */
+	public void throwIfCancelled() throws CancellationException
+	{
+		if (this.isCancelled())
+			throw new CancellationException(this.isDeadlineExceeded() ? "Deadline exceeded" : "Cancelled");
+	}
+
+	/**
+	 * Adds an action that is run when the token is cancelled. If the token is already cancelled the action runs right away
+	 *
+	 * @param cancelAction The action to run, called on the thread that cancels the token
+	 */
+	public void addCancelAction(Runnable cancelAction)
+	{
+		this.cancelActions.add(cancelAction);
+		if (this.isCancelled())
+			cancelAction.run();
+	}
+
+	/**
+	 * Removes an action added with addCancelAction
+	 *
+	 * @param cancelAction The action to remove
+	 */
+	public void removeCancelAction(Runnable cancelAction)
+	{
+		this.cancelActions.remove(cancelAction);
+	}
+
+	/**
+	 * Waits for a future to complete unless the token is cancelled first, in which case the future is cancelled too
+	 *
+	 * @param future The future to wait for
+	 * @param <T> The type of the future's result
+	 * @return The result of the future
+	 * @throws CancellationException If the token was cancelled while waiting
+	 * @throws InterruptedException If the waiting thread was interrupted
+	 * @throws ExecutionException If the future failed
+	 */
+	public <T> T await(Future<T> future) throws InterruptedException, ExecutionException
+	{
+		while (true)
+		{
+			if (this.isCancelled())
+			{
+				future.cancel(true);
+				this.throwIfCancelled();
+			}
+
+			try
+			{
+				return future.get(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+			}
+			catch (TimeoutException ignored)
+			{
+				// Not done yet, check the token again
+			}
+		}
+	}
+}
@@ -8,12 +8,16 @@ import model.SanimalData;
 import org.apache.commons.lang.exception.ExceptionUtils;
 
 /**
- * Wrapper task that is aware of errors
+ * Wrapper task that is aware of errors. Each task also owns a cancellation token which gets cancelled along with the
+ * task, so work the task hands off to other threads can stop too
  *
  * @param <V> Decides the task return value
  */
 public abstract class ErrorTask<V> extends Task<V>
 {
+	// The token cancelled when this task is cancelled
+	private final CancellationToken cancellationToken = new CancellationToken();
+
 	/**
 	 * Constructor adds a failed listener
 	 */
@@ -36,4 +40,29 @@ public abstract class ErrorTask<V> extends Task<V>
 		// When the task fails print out the failure
 		this.setOnFailed(handler);
 	}
+
+	/**
+	 * Cancels the task and its cancellation token
+	 *
+	 * @param mayInterruptIfRunning If the thread running the task should be interrupted
+	 * @return False if the task could not be cancelled, usually because it already finished
+	 */
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning)
+	{
+		boolean cancelled = super.cancel(mayInterruptIfRunning);
+		if (cancelled)
+			this.cancellationToken.cancel();
+		return cancelled;
+	}
+
+	/**
+	 * Returns the token cancelled when this task is cancelled, pass it to long running work started by the task
+	 *
+	 * @return The cancellation token of the task
+	 */
+	public CancellationToken getCancellationToken()
+	{
+		return this.cancellationToken;
+	}
 }
@@ -38,7 +38,7 @@ public class ImmediateExecutor extends BaseSanimalExecutor
 	 * @param worker The worker that finished
 	 */
 	@Override
-	protected void onSucceeded(Worker<?> worker)
+	protected void onFinished(Worker<?> worker)
 	{
 		this.tasksRunning.add(-1);
 		if (worker instanceof Task<?>)
@@ -36,7 +36,7 @@ public class QueuedExecutor extends BaseSanimalExecutor
 	 * @param worker The worker that finished
 	 */
 	@Override
-	protected void onSucceeded(Worker<?> worker)
+	protected void onFinished(Worker<?> worker)
 	{
 		this.message.unbind();
 		this.progress.unbind();
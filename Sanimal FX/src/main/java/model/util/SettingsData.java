@@ -28,6 +28,7 @@ public class SettingsData
 	private BooleanProperty drSandersonOutput = new SimpleBooleanProperty(false);
 	private BooleanProperty automaticNextImage = new SimpleBooleanProperty(false);
 	private BooleanProperty backgroundImageLoading = new SimpleBooleanProperty(false);
+	private ObjectProperty<Integer> queryTimeout = new SimpleObjectProperty<>(0);
 
 	/**
 	 * Constructor adds all settings SANIMAL will use to the dictionary
@@ -52,6 +53,9 @@ public class SettingsData
 		this.drSandersonOutput.setValue(otherSettings.getDrSandersonOutput());
 		this.automaticNextImage.setValue(otherSettings.getAutomaticNextImage());
 		this.backgroundImageLoading.setValue(otherSettings.getBackgroundImageLoading());
+		// Settings saved before the timeout existed don't have one
+		if (otherSettings.getQueryTimeout() != null)
+			this.queryTimeout.setValue(otherSettings.getQueryTimeout());
 	}
 
 	/**
@@ -67,6 +71,7 @@ public class SettingsData
 		settingList.add(new CustomPropertyItem<>("Show Dr. Sanderson's Output Replicas: ", "Options", "Gives the option to see Dr. Jim Sanderson's Output.txt and AllPictures.txt replicas when querying", drSandersonOutput, Boolean.class));
 		settingList.add(new CustomPropertyItem<>("Automatically Select Next Image: ", "Options", "Automatically select the next image after tagging one with species", automaticNextImage, Boolean.class));
 		settingList.add(new CustomPropertyItem<>("Background Image Loading: ", "Options", "Load images in the background when selecting them, useful for slow hard drives or SD cards", backgroundImageLoading, Boolean.class));
+		settingList.add(new CustomPropertyItem<>("Query Timeout (Minutes): ", "Options", "Stops a query that runs for longer than this many minutes, 0 lets queries run for as long as they need", queryTimeout, Integer.class));
 	}
 
 	/**
@@ -438,4 +443,19 @@ public class SettingsData
 	{
 		return drSandersonOutput;
 	}
+
+	public void setQueryTimeout(Integer queryTimeout)
+	{
+		this.queryTimeout.set(queryTimeout);
+	}
+
+	public Integer getQueryTimeout()
+	{
+		return queryTimeout.get();
+	}
+
+	public ObjectProperty<Integer> queryTimeoutProperty()
+	{
+		return queryTimeout;
+	}
 }
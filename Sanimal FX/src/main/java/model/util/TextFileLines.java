@@ -0,0 +1,134 @@
+package model.util;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * A read only list of the lines of a UTF-8 text file. Only where each line starts is kept in memory, lines are read from the file a page at a
+ * time when they are asked for. This lets a list view show a file of any size while only the visible lines are ever loaded
+ */
+public class TextFileLines extends AbstractList<String> implements RandomAccess
+{
+	// The number of lines read from the file at once
+	private static final int PAGE_LINES = 256;
+
+	// The file the lines are read from
+	private final File file;
+	// The byte offset each line starts at, followed by the offset one past the end of the file
+	private final long[] lineStarts;
+	// The number of lines in the file
+	private final int lineCount;
+
+	// The page of lines last read from the file, and the index of its first line
+	private String[] page = new String[0];
+	private int pageStart = 0;
+
+	/**
+	 * Constructor indexes where each line of the file starts
+	 *
+	 * @param file The file to read, must not change while the list is in use
+	 * @throws IOException If the file could not be read
+	 */
+	public TextFileLines(File file) throws IOException
+	{
+		this.file = file;
+
+		long[] lineStarts = new long[1024];
+		int lineCount = 0;
+		long offset = 0;
+		boolean lineStarted = false;
+		try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(file.toPath())))
+		{
+			int nextByte;
+			while ((nextByte = inputStream.read()) != -1)
+			{
+				if (!lineStarted)
+				{
+					if (lineCount + 1 >= lineStarts.length)
+						lineStarts = Arrays.copyOf(lineStarts, lineStarts.length * 2);
+					lineStarts[lineCount++] = offset;
+					lineStarted = true;
+				}
+				offset++;
+				// UTF-8 never uses the new line byte inside another character
+				if (nextByte == '\n')
+					lineStarted = false;
+			}
+		}
+		lineStarts[lineCount] = offset;
+
+		this.lineStarts = Arrays.copyOf(lineStarts, lineCount + 1);
+		this.lineCount = lineCount;
+	}
+
+	/**
+	 * Returns a line of the file without its line terminator, reading the page of lines around it if it isn't loaded yet
+	 *
+	 * @param index The index of the line
+	 * @return The line
+	 */
+	@Override
+	public synchronized String get(int index)
+	{
+		if (index < 0 || index >= this.lineCount)
+			throw new IndexOutOfBoundsException("Line " + index + " of " + this.lineCount);
+
+		if (index < this.pageStart || index >= this.pageStart + this.page.length)
+			this.readPage(index - index % PAGE_LINES);
+		return this.page[index - this.pageStart];
+	}
+
+	/**
+	 * @return The number of lines in the file
+	 */
+	@Override
+	public int size()
+	{
+		return this.lineCount;
+	}
+
+	/**
+	 * Reads a page of lines from the file
+	 *
+	 * @param pageStart The index of the first line of the page
+	 */
+	private void readPage(int pageStart)
+	{
+		int pageEnd = Math.min(pageStart + PAGE_LINES, this.lineCount);
+		byte[] pageBytes = new byte[(int) (this.lineStarts[pageEnd] - this.lineStarts[pageStart])];
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(this.file, "r"))
+		{
+			randomAccessFile.seek(this.lineStarts[pageStart]);
+			randomAccessFile.readFully(pageBytes);
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+
+		String[] page = new String[pageEnd - pageStart];
+		for (int line = pageStart; line < pageEnd; line++)
+		{
+			int start = (int) (this.lineStarts[line] - this.lineStarts[pageStart]);
+			int end = (int) (this.lineStarts[line + 1] - this.lineStarts[pageStart]);
+			// Drop the line terminator
+			if (end > start && pageBytes[end - 1] == '\n')
+				end--;
+			if (end > start && pageBytes[end - 1] == '\r')
+				end--;
+			page[line - pageStart] = new String(pageBytes, start, end - start, StandardCharsets.UTF_8);
+		}
+
+		this.page = page;
+		this.pageStart = pageStart;
+	}
+}
@@ -0,0 +1,142 @@
+package model.image;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that the columnar copy of Camtrap data reads back the same values as the CSV files
+ */
+public class CamtrapColumnarFileTest
+{
+    @Test
+    public void readsSameValuesAsCsv() throws Exception
+    {
+        Camtrap original = new Camtrap();
+
+        Deployments dep = new Deployments();
+        dep.deploymentID = "deployment1";
+        dep.locationID = "location1";
+        dep.locationName = "Location 1";
+        dep.start = LocalDateTime.of(2020, 6, 1, 0, 0);
+        dep.end = LocalDateTime.of(2020, 7, 1, 0, 0);
+        dep.timestampIssues = true;
+        original.deployments.add(dep);
+
+        Media med = new Media();
+        med.mediaID = "";
+        med.deploymentID = "deployment1";
+        med.timestamp = LocalDateTime.of(2020, 6, 2, 12, 30);
+        med.filePath = "upload/image1.jpg";
+        med.fileName = "image1.jpg";
+        med.exifData = "";
+        med.favorite = true;
+        original.media.add(med);
+
+        Observations obs = new Observations();
+        obs.observationID = "";
+        obs.deploymentID = "deployment1";
+        obs.mediaID = "media1";
+        obs.timestamp = LocalDateTime.of(2020, 6, 2, 12, 30);
+        obs.cameraSetup = true;
+        obs.scientificName = "Lynx rufus";
+        // Longer than the reader's buffer so the string is read past it
+        char[] longComment = new char[100 * 1024];
+        Arrays.fill(longComment, 'c');
+        obs.comments = new String(longComment);
+        original.observations.add(obs);
+
+        Camtrap fromCsv = CamtrapColumnarFileTest.readCsv(original);
+        Camtrap fromColumnar = CamtrapColumnarFileTest.readColumnar(original);
+
+        assertEquals(rows(fromCsv), rows(fromColumnar));
+        assertNull(fromColumnar.media.get(0).mediaID);
+        assertNull(fromColumnar.observations.get(0).observationID);
+        assertTrue(fromCsv.deployments.get(0).timestampIssues);
+        assertTrue(fromCsv.media.get(0).favorite);
+        assertTrue(fromCsv.observations.get(0).cameraSetup);
+        assertEquals(obs.comments, fromColumnar.observations.get(0).comments);
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedFileFails() throws Exception
+    {
+        Camtrap original = new Camtrap();
+        Media med = new Media();
+        med.mediaID = "media1";
+        med.filePath = "upload/image1.jpg";
+        original.media.add(med);
+
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        CamtrapColumnarFile.write(original, outStream);
+        byte[] bytes = outStream.toByteArray();
+
+        CamtrapColumnarFile.read(new Camtrap(), new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length / 2)));
+    }
+
+    /**
+     * Writes the data to CSV files and reads them back
+     */
+    private static Camtrap readCsv(Camtrap metadata) throws Exception
+    {
+        File folder = Files.createTempDirectory("camtrap").toFile();
+        try
+        {
+            metadata.saveTo(folder.getAbsolutePath());
+            return Camtrap.instance(folder.getAbsolutePath());
+        }
+        finally
+        {
+            for (File oneFile: folder.listFiles())
+            {
+                oneFile.delete();
+            }
+            folder.delete();
+        }
+    }
+
+    /**
+     * Writes the data to a columnar file and reads it back
+     */
+    private static Camtrap readColumnar(Camtrap metadata) throws IOException
+    {
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        CamtrapColumnarFile.write(metadata, outStream);
+        Camtrap returnValue = new Camtrap();
+        CamtrapColumnarFile.read(returnValue, new ByteArrayInputStream(outStream.toByteArray()));
+        return returnValue;
+    }
+
+    /**
+     * Returns the values of every row as they'd be written to the CSV files
+     */
+    private static List<List<String>> rows(Camtrap metadata)
+    {
+        List<List<String>> rows = new ArrayList<List<String>>();
+        for (Deployments dep: metadata.deployments)
+        {
+            rows.add(Arrays.asList(dep.toArray()));
+        }
+        for (Media med: metadata.media)
+        {
+            rows.add(Arrays.asList(med.toArray()));
+        }
+        for (Observations obs: metadata.observations)
+        {
+            rows.add(Arrays.asList(obs.toArray()));
+        }
+        return rows;
+    }
+}
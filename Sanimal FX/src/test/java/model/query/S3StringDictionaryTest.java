@@ -0,0 +1,178 @@
+package model.query;
+
+import model.constant.SanimalMetadataFields;
+import model.image.Camtrap;
+import model.image.CamtrapEditLog;
+import model.image.CloudUploadEntry;
+import model.image.Deployments;
+import model.image.Media;
+import model.image.Observations;
+import model.s3.ImageCollection;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests that dictionary encoded species and location conditions match the same media as the string comparisons they
+ * replace, and keep matching after an upload's metadata is edited
+ */
+public class S3StringDictionaryTest
+{
+	private static final LocalDateTime TAKEN = LocalDateTime.of(2020, 6, 1, 12, 0);
+
+	private ImageCollection collection;
+	private CloudUploadEntry upload;
+	private Camtrap metadata;
+
+	@Before
+	public void setUp()
+	{
+		this.metadata = new Camtrap();
+		this.metadata.deployments.add(deployment("deployment1", "Location 1"));
+		this.metadata.media.add(media("media1", "deployment1", "upload/image1.jpg"));
+		this.metadata.media.add(media("media2", "deployment1", "upload/image2.jpg"));
+		this.metadata.observations.add(observation("media1", "deployment1", "Lynx rufus"));
+		this.metadata.observations.add(observation("media2", "deployment1", "Puma concolor"));
+
+		this.upload = new CloudUploadEntry("user", TAKEN, 2, 2, "bucket", "upload", "");
+		this.upload.getMetadata().setValue(this.metadata);
+		this.collection = new ImageCollection();
+		this.collection.getUploads().add(this.upload);
+	}
+
+	@Test
+	public void editedMediaStillMatches() throws Exception
+	{
+		assertEquals(1, this.querySpecies("Lynx rufus").size());
+
+		// Edit the media row without changing the species, the edit swaps in a new Media object but keeps the media count
+		Media edited = media("media1", "deployment1", "upload/image1.jpg");
+		edited.comments = "Edited";
+		this.saveEdit(edited, observation("media1", "deployment1", "Lynx rufus"));
+
+		S3QueryResultSet results = this.querySpecies("Lynx rufus");
+		assertEquals(1, results.size());
+		assertEquals("image1.jpg", results.getName(0));
+	}
+
+	@Test
+	public void editedSpeciesMatchesNewValue() throws Exception
+	{
+		assertEquals(1, this.querySpecies("Lynx rufus").size());
+
+		this.saveEdit(media("media1", "deployment1", "upload/image1.jpg"), observation("media1", "deployment1", "Puma concolor"));
+
+		assertEquals(0, this.querySpecies("Lynx rufus").size());
+		assertEquals(2, this.querySpecies("Puma concolor").size());
+	}
+
+	@Test
+	public void caseSensitiveEqualityMatchesNothing() throws Exception
+	{
+		// The string comparisons never matched case sensitive = or <>, only case insensitive ones
+		assertEquals(0, this.query(SanimalMetadataFields.A_SPECIES_SCIENTIFIC_NAME, S3QueryConditionOperators.EQUAL, "Lynx rufus", false).size());
+		assertEquals(0, this.query(SanimalMetadataFields.A_SPECIES_SCIENTIFIC_NAME, S3QueryConditionOperators.NOT_EQUAL, "Lynx rufus", false).size());
+		assertEquals(1, this.query(SanimalMetadataFields.A_SPECIES_SCIENTIFIC_NAME, S3QueryConditionOperators.EQUAL, "LYNX RUFUS", true).size());
+		assertEquals(1, this.query(SanimalMetadataFields.A_SPECIES_SCIENTIFIC_NAME, S3QueryConditionOperators.NOT_EQUAL, "LYNX RUFUS", true).size());
+	}
+
+	@Test
+	public void commonNameComesFromFirstTaggedObservation() throws Exception
+	{
+		// The first observation of the media has no common name, the second one does
+		Observations tagged = observation("media1", "deployment1", "Lynx rufus");
+		tagged.comments = "[COMMONNAME:Bobcat]";
+		this.metadata.observations.add(tagged);
+
+		S3QueryResultSet results = this.query(SanimalMetadataFields.A_SPECIES_COMMON_NAME, S3QueryConditionOperators.EQUAL, "bobcat", true);
+		assertEquals(1, results.size());
+		assertEquals("image1.jpg", results.getName(0));
+	}
+
+	@Test
+	public void unchangedUploadReusesEncoding()
+	{
+		S3StringDictionary dictionary = this.collection.getStringDictionary();
+		S3StringDictionary.EncodedUpload first = dictionary.getEncodedUpload(this.metadata, this.upload.getVersion());
+		assertSame(first, dictionary.getEncodedUpload(this.metadata, this.upload.getVersion()));
+	}
+
+	/**
+	 * Applies an edit to the upload the same way saving images does
+	 *
+	 * @param med The new media row
+	 * @param obs The observation of the media
+	 */
+	private void saveEdit(Media med, Observations obs)
+	{
+		CamtrapEditLog edits = new CamtrapEditLog();
+		edits.upsertMedia(med, Collections.singletonList(obs));
+		edits.applyTo(this.metadata);
+		this.upload.markChanged();
+	}
+
+	/**
+	 * Queries the collection for a species
+	 *
+	 * @param scientificName The scientific name to query for
+	 * @return The matching images
+	 */
+	private S3QueryResultSet querySpecies(String scientificName) throws Exception
+	{
+		return this.query(SanimalMetadataFields.A_SPECIES_SCIENTIFIC_NAME, S3QueryConditionOperators.IN, scientificName, false);
+	}
+
+	/**
+	 * Queries the collection with a single condition
+	 *
+	 * @param attribute The attribute to compare
+	 * @param operator The comparison operator
+	 * @param value The value to compare against
+	 * @param caseInsensitive If strings are compared case insensitively
+	 * @return The matching images
+	 */
+	private S3QueryResultSet query(String attribute, S3QueryConditionOperators operator, String value, boolean caseInsensitive) throws Exception
+	{
+		S3QueryBuilder queryBuilder = new S3QueryBuilder(false, caseInsensitive);
+		queryBuilder.addConditionAsQueryField(S3QueryPart.ATTRIBUTE, S3QueryConditionOperators.EQUAL, attribute);
+		queryBuilder.addConditionAsQueryField(S3QueryPart.VALUE, operator, "('" + value + "')");
+		List<ImageCollection> collections = Collections.singletonList(this.collection);
+		return S3QueryExecute.executeQuery(queryBuilder, collections);
+	}
+
+	private static Deployments deployment(String deploymentID, String locationName)
+	{
+		Deployments dep = new Deployments();
+		dep.deploymentID = deploymentID;
+		dep.locationID = deploymentID;
+		dep.locationName = locationName;
+		return dep;
+	}
+
+	private static Media media(String mediaID, String deploymentID, String filePath)
+	{
+		Media med = new Media();
+		med.mediaID = mediaID;
+		med.deploymentID = deploymentID;
+		med.filePath = filePath;
+		med.timestamp = TAKEN;
+		return med;
+	}
+
+	private static Observations observation(String mediaID, String deploymentID, String scientificName)
+	{
+		Observations obs = new Observations();
+		obs.observationID = mediaID;
+		obs.mediaID = mediaID;
+		obs.deploymentID = deploymentID;
+		obs.scientificName = scientificName;
+		obs.timestamp = TAKEN;
+		return obs;
+	}
+}